@@ -52,6 +52,11 @@ subprojects {
     withSourcesJar()
   }
 
+  // The benchmarks only run with -Dflint.benchmarks=true
+  tasks.withType<Test> {
+    systemProperty("flint.benchmarks", System.getProperty("flint.benchmarks", "false"))
+  }
+
   // Common Jar properties
   tasks.getByName<Jar>("jar") {
     manifest {
@@ -18,11 +18,13 @@ import org.pageseeder.berlioz.content.ContentRequest;
 import org.pageseeder.flint.IndexManager;
 import org.pageseeder.flint.berlioz.model.FlintConfig;
 import org.pageseeder.flint.indexing.IndexJob;
+import org.pageseeder.flint.indexing.StageMetrics;
 import org.pageseeder.xmlwriter.XMLWriter;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 public class GetJobsInQueue implements ContentGenerator {
 
@@ -30,11 +32,34 @@ public class GetJobsInQueue implements ContentGenerator {
 
   public void process(ContentRequest req, XMLWriter xml) throws IOException {
     IndexManager manager = FlintConfig.get().getManager();
-    List<IndexJob> jobs = manager.getStatus();
     xml.openElement("index-jobs");
+    // counts only, no need to list the jobs
+    if ("true".equals(req.getParameter("count-only"))) {
+      Map<String, Integer> counts = manager.getLiveJobCounts();
+      xml.attribute("count", counts.values().stream().mapToInt(Integer::intValue).sum());
+      for (Map.Entry<String, Integer> count : counts.entrySet()) {
+        xml.openElement("index");
+        xml.attribute("name", count.getKey());
+        xml.attribute("count", count.getValue());
+        xml.closeElement();
+      }
+      // time spent in each stage
+      for (StageMetrics stage : manager.getStageMetrics()) {
+        xml.openElement("stage");
+        xml.attribute("name", stage.getName());
+        xml.attribute("count", Long.toString(stage.getCount()));
+        xml.attribute("total", Long.toString(stage.getTotalTime()));
+        xml.attribute("average", Long.toString(stage.getAverageTime()));
+        xml.attribute("max", Long.toString(stage.getMaxTime()));
+        xml.closeElement();
+      }
+      xml.closeElement();
+      return;
+    }
+    List<IndexJob> jobs = manager.getStatus();
     xml.attribute("count", jobs.size());
     File appdata = GlobalSettings.getAppData();
-    if (appdata != null && !"true".equals(req.getParameter("count-only"))) {
+    if (appdata != null) {
       String root = appdata.getAbsolutePath();
       // max nb of jobs
       for (int i = 0; i < jobs.size() && i < MAX_JOBS; i++) {
@@ -1,8 +1,10 @@
 package org.pageseeder.flint.berlioz.helper;
 
-import org.apache.lucene.document.Document;
-import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
 import org.pageseeder.berlioz.util.ISO8601;
+import org.pageseeder.flint.IndexException;
 import org.pageseeder.flint.IndexManager;
 import org.pageseeder.flint.berlioz.model.FlintConfig;
 import org.pageseeder.flint.berlioz.model.IndexMaster;
@@ -18,6 +20,7 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -128,7 +131,11 @@ public class AsynchronousIndexer implements Runnable, XMLWritable, FileFilter {
      // load existing documents
     IndexManager manager = FlintConfig.get().getManager();
     Map<String, Long> existing = getLuceneExistingContent(afolder);
-    if (existing == null) return;
+    if (existing == null) {
+      // nothing indexed, another indexer can be started
+      this.done = true;
+      return;
+    }
 
     // find root folder
     File location = this._luceneIndex.getIndex().getContentLocation();
@@ -146,15 +153,9 @@ public class AsynchronousIndexer implements Runnable, XMLWritable, FileFilter {
 
   private Map<String, Long> getLuceneExistingContent(String afolder) {
     Map<String, Long> existing = new HashMap<>();
-    IndexReader reader;
-    reader = LuceneIndexQueries.grabReader(this._luceneIndex.getIndex());
-    if (reader == null) {
-      LOGGER.error("Failed to retrieve a reader for index {}", this._luceneIndex.getName());
-      return null;
-    }
+    Query query = new PrefixQuery(new Term("_path", afolder));
     try {
-      for (int i = 0; i < reader.numDocs(); i++) {
-        Document doc = reader.storedFields().document(i);
+      int count = LuceneIndexQueries.export(this._luceneIndex.getIndex(), query, Arrays.asList("_src", "_path", "_lastmodified"), doc -> {
         String src = doc.get("_src");
         String path = doc.get("_path");
         String lm   = doc.get("_lastmodified");
@@ -168,11 +169,15 @@ public class AsynchronousIndexer implements Runnable, XMLWritable, FileFilter {
             // ignore, should never happen anyway
           }
         }
+        return true;
+      });
+      if (count < 0) {
+        LOGGER.error("Failed to retrieve a searcher for index {}", this._luceneIndex.getName());
+        return null;
       }
-    } catch (IOException ex) {
+    } catch (IndexException ex) {
       LOGGER.error("Failed to load existing documents from index {}", this._luceneIndex.getName(), ex);
-    } finally {
-      LuceneIndexQueries.releaseQuietly(this._luceneIndex.getIndex(), reader);
+      return null;
     }
     return existing;
   }
@@ -1,7 +1,7 @@
 package org.pageseeder.flint.berlioz.helper;
 
-import org.apache.lucene.document.Document;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.search.PrefixQuery;
 import org.pageseeder.berlioz.GlobalSettings;
 import org.pageseeder.berlioz.util.Pair;
 import org.pageseeder.flint.IndexException;
@@ -12,10 +12,8 @@ import org.pageseeder.flint.berlioz.model.IndexMaster;
 import org.pageseeder.flint.indexing.IndexBatch;
 import org.pageseeder.flint.indexing.IndexJob.Priority;
 import org.pageseeder.flint.local.LocalFileContentType;
+import org.pageseeder.flint.lucene.LuceneIndexQueries;
 import org.pageseeder.flint.lucene.LuceneLocalIndex;
-import org.pageseeder.flint.lucene.query.BasicQuery;
-import org.pageseeder.flint.lucene.query.PrefixParameter;
-import org.pageseeder.flint.lucene.query.SearchResults;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -187,12 +185,12 @@ public class FolderWatcher {
       Collection<File> toReIndex = new ArrayList<>();
       // find all files located in there
       try {
-        String path = destination.getIndex().fileToPath(file);
-        SearchResults results = destination.query(BasicQuery.newBasicQuery(new PrefixParameter(new Term("_path", path))));
-        for (Document doc : results.documents()) {
-          toReIndex.add(destination.getIndex().pathToFile(doc.get("_path")));
-        }
-        results.terminate();
+        LuceneLocalIndex index = destination.getIndex();
+        String path = index.fileToPath(file);
+        LuceneIndexQueries.export(index, new PrefixQuery(new Term("_path", path)), Collections.singletonList("_path"), doc -> {
+          toReIndex.add(index.pathToFile(doc.get("_path")));
+          return true;
+        });
       } catch (IndexException ex) {
         LOGGER.error("Failed to load files in folder {}", file, ex);
         return;
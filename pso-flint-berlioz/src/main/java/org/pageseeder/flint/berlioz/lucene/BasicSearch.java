@@ -60,6 +60,9 @@ import java.util.List;
  *   sort-type   [int|double|float|long|document|string|score,set], default is score
  *   page        the page number
  *   results     the nb of results per page
+ *   cursor      the cursor of the next page returned by the previous search
+ *   cursors     [true|false] whether to return the cursor of the next page (default false)
+ *   fields      comma-separated list of the stored fields to include in the results (default is all)
  *
  */
 public class BasicSearch extends LuceneIndexGenerator {
@@ -139,6 +142,9 @@ public class BasicSearch extends LuceneIndexGenerator {
     }
     Sort sort = buildSort(req);
     if (sort != null) query.setSort(sort);
+    // only load the stored fields requested
+    String fields = req.getParameter("fields", "").trim();
+    if (!fields.isEmpty()) query.setFieldProjection(new FieldProjection.Builder().include(fields.split("\\s*,\\s*")).build());
     return query;
   }
 
@@ -170,6 +176,13 @@ public class BasicSearch extends LuceneIndexGenerator {
     int results = req.getIntParameter("results", 100);
     paging.setPage(page);
     paging.setHitsPerPage(results);
+    String cursor = req.getParameter("cursor", "");
+    if (!cursor.isEmpty()) try {
+      paging.setAfter(SearchCursor.parse(cursor));
+    } catch (IllegalArgumentException ex) {
+      LOGGER.warn("Ignoring invalid search cursor: {}", cursor);
+    }
+    paging.setCursors("true".equals(req.getParameter("cursors", "false")));
     return paging;
   }
 
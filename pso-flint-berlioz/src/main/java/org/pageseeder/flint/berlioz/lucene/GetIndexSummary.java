@@ -24,10 +24,12 @@ import org.pageseeder.berlioz.GlobalSettings;
 import org.pageseeder.berlioz.content.Cacheable;
 import org.pageseeder.berlioz.content.ContentRequest;
 import org.pageseeder.berlioz.util.ISO8601;
+import org.pageseeder.flint.IndexIO;
 import org.pageseeder.flint.berlioz.model.FlintConfig;
 import org.pageseeder.flint.berlioz.model.IndexDefinition;
 import org.pageseeder.flint.berlioz.model.IndexMaster;
 import org.pageseeder.flint.berlioz.util.Files;
+import org.pageseeder.flint.lucene.LuceneIndexIO;
 import org.pageseeder.flint.lucene.search.Terms;
 import org.pageseeder.xmlwriter.XMLWriter;
 import org.slf4j.Logger;
@@ -76,6 +78,11 @@ public final class GetIndexSummary extends LuceneIndexGenerator implements Cache
         xml.attribute("deletions", Boolean.toString(reader.hasDeletions()));
         xml.attribute("documents", reader.numDocs());
         xml.attribute("max-doc", reader.maxDoc());
+        IndexIO io = index.getIndex().getIndexIO();
+        if (io instanceof LuceneIndexIO) {
+          xml.attribute("commits", Long.toString(((LuceneIndexIO) io).getCommitCount()));
+          xml.attribute("commit-time", Long.toString(((LuceneIndexIO) io).getCommitTime()));
+        }
         // definition
         IndexDefinition def = FlintConfig.get().getIndexDefinitionFromIndexName(index.getName());
         if (def != null) {
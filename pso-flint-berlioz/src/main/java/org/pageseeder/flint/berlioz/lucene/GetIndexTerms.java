@@ -21,10 +21,8 @@ package org.pageseeder.flint.berlioz.lucene;
 
 import java.io.IOException;
 import java.util.Collection;
-import java.util.List;
 
 import org.apache.lucene.index.IndexReader;
-import org.apache.lucene.index.Term;
 import org.pageseeder.berlioz.content.Cacheable;
 import org.pageseeder.berlioz.content.ContentRequest;
 import org.pageseeder.berlioz.util.MD5;
@@ -36,12 +34,22 @@ import org.pageseeder.xmlwriter.XMLWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Lists the terms of a field in order with their document frequency.
+ *
+ * <p>The terms can be paged through using the <code>results</code> parameter for the number of terms
+ * to return and the <code>from</code> parameter for the first term to return; when there are more
+ * terms, the value of <code>from</code> for the next page is given by the <code>next</code> element.
+ */
 public final class GetIndexTerms extends LuceneIndexGenerator implements Cacheable {
   private static final Logger LOGGER = LoggerFactory.getLogger(GetIndexTerms.class);
   private static final String FIELD_PARAMETER = "field";
+  private static final String FROM_PARAMETER = "from";
+  private static final String RESULTS_PARAMETER = "results";
 
   public String getETag(ContentRequest req) {
-    return MD5.hash(buildIndexEtag(req) + "-" + req.getParameter(FIELD_PARAMETER));
+    return MD5.hash(buildIndexEtag(req) + "-" + req.getParameter(FIELD_PARAMETER) + "-" +
+        req.getParameter(FROM_PARAMETER, "") + "-" + req.getParameter(RESULTS_PARAMETER, ""));
   }
 
   @Override
@@ -56,10 +64,7 @@ public final class GetIndexTerms extends LuceneIndexGenerator implements Cacheab
     xml.attribute("index", master.getName());
     IndexReader reader = master.grabReader();
     try {
-      List<Term> terms = Terms.terms(reader, field);
-      for (Term term : terms) {
-        toXML(field, term, reader, xml);
-      }
+      toXML(field, reader, req, xml);
     } catch (IOException ex) {
       LOGGER.error("Error while extracting term statistics", ex);
     } finally {
@@ -88,10 +93,7 @@ public final class GetIndexTerms extends LuceneIndexGenerator implements Cacheab
       return;
     }
     try {
-      List<Term> terms = Terms.terms(reader, field);
-      for (Term term : terms) {
-        toXML(field, term, reader, xml);
-      }
+      toXML(field, reader, req, xml);
     } catch (IOException ex) {
       LOGGER.error("Error while extracting term statistics", ex);
     } finally {
@@ -100,12 +102,21 @@ public final class GetIndexTerms extends LuceneIndexGenerator implements Cacheab
     }
   }
 
-  private static void toXML(String field, Term term, IndexReader reader, XMLWriter xml) throws IOException {
-    if (term == null) return;
-    xml.openElement("term");
-    xml.attribute("field", field);
-    xml.attribute("text", term.bytes().utf8ToString());
-    xml.attribute("doc-freq", reader.docFreq(term));
-    xml.closeElement();
+  private static void toXML(String field, IndexReader reader, ContentRequest req, XMLWriter xml) throws IOException {
+    String from = req.getParameter(FROM_PARAMETER);
+    int results = req.getIntParameter(RESULTS_PARAMETER, -1);
+    // terms are written as they are read rather than loaded first
+    String next = Terms.terms(reader, field, from, results, true, (text, docFreq) -> {
+      xml.openElement("term");
+      xml.attribute("field", field);
+      xml.attribute("text", text.utf8ToString());
+      xml.attribute("doc-freq", docFreq);
+      xml.closeElement();
+    });
+    if (next != null) {
+      xml.openElement("next");
+      xml.attribute("from", next);
+      xml.closeElement();
+    }
   }
 }
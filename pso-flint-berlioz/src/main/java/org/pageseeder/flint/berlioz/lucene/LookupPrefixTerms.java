@@ -38,6 +38,12 @@ import org.slf4j.LoggerFactory;
 /**
  * Lookup the fuzzy term for the specified term.
  *
+ * <p>By default, the 20 terms with the highest frequency are returned. When the <code>results</code>
+ * or <code>from</code> parameter is specified, the terms are returned in order instead so that they
+ * can be paged through: <code>results</code> is the number of terms to return and <code>from</code>
+ * the first term to return; when there are more terms, the value of <code>from</code> for the next
+ * page is given by the <code>next</code> element.
+ *
  * <p>Generate an ETag based on the parameters and the last modified date of the index.
  *
  * @author Christophe Lauret
@@ -58,6 +64,8 @@ public final class LookupPrefixTerms extends LuceneIndexGenerator implements Cac
     // Get relevant parameters
     String etag = req.getParameter("term", "keyword") + '%' +
         req.getParameter("field", "") + '%' +
+        req.getParameter("from", "") + '%' +
+        req.getParameter("results", "") + '%' +
         buildIndexEtag(req);
     // MD5 of computed etag value
     return MD5.hash(etag);
@@ -80,11 +88,7 @@ public final class LookupPrefixTerms extends LuceneIndexGenerator implements Cac
     MultipleIndexReader multiReader = buildMultiReader(masters);
     try {
       IndexReader reader = multiReader.grab();
-      Bucket<Term> bucket = new Bucket<>(20);
-      Terms.prefix(reader, bucket, term);
-      for (Entry<Term> e : bucket.entrySet()) {
-        Terms.toXML(xml, e.item(), e.count());
-      }
+      toXML(reader, term, req, xml);
     } catch (IOException | IndexException ex) {
       throw new BerliozException("Exception thrown while fetching fuzzy terms", ex);
     } finally {
@@ -111,12 +115,8 @@ public final class LookupPrefixTerms extends LuceneIndexGenerator implements Cac
     xml.openElement("prefix-terms");
     IndexReader reader = null;
     try {
-      Bucket<Term> bucket = new Bucket<>(20);
       reader = index.grabReader();
-      Terms.prefix(reader, bucket, term);
-      for (Entry<Term> e : bucket.entrySet()) {
-        Terms.toXML(xml, e.item(), e.count());
-      }
+      toXML(reader, term, req, xml);
     } catch (IOException ex) {
       throw new BerliozException("Exception thrown while fetching fuzzy terms", ex);
     } finally {
@@ -125,4 +125,33 @@ public final class LookupPrefixTerms extends LuceneIndexGenerator implements Cac
     }
   }
 
+  /**
+   * Writes the prefix terms, in order if paging was requested or the most frequent ones otherwise.
+   */
+  private static void toXML(IndexReader reader, Term term, ContentRequest req, XMLWriter xml) throws IOException {
+    String from = req.getParameter("from");
+    int results = req.getIntParameter("results", -1);
+    if (from == null && results < 0) {
+      Bucket<Term> bucket = new Bucket<>(20);
+      Terms.prefix(reader, bucket, term);
+      for (Entry<Term> e : bucket.entrySet()) {
+        Terms.toXML(xml, e.item(), e.count());
+      }
+      return;
+    }
+    // terms are written as they are read rather than loaded first
+    String next = Terms.prefix(reader, term, from, results, true, (text, docFreq) -> {
+      xml.openElement("term");
+      xml.attribute("field", term.field());
+      xml.attribute("text", text.utf8ToString());
+      xml.attribute("frequency", docFreq);
+      xml.closeElement();
+    });
+    if (next != null) {
+      xml.openElement("next");
+      xml.attribute("from", next);
+      xml.closeElement();
+    }
+  }
+
 }
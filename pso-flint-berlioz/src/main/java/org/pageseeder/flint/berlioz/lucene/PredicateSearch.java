@@ -17,6 +17,7 @@ import org.pageseeder.flint.berlioz.model.IndexMaster;
 import org.pageseeder.flint.berlioz.util.GeneratorErrors;
 import org.pageseeder.flint.lucene.LuceneIndexQueries;
 import org.pageseeder.flint.lucene.query.PredicateSearchQuery;
+import org.pageseeder.flint.lucene.query.SearchCursor;
 import org.pageseeder.flint.lucene.query.SearchPaging;
 import org.pageseeder.flint.lucene.query.SearchQuery;
 import org.pageseeder.flint.lucene.query.SearchResults;
@@ -90,6 +91,13 @@ public final class PredicateSearch extends LuceneIndexGenerator {
     int page = req.getIntParameter("page", 1);
     paging.setPage(page);
     paging.setHitsPerPage(100);
+    String cursor = req.getParameter("cursor", "");
+    if (!cursor.isEmpty()) try {
+      paging.setAfter(SearchCursor.parse(cursor));
+    } catch (IllegalArgumentException ex) {
+      LOGGER.warn("Ignoring invalid search cursor: {}", cursor);
+    }
+    paging.setCursors("true".equals(req.getParameter("cursors", "false")));
     return paging;
   }
 
@@ -14,6 +14,7 @@ import org.pageseeder.flint.berlioz.util.GeneratorErrors;
 import org.pageseeder.flint.lucene.LuceneIndexQueries;
 import org.pageseeder.flint.lucene.query.AnyTermParameter;
 import org.pageseeder.flint.lucene.query.BasicQuery;
+import org.pageseeder.flint.lucene.query.SearchCursor;
 import org.pageseeder.flint.lucene.query.SearchPaging;
 import org.pageseeder.flint.lucene.query.SearchQuery;
 import org.pageseeder.flint.lucene.query.SearchResults;
@@ -78,6 +79,13 @@ public final class TermSearch extends LuceneIndexGenerator {
     SearchPaging paging = new SearchPaging();
     paging.setPage(req.getIntParameter("page", 1));
     paging.setHitsPerPage(req.getIntParameter("results", 100));
+    String cursor = req.getParameter("cursor", "");
+    if (!cursor.isEmpty()) try {
+      paging.setAfter(SearchCursor.parse(cursor));
+    } catch (IllegalArgumentException ex) {
+      LOGGER.warn("Ignoring invalid search cursor: {}", cursor);
+    }
+    paging.setCursors("true".equals(req.getParameter("cursors", "false")));
     return paging;
   }
 
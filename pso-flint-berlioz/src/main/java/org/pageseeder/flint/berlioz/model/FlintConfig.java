@@ -18,6 +18,10 @@
 package org.pageseeder.flint.berlioz.model;
 
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.SortedNumericSortField;
+import org.apache.lucene.search.SortedSetSortField;
 import org.pageseeder.berlioz.GlobalSettings;
 import org.pageseeder.flint.IndexException;
 import org.pageseeder.flint.IndexManager;
@@ -29,6 +33,9 @@ import org.pageseeder.flint.catalog.Catalogs;
 import org.pageseeder.flint.content.ContentTranslatorFactory;
 import org.pageseeder.flint.indexing.IndexBatch;
 import org.pageseeder.flint.local.LocalFileContentFetcher;
+import org.pageseeder.flint.lucene.CommitPolicy;
+import org.pageseeder.flint.lucene.WriterSettings;
+import org.pageseeder.flint.lucene.search.SearchExecutor;
 import org.pageseeder.flint.templates.TemplatesCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -225,6 +232,14 @@ public class FlintConfig {
     this.listener = new QuietListener(LOGGER);
     this.manager = new IndexManager(new LocalFileContentFetcher(), this.listener, nbThreads, false, debounceDelay);
     this.manager.setThreadPriority(threadPriority);
+    this.manager.setBatching(GlobalSettings.get("flint.threads.batch-size", 20),
+                             GlobalSettings.get("flint.threads.batch-wait", 0));
+    this.manager.setWriterStage(GlobalSettings.get("flint.threads.writers", 0),
+                                GlobalSettings.get("flint.threads.writer-capacity", 100));
+    // search the segments of large indexes in parallel
+    SearchExecutor.setSlicing(GlobalSettings.get("flint.search.slice-docs", SearchExecutor.DEFAULT_MAX_DOCS_PER_SLICE),
+                              GlobalSettings.get("flint.search.slice-segments", SearchExecutor.DEFAULT_MAX_SEGMENTS_PER_SLICE));
+    SearchExecutor.start(GlobalSettings.get("flint.search.threads", 0));
     createTranslatorFactories();
     // watch is on?
     boolean watch = GlobalSettings.get("flint.watcher.watch", true);
@@ -259,6 +274,14 @@ public class FlintConfig {
         continue;
       }
       def.setWithStopWords(!"true".equals(GlobalSettings.get("flint.index." + type + ".no-stop-words")));
+      def.setMaxStaleness(GlobalSettings.get("flint.index." + type + ".max-staleness", 0));
+      def.setCommitPolicy(new CommitPolicy.Builder()
+          .maxInterval(GlobalSettings.get("flint.index." + type + ".commit.max-interval", 0))
+          .maxDocuments(GlobalSettings.get("flint.index." + type + ".commit.max-documents", 0))
+          .maxRAM(GlobalSettings.get("flint.index." + type + ".commit.max-ram", 0))
+          .whenDrained(GlobalSettings.get("flint.index." + type + ".commit.when-drained", true))
+          .build());
+      def.setWriterSettings(loadWriterSettings(type));
       // check for clashes
       for (IndexDefinition existing : this.indexConfigs.values()) {
         if (def.indexNameClash(existing)) {
@@ -313,6 +336,7 @@ public class FlintConfig {
     }
     // stop everything
     this.manager.stop();
+    SearchExecutor.stop();
   }
 
   public final File getRootDirectory() {
@@ -412,6 +436,68 @@ public class FlintConfig {
     }
   }
 
+  /**
+   * Load the settings used to tune the index writer from the global settings, anything not specified
+   * keeps Lucene's defaults.
+   *
+   * @param type the index type
+   *
+   * @return the writer settings
+   */
+  private static WriterSettings loadWriterSettings(String type) {
+    String prefix = "flint.index." + type + ".writer.";
+    WriterSettings.Builder builder = new WriterSettings.Builder()
+        .ramBufferMB(GlobalSettings.get(prefix + "ram-buffer", 0))
+        .maxBufferedDocs(GlobalSettings.get(prefix + "max-buffered-docs", 0))
+        .segmentsPerTier(GlobalSettings.get(prefix + "segments-per-tier", 0))
+        .maxMergedSegmentMB(GlobalSettings.get(prefix + "max-merged-segment", 0))
+        .floorSegmentMB(GlobalSettings.get(prefix + "floor-segment", 0))
+        .mergeThreads(GlobalSettings.get(prefix + "merge-threads", 0))
+        .bestCompression("best-compression".equals(GlobalSettings.get(prefix + "compression")));
+    String compound = GlobalSettings.get(prefix + "compound-file");
+    if (compound != null) builder.useCompoundFile("true".equals(compound));
+    String sort = GlobalSettings.get(prefix + "index-sort");
+    if (sort != null) builder.indexSort(toIndexSort(type, sort));
+    return builder.build();
+  }
+
+  /**
+   * Parse an index sort from a comma-separated list of fields with the format
+   * <code>[-]field:type</code>, the "-" reverses the order and the type is one of
+   * int, long, float, double, string or set (default is string).
+   *
+   * <p>The fields must have doc values of the corresponding type, sorted numeric for numbers,
+   * sorted for string and sorted set for set.
+   *
+   * @param type the index type
+   * @param sort the index sort definition
+   *
+   * @return the sort or <code>null</code> if the definition is invalid
+   */
+  private static Sort toIndexSort(String type, String sort) {
+    List<SortField> fields = new ArrayList<>();
+    for (String definition : sort.split(",")) {
+      String field = definition.trim();
+      boolean reverse = field.startsWith("-");
+      if (reverse) field = field.substring(1);
+      int colon = field.indexOf(':');
+      String fieldType = colon == -1 ? "string" : field.substring(colon + 1);
+      if (colon != -1) field = field.substring(0, colon);
+      if (field.isEmpty()) continue;
+      if ("int".equalsIgnoreCase(fieldType))         fields.add(new SortedNumericSortField(field, SortField.Type.INT,    reverse));
+      else if ("long".equalsIgnoreCase(fieldType))   fields.add(new SortedNumericSortField(field, SortField.Type.LONG,   reverse));
+      else if ("float".equalsIgnoreCase(fieldType))  fields.add(new SortedNumericSortField(field, SortField.Type.FLOAT,  reverse));
+      else if ("double".equalsIgnoreCase(fieldType)) fields.add(new SortedNumericSortField(field, SortField.Type.DOUBLE, reverse));
+      else if ("set".equalsIgnoreCase(fieldType))    fields.add(new SortedSetSortField(field, reverse));
+      else if ("string".equalsIgnoreCase(fieldType)) fields.add(new SortField(field, SortField.Type.STRING, reverse));
+      else {
+        LOGGER.warn("Ignoring invalid index sort {} for index {}: unknown type {}", sort, type, fieldType);
+        return null;
+      }
+    }
+    return fields.isEmpty() ? null : new Sort(fields.toArray(new SortField[0]));
+  }
+
   private void loadAutoSuggests(IndexDefinition def) {
     String propPrefix = "flint.index." + def.getName() + '.';
     // autosuggests
@@ -1,5 +1,7 @@
 package org.pageseeder.flint.berlioz.model;
 
+import org.pageseeder.flint.lucene.CommitPolicy;
+import org.pageseeder.flint.lucene.WriterSettings;
 import org.pageseeder.xmlwriter.XMLWritable;
 import org.pageseeder.xmlwriter.XMLWriter;
 import org.slf4j.Logger;
@@ -40,6 +42,21 @@ public class IndexDefinition implements XMLWritable {
    * If stop words are considered when indexing
    */
   private boolean _withStopWords = true;
+
+  /**
+   * The max time in ms changes can wait before being visible to searches (0 means refresh as soon as possible)
+   */
+  private long _maxStaleness = 0;
+
+  /**
+   * Decides when changes are committed
+   */
+  private CommitPolicy _commitPolicy = CommitPolicy.WHEN_DRAINED;
+
+  /**
+   * The settings used to tune the index writer
+   */
+  private WriterSettings _writerSettings = WriterSettings.DEFAULT;
   /**
    * The content paths to include (static or dynamic)
    */
@@ -115,6 +132,18 @@ public class IndexDefinition implements XMLWritable {
     this._withStopWords = withStopWords;
   }
 
+  public void setMaxStaleness(long maxStaleness) {
+    this._maxStaleness = maxStaleness;
+  }
+
+  public void setCommitPolicy(CommitPolicy policy) {
+    this._commitPolicy = policy == null ? CommitPolicy.WHEN_DRAINED : policy;
+  }
+
+  public void setWriterSettings(WriterSettings settings) {
+    this._writerSettings = settings == null ? WriterSettings.DEFAULT : settings;
+  }
+
   public String getName() {
     return this._name;
   }
@@ -181,6 +210,21 @@ public class IndexDefinition implements XMLWritable {
     return this._withStopWords;
   }
 
+  /**
+   * @return the max time in ms changes can wait before being visible to searches (0 means refresh as soon as possible)
+   */
+  public long getMaxStaleness() {
+    return this._maxStaleness;
+  }
+
+  public CommitPolicy getCommitPolicy() {
+    return this._commitPolicy;
+  }
+
+  public WriterSettings getWriterSettings() {
+    return this._writerSettings;
+  }
+
   public FileFilter buildFileFilter(final File root) {
     // use extensions
     return file -> {
@@ -389,6 +433,8 @@ public class IndexDefinition implements XMLWritable {
     xml.attribute("template", this._template.getName());
     if (this.templateError != null)
       xml.attribute("template-error", this.templateError);
+    if (this._maxStaleness > 0)
+      xml.attribute("max-staleness", String.valueOf(this._maxStaleness));
     if (!this._pathExcludes.isEmpty()) {
       StringBuilder sb = new StringBuilder();
       for (String exc : this._pathExcludes) sb.append(",").append(exc);
@@ -7,14 +7,17 @@ import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.pageseeder.berlioz.GlobalSettings;
 import org.pageseeder.berlioz.util.MD5;
 import org.pageseeder.flint.IndexException;
+import org.pageseeder.flint.IndexIO;
 import org.pageseeder.flint.IndexManager;
 import org.pageseeder.flint.Requester;
 import org.pageseeder.flint.content.ContentTranslator;
 import org.pageseeder.flint.indexing.FlintDocument;
 import org.pageseeder.flint.indexing.IndexJob;
 import org.pageseeder.flint.local.LocalFileContent;
+import org.pageseeder.flint.lucene.LuceneIndexIO;
 import org.pageseeder.flint.lucene.LuceneIndexQueries;
 import org.pageseeder.flint.lucene.LuceneLocalIndex;
 import org.pageseeder.flint.lucene.query.SearchPaging;
@@ -62,7 +65,13 @@ public final class IndexMaster {
     this._manager = mgr;
     this._name = name;
     this._contentRoot = content;
-    this._index = new LuceneLocalIndex(index, def.getName(), FlintConfig.newAnalyzer(def), this._contentRoot);
+    this._index = new LuceneLocalIndex(index, def.getName(), FlintConfig.newAnalyzer(def), this._contentRoot,
+        def.getWriterSettings());
+    IndexIO io = this._index.getIndexIO();
+    if (io instanceof LuceneIndexIO) {
+      ((LuceneIndexIO) io).setMaxStaleness(def.getMaxStaleness());
+      ((LuceneIndexIO) io).setCommitPolicy(def.getCommitPolicy());
+    }
     // same template used for all extensions (not great...)
     if (extensions != null) this._extensions.addAll(extensions);
     for (String extension : this._extensions) {
@@ -153,15 +162,16 @@ public final class IndexMaster {
     synchronized (this._autosuggests) {
       org.pageseeder.flint.lucene.search.AutoSuggest existing = this._autosuggests.get(name);
       // create?
-      if (existing == null || !existing.isCurrent()) {
+      if (existing == null) {
         try {
-          if (existing != null) clearAutoSuggest(name, existing);
           return createAutoSuggest(name, terms, fields, min, resultFields, criteriaFields, weights);
         } catch (IndexException | IOException ex) {
           LOGGER.error("Failed to create autosuggest {}", name, ex);
           return null;
         }
       }
+      // keep using the previous entries while rebuilding
+      if (!existing.isCurrent()) existing.buildInBackground();
       return existing;
     }
   }
@@ -171,11 +181,10 @@ public final class IndexMaster {
     synchronized (this._autosuggests) {
       org.pageseeder.flint.lucene.search.AutoSuggest existing = this._autosuggests.get(name);
       // create?
-      if (existing == null || !existing.isCurrent()) {
+      if (existing == null) {
         IndexDefinition.AutoSuggestDefinition asd = this._def.getAutoSuggest(name);
         if (asd != null) {
           try {
-            if (existing != null) clearAutoSuggest(name, existing);
             return createAutoSuggest(name, asd.useTerms(), asd.getSearchFields(),
                 asd.minChars(), asd.getResultFields(), asd.getCriteriaFields(), asd.getWeights());
           } catch (IndexException | IOException ex) {
@@ -187,10 +196,23 @@ public final class IndexMaster {
           return null;
         }
       }
+      // keep using the previous entries while rebuilding
+      if (!existing.isCurrent()) existing.buildInBackground();
       return existing;
     }
   }
 
+  /**
+   * Rebuilds all the autosuggests in the background, they are otherwise updated as the index changes.
+   */
+  public void rebuildAutoSuggests() {
+    synchronized (this._autosuggests) {
+      for (AutoSuggest autosuggest : this._autosuggests.values()) {
+        autosuggest.buildInBackground();
+      }
+    }
+  }
+
   /**
    * @deprecated
    */
@@ -300,7 +322,10 @@ public final class IndexMaster {
             .searchFields(fields)
             .weights(weights)
             .resultFields(resultFields)
-            .criteria(criteria);
+            .criteria(criteria)
+            .buildThreads(GlobalSettings.get("flint.autosuggest.build-threads", 1))
+            // the field used by the delete rules of local indexes
+            .idField("_src");
     // build it
     org.pageseeder.flint.lucene.search.AutoSuggest as = aBuilder.build();
     IndexReader reader = null;
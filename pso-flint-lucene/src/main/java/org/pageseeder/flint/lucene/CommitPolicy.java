@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.flint.lucene;
+
+/**
+ * Decides when the changes made to an index should be committed.
+ *
+ * <p>Committing is expensive as it syncs the index files to disk, so committing after every
+ * document is wasteful while never committing during a bulk load means that nothing is durable
+ * until the end.
+ *
+ * <p>The default policy commits when there are no more jobs waiting for the index, use the
+ * {@link Builder} to commit based on time, number of documents or memory.
+ */
+public interface CommitPolicy {
+
+  /**
+   * Commit only when there are no more jobs waiting for the index.
+   */
+  CommitPolicy WHEN_DRAINED = (drained, documents, elapsed, ram) -> drained;
+
+  /**
+   * Indicates whether the changes should be committed now.
+   *
+   * @param drained         <code>true</code> if there are no more jobs waiting for the index
+   * @param documents       the number of documents changed since the last commit
+   * @param elapsed         the time in ms since the last commit
+   * @param ramBytesUsed    the memory used by the writer's buffers in bytes
+   *
+   * @return <code>true</code> if the changes should be committed
+   */
+  boolean shouldCommit(boolean drained, long documents, long elapsed, long ramBytesUsed);
+
+  /**
+   * The max time between commits, used to make sure changes are committed even if no more
+   * changes are made.
+   *
+   * @return the max time in ms between commits (0 if none)
+   */
+  default long getMaxInterval() {
+    return 0;
+  }
+
+  /**
+   * Builds a commit policy combining several thresholds, the changes are committed as soon as
+   * one of them is reached.
+   */
+  final class Builder {
+
+    private long maxInterval = 0;
+
+    private long maxDocuments = 0;
+
+    private double maxRAMMB = 0;
+
+    private boolean whenDrained = true;
+
+    /**
+     * @param ms the max time between commits in ms (0 for none)
+     * @return this builder
+     */
+    public Builder maxInterval(long ms) {
+      this.maxInterval = ms;
+      return this;
+    }
+
+    /**
+     * @param documents the max number of uncommitted documents (0 for none)
+     * @return this builder
+     */
+    public Builder maxDocuments(long documents) {
+      this.maxDocuments = documents;
+      return this;
+    }
+
+    /**
+     * @param mb the max memory used by the uncommitted changes in MB (0 for none)
+     * @return this builder
+     */
+    public Builder maxRAM(double mb) {
+      this.maxRAMMB = mb;
+      return this;
+    }
+
+    /**
+     * @param drained whether to commit when there are no more jobs for the index (default is true)
+     * @return this builder
+     */
+    public Builder whenDrained(boolean drained) {
+      this.whenDrained = drained;
+      return this;
+    }
+
+    /**
+     * @return the new commit policy
+     */
+    public CommitPolicy build() {
+      final long interval = this.maxInterval;
+      final long documents = this.maxDocuments;
+      final long ram = (long) (this.maxRAMMB * 1024 * 1024);
+      final boolean drained = this.whenDrained;
+      return new CommitPolicy() {
+        @Override
+        public boolean shouldCommit(boolean isDrained, long nbDocuments, long elapsed, long ramBytesUsed) {
+          return (drained && isDrained) ||
+                 (interval > 0 && elapsed >= interval) ||
+                 (documents > 0 && nbDocuments >= documents) ||
+                 (ram > 0 && ramBytesUsed >= ram);
+        }
+
+        @Override
+        public long getMaxInterval() {
+          return interval;
+        }
+      };
+    }
+  }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.flint.lucene;
+
+import org.apache.lucene.document.Document;
+import org.pageseeder.flint.lucene.util.Beta;
+
+import java.util.List;
+
+/**
+ * Notified of the changes written to an index, so that data derived from the index can be
+ * maintained without reading the whole index again.
+ *
+ * <p>Changes are reported in the order they are written, by the thread writing them, before they
+ * are visible to searchers. Listeners should not do any heavy work in these methods.
+ *
+ * @see LuceneIndexIO#addChangeListener(IndexChangeListener)
+ */
+@Beta
+public interface IndexChangeListener {
+
+  /**
+   * Documents were added, replaced or deleted.
+   *
+   * @param rule      the rule identifying the documents deleted, <code>null</code> if documents were only added
+   * @param documents the documents added, empty if documents were only deleted
+   */
+  void changed(LuceneDeleteRule rule, List<Document> documents);
+
+  /**
+   * All the documents were deleted.
+   */
+  void cleared();
+
+  /**
+   * The index was refreshed, the changes reported so far are visible to new searchers.
+   */
+  void refreshed();
+
+}
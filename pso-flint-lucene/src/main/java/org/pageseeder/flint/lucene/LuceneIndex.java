@@ -48,10 +48,18 @@ public class LuceneIndex extends Index {
   }
 
   public LuceneIndex(String id, Directory dir, Analyzer analyzer) throws IndexException {
+    this(id, dir, analyzer, WriterSettings.DEFAULT);
+  }
+
+  public LuceneIndex(String id, File dir, Analyzer analyzer, WriterSettings settings) throws IOException, IndexException {
+    this(id, FSDirectory.open(dir.toPath()), analyzer, settings);
+  }
+
+  public LuceneIndex(String id, Directory dir, Analyzer analyzer, WriterSettings settings) throws IndexException {
     super(id);
     this._directory = dir;
     this._analyzer = analyzer;
-    this._io = new LuceneIndexIO(this._directory, this._analyzer);
+    this._io = new LuceneIndexIO(this._directory, this._analyzer, settings);
   }
 
   public Analyzer getAnalyzer() {
@@ -21,8 +21,9 @@ import org.apache.lucene.document.Field;
 import org.apache.lucene.index.*;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
 import org.apache.lucene.search.IndexSearcher;
-import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.ReferenceManager;
 import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
 import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
@@ -33,18 +34,29 @@ import org.pageseeder.flint.IndexOpenException;
 import org.pageseeder.flint.OpenIndexManager;
 import org.pageseeder.flint.content.DeleteRule;
 import org.pageseeder.flint.indexing.FlintDocument;
+import org.pageseeder.flint.indexing.IndexChange;
 import org.pageseeder.flint.indexing.IndexJob;
 import org.pageseeder.flint.indexing.IndexListener;
+import org.pageseeder.flint.lucene.facet.FacetCache;
+import org.pageseeder.flint.lucene.search.SearchExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.AccessDeniedException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Provides a set of utility methods to deal with IO operations on an Index.
@@ -100,12 +112,12 @@ public final class LuceneIndexIO implements IndexIO {
   /**
    * The underlying index writer used by Flint for this index (there should only be one).
    */
-  private IndexWriter _writer;
+  private volatile IndexWriter _writer;
 
   /**
    * The underlying index writer used by Flint for this index (there should only be one).
    */
-  private ReaderManager _reader;
+  private volatile ReaderManager _reader;
 
   /**
    * The index directory
@@ -117,21 +129,139 @@ public final class LuceneIndexIO implements IndexIO {
    */
   private final Analyzer _analyzer;
 
+  /**
+   * The settings used to tune the writer
+   */
+  private final WriterSettings _settings;
+
   /**
    * A search manager using this writer.
    */
-  private SearcherManager _searcher;
+  private volatile SearcherManager _searcher;
 
-  private Integer writing = 0;
-  private Integer committing = 0;
+  /**
+   * Gate between writes and refreshes (shared) and commits or closing (exclusive).
+   *
+   * <p>The Lucene writer is thread-safe, so any number of indexing threads can write at the same
+   * time, they only need to be kept out while the index is being committed or closed.
+   */
+  private final ReentrantReadWriteLock gate = new ReentrantReadWriteLock();
 
   private final Object lock = new Object();
 
-  // simple searcherfactory for now
-  private final static SearcherFactory FACTORY = new SearcherFactory();
+  /**
+   * The max time in ms changes can wait before being visible to readers and searchers,
+   * 0 means that they are refreshed as soon as requested.
+   */
+  private volatile long maxStaleness = 0;
+
+  /**
+   * Whether a refresh is already scheduled.
+   */
+  private final AtomicBoolean refreshScheduled = new AtomicBoolean(false);
+
+  /**
+   * The highest sequence number returned by the writer.
+   */
+  private final AtomicLong writingGeneration = new AtomicLong(0);
+
+  /**
+   * The highest sequence number visible to readers and searchers.
+   */
+  private final AtomicLong searchingGeneration = new AtomicLong(0);
 
   /**
-   * Sole constructor.
+   * Decides when changes are committed.
+   */
+  private volatile CommitPolicy commitPolicy = CommitPolicy.WHEN_DRAINED;
+
+  /**
+   * Whether a commit is already scheduled.
+   */
+  private final AtomicBoolean commitScheduled = new AtomicBoolean(false);
+
+  /**
+   * The number of documents changed since the last commit.
+   */
+  private final AtomicLong uncommittedDocuments = new AtomicLong(0);
+
+  /**
+   * Set when the index was cleared since the last commit, a clear is committed whatever the policy
+   * as it changes all the documents.
+   */
+  private volatile boolean clearedSinceCommit = false;
+
+  /**
+   * The last time changes were committed (or when this IO was created).
+   */
+  private final AtomicLong lastCommit = new AtomicLong(System.currentTimeMillis());
+
+  /**
+   * The number of commits performed.
+   */
+  private final AtomicLong commitCount = new AtomicLong(0);
+
+  /**
+   * The total time spent committing in ns.
+   */
+  private final AtomicLong commitTime = new AtomicLong(0);
+
+  /**
+   * The cache of the facet counts of each segment, <code>null</code> if disabled.
+   */
+  private volatile FacetCache facetCache = new FacetCache();
+
+  /**
+   * Removes the facet counts of the segments which are gone after each refresh.
+   */
+  private final ReferenceManager.RefreshListener facetCacheCleaner = new ReferenceManager.RefreshListener() {
+    @Override
+    public void beforeRefresh() {
+    }
+    @Override
+    public void afterRefresh(boolean didRefresh) throws IOException {
+      if (didRefresh) retainFacetCounts();
+    }
+  };
+
+  /**
+   * The listeners notified of the changes made to this index.
+   */
+  private final List<IndexChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+
+  /**
+   * Notifies the change listeners after each refresh.
+   */
+  private final ReferenceManager.RefreshListener changeNotifier = new ReferenceManager.RefreshListener() {
+    @Override
+    public void beforeRefresh() {
+    }
+    @Override
+    public void afterRefresh(boolean didRefresh) {
+      if (didRefresh) notifyChangeListeners(IndexChangeListener::refreshed);
+    }
+  };
+
+  /**
+   * Single-thread scheduler shared by all indexes to refresh them within their max staleness.
+   */
+  private final static ScheduledExecutorService REFRESHER = Executors.newSingleThreadScheduledExecutor(r -> {
+    Thread t = new Thread(r, "flint-refresh");
+    t.setDaemon(true);
+    return t;
+  });
+
+  /**
+   * Single-thread scheduler shared by all indexes to commit them within their commit policy's max interval.
+   */
+  private final static ScheduledExecutorService COMMITTER = Executors.newSingleThreadScheduledExecutor(r -> {
+    Thread t = new Thread(r, "flint-commit");
+    t.setDaemon(true);
+    return t;
+  });
+
+  /**
+   * Create a new IO using Lucene's default writer settings.
    *
    * @param dir       The index's directory
    * @param analyzer  The analyzer
@@ -139,8 +269,22 @@ public final class LuceneIndexIO implements IndexIO {
    * @throws IndexException if opening the index failed
    */
   public LuceneIndexIO(Directory dir, Analyzer analyzer) throws IndexException {
+    this(dir, analyzer, WriterSettings.DEFAULT);
+  }
+
+  /**
+   * Create a new IO.
+   *
+   * @param dir       The index's directory
+   * @param analyzer  The analyzer
+   * @param settings  The settings used to tune the writer
+   *
+   * @throws IndexException if opening the index failed
+   */
+  public LuceneIndexIO(Directory dir, Analyzer analyzer, WriterSettings settings) throws IndexException {
     this._analyzer = analyzer;
     this._directory = dir;
+    this._settings = settings == null ? WriterSettings.DEFAULT : settings;
     open();
     // get last commit data as last time used
     try {
@@ -160,6 +304,143 @@ public final class LuceneIndexIO implements IndexIO {
     return this.lastTimeUsed.get();
   }
 
+  /**
+   * Set the max time changes can wait before being visible to readers and searchers.
+   *
+   * <p>When greater than 0, calls to {@link #maybeRefresh()} schedule a single refresh at the end of that
+   * period instead of refreshing every time, so that the cost of reopening does not depend on the number of writes.
+   *
+   * @param ms the max staleness in ms (0 to refresh as soon as requested)
+   */
+  public void setMaxStaleness(long ms) {
+    this.maxStaleness = Math.max(0, ms);
+  }
+
+  /**
+   * @return the max staleness in ms (0 if refreshed as soon as requested)
+   */
+  public long getMaxStaleness() {
+    return this.maxStaleness;
+  }
+
+  /**
+   * Set the policy deciding when changes are committed.
+   *
+   * @param policy the commit policy (<code>null</code> to commit when there are no more jobs for the index)
+   */
+  public void setCommitPolicy(CommitPolicy policy) {
+    this.commitPolicy = policy == null ? CommitPolicy.WHEN_DRAINED : policy;
+  }
+
+  /**
+   * @return the policy deciding when changes are committed
+   */
+  public CommitPolicy getCommitPolicy() {
+    return this.commitPolicy;
+  }
+
+  /**
+   * @return the settings used to tune the writer
+   */
+  public WriterSettings getWriterSettings() {
+    return this._settings;
+  }
+
+  /**
+   * @return the number of commits performed since this IO was created
+   */
+  public long getCommitCount() {
+    return this.commitCount.get();
+  }
+
+  /**
+   * @return the total time spent committing in ms since this IO was created
+   */
+  public long getCommitTime() {
+    return TimeUnit.NANOSECONDS.toMillis(this.commitTime.get());
+  }
+
+  /**
+   * @return the cache of the facet counts of each segment, <code>null</code> if disabled
+   */
+  public FacetCache getFacetCache() {
+    return this.facetCache;
+  }
+
+  /**
+   * @param cache the cache of the facet counts of each segment, <code>null</code> to disable it
+   */
+  public void setFacetCache(FacetCache cache) {
+    this.facetCache = cache;
+    if (cache != null && !isClosed()) {
+      try {
+        retainFacetCounts();
+      } catch (AlreadyClosedException | IOException ex) {
+        LOGGER.warn("Unable to set the segments of the facet cache", ex);
+      }
+    }
+  }
+
+  /**
+   * @param listener notified of the changes made to this index from now on
+   */
+  public void addChangeListener(IndexChangeListener listener) {
+    if (listener != null) this.changeListeners.add(listener);
+  }
+
+  /**
+   * @param listener no longer notified of the changes made to this index
+   */
+  public void removeChangeListener(IndexChangeListener listener) {
+    this.changeListeners.remove(listener);
+  }
+
+  /**
+   * Returns the generation of the latest changes made to this index.
+   *
+   * <p>When called after a write, the generation returned can be used with {@link #waitForGeneration(long, long)}
+   * to wait for the write to be visible.
+   *
+   * @return the generation of the latest changes
+   */
+  public long getGeneration() {
+    return this.writingGeneration.get();
+  }
+
+  /**
+   * Wait until the changes up to the generation provided are visible to readers and searchers.
+   *
+   * <p>If they are not visible yet, the readers and searchers are refreshed straight away regardless
+   * of the max staleness.
+   *
+   * @param generation the generation, as returned by {@link #getGeneration()}
+   * @param timeout    the max time to wait in ms
+   *
+   * @return <code>true</code> if the changes are visible, <code>false</code> if it timed out
+   */
+  public boolean waitForGeneration(long generation, long timeout) {
+    if (this._writer == null) return true;
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+    while (this.searchingGeneration.get() < generation) {
+      refresh();
+      synchronized (this.lock) {
+        if (this.searchingGeneration.get() >= generation) return true;
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) return false;
+        // all changes are committed when closing so they will be visible once reopened
+        if (isClosed()) return true;
+        try {
+          TimeUnit.NANOSECONDS.timedWait(this.lock, remaining);
+        } catch (InterruptedException ex) {
+          LOGGER.error("Interrupted while waiting for refresh", ex);
+          Thread.currentThread().interrupt();
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
   /**
    * @return <code>true</code> if closed.
    */
@@ -201,23 +482,79 @@ public final class LuceneIndexIO implements IndexIO {
       throw new IndexException("Failed to close Index because it is corrupted", ex);
     } catch (final IOException ex) {
       throw new IndexException("Failed to close Index because of an I/O error", ex);
+    } finally {
+      endClosing();
     }
   }
 
   /**
-   * Commit any changes if the state of the index requires it.
+   * Refresh the readers and searchers if the state of the index requires it.
+   *
+   * <p>If there is a max staleness, the refresh is scheduled rather than done now.
+   */
+  public void maybeRefresh() {
+    long staleness = this.maxStaleness;
+    if (staleness <= 0) {
+      refresh();
+    } else if (isState(State.DIRTY) && this.refreshScheduled.compareAndSet(false, true)) {
+      REFRESHER.schedule(() -> {
+        this.refreshScheduled.set(false);
+        refresh();
+      }, staleness, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Refresh the readers and searchers now if the state of the index requires it.
    */
-  public synchronized void maybeRefresh() {
-    if (this._writer == null || !this._writer.isOpen() || !isState(State.DIRTY)) return;
+  private void refresh() {
+    if (this._writer == null || !this._writer.isOpen()) return;
+    // switch to clean first so that any write happening during the refresh marks it dirty again
+    if (!switchState(State.DIRTY, State.CLEAN)) return;
+    this.gate.readLock().lock();
     try {
+      if (isClosed()) return;
       LOGGER.debug("Reopen reader and searcher");
-      this._reader.maybeRefresh();
-      this._searcher.maybeRefresh();
-      state(State.CLEAN);
+      long generation = this._writer.getMaxCompletedSequenceNumber();
+      this._reader.maybeRefreshBlocking();
+      this._searcher.maybeRefreshBlocking();
+      this.searchingGeneration.accumulateAndGet(generation, Math::max);
+      synchronized (this.lock) { this.lock.notifyAll(); }
     } catch (AlreadyClosedException ex) {
       // must be closing, ignore then
     } catch (Exception ex) {
       LOGGER.error("Failed to reopen Index Searcher because of an I/O error", ex);
+      switchState(State.CLEAN, State.DIRTY);
+    } finally {
+      this.gate.readLock().unlock();
+    }
+  }
+
+  /**
+   * Commit any changes if the commit policy requires it.
+   *
+   * <p>If it does not and the policy has a max interval, a commit is scheduled at the end of the interval.
+   *
+   * @param drained <code>true</code> if there are no more jobs waiting for this index
+   */
+  @Override
+  public void maybeCommit(boolean drained) {
+    IndexWriter writer = this._writer;
+    if (writer == null || !writer.isOpen()) return;
+    CommitPolicy policy = this.commitPolicy;
+    long elapsed = System.currentTimeMillis() - this.lastCommit.get();
+    try {
+      if (this.clearedSinceCommit || policy.shouldCommit(drained, this.uncommittedDocuments.get(), elapsed, writer.ramBytesUsed())) {
+        maybeCommit();
+      } else if (policy.getMaxInterval() > 0 && writer.hasUncommittedChanges() &&
+                 this.commitScheduled.compareAndSet(false, true)) {
+        COMMITTER.schedule(() -> {
+          this.commitScheduled.set(false);
+          maybeCommit(false);
+        }, Math.max(0, policy.getMaxInterval() - elapsed), TimeUnit.MILLISECONDS);
+      }
+    } catch (AlreadyClosedException ex) {
+      // must be closing, ignore then
     }
   }
 
@@ -226,24 +563,30 @@ public final class LuceneIndexIO implements IndexIO {
    */
   public synchronized void maybeCommit() {
     if (this._writer == null|| isState(State.CLOSING) || isClosed() ||
-        this.committing > 0 || (!this._writer.hasDeletions() &&
+        (!this._writer.hasDeletions() &&
         !this._writer.hasUncommittedChanges() &&
         !this._writer.hasPendingMerges()))
       return;
     // force refresh
     state(State.DIRTY);
-    maybeRefresh();
+    refresh();
     // closed?
-    if (this._writer == null || !this._writer.isOpen()|| this.committing > 0 || isState(State.CLOSING) || isClosed()) return;
+    if (this._writer == null || !this._writer.isOpen() || isState(State.CLOSING) || isClosed()) return;
     startCommitting();
     try {
       LOGGER.debug("Committing index changes");
+      long start = System.nanoTime();
       long now = System.currentTimeMillis();
       Map<String, String> commitUserData = new HashMap<>();
       commitUserData.put(LAST_COMMIT_DATE, String.valueOf(now));
       this._writer.setLiveCommitData(commitUserData.entrySet());
       this._writer.commit();
       this.lastTimeUsed.set(now);
+      this.lastCommit.set(now);
+      this.uncommittedDocuments.set(0);
+      this.clearedSinceCommit = false;
+      this.commitCount.incrementAndGet();
+      this.commitTime.addAndGet(System.nanoTime() - start);
     } catch (final CorruptIndexException ex) {
       LOGGER.error("Failed to commit Index because it is corrupted", ex);
     } catch (final IOException ex) {
@@ -260,14 +603,16 @@ public final class LuceneIndexIO implements IndexIO {
    *         <code>false</code> otherwise.
    * @throws IndexException should any error be thrown by Lucene.
    */
-  public synchronized boolean clearIndex() throws IndexException {
+  public boolean clearIndex() throws IndexException {
     if (this._writer == null|| isState(State.CLOSING)) return false;
+    if (!startWriting()) return false;
     try {
-      if (isClosed()) open();
-      startWriting();
-      this._writer.deleteAll();
+      written(this._writer.deleteAll());
+      // not counted as documents so make sure the next check commits it
+      this.clearedSinceCommit = true;
+      notifyChangeListeners(IndexChangeListener::cleared);
       this.lastTimeUsed.set(System.currentTimeMillis());
-      state(State.DIRTY);
+      switchState(State.CLEAN, State.DIRTY);
     } catch (Exception ex) {
       // try to delete all files then if possible
       if (this._directory != null) try {
@@ -282,7 +627,7 @@ public final class LuceneIndexIO implements IndexIO {
         throw new IndexException("Failed to clear Index", ex);
       }
     } finally {
-      this.endWriting();
+      endWriting();
     }
     return true;
   }
@@ -296,20 +641,21 @@ public final class LuceneIndexIO implements IndexIO {
    *         <code>false</code>
    * @throws IndexException should any error be thrown by Lucene.
    */
-  public synchronized boolean deleteDocuments(DeleteRule rule) throws IndexException {
+  public boolean deleteDocuments(DeleteRule rule) throws IndexException {
     if (this._writer == null|| isState(State.CLOSING)) return false;
     if (!(rule instanceof LuceneDeleteRule)) return false;
     LuceneDeleteRule drule = (LuceneDeleteRule) rule;
+    if (!startWriting()) return false;
     try {
-      if (isClosed()) open();
-      startWriting();
       if (drule.useTerm()) {
-        this._writer.deleteDocuments(drule.toTerm());
+        written(this._writer.deleteDocuments(drule.toTerm()));
       } else {
-        this._writer.deleteDocuments(drule.toQuery());
+        written(this._writer.deleteDocuments(drule.toQuery()));
       }
+      notifyChangeListeners(l -> l.changed(drule, Collections.emptyList()));
+      this.uncommittedDocuments.incrementAndGet();
       this.lastTimeUsed.set(System.currentTimeMillis());
-      state(State.DIRTY);
+      switchState(State.CLEAN, State.DIRTY);
     } catch (IOException ex) {
       throw new IndexException("Failed to clear Index", ex);
     } finally {
@@ -332,8 +678,8 @@ public final class LuceneIndexIO implements IndexIO {
    *         <code>false</code>
    * @throws IndexException should any error be thrown by Lucene
    */
-  public synchronized boolean updateDocuments(DeleteRule rule, List<FlintDocument> documents,
-                                              IndexListener listener, IndexJob job) throws IndexException {
+  public boolean updateDocuments(DeleteRule rule, List<FlintDocument> documents,
+                                 IndexListener listener, IndexJob job) throws IndexException {
     if (this._writer == null || isState(State.CLOSING)) return false;
     LuceneDeleteRule drule;
     if (rule == null) drule = null;
@@ -341,9 +687,8 @@ public final class LuceneIndexIO implements IndexIO {
       if (!(rule instanceof LuceneDeleteRule)) return false;
       drule = (LuceneDeleteRule) rule;
     }
+    if (!startWriting()) return false;
     try {
-      if (isClosed()) open();
-      startWriting();
       FlintDocumentConverter converter = new FlintDocumentConverter();
       List<Document> docs = converter.convert(documents);
       if (converter.hasWarnings()) {
@@ -355,18 +700,20 @@ public final class LuceneIndexIO implements IndexIO {
       if (rule != null) {
         if (drule.useTerm()) {
           // use update
-          this._writer.updateDocuments(drule.toTerm(), docs);
+          written(this._writer.updateDocuments(drule.toTerm(), docs));
         } else {
           // delete then add
           this._writer.deleteDocuments(drule.toQuery());
-          this._writer.addDocuments(docs);
+          written(this._writer.addDocuments(docs));
         }
       } else {
         // add
-        this._writer.addDocuments(docs);
+        written(this._writer.addDocuments(docs));
       }
+      notifyChangeListeners(l -> l.changed(drule, docs));
+      this.uncommittedDocuments.addAndGet(docs.size());
       this.lastTimeUsed.set(System.currentTimeMillis());
-      state(State.DIRTY);
+      switchState(State.CLEAN, State.DIRTY);
     } catch (final IOException e) {
       throw new IndexException("Failed to update document in Index because of an I/O error", e);
     } finally {
@@ -375,6 +722,62 @@ public final class LuceneIndexIO implements IndexIO {
     return true;
   }
 
+  /**
+   * Apply the changes from several jobs holding the writer only once.
+   *
+   * @param changes  the changes to apply in order
+   * @param listener the listener to report warnings to
+   *
+   * @return <code>true</code> if the changes were applied; <code>false</code> otherwise
+   * @throws IndexException should any error be thrown by Lucene
+   */
+  @Override
+  public boolean applyChanges(List<IndexChange> changes, IndexListener listener) throws IndexException {
+    if (this._writer == null || isState(State.CLOSING)) return false;
+    for (IndexChange change : changes) {
+      if (change.getDeleteRule() != null && !(change.getDeleteRule() instanceof LuceneDeleteRule)) return false;
+    }
+    if (!startWriting()) return false;
+    try {
+      long count = 0;
+      for (IndexChange change : changes) {
+        LuceneDeleteRule drule = (LuceneDeleteRule) change.getDeleteRule();
+        if (change.isDelete()) {
+          if (drule == null) continue;
+          written(drule.useTerm() ? this._writer.deleteDocuments(drule.toTerm()) : this._writer.deleteDocuments(drule.toQuery()));
+          notifyChangeListeners(l -> l.changed(drule, Collections.emptyList()));
+          count++;
+          continue;
+        }
+        FlintDocumentConverter converter = new FlintDocumentConverter();
+        List<Document> docs = converter.convert(change.getDocuments());
+        if (converter.hasWarnings()) {
+          for (String fieldname : converter.fieldsWithWarnings()) {
+            listener.warn(change.getJob(), "Warning for field '"+fieldname+"': "+converter.getWarning(fieldname));
+          }
+        }
+        if (drule == null) {
+          written(this._writer.addDocuments(docs));
+        } else if (drule.useTerm()) {
+          written(this._writer.updateDocuments(drule.toTerm(), docs));
+        } else {
+          this._writer.deleteDocuments(drule.toQuery());
+          written(this._writer.addDocuments(docs));
+        }
+        notifyChangeListeners(l -> l.changed(drule, docs));
+        count += docs.size();
+      }
+      this.uncommittedDocuments.addAndGet(count);
+      this.lastTimeUsed.set(System.currentTimeMillis());
+      switchState(State.CLEAN, State.DIRTY);
+    } catch (final IOException e) {
+      throw new IndexException("Failed to apply changes to Index because of an I/O error", e);
+    } finally {
+      endWriting();
+    }
+    return true;
+  }
+
   /**
    * Updates documents' DocValues fields to the given values.
    * Each field update is applied to the set of documents that are associated with the Term to the same value.
@@ -387,16 +790,16 @@ public final class LuceneIndexIO implements IndexIO {
    *
    * @throws IndexException if updating the doc values failed
    */
-  public synchronized boolean updateDocValues(Term term, Field... newFields) throws IndexException {
+  public boolean updateDocValues(Term term, Field... newFields) throws IndexException {
     // check state
     if (this._writer == null || isState(State.CLOSING)) return false;
+    if (!startWriting()) return false;
     try {
-      if (isClosed()) open();
-      startWriting();
-      this._writer.updateDocValues(term, newFields);
+      written(this._writer.updateDocValues(term, newFields));
+      this.uncommittedDocuments.incrementAndGet();
       // set state
       this.lastTimeUsed.set(System.currentTimeMillis());
-      state(State.DIRTY);
+      switchState(State.CLEAN, State.DIRTY);
     } catch (IOException ex) {
       throw new IndexException("Failed to update docvalues in Index because of an I/O error", ex);
     } finally {
@@ -405,22 +808,23 @@ public final class LuceneIndexIO implements IndexIO {
     return true;
   }
 
-  public synchronized IndexSearcher bookSearcher() {
-    while (this.isState(State.CLOSING)) {
+  public IndexSearcher bookSearcher() {
+    while (true) {
+      awaitNotClosing();
       try {
-        Thread.sleep(100);
-      } catch (InterruptedException ex) {
-        LOGGER.error("Interrupted while waiting for closing to finish", ex);
-        Thread.currentThread().interrupt();
+        if (isClosed()) reopen();
+        return this._searcher.acquire();
+      } catch (AlreadyClosedException ex) {
+        // closed while booking, try again once closing is done
+        if (!isClosed() && !isState(State.CLOSING)) {
+          LOGGER.error("Failed to book searcher", ex);
+          return null;
+        }
+      } catch (IndexException | IOException ex) {
+        LOGGER.error("Failed to book searcher", ex);
+        return null;
       }
     }
-    try {
-      if (isClosed()) open();
-      return this._searcher.acquire();
-    } catch (IndexException | IOException ex) {
-      LOGGER.error("Failed to book searcher", ex);
-      return null;
-    }
   }
 
   public void releaseSearcher(IndexSearcher searcher) {
@@ -432,22 +836,23 @@ public final class LuceneIndexIO implements IndexIO {
     }
   }
 
-  public synchronized IndexReader bookReader() {
-    while (this.isState(State.CLOSING)) {
+  public IndexReader bookReader() {
+    while (true) {
+      awaitNotClosing();
       try {
-        Thread.sleep(100);
-      } catch (InterruptedException ex) {
-        LOGGER.error("Interrupted while waiting for closing to finish", ex);
-        Thread.currentThread().interrupt();
+        if (isClosed()) reopen();
+        return this._reader.acquire();
+      } catch (AlreadyClosedException ex) {
+        // closed while booking, try again once closing is done
+        if (!isClosed() && !isState(State.CLOSING)) {
+          LOGGER.error("Failed to book reader", ex);
+          return null;
+        }
+      } catch (IndexException | IOException ex) {
+        LOGGER.error("Failed to book reader", ex);
+        return null;
       }
     }
-    try {
-      if (isClosed()) open();
-      return this._reader.acquire();
-    } catch (IndexException | IOException ex) {
-      LOGGER.error("Failed to book reader", ex);
-      return null;
-    }
   }
 
   public void releaseReader(IndexReader reader) {
@@ -465,53 +870,127 @@ public final class LuceneIndexIO implements IndexIO {
   // ----------------------------------------------------------------------------------------------
 
   private void state(State s) {
-    synchronized (this.lock) { this.state = s; }
+    synchronized (this.lock) {
+      this.state = s;
+      this.lock.notifyAll();
+    }
   }
   private boolean isState(State s) {
     synchronized (this.lock) { return this.state == s; }
   }
-  private void startClosing() {
-    state(State.CLOSING);
-    while (this.writing > 0 || this.committing > 0) {
-      try {
-        Thread.sleep(100);
-      } catch (InterruptedException ex) {
-        LOGGER.error("Interrupted while waiting for writing to finish", ex);
-        Thread.currentThread().interrupt();
-      }
+  /**
+   * Switch the state only if it is currently the one expected.
+   *
+   * @param expected the state expected
+   * @param s        the new state
+   *
+   * @return <code>true</code> if the state was switched
+   */
+  private boolean switchState(State expected, State s) {
+    synchronized (this.lock) {
+      if (this.state != expected) return false;
+      this.state = s;
+      this.lock.notifyAll();
+      return true;
     }
   }
 
-  private void startCommitting() {
-    while (this.writing > 0) {
-      try {
-        Thread.sleep(100);
-      } catch (InterruptedException ex) {
-        LOGGER.error("Interrupted while waiting for writing to finish", ex);
-        Thread.currentThread().interrupt();
+  /**
+   * Wait until the index is not closing anymore, threads are woken up as soon as the state changes.
+   */
+  private void awaitNotClosing() {
+    synchronized (this.lock) {
+      while (this.state == State.CLOSING) {
+        try {
+          this.lock.wait();
+        } catch (InterruptedException ex) {
+          LOGGER.error("Interrupted while waiting for closing to finish", ex);
+          Thread.currentThread().interrupt();
+          return;
+        }
       }
     }
-    synchronized(this.lock) { this.committing++; }
+  }
+
+  private void startClosing() {
+    state(State.CLOSING);
+    this.gate.writeLock().lock();
+  }
+
+  private void endClosing() {
+    this.gate.writeLock().unlock();
+  }
+
+  private void startCommitting() {
+    this.gate.writeLock().lock();
   }
 
   private void endCommitting() {
-    synchronized(this.lock) { this.committing--; }
+    this.gate.writeLock().unlock();
+  }
+
+  /**
+   * Enter the gate as a writer, many writers can be in at the same time.
+   *
+   * <p>If the index was closed it is reopened first, if it is currently closing it cannot be written to.
+   *
+   * @return <code>true</code> if writing can proceed, <code>false</code> if the index is closing.
+   *
+   * @throws IndexException if reopening the index failed
+   */
+  private boolean startWriting() throws IndexException {
+    while (!isState(State.CLOSING)) {
+      if (isClosed()) reopen();
+      this.gate.readLock().lock();
+      if (!isClosed() && !isState(State.CLOSING)) return true;
+      // closed while waiting, try again
+      this.gate.readLock().unlock();
+    }
+    return false;
+  }
+
+  private void endWriting() {
+    this.gate.readLock().unlock();
+  }
+
+  /**
+   * @param sequenceNumber the sequence number returned by the writer for a change
+   */
+  private void written(long sequenceNumber) {
+    this.writingGeneration.accumulateAndGet(sequenceNumber, Math::max);
   }
 
-  private void startWriting() {
-    while (this.committing > 0) {
+  /**
+   * Notifies the change listeners, a failing listener does not stop the others or the caller.
+   *
+   * @param event the method to call on each listener
+   */
+  private void notifyChangeListeners(Consumer<IndexChangeListener> event) {
+    for (IndexChangeListener listener : this.changeListeners) {
       try {
-        Thread.sleep(100);
-      } catch (InterruptedException ex) {
-        LOGGER.error("Interrupted while waiting for commit to finish", ex);
-        Thread.currentThread().interrupt();
+        event.accept(listener);
+      } catch (RuntimeException ex) {
+        LOGGER.error("Index change listener failed", ex);
       }
     }
-    synchronized(this.lock) { this.writing++; }
   }
 
-  private void endWriting() {
-    synchronized(this.lock) { this.writing--; }
+  /**
+   * Keeps only the facet counts of the segments used by the current searcher.
+   */
+  private void retainFacetCounts() throws IOException {
+    FacetCache cache = this.facetCache;
+    if (cache == null) return;
+    IndexSearcher searcher = this._searcher.acquire();
+    try {
+      cache.retain(searcher.getIndexReader());
+    } finally {
+      this._searcher.release(searcher);
+    }
+  }
+
+  private synchronized void reopen() throws IndexException {
+    if (isClosed()) open();
   }
 
   private void open() throws IndexException {
@@ -526,23 +1005,32 @@ public final class LuceneIndexIO implements IndexIO {
     if (readonly) {
       this._writer = null;
       this._reader = new ReaderManager(this._directory);
-      this._searcher = new SearcherManager(this._directory, FACTORY);
+      this._searcher = new SearcherManager(this._directory, SearchExecutor.FACTORY);
+      this._searcher.addListener(this.facetCacheCleaner);
+      this._searcher.addListener(this.changeNotifier);
     } else {
+      // the index sort cannot be changed so existing segments are sorted first
+      if (!createIt) sortIndex();
       // create writer
-      IndexWriterConfig config = new IndexWriterConfig(this._analyzer);
-      ConcurrentMergeScheduler merger = new ConcurrentMergeScheduler();
-//      merger.setMaxMergesAndThreads(maxMergeCount, maxThreadCount);
-      config.setMergeScheduler(merger);
+      IndexWriterConfig config = this._settings.newConfig(this._analyzer);
       if (createIt) config.setOpenMode(OpenMode.CREATE);
       this._writer = new IndexWriter(this._directory, config);
       if (createIt) this._writer.commit();
       boolean applyAllDeletes = true;
       boolean writeAllDeletes = false;
       // create searcher
-      this._searcher = new SearcherManager(this._writer, applyAllDeletes, writeAllDeletes, FACTORY);
+      this._searcher = new SearcherManager(this._writer, applyAllDeletes, writeAllDeletes, SearchExecutor.FACTORY);
+      this._searcher.addListener(this.facetCacheCleaner);
+      this._searcher.addListener(this.changeNotifier);
       // create reader
       this._reader = new ReaderManager(this._writer, applyAllDeletes, writeAllDeletes);
+      // sequence numbers start again with each writer
+      long generation = this._writer.getMaxCompletedSequenceNumber();
+      this.writingGeneration.set(generation);
+      this.searchingGeneration.set(generation);
     }
+    // the segments have all changed
+    retainFacetCounts();
     // add it to list of opened indexes
     OpenIndexManager.add(this);
     // set state to clean
@@ -570,9 +1058,51 @@ public final class LuceneIndexIO implements IndexIO {
     }
   }
 
+  /**
+   * Rewrites the existing index if its segments are not sorted with the index sort of the settings.
+   *
+   * <p>Lucene cannot change the sort of existing segments, so the documents are sorted and copied
+   * into a new commit in the same directory. The previous commit remains until the new one is
+   * complete, so the index is left unchanged if this fails.
+   */
+  private void sortIndex() throws IOException {
+    Sort sort = this._settings.getIndexSort();
+    if (sort == null || isSorted(SegmentInfos.readLatestCommit(this._directory), sort)) return;
+    LOGGER.info("Sorting index {} using {}", this._directory, sort);
+    long start = System.currentTimeMillis();
+    try (DirectoryReader previous = DirectoryReader.open(this._directory)) {
+      IndexWriterConfig config = this._settings.newConfig(this._analyzer);
+      config.setOpenMode(OpenMode.CREATE);
+      try (IndexWriter writer = new IndexWriter(this._directory, config)) {
+        List<LeafReaderContext> leaves = previous.leaves();
+        CodecReader[] readers = new CodecReader[leaves.size()];
+        for (int i = 0; i < readers.length; i++) {
+          readers[i] = SortingCodecReader.wrap(SlowCodecReaderWrapper.wrap(leaves.get(i).reader()), sort);
+        }
+        writer.addIndexes(readers);
+        writer.setLiveCommitData(previous.getIndexCommit().getUserData().entrySet());
+        writer.commit();
+      }
+      LOGGER.info("Sorted {} documents in {}ms", previous.numDocs(), System.currentTimeMillis() - start);
+    }
+  }
+
   // static helpers
   // ----------------------------------------------------------------------------------------------
 
+  /**
+   * @param infos the segments of a commit
+   * @param sort  the index sort
+   *
+   * @return <code>true</code> if all the segments are sorted with the sort specified
+   */
+  private static boolean isSorted(SegmentInfos infos, Sort sort) {
+    for (SegmentCommitInfo info : infos) {
+      if (!sort.equals(info.info.getIndexSort())) return false;
+    }
+    return true;
+  }
+
   /**
    * Generate the appropriate IndexIO implementation to use based on the underlying {@link Directory}
    * used.
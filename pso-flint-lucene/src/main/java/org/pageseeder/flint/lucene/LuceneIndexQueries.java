@@ -16,6 +16,7 @@
 package org.pageseeder.flint.lucene;
 
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.MultiReader;
 import org.apache.lucene.search.*;
 import org.pageseeder.flint.Index;
@@ -24,10 +25,14 @@ import org.pageseeder.flint.IndexIO;
 import org.pageseeder.flint.lucene.query.SearchPaging;
 import org.pageseeder.flint.lucene.query.SearchQuery;
 import org.pageseeder.flint.lucene.query.SearchResults;
+import org.pageseeder.flint.lucene.search.DocumentExporter;
+import org.pageseeder.flint.lucene.search.SearchExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -89,11 +94,10 @@ public final class LuceneIndexQueries {
           sort = Sort.INDEXORDER;
         }
         // load the scores
-        TopFieldCollector tfc = TopFieldCollector.create(sort, paging.getHitsPerPage() * paging.getPage(), Integer.MAX_VALUE);
-        searcher.search(lquery, tfc);
-        ScoreDoc[] docs = tfc.topDocs().scoreDocs;
-        TopFieldCollector.populateScores(docs, searcher, lquery);
-        return new SearchResults(query, docs, tfc.getTotalHits(), paging, io, searcher);
+        TopFieldDocs top = search(searcher, lquery, sort, paging);
+        ScoreDoc[] docs = top.scoreDocs;
+        TopFieldCollector.populateScores(page(docs, paging), searcher, lquery);
+        return new SearchResults(query, docs, top.totalHits, paging, io, searcher);
       } catch (IOException ex) {
         io.releaseSearcher(searcher);
         throw new IndexException("Failed performing a query on the Index because of an I/O problem", ex);
@@ -107,6 +111,10 @@ public final class LuceneIndexQueries {
           io.releaseSearcher(searcher);
           throw new IndexException("Failed performing invalid query", ex);
         }
+      } catch (ClassCastException ex) {
+        // the sort values of the cursor do not match the sort
+        io.releaseSearcher(searcher);
+        throw new IndexException("Failed performing query with a cursor from a different sort", ex);
       }
     }
     return null;
@@ -137,6 +145,38 @@ public final class LuceneIndexQueries {
     }
   }
 
+  /**
+   * Exports all the documents matching a query on the given Index.
+   *
+   * <p>The documents are passed to the handler one at a time as they are found, so the memory used
+   * does not depend on the number of matches. Only the fields specified are loaded, from the doc
+   * values when possible.
+   *
+   * @param index   the Index to export from
+   * @param query   the query to run, <code>null</code> for all documents
+   * @param fields  the names of the fields to load
+   * @param handler receives each document
+   *
+   * @return the number of documents exported, -1 if the index could not be searched
+   *
+   * @throws IndexException if any error occurred while reading the index or handling a document
+   *
+   * @see DocumentExporter
+   */
+  public static int export(Index index, Query query, Collection<String> fields, DocumentExporter.Handler handler) throws IndexException {
+    LuceneIndexIO io = getIndexIO(index);
+    IndexSearcher searcher = io == null ? null : io.bookSearcher();
+    if (searcher == null) return -1;
+    try {
+      LOGGER.debug("Exporting documents matching [{}] from index {}", query, index);
+      return new DocumentExporter(fields).export(searcher, query, handler);
+    } catch (IOException ex) {
+      throw new IndexException("Failed exporting documents from the Index because of an I/O problem", ex);
+    } finally {
+      io.releaseSearcher(searcher);
+    }
+  }
+
   /**
    * Run a search on the given Indexes.
    *
@@ -182,22 +222,25 @@ public final class LuceneIndexQueries {
     }
     try {
       MultiReader reader = new MultiReader(readers);
-      IndexSearcher searcher = new IndexSearcher(reader);
+      IndexSearcher searcher = SearchExecutor.newSearcher(reader);
       LOGGER.debug("Performing search [{}] on {} indexes", query, readers.length);
       Sort sort = query.getSort();
       if (sort == null)
         sort = Sort.INDEXORDER;
 
-      // load the scores
-      TopFieldCollector tfc = TopFieldCollector.create(sort, paging.getHitsPerPage() * paging.getPage(), Integer.MAX_VALUE);
-      searcher.search(lquery, tfc);
-      ScoreDoc[] docs = tfc.topDocs().scoreDocs;
-      TopFieldCollector.populateScores(docs, searcher, lquery);
-      return new SearchResults(query, docs, tfc.getTotalHits(), paging, readersMap, searcher);
+      // load the scores, searching the segments in parallel if there is an executor
+      TopFieldDocs top = search(searcher, lquery, sort, paging);
+      ScoreDoc[] docs = top.scoreDocs;
+      TopFieldCollector.populateScores(page(docs, paging), searcher, lquery);
+      return new SearchResults(query, docs, top.totalHits, paging, readersMap, searcher);
     } catch (IOException e) {
       for (Map.Entry<LuceneIndexIO, IndexReader> io : readersMap.entrySet())
         io.getKey().releaseReader(io.getValue());
       throw new IndexException("Failed performing a query on the Index because of an I/O problem", e);
+    } catch (ClassCastException | IllegalArgumentException ex) {
+      for (Map.Entry<LuceneIndexIO, IndexReader> io : readersMap.entrySet())
+        io.getKey().releaseReader(io.getValue());
+      throw new IndexException("Failed performing invalid query", ex);
     }
   }
 
@@ -208,6 +251,57 @@ public final class LuceneIndexQueries {
   // Lower level API providing access to Lucene objects
   // ----------------------------------------------------------------------------------------------
 
+  /**
+   * Searches the top hits up to the page requested.
+   *
+   * <p>The segments are searched in parallel if the searcher has an executor.
+   *
+   * <p>If the sort is a prefix of the index sort of all the segments, the documents are already in
+   * the right order and each segment stops being searched once the page is full. The exact total
+   * is then counted separately when required, which is much cheaper than collecting all the hits.
+   *
+   * @param searcher the searcher
+   * @param query    the query
+   * @param sort     the sort of the hits
+   * @param paging   the paging
+   *
+   * @return the top hits
+   *
+   * @throws IOException if thrown by the searcher
+   */
+  public static TopFieldDocs search(IndexSearcher searcher, Query query, Sort sort, SearchPaging paging) throws IOException {
+    int threshold = paging.getTotalHitsToCount();
+    boolean early = threshold == SearchPaging.EXACT_TOTAL_HITS && paging.getHitsPerPage() > 0
+        && isIndexSorted(searcher.getIndexReader(), sort);
+    if (early) threshold = paging.getHitsToCollect();
+    TopFieldDocs top = searcher.search(query, TopFieldCollector.createSharedManager(sort, paging.getHitsToCollect(), after(paging), threshold));
+    if (early && top.totalHits.relation != TotalHits.Relation.EQUAL_TO) {
+      LOGGER.debug("Terminated early as the index is sorted by {}", sort);
+      top = new TopFieldDocs(new TotalHits(searcher.count(query), TotalHits.Relation.EQUAL_TO), top.scoreDocs, top.fields);
+    }
+    return top;
+  }
+
+  /**
+   * Indicates whether the sort is a prefix of the index sort of every segment.
+   *
+   * @param reader the reader
+   * @param sort   the sort of the hits
+   *
+   * @return <code>true</code> if hits can be collected in index order
+   */
+  public static boolean isIndexSorted(IndexReader reader, Sort sort) {
+    SortField[] fields = sort.getSort();
+    for (LeafReaderContext leaf : reader.leaves()) {
+      Sort indexSort = leaf.reader().getMetaData().getSort();
+      if (indexSort == null || indexSort.getSort().length < fields.length) return false;
+      for (int i = 0; i < fields.length; i++) {
+        if (!fields[i].equals(indexSort.getSort()[i])) return false;
+      }
+    }
+    return !reader.leaves().isEmpty();
+  }
+
   /**
    * Returns a near real-time Reader on the index provided.
    *
@@ -328,6 +422,29 @@ public final class LuceneIndexQueries {
   // Private helpers
   // ==============================================================================
 
+  /**
+   * @param paging the paging
+   *
+   * @return the last hit of the previous page if a cursor is used, <code>null</code> otherwise
+   */
+  private static FieldDoc after(SearchPaging paging) {
+    return paging.isCursor() ? paging.getAfter().after() : null;
+  }
+
+  /**
+   * Returns the hits of the requested page so that only their scores are loaded.
+   *
+   * @param docs   all the hits collected
+   * @param paging the paging
+   *
+   * @return the hits of the page
+   */
+  private static ScoreDoc[] page(ScoreDoc[] docs, SearchPaging paging) {
+    if (paging.isCursor() || paging.getHitsPerPage() <= 0) return docs;
+    int from = Math.min(docs.length, paging.getFirstHit() - 1);
+    return Arrays.copyOfRange(docs, from, docs.length);
+  }
+
   /**
    * Retrieves an IndexIO, creates it if non-existent.
    *
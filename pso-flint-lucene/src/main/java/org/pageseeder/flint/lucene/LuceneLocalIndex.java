@@ -84,10 +84,28 @@ public final class LuceneLocalIndex extends LocalIndex {
    */
   public LuceneLocalIndex(File indexLocation, String catalog, Analyzer analyzer, File contentLocation)
       throws IndexException {
+    this(indexLocation, catalog, analyzer, contentLocation, WriterSettings.DEFAULT);
+  }
+
+  /**
+   * Create a new local index.
+   * <p>
+   *
+   * @param indexLocation   The location of the local index.
+   * @param catalog         The name of the catalog
+   * @param analyzer        The analyzer of the local index.
+   * @param contentLocation The location of the content to index
+   * @param settings        The settings used to tune the index writer
+   *
+   * @throws NullPointerException if the location is <code>null</code>.
+   * @throws IndexException if creating the index failed (for example: there's already in index running pointing to that location)
+   */
+  public LuceneLocalIndex(File indexLocation, String catalog, Analyzer analyzer, File contentLocation,
+      WriterSettings settings) throws IndexException {
     super(indexLocation.getName(), catalog);
     this._directory = ensureFolderExists(indexLocation);
     this._analyzer = analyzer;
-    this._io = new LuceneIndexIO(this._directory, this._analyzer);
+    this._io = new LuceneIndexIO(this._directory, this._analyzer, settings);
     this._contentRoot = contentLocation;
   }
 
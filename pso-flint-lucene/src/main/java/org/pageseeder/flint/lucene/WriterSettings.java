@@ -0,0 +1,309 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.flint.lucene;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.codecs.lucene99.Lucene99Codec;
+import org.apache.lucene.index.ConcurrentMergeScheduler;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.search.Sort;
+
+/**
+ * The settings used to tune the index writer of an index.
+ *
+ * <p>Any value left unset keeps Lucene's default.
+ *
+ * <p>For large bulk loads, a bigger RAM buffer produces fewer, larger segments which means less
+ * merging, see {@link #BULK}.
+ *
+ * <p>An index sort keeps the documents of each segment sorted, so that searches sorted the same way
+ * can stop collecting once the top hits are found. The fields of the index sort must have doc values.
+ */
+public final class WriterSettings {
+
+  /**
+   * Lucene's defaults.
+   */
+  public static final WriterSettings DEFAULT = new Builder().build();
+
+  /**
+   * Settings for bulk loading large indexes: large RAM buffer, wider tiers and no compound files.
+   */
+  public static final WriterSettings BULK = new Builder()
+      .ramBufferMB(256)
+      .segmentsPerTier(20)
+      .useCompoundFile(false)
+      .build();
+
+  /**
+   * Settings for smaller indexes on disk: stored fields with the best compression.
+   */
+  public static final WriterSettings COMPACT = new Builder()
+      .bestCompression(true)
+      .build();
+
+  private final double _ramBufferMB;
+
+  private final int _maxBufferedDocs;
+
+  private final double _segmentsPerTier;
+
+  private final double _maxMergedSegmentMB;
+
+  private final double _floorSegmentMB;
+
+  private final int _mergeThreads;
+
+  private final Boolean _useCompoundFile;
+
+  private final boolean _bestCompression;
+
+  private final Sort _indexSort;
+
+  private WriterSettings(Builder builder) {
+    this._ramBufferMB = builder.ramBufferMB;
+    this._maxBufferedDocs = builder.maxBufferedDocs;
+    this._segmentsPerTier = builder.segmentsPerTier;
+    this._maxMergedSegmentMB = builder.maxMergedSegmentMB;
+    this._floorSegmentMB = builder.floorSegmentMB;
+    this._mergeThreads = builder.mergeThreads;
+    this._useCompoundFile = builder.useCompoundFile;
+    this._bestCompression = builder.bestCompression;
+    this._indexSort = builder.indexSort;
+  }
+
+  /**
+   * Create a new writer configuration using these settings.
+   *
+   * @param analyzer the analyzer for the index
+   *
+   * @return the new config
+   */
+  public IndexWriterConfig newConfig(Analyzer analyzer) {
+    IndexWriterConfig config = new IndexWriterConfig(analyzer);
+    if (this._ramBufferMB > 0) config.setRAMBufferSizeMB(this._ramBufferMB);
+    if (this._maxBufferedDocs > 0) config.setMaxBufferedDocs(this._maxBufferedDocs);
+    // merge policy
+    TieredMergePolicy policy = new TieredMergePolicy();
+    if (this._segmentsPerTier > 0) policy.setSegmentsPerTier(this._segmentsPerTier);
+    if (this._maxMergedSegmentMB > 0) policy.setMaxMergedSegmentMB(this._maxMergedSegmentMB);
+    if (this._floorSegmentMB > 0) policy.setFloorSegmentMB(this._floorSegmentMB);
+    if (this._useCompoundFile != null) {
+      config.setUseCompoundFile(this._useCompoundFile);
+      policy.setNoCFSRatio(this._useCompoundFile ? 1.0 : 0.0);
+    }
+    config.setMergePolicy(policy);
+    // merge scheduler
+    ConcurrentMergeScheduler merger = new ConcurrentMergeScheduler();
+    if (this._mergeThreads > 0) merger.setMaxMergesAndThreads(this._mergeThreads + 5, this._mergeThreads);
+    config.setMergeScheduler(merger);
+    // stored fields compression
+    if (this._bestCompression) config.setCodec(new Lucene99Codec(Lucene99Codec.Mode.BEST_COMPRESSION));
+    // sort the documents in each segment
+    if (this._indexSort != null) config.setIndexSort(this._indexSort);
+    return config;
+  }
+
+  /**
+   * @return the RAM buffer size in MB (0 for Lucene's default)
+   */
+  public double getRAMBufferMB() {
+    return this._ramBufferMB;
+  }
+
+  /**
+   * @return the max number of documents buffered before flushing (0 for Lucene's default)
+   */
+  public int getMaxBufferedDocs() {
+    return this._maxBufferedDocs;
+  }
+
+  /**
+   * @return the number of segments allowed per tier (0 for Lucene's default)
+   */
+  public double getSegmentsPerTier() {
+    return this._segmentsPerTier;
+  }
+
+  /**
+   * @return the max size of a merged segment in MB (0 for Lucene's default)
+   */
+  public double getMaxMergedSegmentMB() {
+    return this._maxMergedSegmentMB;
+  }
+
+  /**
+   * @return the size in MB under which segments are considered equal for merging (0 for Lucene's default)
+   */
+  public double getFloorSegmentMB() {
+    return this._floorSegmentMB;
+  }
+
+  /**
+   * @return the number of merge threads (0 to let Lucene detect it)
+   */
+  public int getMergeThreads() {
+    return this._mergeThreads;
+  }
+
+  /**
+   * @return whether to use compound files (<code>null</code> for Lucene's default)
+   */
+  public Boolean getUseCompoundFile() {
+    return this._useCompoundFile;
+  }
+
+  /**
+   * @return whether stored fields use the best compression rather than the best speed
+   */
+  public boolean isBestCompression() {
+    return this._bestCompression;
+  }
+
+  /**
+   * @return the sort of the documents in each segment (<code>null</code> for no index sort)
+   */
+  public Sort getIndexSort() {
+    return this._indexSort;
+  }
+
+  @Override
+  public String toString() {
+    return "WriterSettings[ram-buffer=" + this._ramBufferMB +
+        ",max-buffered-docs=" + this._maxBufferedDocs +
+        ",segments-per-tier=" + this._segmentsPerTier +
+        ",max-merged-segment=" + this._maxMergedSegmentMB +
+        ",floor-segment=" + this._floorSegmentMB +
+        ",merge-threads=" + this._mergeThreads +
+        ",compound-file=" + this._useCompoundFile +
+        ",best-compression=" + this._bestCompression +
+        ",index-sort=" + this._indexSort + "]";
+  }
+
+  /**
+   * Builds writer settings, any value left unset keeps Lucene's default.
+   */
+  public static final class Builder {
+
+    private double ramBufferMB = 0;
+
+    private int maxBufferedDocs = 0;
+
+    private double segmentsPerTier = 0;
+
+    private double maxMergedSegmentMB = 0;
+
+    private double floorSegmentMB = 0;
+
+    private int mergeThreads = 0;
+
+    private Boolean useCompoundFile = null;
+
+    private boolean bestCompression = false;
+
+    private Sort indexSort = null;
+
+    /**
+     * @param mb the RAM buffer size in MB
+     * @return this builder
+     */
+    public Builder ramBufferMB(double mb) {
+      this.ramBufferMB = mb;
+      return this;
+    }
+
+    /**
+     * @param docs the max number of documents buffered before flushing
+     * @return this builder
+     */
+    public Builder maxBufferedDocs(int docs) {
+      this.maxBufferedDocs = docs;
+      return this;
+    }
+
+    /**
+     * @param segments the number of segments allowed per tier
+     * @return this builder
+     */
+    public Builder segmentsPerTier(double segments) {
+      this.segmentsPerTier = segments;
+      return this;
+    }
+
+    /**
+     * @param mb the max size of a merged segment in MB
+     * @return this builder
+     */
+    public Builder maxMergedSegmentMB(double mb) {
+      this.maxMergedSegmentMB = mb;
+      return this;
+    }
+
+    /**
+     * @param mb the size in MB under which segments are considered equal for merging
+     * @return this builder
+     */
+    public Builder floorSegmentMB(double mb) {
+      this.floorSegmentMB = mb;
+      return this;
+    }
+
+    /**
+     * @param threads the number of merge threads
+     * @return this builder
+     */
+    public Builder mergeThreads(int threads) {
+      this.mergeThreads = threads;
+      return this;
+    }
+
+    /**
+     * @param compound whether to use compound files
+     * @return this builder
+     */
+    public Builder useCompoundFile(boolean compound) {
+      this.useCompoundFile = compound;
+      return this;
+    }
+
+    /**
+     * @param best whether stored fields use the best compression rather than the best speed
+     * @return this builder
+     */
+    public Builder bestCompression(boolean best) {
+      this.bestCompression = best;
+      return this;
+    }
+
+    /**
+     * @param sort the sort of the documents in each segment, <code>null</code> for none
+     * @return this builder
+     */
+    public Builder indexSort(Sort sort) {
+      this.indexSort = sort;
+      return this;
+    }
+
+    /**
+     * @return the new settings
+     */
+    public WriterSettings build() {
+      return new WriterSettings(this);
+    }
+  }
+
+}
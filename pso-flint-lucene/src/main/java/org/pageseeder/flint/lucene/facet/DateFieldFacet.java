@@ -17,9 +17,14 @@ package org.pageseeder.flint.lucene.facet;
 
 import org.apache.lucene.document.DateTools;
 import org.apache.lucene.document.DateTools.Resolution;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiTerms;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.util.BytesRef;
 import org.pageseeder.flint.lucene.query.DateParameter;
 import org.pageseeder.flint.lucene.util.Beta;
 import org.pageseeder.flint.lucene.util.Dates;
@@ -104,6 +109,28 @@ public class DateFieldFacet extends FlexibleFieldFacet {
     return new TermQuery(t);
   }
 
+  /**
+   * The terms can be counted in a single pass only if they were indexed at the resolution of this
+   * facet, otherwise the query for each term matches all the dates at this resolution.
+   *
+   * @param reader the index reader
+   *
+   * @return <code>true</code> if all the dates of the field are at the resolution of this facet
+   *
+   * @throws IOException if thrown while reading the terms
+   */
+  @Override
+  protected boolean countsByTerm(IndexReader reader) throws IOException {
+    Terms terms = MultiTerms.getTerms(reader, name());
+    if (terms == null) return true;
+    int length = DateTools.dateToString(new Date(0), this._resolution).length();
+    TermsEnum te = terms.iterator();
+    for (BytesRef term = te.next(); term != null; term = te.next()) {
+      if (term.length != 0 && term.length != length) return false;
+    }
+    return true;
+  }
+
   @Override
   protected void termToXML(String term, int cardinality, XMLWriter xml) throws IOException {
     xml.openElement("term");
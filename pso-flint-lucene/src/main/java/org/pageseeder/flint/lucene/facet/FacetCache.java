@@ -0,0 +1,321 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.flint.lucene.facet;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.Query;
+import org.pageseeder.flint.lucene.util.Beta;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A cache of the facet counts of each segment.
+ *
+ * <p>The counts are cached for each segment, query and field, the query being the base query with
+ * the filters applied. A segment is identified by the cache key of its reader, which is shared by the
+ * successive readers of an index until documents are deleted from the segment, its doc values are
+ * updated or it is merged away. So the counts of the segments which have not changed remain in the
+ * cache when the index is refreshed and only the new or modified segments are counted.
+ *
+ * <p>The cache holds a maximum number of entries, the least recently used ones are evicted first.
+ *
+ * <p>The index must call {@link #retain(IndexReader)} after each refresh so that the entries of the
+ * segments which are no longer part of the index are removed.
+ */
+@Beta
+public final class FacetCache {
+
+  /**
+   * The default maximum number of entries.
+   */
+  public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+  /**
+   * The maximum number of entries.
+   */
+  private final int _maxEntries;
+
+  /**
+   * The cached counts in access order.
+   */
+  private final LinkedHashMap<Key, Object> entries;
+
+  /**
+   * The segments used by the current reader, set once refreshed.
+   */
+  private volatile Set<Segment> current = null;
+
+  private final LongAdder hits = new LongAdder();
+
+  private final LongAdder misses = new LongAdder();
+
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * Creates a cache with the default maximum number of entries.
+   */
+  public FacetCache() {
+    this(DEFAULT_MAX_ENTRIES);
+  }
+
+  /**
+   * @param maxEntries the maximum number of entries
+   *
+   * @throws IllegalArgumentException if the maximum number of entries is not positive
+   */
+  public FacetCache(int maxEntries) {
+    if (maxEntries <= 0) throw new IllegalArgumentException("maxEntries <= 0");
+    this._maxEntries = maxEntries;
+    this.entries = new LinkedHashMap<Key, Object>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+        if (size() <= FacetCache.this._maxEntries) return false;
+        FacetCache.this.evictions.increment();
+        return true;
+      }
+    };
+  }
+
+  /**
+   * Identifies the segment of a reader.
+   *
+   * @param reader the segment's reader
+   *
+   * @return the segment or <code>null</code> if its counts cannot be cached
+   */
+  static Segment segment(LeafReader reader) {
+    // unlike the core key, the reader key changes with deletions and doc values updates
+    IndexReader.CacheHelper helper = reader.getReaderCacheHelper();
+    return helper == null ? null : new Segment(helper.getKey());
+  }
+
+  /**
+   * Returns the cached counts of the terms of a field.
+   *
+   * @param segment the segment
+   * @param query   the query, <code>null</code> for all documents
+   * @param field   the field
+   *
+   * @return the counts or <code>null</code> if not cached
+   */
+  Map<String, Integer> getTermCounts(Segment segment, Query query, String field) {
+    @SuppressWarnings("unchecked")
+    Map<String, Integer> counts = (Map<String, Integer>) get(new Key(segment, query, field, null));
+    return counts;
+  }
+
+  /**
+   * Caches the counts of the terms of a field.
+   *
+   * @param segment the segment
+   * @param query   the query, <code>null</code> for all documents
+   * @param field   the field
+   * @param counts  the counts
+   */
+  void putTermCounts(Segment segment, Query query, String field, Map<String, Integer> counts) {
+    put(new Key(segment, query, field, null), Collections.unmodifiableMap(counts));
+  }
+
+  /**
+   * Returns the cached counts of numeric ranges.
+   *
+   * @param segment the segment
+   * @param query   the query, <code>null</code> for all documents
+   * @param field   the numeric field
+   * @param bounds  the bounds of the ranges
+   *
+   * @return the counts or <code>null</code> if not cached
+   */
+  int[] getRangeCounts(Segment segment, Query query, String field, long[][] bounds) {
+    return (int[]) get(new Key(segment, query, field, bounds));
+  }
+
+  /**
+   * Caches the counts of numeric ranges.
+   *
+   * @param segment the segment
+   * @param query   the query, <code>null</code> for all documents
+   * @param field   the numeric field
+   * @param bounds  the bounds of the ranges
+   * @param counts  the counts
+   */
+  void putRangeCounts(Segment segment, Query query, String field, long[][] bounds, int[] counts) {
+    put(new Key(segment, query, field, bounds), counts.clone());
+  }
+
+  private Object get(Key key) {
+    Object value;
+    synchronized (this.entries) {
+      value = this.entries.get(key);
+    }
+    if (value == null) this.misses.increment();
+    else this.hits.increment();
+    return value;
+  }
+
+  private void put(Key key, Object value) {
+    Set<Segment> segments = this.current;
+    // the segment was removed by a refresh while counting
+    if (segments != null && !segments.contains(key.segment)) return;
+    synchronized (this.entries) {
+      this.entries.put(key, value);
+    }
+  }
+
+  /**
+   * Removes the entries of the segments which are not used by the reader specified.
+   *
+   * @param reader the current reader of the index
+   */
+  public void retain(IndexReader reader) {
+    Set<Segment> segments = new HashSet<>();
+    for (LeafReaderContext leaf : reader.leaves()) {
+      Segment segment = segment(leaf.reader());
+      if (segment != null) segments.add(segment);
+    }
+    this.current = segments;
+    synchronized (this.entries) {
+      for (Iterator<Key> i = this.entries.keySet().iterator(); i.hasNext();) {
+        if (!segments.contains(i.next().segment)) i.remove();
+      }
+    }
+  }
+
+  /**
+   * Removes all the entries.
+   */
+  public void clear() {
+    synchronized (this.entries) {
+      this.entries.clear();
+    }
+  }
+
+  /**
+   * @return the number of entries
+   */
+  public int size() {
+    synchronized (this.entries) {
+      return this.entries.size();
+    }
+  }
+
+  /**
+   * @return the maximum number of entries
+   */
+  public int getMaxEntries() {
+    return this._maxEntries;
+  }
+
+  /**
+   * @return the number of lookups which found cached counts
+   */
+  public long getHits() {
+    return this.hits.sum();
+  }
+
+  /**
+   * @return the number of lookups which did not find cached counts
+   */
+  public long getMisses() {
+    return this.misses.sum();
+  }
+
+  /**
+   * @return the number of entries evicted because the cache was full
+   */
+  public long getEvictions() {
+    return this.evictions.sum();
+  }
+
+  @Override
+  public String toString() {
+    return "FacetCache[size=" + size() + ", hits=" + getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions() + "]";
+  }
+
+  /**
+   * A segment in a given state of deletions and doc values.
+   */
+  static final class Segment {
+
+    private final IndexReader.CacheKey key;
+
+    private Segment(IndexReader.CacheKey key) {
+      this.key = key;
+    }
+
+    @Override
+    public int hashCode() {
+      return this.key.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) return true;
+      if (!(obj instanceof Segment)) return false;
+      return this.key == ((Segment) obj).key;
+    }
+  }
+
+  /**
+   * The key of an entry.
+   */
+  private static final class Key {
+
+    private final Segment segment;
+
+    private final Query query;
+
+    private final String field;
+
+    private final long[][] bounds;
+
+    private final int hash;
+
+    private Key(Segment segment, Query query, String field, long[][] bounds) {
+      this.segment = segment;
+      this.query = query;
+      this.field = field;
+      this.bounds = bounds;
+      this.hash = Objects.hash(segment, query, field, Arrays.deepHashCode(bounds));
+    }
+
+    @Override
+    public int hashCode() {
+      return this.hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) return true;
+      if (!(obj instanceof Key)) return false;
+      Key key = (Key) obj;
+      return this.segment.equals(key.segment) && this.field.equals(key.field)
+          && Objects.equals(this.query, key.query) && Arrays.deepEquals(this.bounds, key.bounds);
+    }
+  }
+
+}
@@ -0,0 +1,527 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.flint.lucene.facet;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.FixedBitSet;
+import org.pageseeder.flint.lucene.search.FieldValueCounter;
+import org.pageseeder.flint.lucene.search.Filter;
+import org.pageseeder.flint.lucene.search.NumericRangeCounter;
+import org.pageseeder.flint.lucene.util.Beta;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * A request to compute several field, interval and range facets for the same base query.
+ *
+ * <p>Computing each facet on its own executes the base query once per facet. Instead, the base
+ * query is executed once per segment into a set of matching documents which is then used to count
+ * the values of all the facets. When filters are specified, the facets which have a filter on their
+ * own field are computed against the base query without that filter, so the query is executed once
+ * for each distinct filtered query.
+ *
+ * <p>If an executor is specified, the segments are processed in parallel.
+ *
+ * <p>If a cache is specified, the counts of each segment are cached so that only the segments which
+ * changed since the last refresh are counted again.
+ *
+ * <p>Typical usage:
+ * <pre>
+ *  FacetRequest request = new FacetRequest.Builder()
+ *      .addFacet(new StringFieldFacet.Builder().name("type").build())
+ *      .addFacet(new DateIntervalFacet.Builder().name("date").intervalDate(Period.ofMonths(1)).build())
+ *      .filters(filters)
+ *      .size(20)
+ *      .build();
+ *  request.compute(searcher, query);
+ * </pre>
+ *
+ * <p>Once computed, the results are available from each facet.
+ */
+@Beta
+public final class FacetRequest {
+
+  /**
+   * private logger
+   */
+  private final static Logger LOGGER = LoggerFactory.getLogger(FacetRequest.class);
+
+  /**
+   * The field facets to compute.
+   */
+  private final List<FlexibleFieldFacet> _fieldFacets;
+
+  /**
+   * The interval facets to compute.
+   */
+  private final List<FlexibleIntervalFacet> _intervalFacets;
+
+  /**
+   * The range facets to compute.
+   */
+  private final List<FlexibleRangeFacet> _rangeFacets;
+
+  /**
+   * The filters applied to the base query (may be <code>null</code>).
+   */
+  private final List<Filter> _filters;
+
+  /**
+   * The maximum number of values to compute for each facet.
+   */
+  private final int _size;
+
+  /**
+   * The executor used to process the segments in parallel (may be <code>null</code>).
+   */
+  private final ExecutorService _executor;
+
+  /**
+   * The cache of the counts of each segment (may be <code>null</code>).
+   */
+  private final FacetCache _cache;
+
+  private FacetRequest(Builder builder) {
+    this._fieldFacets = Collections.unmodifiableList(new ArrayList<>(builder._fieldFacets));
+    this._intervalFacets = Collections.unmodifiableList(new ArrayList<>(builder._intervalFacets));
+    this._rangeFacets = Collections.unmodifiableList(new ArrayList<>(builder._rangeFacets));
+    this._filters = builder._filters;
+    this._size = builder._size;
+    this._executor = builder._executor;
+    this._cache = builder._cache;
+  }
+
+  /**
+   * @return the field facets to compute
+   */
+  public List<FlexibleFieldFacet> getFieldFacets() {
+    return this._fieldFacets;
+  }
+
+  /**
+   * @return the interval facets to compute
+   */
+  public List<FlexibleIntervalFacet> getIntervalFacets() {
+    return this._intervalFacets;
+  }
+
+  /**
+   * @return the range facets to compute
+   */
+  public List<FlexibleRangeFacet> getRangeFacets() {
+    return this._rangeFacets;
+  }
+
+  /**
+   * @return the filters applied to the base query (may be <code>null</code>)
+   */
+  public List<Filter> getFilters() {
+    return this._filters;
+  }
+
+  /**
+   * @return the maximum number of values to compute for each facet
+   */
+  public int getSize() {
+    return this._size;
+  }
+
+  /**
+   * Computes all the facets.
+   *
+   * <p>The results are the same as computing each facet with
+   * <code>compute(searcher, base, filters, size)</code>.
+   *
+   * @param searcher the index search to use.
+   * @param base     the base query, <code>null</code> for all documents
+   *
+   * @throws IOException if thrown by the searcher.
+   */
+  public void compute(IndexSearcher searcher, Query base) throws IOException {
+    // group the facets by filtered query
+    Map<Query, Group> groups = new LinkedHashMap<>();
+    for (FlexibleFieldFacet facet : this._fieldFacets) {
+      // only checking if there are results is faster on its own, some facets must search each term
+      if (this._size == 0 || !facet.countsByTerm(searcher.getIndexReader())) facet.compute(searcher, base, this._filters, this._size);
+      else group(groups, base, facet.name()).fieldFacets.add(facet);
+    }
+    for (FlexibleIntervalFacet facet : this._intervalFacets) {
+      long[][] bounds = facet instanceof NumericIntervalFacet ? ((NumericIntervalFacet) facet).bounds() : null;
+      if (facet instanceof NumericIntervalFacet && !hasDocValues(searcher, facet.name(), bounds))
+        facet.compute(searcher, base, this._filters, this._size);
+      else group(groups, base, facet.name()).add(facet, bounds);
+    }
+    for (FlexibleRangeFacet facet : this._rangeFacets) {
+      long[][] bounds = facet instanceof NumericRangeFacet ? ((NumericRangeFacet) facet).bounds() : null;
+      if (facet instanceof NumericRangeFacet && !hasDocValues(searcher, facet.name(), bounds))
+        facet.compute(searcher, base, this._filters, this._size);
+      else group(groups, base, facet.name()).add(facet, bounds);
+    }
+    if (groups.isEmpty()) return;
+    LOGGER.debug("Computing facets using {} queries", groups.size());
+    // one weight per query, shared by all segments
+    List<Group> all = new ArrayList<>(groups.values());
+    for (Group group : all) {
+      group.prepare(searcher);
+    }
+    // count each segment
+    List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+    List<Counts[]> segments = new ArrayList<>(leaves.size());
+    if (this._executor != null && leaves.size() > 1) {
+      List<Callable<Counts[]>> tasks = new ArrayList<>(leaves.size());
+      for (LeafReaderContext leaf : leaves) {
+        tasks.add(() -> count(leaf, all));
+      }
+      try {
+        for (Future<Counts[]> future : this._executor.invokeAll(tasks)) {
+          segments.add(future.get());
+        }
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while computing facets");
+      } catch (ExecutionException ex) {
+        if (ex.getCause() instanceof IOException) throw (IOException) ex.getCause();
+        throw new IOException("Failed to compute facets", ex.getCause());
+      }
+    } else {
+      for (LeafReaderContext leaf : leaves) {
+        segments.add(count(leaf, all));
+      }
+    }
+    // merge the segments and load the facets, filters are ignored without a base query
+    boolean flexible = base != null && this._filters != null;
+    for (int g = 0; g < all.size(); g++) {
+      Group group = all.get(g);
+      Counts total = group.newCounts();
+      for (Counts[] segment : segments) {
+        total.add(segment[g]);
+      }
+      group.load(total, this._size, flexible);
+    }
+  }
+
+  /**
+   * Returns the group of facets for the base query filtered by all the filters which do not use
+   * the field specified.
+   *
+   * <p>Without a base query, all the facets are computed for all documents.
+   */
+  private Group group(Map<Query, Group> groups, Query base, String field) {
+    Query filtered = base;
+    if (base != null && this._filters != null) {
+      for (Filter filter : this._filters) {
+        if (!field.equals(filter.name()))
+          filtered = filter.filterQuery(filtered);
+      }
+    }
+    return groups.computeIfAbsent(filtered, Group::new);
+  }
+
+  /**
+   * Indicates whether the numeric ranges can be counted from the doc values.
+   */
+  private static boolean hasDocValues(IndexSearcher searcher, String field, long[][] bounds) {
+    return bounds != null && NumericRangeCounter.hasDocValues(searcher.getIndexReader(), field);
+  }
+
+  /**
+   * Counts the values of all the facets of each group in the segment.
+   *
+   * @param leaf   the segment
+   * @param groups the groups of facets
+   *
+   * @return the counts of each group in the same order
+   *
+   * @throws IOException if thrown while reading the index
+   */
+  private Counts[] count(LeafReaderContext leaf, List<Group> groups) throws IOException {
+    FacetCache.Segment segment = this._cache == null ? null : FacetCache.segment(leaf.reader());
+    Counts[] counts = new Counts[groups.size()];
+    for (int g = 0; g < counts.length; g++) {
+      Group group = groups.get(g);
+      counts[g] = group.newCounts();
+      // the query is executed at most once for all the facets
+      FixedBitSet matches = null;
+      boolean matched = group.weight == null;
+      for (String field : group.fields) {
+        Map<String, Integer> cached = segment == null ? null : this._cache.getTermCounts(segment, group.query, field);
+        if (cached != null) {
+          counts[g].terms.put(field, cached);
+        } else {
+          if (!matched) {
+            matches = FieldValueCounter.matches(leaf, group.weight);
+            matched = true;
+          }
+          FieldValueCounter.count(leaf.reader(), field, matches, counts[g].terms.get(field));
+          if (segment != null) this._cache.putTermCounts(segment, group.query, field, counts[g].terms.get(field));
+        }
+      }
+      for (int i = 0; i < group.numeric.size(); i++) {
+        String field = group.numeric.get(i).name();
+        long[][] bounds = group.bounds.get(i);
+        int[] cached = segment == null ? null : this._cache.getRangeCounts(segment, group.query, field, bounds);
+        if (cached != null) {
+          counts[g].ranges[i] = cached;
+        } else {
+          if (!matched) {
+            matches = FieldValueCounter.matches(leaf, group.weight);
+            matched = true;
+          }
+          NumericRangeCounter.count(leaf.reader(), field, matches, bounds, counts[g].ranges[i]);
+          if (segment != null) this._cache.putRangeCounts(segment, group.query, field, bounds, counts[g].ranges[i]);
+        }
+      }
+    }
+    return counts;
+  }
+
+  /**
+   * The facets computed using the same query.
+   */
+  private static final class Group {
+
+    private final Query query;
+
+    private final List<FlexibleFieldFacet> fieldFacets = new ArrayList<>();
+
+    private final List<FlexibleIntervalFacet> intervalFacets = new ArrayList<>();
+
+    private final List<FlexibleRangeFacet> rangeFacets = new ArrayList<>();
+
+    /** The numeric facets counted from doc values and their bounds */
+    private final List<FlexibleFacet<?>> numeric = new ArrayList<>();
+
+    private final List<long[][]> bounds = new ArrayList<>();
+
+    /** The fields to count the terms of */
+    private final Set<String> fields = new LinkedHashSet<>();
+
+    private Weight weight;
+
+    private Group(Query query) {
+      this.query = query;
+    }
+
+    private void add(FlexibleIntervalFacet facet, long[][] bounds) {
+      if (bounds != null) {
+        this.numeric.add(facet);
+        this.bounds.add(bounds);
+      } else {
+        this.intervalFacets.add(facet);
+      }
+    }
+
+    private void add(FlexibleRangeFacet facet, long[][] bounds) {
+      if (bounds != null) {
+        this.numeric.add(facet);
+        this.bounds.add(bounds);
+      } else {
+        this.rangeFacets.add(facet);
+      }
+    }
+
+    /**
+     * Creates the weight and collects the fields before the segments are counted.
+     */
+    private void prepare(IndexSearcher searcher) throws IOException {
+      if (this.query != null) this.weight = searcher.createWeight(searcher.rewrite(this.query), ScoreMode.COMPLETE_NO_SCORES, 1f);
+      for (FlexibleFieldFacet facet : this.fieldFacets) this.fields.add(facet.name());
+      for (FlexibleIntervalFacet facet : this.intervalFacets) this.fields.add(facet.name());
+      for (FlexibleRangeFacet facet : this.rangeFacets) this.fields.add(facet.name());
+    }
+
+    private Counts newCounts() {
+      Counts counts = new Counts(this.bounds.size());
+      for (String field : this.fields) {
+        counts.terms.put(field, new HashMap<>());
+      }
+      for (int i = 0; i < this.bounds.size(); i++) {
+        counts.ranges[i] = new int[this.bounds.get(i).length];
+      }
+      return counts;
+    }
+
+    private void load(Counts counts, int size, boolean flexible) {
+      for (FlexibleFieldFacet facet : this.fieldFacets) {
+        if (this.query == null) facet.loadAll(counts.terms.get(facet.name()), size);
+        else facet.load(counts.terms.get(facet.name()), size, flexible);
+      }
+      for (FlexibleIntervalFacet facet : this.intervalFacets) {
+        facet.load(counts.terms.get(facet.name()), size, flexible);
+      }
+      for (FlexibleRangeFacet facet : this.rangeFacets) {
+        facet.load(counts.terms.get(facet.name()), size, flexible);
+      }
+      for (int i = 0; i < this.numeric.size(); i++) {
+        FlexibleFacet<?> facet = this.numeric.get(i);
+        if (facet instanceof NumericIntervalFacet)
+          ((NumericIntervalFacet) facet).load(counts.ranges[i], size, flexible);
+        else
+          ((NumericRangeFacet) facet).load(counts.ranges[i], size, flexible);
+      }
+    }
+  }
+
+  /**
+   * The counts for a group of facets.
+   */
+  private static final class Counts {
+
+    /** The count for each term, mapped by field name */
+    private final Map<String, Map<String, Integer>> terms = new HashMap<>();
+
+    /** The number of documents in each range of each numeric facet */
+    private final int[][] ranges;
+
+    private Counts(int numeric) {
+      this.ranges = new int[numeric][];
+    }
+
+    private void add(Counts counts) {
+      for (Map.Entry<String, Map<String, Integer>> field : counts.terms.entrySet()) {
+        Map<String, Integer> total = this.terms.get(field.getKey());
+        for (Map.Entry<String, Integer> term : field.getValue().entrySet()) {
+          total.merge(term.getKey(), term.getValue(), Integer::sum);
+        }
+      }
+      for (int i = 0; i < this.ranges.length; i++) {
+        for (int r = 0; r < this.ranges[i].length; r++) {
+          this.ranges[i][r] += counts.ranges[i][r];
+        }
+      }
+    }
+  }
+
+  /**
+   * Builder for a facet request.
+   */
+  public static final class Builder {
+
+    private final List<FlexibleFieldFacet> _fieldFacets = new ArrayList<>();
+
+    private final List<FlexibleIntervalFacet> _intervalFacets = new ArrayList<>();
+
+    private final List<FlexibleRangeFacet> _rangeFacets = new ArrayList<>();
+
+    private List<Filter> _filters = null;
+
+    private int _size = FlexibleFieldFacet.DEFAULT_MAX_NUMBER_OF_VALUES;
+
+    private ExecutorService _executor = null;
+
+    private FacetCache _cache = null;
+
+    /**
+     * @param facet a field facet to compute
+     *
+     * @return this builder
+     */
+    public Builder addFacet(FlexibleFieldFacet facet) {
+      this._fieldFacets.add(facet);
+      return this;
+    }
+
+    /**
+     * @param facet an interval facet to compute
+     *
+     * @return this builder
+     */
+    public Builder addFacet(FlexibleIntervalFacet facet) {
+      this._intervalFacets.add(facet);
+      return this;
+    }
+
+    /**
+     * @param facet a range facet to compute
+     *
+     * @return this builder
+     */
+    public Builder addFacet(FlexibleRangeFacet facet) {
+      this._rangeFacets.add(facet);
+      return this;
+    }
+
+    /**
+     * @param filters the filters applied to the base query, facets are computed as flexible facets if not <code>null</code>
+     *
+     * @return this builder
+     */
+    public Builder filters(List<Filter> filters) {
+      this._filters = filters;
+      return this;
+    }
+
+    /**
+     * @param size the maximum number of values to compute for each facet (defaults to 10)
+     *
+     * @return this builder
+     */
+    public Builder size(int size) {
+      this._size = size;
+      return this;
+    }
+
+    /**
+     * @param executor the executor used to count the segments in parallel, <code>null</code> to count them in the current thread
+     *
+     * @return this builder
+     */
+    public Builder executor(ExecutorService executor) {
+      this._executor = executor;
+      return this;
+    }
+
+    /**
+     * @param cache the cache of the counts of each segment, <code>null</code> to always count them
+     *
+     * @return this builder
+     */
+    public Builder cache(FacetCache cache) {
+      this._cache = cache;
+      return this;
+    }
+
+    /**
+     * @return the facet request
+     *
+     * @throws IllegalArgumentException if the size is negative
+     */
+    public FacetRequest build() {
+      if (this._size < 0) throw new IllegalArgumentException("size < 0");
+      return new FacetRequest(this);
+    }
+  }
+
+}
@@ -15,10 +15,12 @@
  */
 package org.pageseeder.flint.lucene.facet;
 
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.*;
 import org.pageseeder.flint.lucene.search.DocumentCounter;
+import org.pageseeder.flint.lucene.search.FieldValueCounter;
 import org.pageseeder.flint.lucene.search.Filter;
 import org.pageseeder.flint.lucene.search.Terms;
 import org.pageseeder.flint.lucene.util.Beta;
@@ -27,7 +29,9 @@ import org.pageseeder.flint.lucene.util.Bucket.Entry;
 import org.pageseeder.xmlwriter.XMLWriter;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A facet implementation using a simple index field.
@@ -116,39 +120,112 @@ public abstract class FlexibleFieldFacet extends FlexibleFacet<String> {
       } catch (Exception ex) {
         // go through terms then
       }
-      // find all terms
-      List<Term> terms = Terms.terms(searcher.getIndexReader(), name());
-      if (this._maxTerms > 0 && terms.size() > this._maxTerms) return;
-      // loop through terms
-      DocumentCounter counter = new DocumentCounter();
-      Bucket<String> bucket = new Bucket<>(size);
-      for (Term t : terms) {
-        BooleanQuery.Builder query = new BooleanQuery.Builder();
-        query.add(filtered, Occur.MUST);
-        query.add(termToQuery(t), Occur.MUST);
-        if (size == 0) {
-          // we just want to know if there are results,
-          // so load only one and stop when we get one
-          TopDocs td = searcher.search(query.build(), 1);
-          if (td.totalHits.value > 0) {
-            this.hasResults = true;
-            return;
-          }
-        } else {
-          // count results
-          searcher.search(query.build(), counter);
-          int count = counter.getCount();
-          bucket.add(t.text(), count);
-          counter.reset();
-          if (count > 0) {
-            this.totalTerms++;
-            this.hasResults = true;
-          }
+      if (countsByTerm(searcher.getIndexReader())) {
+        // count all terms in a single pass
+        load(FieldValueCounter.count(searcher, filtered, Collections.singleton(this._name)).get(this._name), size);
+      } else {
+        computePerTerm(searcher, filtered, size);
+      }
+    }
+  }
+
+  /**
+   * Counts the documents matching the query for each term of the field, one search per term.
+   *
+   * @param searcher the index search to use.
+   * @param filtered the query, <code>null</code> for all documents
+   * @param size     the maximum number of field values to compute.
+   *
+   * @throws IOException if thrown by the searcher.
+   */
+  private void computePerTerm(IndexSearcher searcher, Query filtered, int size) throws IOException {
+    List<Term> terms = Terms.terms(searcher.getIndexReader(), this._name);
+    if (this._maxTerms > 0 && terms.size() > this._maxTerms) return;
+    DocumentCounter counter = new DocumentCounter();
+    Bucket<String> bucket = size == 0 ? null : new Bucket<>(size);
+    for (Term t : terms) {
+      Query query = termToQuery(t);
+      if (filtered != null) {
+        BooleanQuery.Builder bq = new BooleanQuery.Builder();
+        bq.add(filtered, Occur.MUST);
+        bq.add(query, Occur.MUST);
+        query = bq.build();
+      }
+      if (size == 0) {
+        // we just want to know if there are results
+        if (searcher.search(query, 1).totalHits.value > 0) {
+          this.hasResults = true;
+          return;
         }
+        continue;
+      }
+      searcher.search(query, counter);
+      int count = counter.getCount();
+      counter.reset();
+      bucket.add(t.text(), count);
+      // all terms are included without a query
+      if (count > 0 || filtered == null) {
+        this.totalTerms++;
+        this.hasResults = true;
+      }
+    }
+    this.bucket = bucket;
+  }
+
+  /**
+   * Loads the counts computed for the documents matching the base query.
+   *
+   * @param counts the count for each term of the field
+   * @param size   the maximum number of field values to compute.
+   */
+  private void load(Map<String, Integer> counts, int size) {
+    if (this._maxTerms > 0 && counts.size() > this._maxTerms) return;
+    Bucket<String> bucket = new Bucket<>(size);
+    for (Map.Entry<String, Integer> count : counts.entrySet()) {
+      if (count.getValue() > 0) {
+        // we just want to know if there are results
+        this.hasResults = true;
+        if (size == 0) return;
+        bucket.add(count.getKey(), count.getValue());
+        this.totalTerms++;
       }
-      if (size != 0)
-        this.bucket = bucket;
     }
+    if (size != 0)
+      this.bucket = bucket;
+  }
+
+  /**
+   * Loads the counts computed for the documents matching a base query by a {@link FacetRequest}.
+   *
+   * @param counts   the count for each term of the field
+   * @param size     the maximum number of field values to compute.
+   * @param flexible whether filters were applied to the base query
+   */
+  void load(Map<String, Integer> counts, int size, boolean flexible) {
+    this.totalTerms = 0;
+    this.hasResults = false;
+    this.bucket = null;
+    if (flexible) this.flexible = true;
+    load(counts, size);
+  }
+
+  /**
+   * Computes several facets as flexible facets using as few passes over the index as possible.
+   *
+   * <p>Same as computing a {@link FacetRequest} with these facets.
+   *
+   * @param facets   the facets to compute
+   * @param searcher the index search to use.
+   * @param base     the base query.
+   * @param filters  the filters applied to the base query (ignored if the base query is null)
+   * @param size     the maximum number of field values to compute.
+   *
+   * @throws IOException if thrown by the searcher.
+   */
+  public static void compute(List<? extends FlexibleFieldFacet> facets, IndexSearcher searcher, Query base, List<Filter> filters, int size) throws IOException {
+    FacetRequest.Builder request = new FacetRequest.Builder().filters(filters).size(size);
+    for (FlexibleFieldFacet facet : facets) request.addFacet(facet);
+    request.build().compute(searcher, base);
   }
 
   /**
@@ -235,38 +312,69 @@ public abstract class FlexibleFieldFacet extends FlexibleFacet<String> {
       this.totalTerms = -1;
       this.bucket = null;
       // check if there are terms
-      this.hasResults = !Terms.terms(searcher.getIndexReader(), this._name).isEmpty();
+      this.hasResults = Terms.hasTerms(searcher.getIndexReader(), this._name);
+    } else if (countsByTerm(searcher.getIndexReader())) {
+      // count all terms in a single pass
+      loadAll(FieldValueCounter.count(searcher, null, Collections.singleton(this._name)).get(this._name), size);
     } else {
       // reset
       this.totalTerms = 0;
       this.hasResults = false;
       this.bucket = null;
-      // find all terms
-      List<Term> terms = Terms.terms(searcher.getIndexReader(), this._name);
-      if (this._maxTerms > 0 && terms.size() > this._maxTerms) return;
-      Bucket<String> bucket = new Bucket<>(size);
-      DocumentCounter counter = new DocumentCounter();
-      for (Term t : terms) {
-        searcher.search(termToQuery(t), counter);
-        bucket.add(t.text(), counter.getCount());
-        counter.reset();
-        this.totalTerms++;
-        this.hasResults = true;
-      }
-      // set bucket
-      this.bucket = bucket;
+      computePerTerm(searcher, null, size);
+    }
+  }
+
+  /**
+   * Loads the counts computed for all the documents, terms which are not used anymore are included.
+   *
+   * @param counts the count for each term of the field
+   * @param size   the number of facet values to calculate.
+   */
+  void loadAll(Map<String, Integer> counts, int size) {
+    // reset
+    this.totalTerms = 0;
+    this.hasResults = false;
+    this.bucket = null;
+    if (this._maxTerms > 0 && counts.size() > this._maxTerms) return;
+    Bucket<String> bucket = new Bucket<>(size);
+    for (Map.Entry<String, Integer> count : counts.entrySet()) {
+      bucket.add(count.getKey(), count.getValue());
+      this.totalTerms++;
+      this.hasResults = true;
     }
+    // set bucket
+    this.bucket = bucket;
   }
 
   /**
    * Create a query for the term given, using the numeric type if there is one.
    *
+   * <p>When {@link #countsByTerm(IndexReader)} returns <code>true</code>, the counts are computed
+   * from the postings of each term in a single pass and this query is not used.
+   *
    * @param t the term
    *
    * @return the query
    */
   protected abstract Query termToQuery(Term t);
 
+  /**
+   * Indicates whether {@link #termToQuery(Term)} matches the same documents as the term for all
+   * the terms of the field, so that they can all be counted in a single pass.
+   *
+   * <p>Otherwise, the documents are counted with one search per term.
+   *
+   * @param reader the index reader
+   *
+   * @return <code>true</code> by default
+   *
+   * @throws IOException if thrown while reading the terms
+   */
+  protected boolean countsByTerm(IndexReader reader) throws IOException {
+    return true;
+  }
+
   protected abstract void termToXML(String term, int cardinality, XMLWriter xml) throws IOException;
 
   @Override
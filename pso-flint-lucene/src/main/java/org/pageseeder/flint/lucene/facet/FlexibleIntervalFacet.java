@@ -17,13 +17,10 @@ package org.pageseeder.flint.lucene.facet;
 
 import org.apache.lucene.document.DateTools.Resolution;
 import org.apache.lucene.index.Term;
-import org.apache.lucene.search.BooleanClause.Occur;
-import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
-import org.pageseeder.flint.lucene.search.DocumentCounter;
+import org.pageseeder.flint.lucene.search.FieldValueCounter;
 import org.pageseeder.flint.lucene.search.Filter;
-import org.pageseeder.flint.lucene.search.Terms;
 import org.pageseeder.flint.lucene.util.Beta;
 import org.pageseeder.flint.lucene.util.Bucket;
 import org.pageseeder.flint.lucene.util.Bucket.Entry;
@@ -32,6 +29,7 @@ import org.pageseeder.xmlwriter.XMLWriter;
 
 import java.io.IOException;
 import java.time.OffsetDateTime;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -172,8 +170,6 @@ public abstract class FlexibleIntervalFacet extends FlexibleFacet<FlexibleInterv
       if (size < 0) throw new IllegalArgumentException("size < 0");
       // reset total terms
       this.totalIntervals = 0;
-      // find all terms
-      List<Term> terms = Terms.terms(searcher.getIndexReader(), this._name);
       // Otherwise, re-compute the query without the corresponding filter
       Query filtered = base;
       if (filters != null) {
@@ -183,35 +179,7 @@ public abstract class FlexibleIntervalFacet extends FlexibleFacet<FlexibleInterv
             filtered = filter.filterQuery(filtered);
         }
       }
-      Map<Interval, Integer> intervals = new HashMap<>();
-      DocumentCounter counter = new DocumentCounter();
-      for (Term t : terms) {
-        // find range
-        Interval r = findInterval(t);
-        if (r == null) continue;
-        // find count
-        BooleanQuery.Builder query = new BooleanQuery.Builder();
-        query.add(filtered, Occur.MUST);
-        query.add(termToQuery(t), Occur.MUST);
-        searcher.search(query.build(), counter);
-        int count = counter.getCount();
-        if (count > 0) {
-          // add to map
-          Integer ec = intervals.get(r);
-          intervals.put(r, count + (ec == null ? 0 : ec));
-          // check size to stop computing if too big
-          if (this._maxIntervals > 0 && intervals.size() > this._maxIntervals)
-            return;
-        }
-        counter.reset();
-      }
-      this.totalIntervals = intervals.size();
-      // add to bucket
-      Bucket<Interval> b = new Bucket<>(size);
-      for (Map.Entry<Interval, Integer> interval : intervals.entrySet()) {
-        b.add(interval.getKey(), interval.getValue());
-      }
-      this.bucket = b;
+      count(searcher, filtered, size);
     }
   }
 
@@ -296,27 +264,55 @@ public abstract class FlexibleIntervalFacet extends FlexibleFacet<FlexibleInterv
    * @throws IOException if thrown by the searcher.
    */
   private void compute(IndexSearcher searcher, int size) throws IOException {
-    // find all terms
-    List<Term> terms = Terms.terms(searcher.getIndexReader(), this._name);
-    DocumentCounter counter = new DocumentCounter();
+    this.totalIntervals = 0;
+    count(searcher, null, size);
+  }
+
+  /**
+   * Counts all the terms of the field in a single pass and adds their count to their interval.
+   *
+   * @param searcher the index search to use.
+   * @param query    the query, <code>null</code> for all documents
+   * @param size     the number of facet values to calculate.
+   *
+   * @throws IOException if thrown by the searcher.
+   */
+  private void count(IndexSearcher searcher, Query query, int size) throws IOException {
+    load(FieldValueCounter.count(searcher, query, Collections.singleton(this._name)).get(this._name), size);
+  }
+
+  /**
+   * Loads the counts computed for the documents matching a base query by a {@link FacetRequest}.
+   *
+   * @param counts   the count for each term of the field
+   * @param size     the number of facet values to calculate.
+   * @param flexible whether filters were applied to the base query
+   */
+  void load(Map<String, Integer> counts, int size, boolean flexible) {
+    this.totalIntervals = 0;
+    if (flexible) this.flexible = true;
+    load(counts, size);
+  }
+
+  /**
+   * Adds the count of each term to its interval.
+   *
+   * @param counts the count for each term of the field
+   * @param size   the number of facet values to calculate.
+   */
+  private void load(Map<String, Integer> counts, int size) {
     Map<Interval, Integer> intervals = new HashMap<>();
-    for (Term t : terms) {
+    for (Map.Entry<String, Integer> count : counts.entrySet()) {
+      if (count.getValue() == 0) continue;
       // find the range
-      Interval interval = findInterval(t);
+      Interval interval = findInterval(new Term(this._name, count.getKey()));
       if (interval == null) continue;
-      // find number
-      searcher.search(termToQuery(t), counter);
-      int count = counter.getCount();
-      if (count > 0) {
-        // add to map
-        Integer ec = intervals.get(interval);
-        intervals.put(interval, count + (ec == null ? 0 : ec));
-        // check size to stop computing if too big
-        if (this._maxIntervals > 0 && intervals.size() > this._maxIntervals)
-          return;
-      }
-      counter.reset();
+      // add to map
+      intervals.merge(interval, count.getValue(), Integer::sum);
     }
+    // check size to stop computing if too big
+    if (this._maxIntervals > 0 && intervals.size() > this._maxIntervals)
+      return;
     // set totals
     this.totalIntervals = intervals.size();
     // add to bucket
@@ -16,6 +16,7 @@
 package org.pageseeder.flint.lucene.facet;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -23,14 +24,11 @@ import java.util.Map;
 
 import org.apache.lucene.document.DateTools.Resolution;
 import org.apache.lucene.index.Term;
-import org.apache.lucene.search.BooleanClause.Occur;
-import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermQuery;
-import org.pageseeder.flint.lucene.search.DocumentCounter;
+import org.pageseeder.flint.lucene.search.FieldValueCounter;
 import org.pageseeder.flint.lucene.search.Filter;
-import org.pageseeder.flint.lucene.search.Terms;
 import org.pageseeder.flint.lucene.util.Beta;
 import org.pageseeder.flint.lucene.util.Bucket;
 import org.pageseeder.flint.lucene.util.Bucket.Entry;
@@ -94,8 +92,6 @@ public abstract class FlexibleRangeFacet extends FlexibleFacet<FlexibleRangeFace
     } else {
       if (size < 0) throw new IllegalArgumentException("size < 0");
       this.totalRanges = 0;
-      // find all terms
-      List<Term> terms = Terms.terms(searcher.getIndexReader(), this._name);
       // Otherwise, re-compute the query without the corresponding filter
       Query filtered = base;
       if (filters != null) {
@@ -105,32 +101,7 @@ public abstract class FlexibleRangeFacet extends FlexibleFacet<FlexibleRangeFace
             filtered = filter.filterQuery(filtered);
         }
       }
-      DocumentCounter counter = new DocumentCounter();
-      Map<Range, Integer> ranges = new HashMap<>();
-      for (Term t : terms) {
-        // find range
-        Range r = findRange(t);
-        if (r == null) r = OTHER;
-        // find count
-        BooleanQuery.Builder query = new BooleanQuery.Builder();
-        query.add(filtered, Occur.MUST);
-        query.add(termToQuery(t), Occur.MUST);
-        searcher.search(query.build(), counter);
-        int count = counter.getCount();
-        if (count > 0) {
-          // add to map
-          Integer ec = ranges.get(r);
-          ranges.put(r, count + (ec == null ? 0 : ec));
-        }
-        counter.reset();
-      }
-      this.totalRanges = ranges.size();
-      // add to bucket
-      Bucket<Range> b = new Bucket<>(size);
-      for (Map.Entry<Range, Integer> range : ranges.entrySet()) {
-        b.add(range.getKey(), range.getValue());
-      }
-      this.bucket = b;
+      count(searcher, filtered, size);
     }
   }
 
@@ -215,23 +186,50 @@ public abstract class FlexibleRangeFacet extends FlexibleFacet<FlexibleRangeFace
    * @throws IOException if thrown by the searcher.
    */
   protected void compute(IndexSearcher searcher, int size) throws IOException {
-    // find all terms
-    List<Term> terms = Terms.terms(searcher.getIndexReader(), this._name);
-    DocumentCounter counter = new DocumentCounter();
+    count(searcher, null, size);
+  }
+
+  /**
+   * Counts all the terms of the field in a single pass and adds their count to their range.
+   *
+   * @param searcher the index search to use.
+   * @param query    the query, <code>null</code> for all documents
+   * @param size     the number of facet values to calculate.
+   *
+   * @throws IOException if thrown by the searcher.
+   */
+  private void count(IndexSearcher searcher, Query query, int size) throws IOException {
+    load(FieldValueCounter.count(searcher, query, Collections.singleton(this._name)).get(this._name), size);
+  }
+
+  /**
+   * Loads the counts computed for the documents matching a base query by a {@link FacetRequest}.
+   *
+   * @param counts   the count for each term of the field
+   * @param size     the number of facet values to calculate.
+   * @param flexible whether filters were applied to the base query
+   */
+  void load(Map<String, Integer> counts, int size, boolean flexible) {
+    this.totalRanges = 0;
+    if (flexible) this.flexible = true;
+    load(counts, size);
+  }
+
+  /**
+   * Adds the count of each term to its range.
+   *
+   * @param counts the count for each term of the field
+   * @param size   the number of facet values to calculate.
+   */
+  private void load(Map<String, Integer> counts, int size) {
     Map<Range, Integer> ranges = new HashMap<>();
-    for (Term t : terms) {
+    for (Map.Entry<String, Integer> count : counts.entrySet()) {
+      if (count.getValue() == 0) continue;
       // find the range
-      Range r = findRange(t);
+      Range r = findRange(new Term(this._name, count.getKey()));
       if (r == null) r = OTHER;
-      // find number
-      searcher.search(termToQuery(t), counter);
-      int count = counter.getCount();
-      if (count > 0) {
-        // add to map
-        Integer ec = ranges.get(r);
-        ranges.put(r, count + (ec == null ? 0 : ec));
-      }
-      counter.reset();
+      // add to map
+      ranges.merge(r, count.getValue(), Integer::sum);
     }
     // set totals
     this.totalRanges = ranges.size();
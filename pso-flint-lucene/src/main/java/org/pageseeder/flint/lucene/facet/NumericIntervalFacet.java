@@ -28,6 +28,7 @@ import org.pageseeder.flint.indexing.FlintField.NumericType;
 import org.pageseeder.flint.lucene.query.NumericRange;
 import org.pageseeder.flint.lucene.search.DocumentCounter;
 import org.pageseeder.flint.lucene.search.Filter;
+import org.pageseeder.flint.lucene.search.NumericRangeCounter;
 import org.pageseeder.flint.lucene.util.Beta;
 import org.pageseeder.flint.lucene.util.Bucket;
 import org.pageseeder.xmlwriter.XMLWriter;
@@ -100,22 +101,7 @@ public abstract class NumericIntervalFacet extends FlexibleIntervalFacet {
             filtered = filter.filterQuery(filtered);
         }
       }
-      this.totalIntervals = 0;
-      Bucket<Interval> bucket = new Bucket<>(size);
-      DocumentCounter counter = new DocumentCounter();
-      for (Interval i : this._intervals) {
-        // build query
-        BooleanQuery.Builder query = new BooleanQuery.Builder();
-        query.add(filtered, Occur.MUST);
-        query.add(intervalToQuery(i), Occur.MUST);
-        searcher.search(query.build(), counter);
-        int count = counter.getCount();
-        // add to bucket
-        bucket.add(i, count);
-        counter.reset();
-        if (count > 0) this.totalIntervals++;
-      }
-      this.bucket = bucket;
+      count(searcher, filtered, size);
     }
   }
 
@@ -128,22 +114,110 @@ public abstract class NumericIntervalFacet extends FlexibleIntervalFacet {
    * @throws IOException if thrown by the searcher.
    */
   protected void compute(IndexSearcher searcher, int size) throws IOException {
+    count(searcher, null, size);
+  }
+
+  /**
+   * Counts the documents in each interval.
+   *
+   * <p>The numeric doc values of the matching documents are read in a single pass when available,
+   * otherwise each interval is searched.
+   *
+   * @param searcher the index search to use.
+   * @param query    the query, <code>null</code> for all documents
+   * @param size     the number of facet values to calculate.
+   *
+   * @throws IOException if thrown by the searcher.
+   */
+  private void count(IndexSearcher searcher, Query query, int size) throws IOException {
+    long[][] bounds = bounds();
+    int[] counts = bounds == null ? null : NumericRangeCounter.count(searcher, query, name(), bounds);
+    if (counts == null) {
+      // no doc values, search each interval
+      counts = new int[this._intervals.size()];
+      DocumentCounter counter = new DocumentCounter();
+      for (int i = 0; i < counts.length; i++) {
+        // build query
+        Query q = intervalToQuery(this._intervals.get(i));
+        if (query != null) {
+          BooleanQuery.Builder bq = new BooleanQuery.Builder();
+          bq.add(query, Occur.MUST);
+          bq.add(q, Occur.MUST);
+          q = bq.build();
+        }
+        searcher.search(q, counter);
+        counts[i] = counter.getCount();
+        counter.reset();
+      }
+    }
+    load(counts, size);
+  }
+
+  /**
+   * Loads the counts computed for the documents matching a base query by a {@link FacetRequest}.
+   *
+   * @param counts   the number of documents in each interval, in the same order as the bounds
+   * @param size     the number of facet values to calculate.
+   * @param flexible whether filters were applied to the base query
+   */
+  void load(int[] counts, int size, boolean flexible) {
+    if (flexible) this.flexible = true;
+    load(counts, size);
+  }
+
+  /**
+   * @param counts the number of documents in each interval
+   * @param size   the number of facet values to calculate.
+   */
+  private void load(int[] counts, int size) {
     this.totalIntervals = 0;
     Bucket<Interval> bucket = new Bucket<>(size);
-    DocumentCounter counter = new DocumentCounter();
-    for (Interval i : this._intervals) {
-      // build query
-      searcher.search(intervalToQuery(i), counter);
-      int count = counter.getCount();
+    for (int i = 0; i < counts.length; i++) {
       // add to bucket
-      bucket.add(i, count);
-      counter.reset();
-      if (count > 0) this.totalIntervals++;
+      bucket.add(this._intervals.get(i), counts[i]);
+      if (counts[i] > 0) this.totalIntervals++;
     }
     this.bucket = bucket;
   }
 
-  protected abstract Query intervalToQuery(Interval i);
+  /**
+   * @return the doc values bounds of each interval or <code>null</code> if one of them is empty
+   *         or has no numeric range
+   */
+  long[][] bounds() {
+    long[][] bounds = new long[this._intervals.size()][];
+    for (int i = 0; i < bounds.length; i++) {
+      NumericRange<?> range = toNumericRange(this._intervals.get(i));
+      bounds[i] = range == null ? null : range.toDocValuesBounds();
+      if (bounds[i] == null) return null;
+    }
+    return bounds;
+  }
+
+  /**
+   * Subclasses must override this method unless they provide the numeric range of each interval.
+   *
+   * @param i the interval
+   *
+   * @return the query matching the documents in the interval
+   */
+  protected Query intervalToQuery(Interval i) {
+    NumericRange<?> range = toNumericRange(i);
+    if (range == null) throw new UnsupportedOperationException("No numeric range for interval in facet " + name());
+    return range.toQuery();
+  }
+
+  /**
+   * Used to count all the intervals in a single pass, when <code>null</code> each interval is
+   * searched using {@link #intervalToQuery(Interval)} instead.
+   *
+   * @param i the interval
+   *
+   * @return the corresponding numeric range, <code>null</code> by default
+   */
+  protected NumericRange<?> toNumericRange(Interval i) {
+    return null;
+  }
 
   @Override
   protected Interval findInterval(Term t) { return null; }
@@ -172,11 +246,11 @@ public abstract class NumericIntervalFacet extends FlexibleIntervalFacet {
       super(name, start, end, interval, includeMin, includeLastMax, maxIntervals);
     }
     @Override
-    protected Query intervalToQuery(Interval i) {
+    protected NumericRange<?> toNumericRange(Interval i) {
       return NumericRange.newIntRange(name(),
           i.getMin() == null ? null : Integer.parseInt(i.getMin()),
           i.getMax() == null ? null : Integer.parseInt(i.getMax()),
-          i.includeMin(), i.includeMax()).toQuery();
+          i.includeMin(), i.includeMax());
     }
     @Override
     protected Number increaseByInterval(Number toIncrease) {
@@ -193,11 +267,11 @@ public abstract class NumericIntervalFacet extends FlexibleIntervalFacet {
       super(name, start, end, interval, includeMin, includeLastMax, maxIntervals);
     }
     @Override
-    protected Query intervalToQuery(Interval i) {
+    protected NumericRange<?> toNumericRange(Interval i) {
       return NumericRange.newFloatRange(name(),
           i.getMin() == null ? null : Float.parseFloat(i.getMin()),
           i.getMax() == null ? null : Float.parseFloat(i.getMax()),
-          i.includeMin(), i.includeMax()).toQuery();
+          i.includeMin(), i.includeMax());
     }
     @Override
     protected Number increaseByInterval(Number toIncrease) {
@@ -214,11 +288,11 @@ public abstract class NumericIntervalFacet extends FlexibleIntervalFacet {
       super(name, start, end, interval, includeMin, includeLastMax, maxIntervals);
     }
     @Override
-    protected Query intervalToQuery(Interval i) {
+    protected NumericRange<?> toNumericRange(Interval i) {
       return NumericRange.newDoubleRange(name(),
           i.getMin() == null ? null : Double.parseDouble(i.getMin()),
           i.getMax() == null ? null : Double.parseDouble(i.getMax()),
-          i.includeMin(), i.includeMax()).toQuery();
+          i.includeMin(), i.includeMax());
     }
     @Override
     protected Number increaseByInterval(Number toIncrease) {
@@ -235,11 +309,11 @@ public abstract class NumericIntervalFacet extends FlexibleIntervalFacet {
       super(name, start, end, interval, includeMin, includeLastMax, maxIntervals);
     }
     @Override
-    protected Query intervalToQuery(Interval i) {
+    protected NumericRange<?> toNumericRange(Interval i) {
       return NumericRange.newLongRange(name(),
           i.getMin() == null ? null : Long.parseLong(i.getMin()),
           i.getMax() == null ? null : Long.parseLong(i.getMax()),
-          i.includeMin(), i.includeMax()).toQuery();
+          i.includeMin(), i.includeMax());
     }
     @Override
     protected Number increaseByInterval(Number toIncrease) {
@@ -28,6 +28,7 @@ import org.pageseeder.flint.indexing.FlintField.NumericType;
 import org.pageseeder.flint.lucene.query.NumericRange;
 import org.pageseeder.flint.lucene.search.DocumentCounter;
 import org.pageseeder.flint.lucene.search.Filter;
+import org.pageseeder.flint.lucene.search.NumericRangeCounter;
 import org.pageseeder.flint.lucene.util.Beta;
 import org.pageseeder.flint.lucene.util.Bucket;
 import org.pageseeder.xmlwriter.XMLWriter;
@@ -80,22 +81,7 @@ public abstract class NumericRangeFacet extends FlexibleRangeFacet {
             filtered = filter.filterQuery(filtered);
         }
       }
-      this.totalRanges = 0;
-      Bucket<Range> bucket = new Bucket<>(size);
-      DocumentCounter counter = new DocumentCounter();
-      for (Range r : this._ranges) {
-        // build query
-        BooleanQuery.Builder query = new BooleanQuery.Builder();
-        query.add(filtered, Occur.MUST);
-        query.add(rangeToQuery(r), Occur.MUST);
-        searcher.search(query.build(), counter);
-        int count = counter.getCount();
-        // add to bucket
-        bucket.add(r, count);
-        counter.reset();
-        if (count > 0) this.totalRanges++;
-      }
-      this.bucket = bucket;
+      count(searcher, filtered, size);
     }
   }
 
@@ -108,25 +94,113 @@ public abstract class NumericRangeFacet extends FlexibleRangeFacet {
    * @throws IOException if thrown by the searcher.
    */
   protected void compute(IndexSearcher searcher, int size) throws IOException {
+    count(searcher, null, size);
+  }
+
+  /**
+   * Counts the documents in each range.
+   *
+   * <p>The numeric doc values of the matching documents are read in a single pass when available,
+   * otherwise each range is searched.
+   *
+   * @param searcher the index search to use.
+   * @param query    the query, <code>null</code> for all documents
+   * @param size     the number of facet values to calculate.
+   *
+   * @throws IOException if thrown by the searcher.
+   */
+  private void count(IndexSearcher searcher, Query query, int size) throws IOException {
+    long[][] bounds = bounds();
+    int[] counts = bounds == null ? null : NumericRangeCounter.count(searcher, query, name(), bounds);
+    if (counts == null) {
+      // no doc values, search each range
+      counts = new int[this._ranges.size()];
+      DocumentCounter counter = new DocumentCounter();
+      for (int i = 0; i < counts.length; i++) {
+        // build query
+        Query q = rangeToQuery(this._ranges.get(i));
+        if (query != null) {
+          BooleanQuery.Builder bq = new BooleanQuery.Builder();
+          bq.add(query, Occur.MUST);
+          bq.add(q, Occur.MUST);
+          q = bq.build();
+        }
+        searcher.search(q, counter);
+        counts[i] = counter.getCount();
+        counter.reset();
+      }
+    }
+    load(counts, size);
+  }
+
+  /**
+   * Loads the counts computed for the documents matching a base query by a {@link FacetRequest}.
+   *
+   * @param counts   the number of documents in each range, in the same order as the bounds
+   * @param size     the number of facet values to calculate.
+   * @param flexible whether filters were applied to the base query
+   */
+  void load(int[] counts, int size, boolean flexible) {
+    if (flexible) this.flexible = true;
+    load(counts, size);
+  }
+
+  /**
+   * @param counts the number of documents in each range
+   * @param size   the number of facet values to calculate.
+   */
+  private void load(int[] counts, int size) {
     this.totalRanges = 0;
     Bucket<Range> bucket = new Bucket<>(size);
-    DocumentCounter counter = new DocumentCounter();
-    for (Range r : this._ranges) {
-      // build query
-      searcher.search(rangeToQuery(r), counter);
-      int count = counter.getCount();
+    for (int i = 0; i < counts.length; i++) {
       // add to bucket
-      bucket.add(r, count);
-      counter.reset();
-      if (count > 0) this.totalRanges++;
+      bucket.add(this._ranges.get(i), counts[i]);
+      if (counts[i] > 0) this.totalRanges++;
     }
     this.bucket = bucket;
   }
 
+  /**
+   * @return the doc values bounds of each range or <code>null</code> if one of them is empty
+   *         or has no numeric range
+   */
+  long[][] bounds() {
+    long[][] bounds = new long[this._ranges.size()][];
+    for (int i = 0; i < bounds.length; i++) {
+      NumericRange<?> range = toNumericRange(this._ranges.get(i));
+      bounds[i] = range == null ? null : range.toDocValuesBounds();
+      if (bounds[i] == null) return null;
+    }
+    return bounds;
+  }
+
   @Override
   protected Range findRange(Term t) { return null; }
 
-  protected abstract Query rangeToQuery(Range r);
+  /**
+   * Subclasses must override this method unless they provide the numeric range of each range.
+   *
+   * @param r the range
+   *
+   * @return the query matching the documents in the range
+   */
+  protected Query rangeToQuery(Range r) {
+    NumericRange<?> range = toNumericRange(r);
+    if (range == null) throw new UnsupportedOperationException("No numeric range for range in facet " + name());
+    return range.toQuery();
+  }
+
+  /**
+   * Used to count all the ranges in a single pass, when <code>null</code> each range is searched
+   * using {@link #rangeToQuery(Range)} instead.
+   *
+   * @param r the range
+   *
+   * @return the corresponding numeric range, <code>null</code> by default
+   */
+  protected NumericRange<?> toNumericRange(Range r) {
+    return null;
+  }
 
   @Override
   public String getType() {
@@ -149,11 +223,11 @@ public abstract class NumericRangeFacet extends FlexibleRangeFacet {
       super(name, ranges);
     }
     @Override
-    protected Query rangeToQuery(Range r) {
+    protected NumericRange<?> toNumericRange(Range r) {
       return NumericRange.newIntRange(name(),
           r.getMin() == null ? null : Integer.parseInt(r.getMin()),
           r.getMax() == null ? null : Integer.parseInt(r.getMax()),
-          r.includeMin(), r.includeMax()).toQuery();
+          r.includeMin(), r.includeMax());
     }
   }
 
@@ -162,11 +236,11 @@ public abstract class NumericRangeFacet extends FlexibleRangeFacet {
       super(name, ranges);
     }
     @Override
-    protected Query rangeToQuery(Range r) {
+    protected NumericRange<?> toNumericRange(Range r) {
       return NumericRange.newFloatRange(name(),
           r.getMin() == null ? null : Float.parseFloat(r.getMin()),
           r.getMax() == null ? null : Float.parseFloat(r.getMax()),
-          r.includeMin(), r.includeMax()).toQuery();
+          r.includeMin(), r.includeMax());
     }
   }
 
@@ -175,11 +249,11 @@ public abstract class NumericRangeFacet extends FlexibleRangeFacet {
       super(name, ranges);
     }
     @Override
-    protected Query rangeToQuery(Range r) {
+    protected NumericRange<?> toNumericRange(Range r) {
       return NumericRange.newDoubleRange(name(),
           r.getMin() == null ? null : Double.parseDouble(r.getMin()),
           r.getMax() == null ? null : Double.parseDouble(r.getMax()),
-          r.includeMin(), r.includeMax()).toQuery();
+          r.includeMin(), r.includeMax());
     }
   }
 
@@ -188,11 +262,11 @@ public abstract class NumericRangeFacet extends FlexibleRangeFacet {
       super(name, ranges);
     }
     @Override
-    protected Query rangeToQuery(Range r) {
+    protected NumericRange<?> toNumericRange(Range r) {
       return NumericRange.newLongRange(name(),
           r.getMin() == null ? null : Long.parseLong(r.getMin()),
           r.getMax() == null ? null : Long.parseLong(r.getMax()),
-          r.includeMin(), r.includeMax()).toQuery();
+          r.includeMin(), r.includeMax());
     }
   }
 
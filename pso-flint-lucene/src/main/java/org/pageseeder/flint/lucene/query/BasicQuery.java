@@ -61,6 +61,11 @@ public class BasicQuery<T extends SearchParameter> implements SearchQuery {
    */
   private Sort _sort = Sort.RELEVANCE;
 
+  /**
+   * The stored fields to load for the results.
+   */
+  private FieldProjection _projection = FieldProjection.ALL;
+
   /**
    * Constructs a new query.
    *
@@ -145,6 +150,25 @@ public class BasicQuery<T extends SearchParameter> implements SearchQuery {
     return this._sort != null? this._sort : Sort.RELEVANCE;
   }
 
+  /**
+   * Defines the stored fields to load for the results.
+   *
+   * @param projection The field projection.
+   */
+  public void setFieldProjection(FieldProjection projection) {
+    this._projection = projection;
+  }
+
+  /**
+   * Returns the stored fields to load for the results.
+   *
+   * @return the field projection (defaults to all fields).
+   */
+  @Override
+  public final FieldProjection getFieldProjection() {
+    return this._projection != null? this._projection : FieldProjection.ALL;
+  }
+
   /**
    * This query is empty if the base query is empty.
    *
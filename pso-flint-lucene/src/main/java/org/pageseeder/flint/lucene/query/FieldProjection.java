@@ -0,0 +1,268 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.flint.lucene.query;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DocumentStoredFieldVisitor;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.StoredFieldVisitor;
+import org.apache.lucene.index.StoredFields;
+import org.pageseeder.flint.lucene.util.Beta;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Defines which stored fields are loaded for the documents of search results.
+ *
+ * <p>Fields which are not included or excluded are skipped by the stored fields reader without
+ * being decoded. Values longer than the max length are dropped after being read.
+ *
+ * <p>Typical usage:
+ * <pre>
+ *  query.setFieldProjection(new FieldProjection.Builder().exclude("fulltext").maxLength(1000).build());
+ * </pre>
+ */
+@Beta
+public final class FieldProjection {
+
+  /**
+   * Loads all the stored fields.
+   */
+  public static final FieldProjection ALL = new Builder().build();
+
+  /**
+   * The fields to load, empty to load all of them.
+   */
+  private final Set<String> _includes;
+
+  /**
+   * The fields not to load.
+   */
+  private final Set<String> _excludes;
+
+  /**
+   * The max length of string and binary values, 0 or less for no limit.
+   */
+  private final int _maxLength;
+
+  private FieldProjection(Builder builder) {
+    this._includes = Collections.unmodifiableSet(new HashSet<>(builder.includes));
+    this._excludes = Collections.unmodifiableSet(new HashSet<>(builder.excludes));
+    this._maxLength = builder.maxLength;
+  }
+
+  /**
+   * @return the fields to load, empty if all fields are loaded
+   */
+  public Set<String> getIncludes() {
+    return this._includes;
+  }
+
+  /**
+   * @return the fields not to load
+   */
+  public Set<String> getExcludes() {
+    return this._excludes;
+  }
+
+  /**
+   * @return the max length of values, 0 or less for no limit
+   */
+  public int getMaxLength() {
+    return this._maxLength;
+  }
+
+  /**
+   * @return <code>true</code> if all the fields are loaded
+   */
+  public boolean isAll() {
+    return this._includes.isEmpty() && this._excludes.isEmpty() && this._maxLength <= 0;
+  }
+
+  /**
+   * @param field the name of a field
+   *
+   * @return <code>true</code> if the field is loaded
+   */
+  public boolean isIncluded(String field) {
+    return (this._includes.isEmpty() || this._includes.contains(field)) && !this._excludes.contains(field);
+  }
+
+  /**
+   * Loads the fields of a document.
+   *
+   * @param fields the stored fields of the index
+   * @param doc    the document ID
+   *
+   * @return the document with the fields of this projection
+   *
+   * @throws IOException if thrown by the stored fields
+   */
+  public Document load(StoredFields fields, int doc) throws IOException {
+    return load(fields, doc, null);
+  }
+
+  /**
+   * Loads the fields of a document.
+   *
+   * @param fields    the stored fields of the index
+   * @param doc       the document ID
+   * @param unlimited the fields which are loaded whatever the projection and their length, may be <code>null</code>
+   *
+   * @return the document with the fields of this projection
+   *
+   * @throws IOException if thrown by the stored fields
+   */
+  Document load(StoredFields fields, int doc, Predicate<String> unlimited) throws IOException {
+    if (isAll()) return fields.document(doc);
+    Visitor visitor = new Visitor(unlimited);
+    fields.document(doc, visitor);
+    return visitor.getDocument();
+  }
+
+  @Override
+  public String toString() {
+    return "FieldProjection[includes=" + this._includes + ",excludes=" + this._excludes + ",max-length=" + this._maxLength + "]";
+  }
+
+  /**
+   * Only decodes the fields of this projection.
+   */
+  private final class Visitor extends StoredFieldVisitor {
+
+    private final DocumentStoredFieldVisitor document = new DocumentStoredFieldVisitor();
+
+    private final Predicate<String> unlimited;
+
+    private Visitor(Predicate<String> unlimited) {
+      this.unlimited = unlimited;
+    }
+
+    private Document getDocument() {
+      return this.document.getDocument();
+    }
+
+    @Override
+    public Status needsField(FieldInfo info) {
+      if (isIncluded(info.name)) return Status.YES;
+      return this.unlimited != null && this.unlimited.test(info.name) ? Status.YES : Status.NO;
+    }
+
+    @Override
+    public void stringField(FieldInfo info, String value) throws IOException {
+      if (fits(info, value.length())) this.document.stringField(info, value);
+    }
+
+    @Override
+    public void binaryField(FieldInfo info, byte[] value) throws IOException {
+      if (fits(info, value.length)) this.document.binaryField(info, value);
+    }
+
+    @Override
+    public void intField(FieldInfo info, int value) throws IOException {
+      this.document.intField(info, value);
+    }
+
+    @Override
+    public void longField(FieldInfo info, long value) throws IOException {
+      this.document.longField(info, value);
+    }
+
+    @Override
+    public void floatField(FieldInfo info, float value) throws IOException {
+      this.document.floatField(info, value);
+    }
+
+    @Override
+    public void doubleField(FieldInfo info, double value) throws IOException {
+      this.document.doubleField(info, value);
+    }
+
+    private boolean fits(FieldInfo info, int length) {
+      int max = FieldProjection.this._maxLength;
+      return max <= 0 || length <= max || (this.unlimited != null && this.unlimited.test(info.name));
+    }
+  }
+
+  /**
+   * Builds a field projection, all fields are loaded by default.
+   */
+  public static final class Builder {
+
+    private final Set<String> includes = new HashSet<>();
+
+    private final Set<String> excludes = new HashSet<>();
+
+    private int maxLength = 0;
+
+    /**
+     * @param fields the fields to load, all other fields are skipped
+     * @return this builder
+     */
+    public Builder include(String... fields) {
+      return include(Arrays.asList(fields));
+    }
+
+    /**
+     * @param fields the fields to load, all other fields are skipped
+     * @return this builder
+     */
+    public Builder include(Collection<String> fields) {
+      this.includes.addAll(fields);
+      return this;
+    }
+
+    /**
+     * @param fields the fields to skip
+     * @return this builder
+     */
+    public Builder exclude(String... fields) {
+      return exclude(Arrays.asList(fields));
+    }
+
+    /**
+     * @param fields the fields to skip
+     * @return this builder
+     */
+    public Builder exclude(Collection<String> fields) {
+      this.excludes.addAll(fields);
+      return this;
+    }
+
+    /**
+     * @param length the max length of string and binary values, 0 or less for no limit
+     * @return this builder
+     */
+    public Builder maxLength(int length) {
+      this.maxLength = length;
+      return this;
+    }
+
+    /**
+     * @return the new projection
+     */
+    public FieldProjection build() {
+      return new FieldProjection(this);
+    }
+  }
+
+}
@@ -20,6 +20,7 @@ import org.apache.lucene.document.FloatPoint;
 import org.apache.lucene.document.IntPoint;
 import org.apache.lucene.document.LongPoint;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.util.NumericUtils;
 import org.pageseeder.flint.catalog.Catalog;
 import org.pageseeder.flint.catalog.Catalogs;
 import org.pageseeder.flint.indexing.FlintField.NumericType;
@@ -169,6 +170,19 @@ public final class NumericRange<T extends Number> implements SearchParameter {
     return this._query;
   }
 
+  /**
+   * Returns the inclusive bounds of this range as they would be compared against the values of a
+   * <code>SortedNumericDocValues</code> field (floats and doubles use their sortable encoding).
+   *
+   * <p>The bounds match the same values as the query returned by {@link #toQuery()}.
+   *
+   * @return the lower and upper bounds or <code>null</code> if empty.
+   */
+  public long[] toDocValuesBounds() {
+    if (this._min == null && this._max == null) return null;
+    return toDocValuesBounds(this._min, this._max, this._minInclusive, this._maxInclusive);
+  }
+
   /**
    * Serialises the search query as XML.
    *
@@ -234,6 +248,47 @@ public final class NumericRange<T extends Number> implements SearchParameter {
     return null;
   }
 
+  /**
+   * Returns the doc values bounds that correspond to the specified parameters.
+   *
+   * @see #toNumericRangeQuery(String, Number, Number, boolean, boolean)
+   *
+   * @param min          the lower limit (can be null)
+   * @param max          the upper limit (can be null)
+   * @param minInclusive <code>true</code> to include the minimum value in the range; <code>false</code> to excluded it.
+   * @param maxInclusive <code>true</code> to include the maximum value in the range; <code>false</code> to excluded it.
+   *
+   * @return the inclusive lower and upper bounds
+   */
+  private static long[] toDocValuesBounds(Number min, Number max, boolean minInclusive, boolean maxInclusive) {
+    // Long
+    if (min instanceof Long || (min == null && max instanceof Long)) {
+      long minLong = min == null ? Long.MIN_VALUE : minInclusive ? (Long) min :  Math.addExact((Long) min, 1);
+      long maxLong = max == null ? Long.MAX_VALUE : maxInclusive ? (Long) max :  Math.addExact((Long) max, -1);
+      return new long[] { minLong, maxLong };
+    }
+    // Integer
+    if (min instanceof Integer || (min == null && max instanceof Integer)) {
+      int minInt = min == null ? Integer.MIN_VALUE : minInclusive ? (Integer) min :  Math.addExact((Integer) min, 1);
+      int maxInt = max == null ? Integer.MAX_VALUE : maxInclusive ? (Integer) max :  Math.addExact((Integer) max, -1);
+      return new long[] { minInt, maxInt };
+    }
+    // Double
+    if (min instanceof Double || (min == null && max instanceof Double)) {
+      double minDouble = min == null ? Double.MIN_VALUE : minInclusive ? (Double) min :  DoublePoint.nextUp((Double) min);
+      double maxDouble = max == null ? Double.MAX_VALUE : maxInclusive ? (Double) max :  DoublePoint.nextDown((Double) max);
+      return new long[] { NumericUtils.doubleToSortableLong(minDouble), NumericUtils.doubleToSortableLong(maxDouble) };
+    }
+    // Float
+    if (min instanceof Float || (min == null && max instanceof Float)) {
+      float minFloat = min == null ? Float.MIN_VALUE : minInclusive ? (Float) min :  FloatPoint.nextUp((Float) min);
+      float maxFloat = max == null ? Float.MAX_VALUE : maxInclusive ? (Float) max :  FloatPoint.nextDown((Float) max);
+      return new long[] { NumericUtils.floatToSortableInt(minFloat), NumericUtils.floatToSortableInt(maxFloat) };
+    }
+    // Should never happen
+    return null;
+  }
+
   // factory methods ------------------------------------------------------------------------------
 
   /**
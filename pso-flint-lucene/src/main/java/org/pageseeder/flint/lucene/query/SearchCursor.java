@@ -0,0 +1,227 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.flint.lucene.query;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexReaderContext;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.util.BytesRef;
+import org.pageseeder.flint.lucene.util.Beta;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+
+/**
+ * A position in search results used to retrieve the next page without collecting the previous ones.
+ *
+ * <p>The cursor holds the sort values of the last hit of a page, its position in the results and
+ * the generation of the index when it was searched. It is exchanged as an opaque token, see
+ * {@link #toString()} and {@link #parse(String)}.
+ *
+ * <p>The next page is retrieved by setting the cursor on the paging:
+ * <pre>
+ *  SearchPaging paging = new SearchPaging(1, 100);
+ *  paging.setAfter(SearchCursor.parse(token));
+ *  SearchResults results = LuceneIndexQueries.query(index, query, paging);
+ *  String next = results.getNextCursor().toString();
+ * </pre>
+ *
+ * <p>The query and sort must be the same as the ones used to get the cursor. If the index changed
+ * in the meantime, the sort values are still used to find the next page but hits with the same
+ * sort values may be skipped or repeated.
+ */
+@Beta
+public final class SearchCursor {
+
+  /**
+   * The version of the token format.
+   */
+  private static final byte VERSION = 1;
+
+  private static final byte NULL = 0;
+  private static final byte INT = 1;
+  private static final byte LONG = 2;
+  private static final byte FLOAT = 3;
+  private static final byte DOUBLE = 4;
+  private static final byte BYTES = 5;
+  private static final byte STRING = 6;
+
+  /**
+   * The last hit of the previous page.
+   */
+  private final FieldDoc _after;
+
+  /**
+   * The number of hits before the next page.
+   */
+  private final int _position;
+
+  /**
+   * The generation of the index when the cursor was created.
+   */
+  private final long _generation;
+
+  /**
+   * @param after      the last hit of the previous page
+   * @param position   the number of hits before the next page
+   * @param generation the generation of the index
+   */
+  public SearchCursor(FieldDoc after, int position, long generation) {
+    this._after = after;
+    this._position = position;
+    this._generation = generation;
+  }
+
+  /**
+   * @return the last hit of the previous page
+   */
+  public FieldDoc after() {
+    return this._after;
+  }
+
+  /**
+   * @return the number of hits before the next page
+   */
+  public int position() {
+    return this._position;
+  }
+
+  /**
+   * @return the generation of the index when the cursor was created
+   */
+  public long generation() {
+    return this._generation;
+  }
+
+  /**
+   * Returns a value which changes when the index is modified.
+   *
+   * <p>When searching multiple indexes, the generation combines the version of each index.
+   *
+   * @param reader the reader searched
+   *
+   * @return the generation of the reader
+   */
+  public static long generation(IndexReader reader) {
+    if (reader instanceof DirectoryReader) return ((DirectoryReader) reader).getVersion();
+    long generation = 0;
+    if (reader.getContext().children() != null) {
+      for (IndexReaderContext child : reader.getContext().children()) {
+        generation = generation * 31 + generation(child.reader());
+      }
+    }
+    return generation;
+  }
+
+  /**
+   * Parses a token created by {@link #toString()}.
+   *
+   * @param token the token
+   *
+   * @return the corresponding cursor
+   *
+   * @throws IllegalArgumentException if the token is invalid
+   */
+  public static SearchCursor parse(String token) {
+    try {
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)));
+      if (in.readByte() != VERSION) throw new IllegalArgumentException("Unsupported cursor version");
+      long generation = in.readLong();
+      int position = in.readInt();
+      int doc = in.readInt();
+      float score = in.readFloat();
+      Object[] fields = new Object[in.readUnsignedByte()];
+      for (int i = 0; i < fields.length; i++) {
+        byte type = in.readByte();
+        switch (type) {
+          case NULL: fields[i] = null; break;
+          case INT: fields[i] = in.readInt(); break;
+          case LONG: fields[i] = in.readLong(); break;
+          case FLOAT: fields[i] = in.readFloat(); break;
+          case DOUBLE: fields[i] = in.readDouble(); break;
+          case BYTES:
+            byte[] bytes = new byte[in.readUnsignedShort()];
+            in.readFully(bytes);
+            fields[i] = new BytesRef(bytes);
+            break;
+          case STRING: fields[i] = in.readUTF(); break;
+          default: throw new IllegalArgumentException("Invalid cursor value type " + type);
+        }
+      }
+      if (in.available() > 0) throw new IllegalArgumentException("Invalid cursor");
+      return new SearchCursor(new FieldDoc(doc, score, fields), position, generation);
+    } catch (IOException ex) {
+      throw new IllegalArgumentException("Invalid cursor", ex);
+    }
+  }
+
+  /**
+   * @return the opaque token for this cursor
+   *
+   * @throws IllegalStateException if one of the sort values is not supported
+   */
+  @Override
+  public String toString() {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeByte(VERSION);
+      out.writeLong(this._generation);
+      out.writeInt(this._position);
+      out.writeInt(this._after.doc);
+      out.writeFloat(this._after.score);
+      Object[] fields = this._after.fields == null ? new Object[0] : this._after.fields;
+      out.writeByte(fields.length);
+      for (Object field : fields) {
+        if (field == null) {
+          out.writeByte(NULL);
+        } else if (field instanceof Integer) {
+          out.writeByte(INT);
+          out.writeInt((Integer) field);
+        } else if (field instanceof Long) {
+          out.writeByte(LONG);
+          out.writeLong((Long) field);
+        } else if (field instanceof Float) {
+          out.writeByte(FLOAT);
+          out.writeFloat((Float) field);
+        } else if (field instanceof Double) {
+          out.writeByte(DOUBLE);
+          out.writeDouble((Double) field);
+        } else if (field instanceof BytesRef) {
+          BytesRef ref = (BytesRef) field;
+          if (ref.length > 0xFFFF) throw new IllegalStateException("Sort value too long for a cursor");
+          out.writeByte(BYTES);
+          out.writeShort(ref.length);
+          out.write(ref.bytes, ref.offset, ref.length);
+        } else if (field instanceof String) {
+          out.writeByte(STRING);
+          out.writeUTF((String) field);
+        } else {
+          throw new IllegalStateException("Unsupported sort value " + field.getClass().getName());
+        }
+      }
+    } catch (IOException ex) {
+      // cannot happen with a byte array
+      throw new IllegalStateException(ex);
+    }
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+  }
+
+}
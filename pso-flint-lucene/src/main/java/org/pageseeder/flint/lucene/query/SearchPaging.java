@@ -38,6 +38,11 @@ public final class SearchPaging {
    */
   public static final int DEFAULT_HITS_PER_PAGE = 20;
 
+  /**
+   * The total hits threshold to count all the hits exactly.
+   */
+  public static final int EXACT_TOTAL_HITS = Integer.MAX_VALUE;
+
   /**
    * The requested page of the search results.
    */
@@ -48,6 +53,21 @@ public final class SearchPaging {
    */
   private int _hitsPerPage = DEFAULT_HITS_PER_PAGE;
 
+  /**
+   * The position after which the hits should be returned, replaces the page if set.
+   */
+  private SearchCursor after = null;
+
+  /**
+   * Whether the cursor of the next page is returned with the results, default is false.
+   */
+  private boolean cursors = false;
+
+  /**
+   * The number of hits to count accurately, default is all of them.
+   */
+  private int _totalHitsThreshold = EXACT_TOTAL_HITS;
+
   /**
    * Creates a new paging configuration using the default values.
    */
@@ -88,9 +108,12 @@ public final class SearchPaging {
   /**
    * Returns the requested page number.
    *
+   * <p>When using a cursor, this is the page starting at the cursor's position.
+   *
    * @return The requested page number.
    */
   public int getPage() {
+    if (isCursor()) return this.after.position() / this._hitsPerPage + 1;
     return this._page;
   }
 
@@ -106,6 +129,96 @@ public final class SearchPaging {
     this._page = page;
   }
 
+  /**
+   * Sets the cursor returned with the previous page to retrieve the next one.
+   *
+   * <p>With a cursor, only the hits of the next page are collected however deep it is. The
+   * cursor is ignored if there is no limit to the number of hits per page.
+   *
+   * @param cursor the cursor, <code>null</code> to use the page number
+   */
+  public void setAfter(SearchCursor cursor) {
+    this.after = cursor;
+  }
+
+  /**
+   * @return the cursor after which the hits are returned, may be <code>null</code>
+   */
+  public SearchCursor getAfter() {
+    return this.after;
+  }
+
+  /**
+   * Sets whether the cursor to retrieve the next page is included in the results.
+   *
+   * <p>It is always included when the hits are returned after a cursor.
+   *
+   * @param cursors <code>true</code> to include the cursor of the next page
+   */
+  public void setCursors(boolean cursors) {
+    this.cursors = cursors;
+  }
+
+  /**
+   * @return <code>true</code> if the cursor of the next page is included in the results
+   */
+  public boolean useCursors() {
+    return this.cursors || isCursor();
+  }
+
+  /**
+   * @return <code>true</code> if the hits are returned after a cursor rather than by page number
+   */
+  public boolean isCursor() {
+    return this.after != null && this._hitsPerPage > 0;
+  }
+
+  /**
+   * @return the number of hits to collect to get the requested page
+   */
+  public int getHitsToCollect() {
+    if (isCursor()) return this._hitsPerPage;
+    return this._hitsPerPage * this._page;
+  }
+
+  /**
+   * Sets the number of hits to count accurately.
+   *
+   * <p>Once the threshold is reached, the search stops counting and can skip the documents which
+   * cannot make it to the requested page, the total number of hits is then a lower bound
+   * (e.g. "1000+ results"). The hits up to the end of the requested page are always counted so
+   * that there is a next page if the total is not exact.
+   *
+   * @param threshold the number of hits to count, {@link #EXACT_TOTAL_HITS} to count all of them
+   *
+   * @throws IllegalArgumentException if the threshold is negative
+   */
+  public void setTotalHitsThreshold(int threshold) {
+    if (threshold < 0) throw new IllegalArgumentException("The total hits threshold must be positive");
+    this._totalHitsThreshold = threshold;
+  }
+
+  /**
+   * @return the number of hits to count accurately
+   */
+  public int getTotalHitsThreshold() {
+    return this._totalHitsThreshold;
+  }
+
+  /**
+   * Returns the number of hits to count for the requested page.
+   *
+   * <p>It is the threshold, but at least one more than the last hit of the page so that the total
+   * is only a lower bound when there are more hits after the page.
+   *
+   * @return the total hits threshold to use for the search
+   */
+  public int getTotalHitsToCount() {
+    if (this._totalHitsThreshold == EXACT_TOTAL_HITS || this._hitsPerPage <= 0) return EXACT_TOTAL_HITS;
+    long end = (long) getFirstHit() - 1 + this._hitsPerPage;
+    return (int) Math.min(EXACT_TOTAL_HITS, Math.max(this._totalHitsThreshold, end + 1));
+  }
+
   // Methods providing common function for a result set
   // ----------------------------------------------------------------------------------------------
 
@@ -122,6 +235,7 @@ public final class SearchPaging {
    */
   public int getFirstHit() {
     if (this._hitsPerPage <= 0) return 1;
+    if (isCursor()) return this.after.position() + 1;
     return this._hitsPerPage * (this._page - 1) + 1;
   }
 
@@ -140,6 +254,7 @@ public final class SearchPaging {
    */
   public int getLastHit(int totalHits) {
     if (this._hitsPerPage <= 0) return totalHits;
+    if (isCursor()) return Math.min(totalHits, this.after.position() + this._hitsPerPage);
     return Math.min(totalHits, this._hitsPerPage * this._page);
   }
 
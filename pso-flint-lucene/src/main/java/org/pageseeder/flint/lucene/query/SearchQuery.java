@@ -58,4 +58,13 @@ public interface SearchQuery extends SearchParameter {
    */
   Sort getSort();
 
+  /**
+   * Returns the stored fields to load for the documents in the results.
+   *
+   * @return The field projection, all fields by default.
+   */
+  default FieldProjection getFieldProjection() {
+    return FieldProjection.ALL;
+  }
+
 }
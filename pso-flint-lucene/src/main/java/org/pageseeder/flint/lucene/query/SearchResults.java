@@ -20,10 +20,13 @@ import org.apache.lucene.document.Document;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.search.TotalHits;
 import org.pageseeder.flint.IndexException;
 import org.pageseeder.flint.indexing.FlintDocument;
 import org.pageseeder.flint.indexing.FlintField;
@@ -126,11 +129,31 @@ public final class SearchResults implements XMLWritable {
    */
   private final List<String> extractFields = new ArrayList<>();
 
+  /**
+   * The stored fields to load for each document.
+   */
+  private FieldProjection projection;
+
   /**
    * The total number of results.
    */
   private final int totalNbOfResults;
 
+  /**
+   * Whether the total number of results is exact or a lower bound.
+   */
+  private final TotalHits.Relation _totalRelation;
+
+  /**
+   * The position in the results of the first score doc, not 0 when using a cursor.
+   */
+  private final int _offset;
+
+  /**
+   * The generation of the index searched.
+   */
+  private final long _generation;
+
   // State variables
   // ---------------------------------------------------------------------------------------------
 
@@ -158,7 +181,7 @@ public final class SearchResults implements XMLWritable {
    *
    */
   public SearchResults(SearchQuery query, TopFieldDocs docs, SearchPaging paging, Map<LuceneIndexIO, IndexReader> readers, IndexSearcher searcher) {
-    this(query, null, docs.scoreDocs, docs.fields, (int) docs.totalHits.value, paging, new SearchReaders(readers), searcher);
+    this(query, null, docs.scoreDocs, docs.fields, (int) docs.totalHits.value, docs.totalHits.relation, paging, new SearchReaders(readers), searcher);
   }
 
   /**
@@ -172,7 +195,7 @@ public final class SearchResults implements XMLWritable {
    *
    */
   public SearchResults(SearchQuery query, TopFieldDocs docs, SearchPaging paging, LuceneIndexIO io, IndexSearcher searcher) {
-    this(query, null, docs.scoreDocs, docs.fields, (int) docs.totalHits.value, paging, new SearchReaders(io), searcher);
+    this(query, null, docs.scoreDocs, docs.fields, (int) docs.totalHits.value, docs.totalHits.relation, paging, new SearchReaders(io), searcher);
   }
 
   /**
@@ -203,6 +226,34 @@ public final class SearchResults implements XMLWritable {
     this(query, null, docs, null, totalHits, paging, new SearchReaders(readers), searcher);
   }
 
+  /**
+   * Creates a new SearchResults.
+   *
+   * @param query     The search query that was used to produce these results.
+   * @param docs      The actual search results from Lucene in ScoreDoc.
+   * @param totalHits The total number of hits, which may be a lower bound.
+   * @param paging    The paging configuration.
+   * @param io        The IndexIO object, used to release the searcher when terminated
+   * @param searcher  The Lucene searcher.
+   */
+  public SearchResults(SearchQuery query, ScoreDoc[] docs, TotalHits totalHits, SearchPaging paging, LuceneIndexIO io, IndexSearcher searcher) {
+    this(query, null, docs, null, (int) totalHits.value, totalHits.relation, paging, new SearchReaders(io), searcher);
+  }
+
+  /**
+   * Creates a new SearchResults.
+   *
+   * @param query     The search query that was used to produce these results.
+   * @param docs      The actual search results from Lucene in ScoreDoc.
+   * @param totalHits The total number of hits, which may be a lower bound.
+   * @param paging    The paging configuration.
+   * @param readers   The list of readers to be released at the end
+   * @param searcher  The Lucene searcher.
+   */
+  public SearchResults(SearchQuery query, ScoreDoc[] docs, TotalHits totalHits, SearchPaging paging, Map<LuceneIndexIO, IndexReader> readers, IndexSearcher searcher) {
+    this(query, null, docs, null, (int) totalHits.value, totalHits.relation, paging, new SearchReaders(readers), searcher);
+  }
+
   /**
    * Creates a new SearchResults.
    *
@@ -216,6 +267,24 @@ public final class SearchResults implements XMLWritable {
   public SearchResults(SearchQuery query, Analyzer analyzer, ScoreDoc[] hits,
                        SortField[] sortf, int totalResults,
                        SearchPaging paging, SearchReaders readers, IndexSearcher searcher) {
+    this(query, analyzer, hits, sortf, totalResults, TotalHits.Relation.EQUAL_TO, paging, readers, searcher);
+  }
+
+  /**
+   * Creates a new SearchResults.
+   *
+   * @param query The original query
+   * @param hits The actual search results from Lucene in ScoreDoc.
+   * @param sortf The Field used to sort the results
+   * @param totalResults The total number of results
+   * @param relation Whether the total number of results is exact or a lower bound
+   * @param paging The paging configuration.
+   * @param readers The IndexIO object, used to release the searcher when terminated
+   * @param searcher The Lucene searcher.
+   */
+  public SearchResults(SearchQuery query, Analyzer analyzer, ScoreDoc[] hits,
+                       SortField[] sortf, int totalResults, TotalHits.Relation relation,
+                       SearchPaging paging, SearchReaders readers, IndexSearcher searcher) {
     this._query = query;
     this._analyzer = analyzer;
     this._scoredocs = hits;
@@ -224,6 +293,10 @@ public final class SearchResults implements XMLWritable {
     this._searcher = searcher;
     this.readers = readers;
     this.totalNbOfResults = totalResults;
+    this._totalRelation = relation;
+    this.projection = query != null ? query.getFieldProjection() : FieldProjection.ALL;
+    this._offset = this._paging.isCursor() ? this._paging.getAfter().position() : 0;
+    this._generation = searcher == null ? 0 : SearchCursor.generation(searcher.getIndexReader());
     // default timezone is the server's
     TimeZone tz = TimeZone.getDefault();
     this.timezoneOffset = tz.getRawOffset();
@@ -256,6 +329,23 @@ public final class SearchResults implements XMLWritable {
     this.extractFields.add(field);
   }
 
+  /**
+   * Sets the stored fields to load for the documents in these results, overriding the projection
+   * of the query.
+   *
+   * @param projection the field projection, <code>null</code> to load all fields
+   */
+  public void setFieldProjection(FieldProjection projection) {
+    this.projection = projection != null ? projection : FieldProjection.ALL;
+  }
+
+  /**
+   * @return the stored fields loaded for the documents in these results
+   */
+  public FieldProjection getFieldProjection() {
+    return this.projection;
+  }
+
   /**
    * Returns the total number of results.
    *
@@ -265,6 +355,24 @@ public final class SearchResults implements XMLWritable {
     return this.totalNbOfResults;
   }
 
+  /**
+   * Indicates whether the total number of results is exact or a lower bound.
+   *
+   * @return {@link TotalHits.Relation#GREATER_THAN_OR_EQUAL_TO} if the search stopped counting the hits
+   *
+   * @see SearchPaging#setTotalHitsThreshold(int)
+   */
+  public TotalHits.Relation getTotalRelation() {
+    return this._totalRelation;
+  }
+
+  /**
+   * @return <code>true</code> if the total number of results is exact
+   */
+  public boolean isTotalExact() {
+    return this._totalRelation == TotalHits.Relation.EQUAL_TO;
+  }
+
   /**
    * Indicates whether the search results are empty.
    *
@@ -330,12 +438,17 @@ public final class SearchResults implements XMLWritable {
     xml.openElement("documents", true);
 
     // Iterate over the hits to find the extracts
-    for (int i = firsthit - 1; i < lasthit; i++) {
-      String score = Float.toString(this._scoredocs[i].score);
-      Document doc = this._searcher.storedFields().document(this._scoredocs[i].doc);
+    StoredFields stored = this._searcher.storedFields();
+    for (int i = firsthit - 1; i < lasthit && i - this._offset < this._scoredocs.length; i++) {
+      ScoreDoc hit = this._scoredocs[i - this._offset];
+      String score = Float.toString(hit.score);
       String extractXML = null;
+      boolean highlight = this._query != null && this._analyzer != null;
+      // fields used for extracts are loaded whatever the projection and their length
+      Document doc = this.projection.load(stored, hit.doc,
+          highlight ? (this.extractFields.isEmpty() ? this.projection::isIncluded : this.extractFields::contains) : null);
 
-      if (this._query != null && this._analyzer != null) {
+      if (highlight) {
         Highlighter highlighter = new Highlighter(this._query.toQuery(), this._searcher.getIndexReader(), this._analyzer);
         for (IndexableField f : doc.getFields()) {
           if (this.extractFields.isEmpty() || this.extractFields.contains(f.name())) {
@@ -351,6 +464,10 @@ public final class SearchResults implements XMLWritable {
             }
           }
         }
+        // only loaded for the extract
+        for (String field : this.extractFields) {
+          if (!this.projection.isIncluded(field)) doc.removeFields(field);
+        }
       }
       // document as XML
       documentToXML(doc, extractXML, score, this.timezoneOffset, xml);
@@ -504,9 +621,49 @@ public final class SearchResults implements XMLWritable {
     return this._paging.getLastHit(this.totalNbOfResults);
   }
 
+  /**
+   * Returns the cursor to use to retrieve the page after this one.
+   *
+   * @return the cursor or <code>null</code> if this is the last page or the hits are not sorted by fields
+   */
+  public SearchCursor getNextCursor() {
+    int last = getLastHit() - this._offset - 1;
+    if (this._paging.getHitsPerPage() <= 0 || getLastHit() >= this.totalNbOfResults
+        || last < 0 || last >= this._scoredocs.length || !(this._scoredocs[last] instanceof FieldDoc)) return null;
+    return new SearchCursor((FieldDoc) this._scoredocs[last], getLastHit(), this._generation);
+  }
+
+  /**
+   * @return the next cursor as a string or <code>null</code> if there is none or it cannot be encoded
+   */
+  private String nextCursor() {
+    SearchCursor next = getNextCursor();
+    if (next == null) return null;
+    try {
+      return next.toString();
+    } catch (IllegalStateException ex) {
+      LOGGER.warn("Unable to create cursor for next page: {}", ex.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Indicates whether the index changed since the cursor used to get these results was created.
+   *
+   * <p>If it did, hits with the same sort values as the last hit of the previous page may have been
+   * skipped or repeated.
+   *
+   * @return <code>true</code> if a cursor was used and the index has changed since
+   */
+  public boolean isCursorStale() {
+    return this._paging.isCursor() && this._paging.getAfter().generation() != this._generation;
+  }
+
   /**
    * Return the actual results.
    *
+   * <p>When using a cursor, the results only include the hits of the page, starting at index 0.
+   *
    * @return the search results.
    *
    * @throws IndexException If the search results have already been terminated.
@@ -570,7 +727,7 @@ public final class SearchResults implements XMLWritable {
   public Iterable<Document> documents() {
     if (this._terminated)
       throw new IllegalStateException();
-    return new DocIterable(this._paging.getFirstHit() - 1, getLastHit());
+    return new DocIterable(this._paging.getFirstHit() - 1 - this._offset, getLastHit() - this._offset);
   }
 
   // Private helpers
@@ -590,7 +747,10 @@ public final class SearchResults implements XMLWritable {
     xml.openElement("metadata", true);
     xml.openElement("hits", true);
     xml.element("per-page", Integer.toString(page.getHitsPerPage()));
-    xml.element("total", Integer.toString(total));
+    xml.openElement("total");
+    if (!isTotalExact()) xml.attribute("relation", "greater-than-or-equal-to");
+    xml.writeText(Integer.toString(total));
+    xml.closeElement();
     xml.closeElement();
     xml.openElement("page", true);
     xml.element("first-hit", Integer.toString(page.getFirstHit()));
@@ -598,6 +758,13 @@ public final class SearchResults implements XMLWritable {
     xml.element("current",   Integer.toString(page.getPage()));
     xml.element("last",      Integer.toString(page.getPageCount(total)));
     xml.closeElement();
+    if (page.useCursors()) {
+      xml.openElement("cursor");
+      String next = nextCursor();
+      if (next != null) xml.attribute("next", next);
+      if (isCursorStale()) xml.attribute("stale", "true");
+      xml.closeElement();
+    }
     if (this._sortfields != null) {
       xml.openElement("sort-fields", true);
       for (SortField field : this._sortfields) {
@@ -683,7 +850,7 @@ public final class SearchResults implements XMLWritable {
     public Document next() {
       if (!hasNext()) throw new NoSuchElementException();
       try {
-        return this.searcher.storedFields().document(this.scoredocs[this.index++].doc);
+        return SearchResults.this.projection.load(this.searcher.storedFields(), this.scoredocs[this.index++].doc);
       } catch (IOException ex) {
         throw new IllegalStateException("Error retrieving document", ex);
       }
@@ -3,29 +3,120 @@ package org.pageseeder.flint.lucene.search;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.CharArraySet;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.codecs.StoredFieldsReader;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DocumentStoredFieldVisitor;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StoredValue;
 import org.apache.lucene.index.*;
 import org.apache.lucene.search.suggest.Lookup.LookupResult;
 import org.apache.lucene.search.suggest.analyzing.AnalyzingInfixSuggester;
+import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.ByteBuffersDirectory;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.NumericUtils;
 import org.pageseeder.flint.Index;
 import org.pageseeder.flint.IndexException;
+import org.pageseeder.flint.IndexIO;
 import org.pageseeder.flint.IndexManager;
+import org.pageseeder.flint.catalog.Catalog;
+import org.pageseeder.flint.catalog.Catalogs;
+import org.pageseeder.flint.indexing.FlintField;
+import org.pageseeder.flint.lucene.IndexChangeListener;
+import org.pageseeder.flint.lucene.LuceneDeleteRule;
+import org.pageseeder.flint.lucene.LuceneIndexIO;
+import org.pageseeder.flint.lucene.LuceneIndexQueries;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.*;
+import java.io.IOException;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Suggests entries matching the beginning of words, built from the terms or the documents of an index.
+ *
+ * <p>Lookups do not block: while the suggester is being rebuilt, they keep using the previous
+ * entries until the new ones are all added and made visible in one step.
+ *
+ * <p>When built from documents with an ID field, the suggester is updated incrementally: the
+ * entries of the documents changed in the index are replaced after each refresh of the index. A
+ * full build is only needed when the changes cannot be applied to the entries, for example when
+ * documents are deleted with a query or the index is cleared, {@link #isCurrent()} then returns
+ * <code>false</code>.
+ *
+ * <p>When built from documents, the search, criteria and weight fields are read from their doc
+ * values if the catalog of the index indicates they have some, which is much faster than loading
+ * the stored fields. The segments of the index can also be read by several threads at once, see
+ * {@link #setBuildThreads(int)}.
+ */
 public class AutoSuggest {
 
   private final static Logger LOGGER = LoggerFactory.getLogger(AutoSuggest.class);
 
-  private final AnalyzingInfixSuggester suggester;
+  /**
+   * The field the infix suggester indexes the contexts of its entries in.
+   */
+  private final static String CONTEXTS_FIELD = "contexts";
+
+  /**
+   * Prefix of the context identifying the document of an entry.
+   */
+  private final static String ID_CONTEXT = "\u0000";
+
+  /**
+   * The thread used to rebuild the suggesters in the background.
+   */
+  private final static ExecutorService BUILDER = Executors.newSingleThreadExecutor(r -> {
+    Thread t = new Thread(r, "flint-autosuggest");
+    t.setDaemon(true);
+    return t;
+  });
+
+  private final Suggester suggester;
+
+  /**
+   * Only one build at a time, lookups do not use this lock.
+   */
+  private final Object _buildLock = new Object();
+
+  private final AtomicBoolean _building = new AtomicBoolean(false);
+
+  private volatile boolean closed = false;
+
+  /**
+   * The stored field identifying the documents, <code>null</code> unless updated incrementally.
+   */
+  private final String _idField;
+
+  /**
+   * The changes made to the index waiting to be applied to the entries.
+   */
+  private final List<Change> _pending = new ArrayList<>();
+
+  private final AtomicBoolean _applying = new AtomicBoolean(false);
+
+  /**
+   * Set when some changes could not be applied incrementally.
+   */
+  private volatile boolean stale = false;
+
+  /**
+   * Set while a build is in progress and left set if it failed, the entries it deleted must not be
+   * made visible to lookups until a build succeeds.
+   */
+  private volatile boolean failed = false;
+
+  private final IndexChangeListener _changes = new Changes();
 
   private final List<String> _resultFields = new ArrayList<>();
 
@@ -42,18 +133,29 @@ public class AutoSuggest {
 
   private final Map<String, Float> _weights = new HashMap<>();
 
-  private long lastBuilt = -1;
+  private volatile long lastBuilt = -1;
+
+  /**
+   * The number of segments read at the same time when building from documents.
+   */
+  private volatile int buildThreads = 1;
 
-  private AutoSuggest(String name, Index index, Directory dir, Analyzer indexAnalyzer, Analyzer searchAnalyzer, boolean useTerms, int minChars) throws IndexException {
+  private AutoSuggest(String name, Index index, Directory dir, Analyzer indexAnalyzer, Analyzer searchAnalyzer, boolean useTerms, int minChars, String idField) throws IndexException {
     this._name = name;
     this._index = index;
     this._useTerms = useTerms;
+    // terms depend on all the documents so can't be updated incrementally
+    IndexIO io = index.getIndexIO();
+    boolean incremental = idField != null && !useTerms && io instanceof LuceneIndexIO;
+    this._idField = incremental ? idField : null;
     try {
-      this.suggester = new AnalyzingInfixSuggester(dir, indexAnalyzer, searchAnalyzer, minChars, true, true, true);
+      this.suggester = new Suggester(dir, indexAnalyzer, searchAnalyzer, minChars);
     } catch (IOException ex) {
       LOGGER.error("Failed to build autosuggest {}", this._name, ex);
       throw new IndexException("Failed to build autosuggest", ex);
     }
+    // not before the suggester is created, the listener would never be removed if that failed
+    if (incremental) ((LuceneIndexIO) io).addChangeListener(this._changes);
   }
 
   public List<String> getSearchFields() {
@@ -105,11 +207,46 @@ public class AutoSuggest {
     }
   }
 
+  /**
+   * @param threads the number of segments read at the same time when building from documents
+   */
+  public void setBuildThreads(int threads) {
+    this.buildThreads = Math.max(1, threads);
+  }
+
+  public int getBuildThreads() {
+    return this.buildThreads;
+  }
+
   public long getLastBuilt() {
     return this.lastBuilt;
   }
 
+  /**
+   * @return the stored field identifying the documents, <code>null</code> unless updated incrementally
+   */
+  public String getIdField() {
+    return this._idField;
+  }
+
+  /**
+   * @return <code>true</code> if the entries are updated when the index changes
+   */
+  public boolean isIncremental() {
+    return this._idField != null;
+  }
+
+  /**
+   * Indicates whether the entries reflect the index.
+   *
+   * <p>An incremental suggester is current once built unless some changes could not be applied.
+   * A suggester whose last build failed is never current.
+   *
+   * @return <code>true</code> if the suggester does not need to be built again
+   */
   public boolean isCurrent() {
+    if (this.failed) return false;
+    if (this._idField != null) return this.lastBuilt != -1 && !this.stale;
     return this._index.getIndexIO().getLastTimeUsed() < this.lastBuilt;
   }
 
@@ -122,13 +259,33 @@ public class AutoSuggest {
     return this.isCurrent();
   }
 
+  /**
+   * @return <code>true</code> if this suggester is being rebuilt in the background
+   */
+  public boolean isBuilding() {
+    return this._building.get();
+  }
+
+  /**
+   * Replaces all the entries with the ones from the reader provided.
+   *
+   * <p>Lookups made during the build return the previous entries.
+   *
+   * @param reader the reader to load the entries from
+   */
   public void build(IndexReader reader) {
-    // can't search while we're building it
-    synchronized (this.suggester) {
+    synchronized (this._buildLock) {
+      if (this.closed) return;
+      // changes made to the index from now on are not included
+      long started = System.currentTimeMillis();
+      this.stale = false;
+      this.failed = true;
       try {
+        this.suggester.clear();
         boolean buildit = false;
         if (this._useTerms) {
           for (String field : this._searchFields) {
+            if (this.closed) return;
             org.apache.lucene.index.Terms terms = MultiTerms.getTerms(reader, field);
             if (terms == null) continue;
             TermsEnum termsEnum = terms.iterator();
@@ -139,143 +296,241 @@ public class AutoSuggest {
             }
           }
         } else {
-          Set<String> fieldsToLoad = new HashSet<>();
-          fieldsToLoad.addAll(this._resultFields);
-          fieldsToLoad.addAll(this._searchFields);
-          fieldsToLoad.addAll(this._weights.keySet());
-          if (this._withField != null) fieldsToLoad.add(this._withField);
-          for (LeafReaderContext ctxt : reader.leaves()) {
-            if (addEntries(ctxt, fieldsToLoad)) {
-              buildit = true;
-            }
-          }
+          Sources sources = new Sources(Catalogs.getCatalog(this._index.getCatalog()));
+          buildit = addEntries(reader.leaves(), sources);
+          if (this.closed) return;
         }
-        if (buildit) {
+        // replay the changes made since, they may already be in the reader
+        if (applyPending()) buildit = true;
+        // lookups switch to the new entries once refreshed, including when all entries were removed
+        if (buildit || this.lastBuilt != -1) {
           this.suggester.refresh();
-          this.lastBuilt = System.currentTimeMillis();
+          this.lastBuilt = started;
         }
+        this.failed = false;
       } catch (IOException | IllegalStateException ex) {
         LOGGER.error("Failed to build dictionary for autosuggest {}", this._name, ex);
+        this.stale = true;
       }
     }
   }
 
   /**
-   * Add entries to the suggester
+   * Rebuilds this suggester in a background thread using a reader on its index.
    *
-   * @param context    where to read the documents from
-   * @param fieldsToLoad the fields to add
+   * <p>Lookups keep returning the previous entries until the build is complete.
+   *
+   * @return <code>true</code> if the build was started, <code>false</code> if a build is already in progress
+   */
+  public boolean buildInBackground() {
+    if (this.closed || !this._building.compareAndSet(false, true)) return false;
+    try {
+      BUILDER.execute(() -> {
+        IndexReader reader = null;
+        try {
+          reader = LuceneIndexQueries.grabReader(this._index);
+          if (reader != null) build(reader);
+        } finally {
+          LuceneIndexQueries.releaseQuietly(this._index, reader);
+          this._building.set(false);
+        }
+      });
+    } catch (RejectedExecutionException ex) {
+      LOGGER.error("Failed to start building autosuggest {}", this._name, ex);
+      this._building.set(false);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Add the entries of all the segments to the suggester, using several threads if allowed.
+   *
+   * @param leaves  the segments to read the documents from
+   * @param sources where to read the fields from
    *
    * @return <code>true</code> if something was added
    *
    * @throws IOException if reading/adding entries failed
    */
-  private boolean addEntries(LeafReaderContext context, Set<String> fieldsToLoad) throws IOException {
+  private boolean addEntries(List<LeafReaderContext> leaves, Sources sources) throws IOException {
     boolean buildit = false;
-    // check for leaves
-    try (LeafReader subReader = context.reader()) {
-      List<LeafReaderContext> leaves = subReader.leaves();
-      if (leaves != null && !leaves.isEmpty()) {
-        if (leaves.size() > 1 || leaves.get(0) != context) {
-          for (LeafReaderContext ctxt : leaves) {
-            if (addEntries(ctxt, fieldsToLoad)) {
-              buildit = true;
-            }
-          }
-          return buildit;
-        }
+    int threads = Math.min(this.buildThreads, leaves.size());
+    if (threads <= 1) {
+      for (LeafReaderContext leaf : leaves) {
+        if (this.closed) break;
+        if (addEntries(leaf.reader(), sources)) buildit = true;
       }
-      // go through our docs then
-      Bits live = subReader.getLiveDocs();
-      for (int i = 0; i < subReader.maxDoc(); i++) {
-        if (live != null && !live.get(i)) continue;
-        Document doc = subReader.storedFields().document(i, fieldsToLoad);
-        // load criteria values
-        Set<BytesRef> contexts = null;
-        if (this._withField != null) {
-          String[] with = doc.getValues(this._withField);
-          if (with != null) {
-            contexts = new HashSet<>();
-            for (String w : with) {
-              contexts.add(new BytesRef(w));
-            }
-          }
+      return buildit;
+    }
+    // largest segments first so that the threads finish at about the same time
+    List<LeafReaderContext> sorted = new ArrayList<>(leaves);
+    sorted.sort((a, b) -> Integer.compare(b.reader().maxDoc(), a.reader().maxDoc()));
+    List<Callable<Boolean>> tasks = new ArrayList<>(sorted.size());
+    for (LeafReaderContext leaf : sorted) {
+      tasks.add(() -> addEntries(leaf.reader(), sources));
+    }
+    ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+      Thread t = new Thread(r, "flint-autosuggest-build");
+      t.setDaemon(true);
+      return t;
+    });
+    try {
+      for (Future<Boolean> result : pool.invokeAll(tasks)) {
+        if (result.get()) buildit = true;
+      }
+      return buildit;
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while building autosuggest " + this._name, ex);
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof IOException) throw (IOException) ex.getCause();
+      if (ex.getCause() instanceof RuntimeException) throw (RuntimeException) ex.getCause();
+      throw new IOException("Failed to build autosuggest " + this._name, ex.getCause());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Add the entries of a segment to the suggester
+   *
+   * <p>The segment reader belongs to the index reader so must not be closed.
+   *
+   * @param reader  where to read the documents from
+   * @param sources where to read the fields from
+   *
+   * @return <code>true</code> if something was added
+   *
+   * @throws IOException if reading/adding entries failed
+   */
+  private boolean addEntries(LeafReader reader, Sources sources) throws IOException {
+    boolean buildit = false;
+    Segment segment = new Segment(reader, sources);
+    Bits live = reader.getLiveDocs();
+    for (int i = 0; i < reader.maxDoc(); i++) {
+      if (live != null && !live.get(i)) continue;
+      if (this.closed) break;
+      Document doc = segment.load(i);
+      if (addDocument(doc, this._idField == null ? null : doc.get(this._idField))) {
+        buildit = true;
+      }
+    }
+    return buildit;
+  }
+
+  /**
+   * Add the entries of a document to the suggester
+   *
+   * @param doc the document with the values of the fields needed
+   * @param id  the ID of the document, <code>null</code> if not updated incrementally
+   *
+   * @return <code>true</code> if something was added
+   */
+  private boolean addDocument(Document doc, String id) {
+    boolean buildit = false;
+    // load criteria values
+    Set<BytesRef> contexts = null;
+    if (this._withField != null) {
+      String[] with = doc.getValues(this._withField);
+      if (with != null) {
+        contexts = new HashSet<>();
+        for (String w : with) {
+          contexts.add(new BytesRef(w));
         }
-        // find doc weight
-        float weightF = 0;
-        for (Entry<String, Float> aweight : this._weights.entrySet()) {
-          String val = doc.get(aweight.getKey());
+      }
+    }
+    // so that the entries of the document can be replaced
+    if (id != null) {
+      if (contexts == null) contexts = new HashSet<>();
+      contexts.add(idContext(id));
+    }
+    // find doc weight
+    float weightF = 0;
+    for (Entry<String, Float> aweight : this._weights.entrySet()) {
+      IndexableField field = doc.getField(aweight.getKey());
+      // numbers from doc values or numeric stored fields don't need parsing
+      Number number = field == null ? null : field.numericValue();
+      String val = field == null ? null : field.stringValue();
+      try {
+        // default value is 1 if missing
+        weightF += aweight.getValue() * (number != null ? number.floatValue() : val == null ? 1 : Float.parseFloat(val));
+      } catch (NumberFormatException ex) {
+        LOGGER.error("Failed to compute weight as field {} is not a number! ({})", aweight.getKey(), val);
+      }
+    }
+    // mutiply by 100 to turn to long (2 decimal precision)
+    long weight = weightF == 0 ? 100 : (long) (weightF * 100);
+    // create payload
+    BytesRef payload = AutoSuggestPayload.encode(this._resultFields, doc);
+    for (String field : this._searchFields) {
+      String[] texts = doc.getValues(field);
+      if (texts != null) {
+        for (String text : texts) {
           try {
-            // default value is 1 if missing
-            weightF += aweight.getValue() * (val == null ? 1 : Float.parseFloat(val));
-          } catch (NumberFormatException ex) {
-            LOGGER.error("Failed to compute weight as field {} is not a number! ({})", aweight.getKey(), val);
+            this.suggester.add(new BytesRef(text), contexts, weight, payload);
+          } catch (Exception ex) {
+            LOGGER.error("Failed to add text for field {} to autosuggest {}", field, this._name);
           }
+          buildit = true;
         }
-        // mutiply by 100 to turn to long (2 decimal precision)
-        long weight = weightF == 0 ? 100 : (long) (weightF * 100);
-        // create payload
-        byte[] serialized = serialize(this._resultFields, doc);
-        BytesRef payload = serialized == null ? null : new BytesRef(serialized);
-        for (String field : this._searchFields) {
-          String[] texts = doc.getValues(field);
-          if (texts != null) {
-            for (String text : texts) {
-              try {
-                this.suggester.add(new BytesRef(text), contexts, weight, payload);
-              } catch (Exception ex) {
-                LOGGER.error("Failed to add text for field {} to autosuggest {}", field, this._name);
-              }
-              buildit = true;
-            }
-          } else {
-            LOGGER.error("Failed to load values for field {} in autosuggest {}", field, this._name);
+      } else {
+        LOGGER.error("Failed to load values for field {} in autosuggest {}", field, this._name);
+      }
+    }
+    return buildit;
+  }
+
+  /**
+   * Applies the changes made to the index and makes them visible to lookups.
+   */
+  private void applyChanges() {
+    synchronized (this._buildLock) {
+      if (this.closed) return;
+      try {
+        // the next build includes them, refreshing after a failed build would publish its deletions
+        if (this.lastBuilt == -1 || this.failed) {
+          synchronized (this._pending) {
+            this._pending.clear();
           }
+        } else if (applyPending()) {
+          this.suggester.refresh();
         }
+      } catch (IOException | IllegalStateException ex) {
+        LOGGER.error("Failed to update autosuggest {}", this._name, ex);
+        this.stale = true;
       }
     }
-    return buildit;
   }
 
   /**
-   * Serialize the fields provided into a payload for a suggester entry.
+   * Replaces the entries of the documents changed, must be called while holding the build lock.
    *
-   * @param fields  list of fields to load from the document
-   * @param doc     the document
+   * @return <code>true</code> if some changes were applied
    *
-   * @return the payload as a byte array
+   * @throws IOException if thrown by the suggester
    */
-  private static byte[] serialize(Collection<String> fields, Document doc) {
-    if (fields.isEmpty()) return null;
-    // build map
-    Map<String, String[]> result = new HashMap<>();
-    for (String field : fields) {
-      String[] values = doc.getValues(field);
-      if (values != null) result.put(field, values);
-    }
-    // serialize it
-    ByteArrayOutputStream bos = new ByteArrayOutputStream();
-    try {
-      ObjectOutputStream out = new ObjectOutputStream(bos);
-      out.writeObject(result);
-      out.close();
-    } catch (IOException ex) {
-      // all internal so shouldn't happen
-      LOGGER.error("Failed to build payload", ex);
-      return null;
+  private boolean applyPending() throws IOException {
+    List<Change> changes;
+    synchronized (this._pending) {
+      if (this._pending.isEmpty()) return false;
+      changes = new ArrayList<>(this._pending);
+      this._pending.clear();
+    }
+    for (Change change : changes) {
+      if (change.deleted != null) this.suggester.delete(idContext(change.deleted));
+      for (Document doc : change.documents) {
+        String id = doc.get(this._idField);
+        // the entries could not be removed later
+        if (id == null) this.stale = true;
+        else addDocument(doc, id);
+      }
     }
-    return bos.toByteArray();
+    return true;
   }
 
-  @SuppressWarnings("unchecked")
-  private Map<String, String[]> deserialize(byte[] bytes) throws IOException {
-    ByteArrayInputStream bis = new ByteArrayInputStream(bytes);
-    ObjectInputStream in = new ObjectInputStream(bis);
-    try {
-      return (Map<String, String[]>) in.readObject();
-    } catch (ClassNotFoundException ex) {
-      throw new IOException("Class not found when deserializing", ex);
-    }
+  private static BytesRef idContext(String id) {
+    return new BytesRef(ID_CONTEXT + id);
   }
 
   public List<Suggestion> suggest(String text) {
@@ -296,7 +551,7 @@ public class AutoSuggest {
       LOGGER.warn("Loading suggestions with empty suggester for autosuggest {}!", this._name);
       return suggestions;
     }
-    if (this.suggester == null) return suggestions;
+    if (this.closed) return suggestions;
     Set<BytesRef> contexts = null;
     if (criteria != null && !criteria.isEmpty()) {
       if (this._useTerms)
@@ -307,12 +562,13 @@ public class AutoSuggest {
       }
     }
     List<LookupResult> results = null;
-    synchronized (this.suggester) {
-      try {
-        results = this.suggester.lookup(text, contexts, false, nb);
-      } catch (IOException ex) {
-        LOGGER.error("Failed to lookup suggestions for autosuggest {}", this._name, ex);
-      }
+    try {
+      // the suggester is thread safe, lookups use the entries visible when they start
+      results = this.suggester.lookup(text, contexts, false, nb);
+    } catch (IOException ex) {
+      LOGGER.error("Failed to lookup suggestions for autosuggest {}", this._name, ex);
+    } catch (AlreadyClosedException ex) {
+      LOGGER.warn("Autosuggest {} closed during lookup", this._name);
     }
     if (results != null) {
       for (LookupResult result : results) {
@@ -322,7 +578,7 @@ public class AutoSuggest {
         suggestion.weight = result.value;
         if (result.payload != null) {
           try {
-            suggestion.document = deserialize(result.payload.bytes);
+            suggestion.document = AutoSuggestPayload.decode(this._resultFields, result.payload);
           } catch (IOException ex) {
             LOGGER.error("Failed to deserialize suggestion payload", ex);
           }
@@ -335,12 +591,342 @@ public class AutoSuggest {
   }
 
   public void close() {
-    try {
-      this.suggester.close();
-    } catch (IOException ex) {
-      LOGGER.error("Failed to close autosuggest {}", this._name, ex);
+    // stops any build in progress
+    this.closed = true;
+    if (this._idField != null) {
+      ((LuceneIndexIO) this._index.getIndexIO()).removeChangeListener(this._changes);
+    }
+    synchronized (this._buildLock) {
+      try {
+        this.suggester.close();
+      } catch (IOException ex) {
+        LOGGER.error("Failed to close autosuggest {}", this._name, ex);
+      }
+    }
+  }
+
+  /**
+   * An infix suggester whose entries can be replaced without closing the searcher used by lookups.
+   */
+  private static final class Suggester extends AnalyzingInfixSuggester {
+
+    private final Directory _directory;
+
+    private Suggester(Directory dir, Analyzer indexAnalyzer, Analyzer searchAnalyzer, int minChars) throws IOException {
+      super(dir, indexAnalyzer, searchAnalyzer, minChars, true, true, true);
+      this._directory = dir;
+    }
+
+    /**
+     * Deletes all the entries, lookups keep returning them until the suggester is refreshed.
+     *
+     * @throws IOException if thrown by the writer
+     */
+    private void clear() throws IOException {
+      // no writer until the first entry is added
+      if (this.writer == null) {
+        if (!DirectoryReader.indexExists(this._directory)) return;
+        // entries from a previous run, possibly in an older format: adding one opens the writer
+        add(new BytesRef(""), null, 0, null);
+      }
+      this.writer.deleteAll();
+    }
+
+    /**
+     * Deletes the entries with the context provided, lookups keep returning them until the suggester is refreshed.
+     *
+     * @param context the context of the entries
+     *
+     * @throws IOException if thrown by the writer
+     */
+    private void delete(BytesRef context) throws IOException {
+      if (this.writer != null) this.writer.deleteDocuments(new Term(CONTEXTS_FIELD, context));
+    }
+  }
+
+  /**
+   * Documents deleted and added in the index.
+   */
+  private static final class Change {
+
+    /**
+     * The ID of the documents deleted, <code>null</code> if documents were only added.
+     */
+    private final String deleted;
+
+    /**
+     * The documents added with only the values of the fields needed.
+     */
+    private final List<Document> documents;
+
+    private Change(String deleted, List<Document> documents) {
+      this.deleted = deleted;
+      this.documents = documents;
+    }
+  }
+
+  /**
+   * Where the values of the fields needed for the entries are read from.
+   *
+   * <p>The search, criteria and weight fields with sorted, sorted set or sorted numeric doc values
+   * in the catalog are read from their doc values unless also used as result fields, as the payload
+   * must keep the stored values in their original order. All other fields are loaded from the stored
+   * fields.
+   */
+  private final class Sources {
+
+    /**
+     * All the fields needed.
+     */
+    private final Set<String> _fields = new HashSet<>();
+
+    /**
+     * The text fields to read from sorted or sorted set doc values.
+     */
+    private final Set<String> _texts = new HashSet<>();
+
+    /**
+     * The weight fields to read from sorted numeric doc values and their numeric type.
+     */
+    private final Map<String, FlintField.NumericType> _numbers = new HashMap<>();
+
+    private Sources(Catalog catalog) {
+      this._fields.addAll(_resultFields);
+      this._fields.addAll(_searchFields);
+      this._fields.addAll(_weights.keySet());
+      if (_withField != null) this._fields.add(_withField);
+      if (_idField != null) this._fields.add(_idField);
+      if (catalog == null) return;
+      Set<String> texts = new HashSet<>(_searchFields);
+      if (_withField != null) texts.add(_withField);
+      for (String field : texts) {
+        FlintField.DocValuesType type = catalog.getDocValuesType(field);
+        if ((type == FlintField.DocValuesType.SORTED || type == FlintField.DocValuesType.SORTED_SET) &&
+            !_resultFields.contains(field)) this._texts.add(field);
+      }
+      for (String field : _weights.keySet()) {
+        FlintField.NumericType type = catalog.getNumericType(field);
+        if (type != null && catalog.getDocValuesType(field) == FlintField.DocValuesType.SORTED_NUMERIC &&
+            !_resultFields.contains(field)) this._numbers.put(field, type);
+      }
+    }
+
+    /**
+     * Keeps only the values of the fields needed from a document being indexed.
+     *
+     * @param document the document as written to the index
+     *
+     * @return a document with the values read the same way as when building
+     */
+    private Document reduce(Document document) {
+      Document doc = new Document();
+      Set<String> fromDocValues = new HashSet<>();
+      for (IndexableField field : document) {
+        String name = field.name();
+        DocValuesType type = field.fieldType().docValuesType();
+        if ((type == DocValuesType.SORTED || type == DocValuesType.SORTED_SET) && this._texts.contains(name)) {
+          doc.add(new StoredField(name, field.binaryValue().utf8ToString()));
+          fromDocValues.add(name);
+        } else if (type == DocValuesType.SORTED_NUMERIC && this._numbers.containsKey(name)) {
+          // numeric fields hold the value as indexed in the doc values
+          doc.add(new StoredField(name, toNumber(field.numericValue().longValue(), this._numbers.get(name))));
+          fromDocValues.add(name);
+        }
+      }
+      for (IndexableField field : document) {
+        String name = field.name();
+        if (field.fieldType().stored() && this._fields.contains(name) && !fromDocValues.contains(name)) {
+          doc.add(toStoredField(name, field.storedValue()));
+        }
+      }
+      return doc;
+    }
+  }
+
+  /**
+   * Creates the field as loaded from the stored fields, numeric fields such as a <code>DoubleField</code>
+   * hold their sortable encoding rather than the value stored.
+   *
+   * @param name  the name of the field
+   * @param value the value stored
+   *
+   * @return the stored field
+   */
+  private static StoredField toStoredField(String name, StoredValue value) {
+    switch (value.getType()) {
+      case INTEGER: return new StoredField(name, value.getIntValue());
+      case LONG: return new StoredField(name, value.getLongValue());
+      case FLOAT: return new StoredField(name, value.getFloatValue());
+      case DOUBLE: return new StoredField(name, value.getDoubleValue());
+      case BINARY: return new StoredField(name, value.getBinaryValue());
+      default: return new StoredField(name, value.getStringValue());
     }
   }
+
+  /**
+   * Loads the values of the fields needed from a segment, the documents must be loaded in order.
+   */
+  private static final class Segment {
+
+    private final Map<String, SortedDocValues> _sorted = new HashMap<>();
+
+    private final Map<String, SortedSetDocValues> _sortedSet = new HashMap<>();
+
+    private final Map<String, SortedNumericDocValues> _numeric = new HashMap<>();
+
+    private final Map<String, FlintField.NumericType> _types;
+
+    /**
+     * The fields loaded from the stored fields.
+     */
+    private final Set<String> _stored;
+
+    /**
+     * <code>null</code> if no stored fields are needed.
+     */
+    private final StoredFields _storedFields;
+
+    private Segment(LeafReader reader, Sources sources) throws IOException {
+      Set<String> stored = new HashSet<>(sources._fields);
+      FieldInfos infos = reader.getFieldInfos();
+      // the catalog may list doc values that older segments do not have
+      for (String field : sources._texts) {
+        FieldInfo info = infos.fieldInfo(field);
+        if (info == null) continue;
+        if (info.getDocValuesType() == DocValuesType.SORTED) {
+          this._sorted.put(field, reader.getSortedDocValues(field));
+          stored.remove(field);
+        } else if (info.getDocValuesType() == DocValuesType.SORTED_SET) {
+          this._sortedSet.put(field, reader.getSortedSetDocValues(field));
+          stored.remove(field);
+        }
+      }
+      for (String field : sources._numbers.keySet()) {
+        FieldInfo info = infos.fieldInfo(field);
+        if (info != null && info.getDocValuesType() == DocValuesType.SORTED_NUMERIC) {
+          this._numeric.put(field, reader.getSortedNumericDocValues(field));
+          stored.remove(field);
+        }
+      }
+      this._types = sources._numbers;
+      this._stored = stored;
+      this._storedFields = stored.isEmpty() ? null : storedFields(reader);
+    }
+
+    /**
+     * @param doc the ID of the document in the segment, greater than the previous one
+     *
+     * @return a document with the values of the fields needed
+     */
+    private Document load(int doc) throws IOException {
+      Document document;
+      if (this._storedFields != null) {
+        DocumentStoredFieldVisitor visitor = new DocumentStoredFieldVisitor(this._stored);
+        this._storedFields.document(doc, visitor);
+        document = visitor.getDocument();
+      } else {
+        document = new Document();
+      }
+      for (Entry<String, SortedDocValues> values : this._sorted.entrySet()) {
+        SortedDocValues dv = values.getValue();
+        if (dv.advanceExact(doc)) {
+          document.add(new StoredField(values.getKey(), dv.lookupOrd(dv.ordValue()).utf8ToString()));
+        }
+      }
+      for (Entry<String, SortedSetDocValues> values : this._sortedSet.entrySet()) {
+        SortedSetDocValues dv = values.getValue();
+        if (dv.advanceExact(doc)) {
+          for (int i = 0; i < dv.docValueCount(); i++) {
+            document.add(new StoredField(values.getKey(), dv.lookupOrd(dv.nextOrd()).utf8ToString()));
+          }
+        }
+      }
+      for (Entry<String, SortedNumericDocValues> values : this._numeric.entrySet()) {
+        SortedNumericDocValues dv = values.getValue();
+        if (dv.advanceExact(doc)) {
+          FlintField.NumericType type = this._types.get(values.getKey());
+          for (int i = 0; i < dv.docValueCount(); i++) {
+            document.add(new StoredField(values.getKey(), toNumber(dv.nextValue(), type)));
+          }
+        }
+      }
+      return document;
+    }
+
+    /**
+     * Uses the stored fields reader optimised for reading documents in order when available.
+     */
+    private static StoredFields storedFields(LeafReader reader) throws IOException {
+      if (reader instanceof CodecReader) {
+        StoredFieldsReader fields = ((CodecReader) reader).getFieldsReader();
+        if (fields != null) return fields.getMergeInstance();
+      }
+      return reader.storedFields();
+    }
+  }
+
+  /**
+   * Decodes a value from sorted numeric doc values, floats and doubles use their sortable encoding.
+   *
+   * @param value the value in the doc values
+   * @param type  the numeric type of the field
+   *
+   * @return the number as a double
+   */
+  private static double toNumber(long value, FlintField.NumericType type) {
+    switch (type) {
+      case DOUBLE: return NumericUtils.sortableLongToDouble(value);
+      case FLOAT: return NumericUtils.sortableIntToFloat((int) value);
+      default: return value;
+    }
+  }
+
+  /**
+   * Collects the changes made to the index and applies them in the background after each refresh.
+   */
+  private final class Changes implements IndexChangeListener {
+
+    @Override
+    public void changed(LuceneDeleteRule rule, List<Document> documents) {
+      if (rule != null && (!rule.useTerm() || !_idField.equals(rule.toTerm().field()))) {
+        // can't tell which entries to remove
+        stale = true;
+        return;
+      }
+      // only keep the fields needed rather than the whole documents
+      Sources sources = new Sources(Catalogs.getCatalog(_index.getCatalog()));
+      List<Document> docs = new ArrayList<>(documents.size());
+      for (Document document : documents) {
+        docs.add(sources.reduce(document));
+      }
+      synchronized (_pending) {
+        _pending.add(new Change(rule == null ? null : rule.toTerm().text(), docs));
+      }
+    }
+
+    @Override
+    public void cleared() {
+      synchronized (_pending) {
+        _pending.clear();
+      }
+      stale = true;
+    }
+
+    @Override
+    public void refreshed() {
+      if (!_applying.compareAndSet(false, true)) return;
+      try {
+        BUILDER.execute(() -> {
+          // changes made while applying these are applied by the next task
+          _applying.set(false);
+          applyChanges();
+        });
+      } catch (RejectedExecutionException ex) {
+        _applying.set(false);
+      }
+    }
+  }
+
   // --------------------------------------------------------------------------------------
   // static business
   // --------------------------------------------------------------------------------------
@@ -352,6 +938,8 @@ public class AutoSuggest {
     private Directory _dir = null;
     private Analyzer _indexAnalyzer = null;
     private Analyzer _searchAnalyzer = null;
+    private String _idField = null;
+    private int _buildThreads = 1;
     //TODO it should be a list
     private String _criteria = null;
     private final Map<String, Float> _weights = new HashMap<>();
@@ -402,6 +990,23 @@ public class AutoSuggest {
       this._criteria = criteria;
       return this;
     }
+    /**
+     * @param field the stored field identifying the documents in the delete rules of the index,
+     *              to update the entries incrementally when the index changes
+     * @return this builder
+     */
+    public Builder idField(String field) {
+      this._idField = field;
+      return this;
+    }
+    /**
+     * @param threads the number of segments read at the same time when building from documents
+     * @return this builder
+     */
+    public Builder buildThreads(int threads) {
+      this._buildThreads = threads;
+      return this;
+    }
     public AutoSuggest build() throws IndexException {
       if (this._terms == null) throw new IllegalStateException("missing terms");
       if (this._name  == null) throw new IllegalStateException("missing name");
@@ -409,8 +1014,9 @@ public class AutoSuggest {
       Directory dir = this._dir == null ? new ByteBuffersDirectory() : this._dir;
       Analyzer indexAnalyzer  = this._indexAnalyzer  == null ? new StandardAnalyzer(CharArraySet.EMPTY_SET) : this._indexAnalyzer;
       Analyzer searchAnalyzer = this._searchAnalyzer == null ? new StandardAnalyzer(CharArraySet.EMPTY_SET) : this._searchAnalyzer;
-      AutoSuggest as = new AutoSuggest(this._name, this._index, dir, indexAnalyzer, searchAnalyzer, this._terms, this._minChars);
+      AutoSuggest as = new AutoSuggest(this._name, this._index, dir, indexAnalyzer, searchAnalyzer, this._terms, this._minChars, this._idField);
       as.setCriteriaField(this._criteria);
+      as.setBuildThreads(this._buildThreads);
       as.addSearchFields(this._searchFields);
       as.addResultFields(this._resultFields);
       for (Entry<String, Float> w : this._weights.entrySet())
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.flint.lucene.search;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.ByteBuffersDataOutput;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes the result fields of an autosuggest entry into its payload.
+ *
+ * <p>The format is:
+ * <pre>
+ *  version      byte (1)
+ *  field count  vint
+ *  for each field:
+ *    field      vint, index of the field in the result fields
+ *    value count  vint
+ *    values     vint length followed by the UTF-8 bytes
+ * </pre>
+ *
+ * <p>The field names are not stored, so a payload can only be decoded with the result fields used
+ * to encode it. This is always the case as a suggester is built from scratch when created.
+ *
+ * <p>Payloads serialized as a Java map by earlier versions can still be decoded.
+ */
+final class AutoSuggestPayload {
+
+  /**
+   * The current version of the format.
+   */
+  static final byte VERSION = 1;
+
+  /**
+   * The first byte of a Java serialization stream.
+   */
+  private static final byte JAVA_SERIALIZATION = (byte) 0xAC;
+
+  /** Utility class. */
+  private AutoSuggestPayload() {
+  }
+
+  /**
+   * Encodes the values of the fields provided.
+   *
+   * @param fields the result fields
+   * @param doc    the document to load the values from
+   *
+   * @return the payload, <code>null</code> if there are no result fields
+   */
+  static BytesRef encode(List<String> fields, Document doc) {
+    if (fields.isEmpty()) return null;
+    String[][] values = new String[fields.size()][];
+    int count = 0;
+    for (int i = 0; i < values.length; i++) {
+      values[i] = doc.getValues(fields.get(i));
+      if (values[i] != null) count++;
+    }
+    try {
+      ByteBuffersDataOutput out = new ByteBuffersDataOutput();
+      out.writeByte(VERSION);
+      out.writeVInt(count);
+      for (int i = 0; i < values.length; i++) {
+        if (values[i] == null) continue;
+        out.writeVInt(i);
+        out.writeVInt(values[i].length);
+        for (String value : values[i]) {
+          out.writeString(value);
+        }
+      }
+      return new BytesRef(out.toArrayCopy());
+    } catch (IOException ex) {
+      // written in memory so shouldn't happen
+      throw new IllegalStateException("Failed to encode payload", ex);
+    }
+  }
+
+  /**
+   * Decodes the values of the fields in place, without copying the payload.
+   *
+   * @param fields  the result fields used to encode the payload
+   * @param payload the payload
+   *
+   * @return the values mapped to their field name
+   *
+   * @throws IOException if the payload is invalid
+   */
+  static Map<String, String[]> decode(List<String> fields, BytesRef payload) throws IOException {
+    if (payload.length > 0 && payload.bytes[payload.offset] == JAVA_SERIALIZATION) return deserialize(payload);
+    ByteArrayDataInput in = new ByteArrayDataInput(payload.bytes, payload.offset, payload.length);
+    int end = payload.offset + payload.length;
+    try {
+      byte version = in.readByte();
+      if (version != VERSION) throw new IOException("Unsupported payload version " + version);
+      int count = in.readVInt();
+      Map<String, String[]> result = new HashMap<>(count * 2);
+      for (int i = 0; i < count; i++) {
+        int field = in.readVInt();
+        if (field >= fields.size()) throw new IOException("Unknown field " + field + " in payload");
+        String[] values = new String[in.readVInt()];
+        for (int j = 0; j < values.length; j++) {
+          // straight from the payload bytes
+          int length = in.readVInt();
+          int position = in.getPosition();
+          if (position + length > end) throw new IOException("Truncated payload");
+          values[j] = new String(payload.bytes, position, length, StandardCharsets.UTF_8);
+          in.skipBytes(length);
+        }
+        result.put(fields.get(field), values);
+      }
+      return result;
+    } catch (ArrayIndexOutOfBoundsException ex) {
+      throw new IOException("Truncated payload", ex);
+    }
+  }
+
+  /**
+   * Decodes a payload serialized as a Java map.
+   */
+  @SuppressWarnings("unchecked")
+  private static Map<String, String[]> deserialize(BytesRef payload) throws IOException {
+    ByteArrayInputStream bis = new ByteArrayInputStream(payload.bytes, payload.offset, payload.length);
+    try (ObjectInputStream in = new ObjectInputStream(bis)) {
+      return (Map<String, String[]>) in.readObject();
+    } catch (ClassNotFoundException ex) {
+      throw new IOException("Class not found when deserializing", ex);
+    }
+  }
+
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.flint.lucene.search;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DocumentStoredFieldVisitor;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.Bits;
+import org.pageseeder.flint.lucene.util.Beta;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Visits all the documents matching a query and loads some of their fields.
+ *
+ * <p>The documents are visited segment by segment in index order without collecting the hits, so
+ * the memory used does not depend on the number of matches.
+ *
+ * <p>The values of the fields indexed with sorted, sorted set or binary doc values are loaded from
+ * the doc values, the other fields are loaded from the stored fields. Numeric doc values are not
+ * used as their type cannot be determined from the index, so numeric fields must be stored to be
+ * exported.
+ *
+ * <p>Typical usage:
+ * <pre>
+ *  DocumentExporter exporter = new DocumentExporter(Arrays.asList("_path", "_lastmodified"));
+ *  exporter.export(searcher, query, doc -&gt; {
+ *    System.out.println(doc.get("_path"));
+ *    return true;
+ *  });
+ * </pre>
+ */
+@Beta
+public final class DocumentExporter {
+
+  /**
+   * Receives the documents exported.
+   */
+  @FunctionalInterface
+  public interface Handler {
+
+    /**
+     * Handles a document matching the query.
+     *
+     * @param doc the document with the fields requested only
+     *
+     * @return <code>true</code> to continue, <code>false</code> to stop the export
+     *
+     * @throws IOException if thrown by the handler, it stops the export
+     */
+    boolean handle(Document doc) throws IOException;
+
+  }
+
+  /**
+   * The names of the fields to load.
+   */
+  private final List<String> _fields;
+
+  /**
+   * @param fields the names of the fields to load
+   */
+  public DocumentExporter(Collection<String> fields) {
+    this._fields = new ArrayList<>(fields);
+  }
+
+  /**
+   * @return the names of the fields to load
+   */
+  public List<String> getFields() {
+    return this._fields;
+  }
+
+  /**
+   * Exports the documents matching the query.
+   *
+   * @param searcher the searcher
+   * @param query    the query, <code>null</code> for all documents
+   * @param handler  receives each document
+   *
+   * @return the number of documents exported
+   *
+   * @throws IOException if thrown while reading the index or by the handler
+   */
+  public int export(IndexSearcher searcher, Query query, Handler handler) throws IOException {
+    Query rewritten = searcher.rewrite(query == null ? new MatchAllDocsQuery() : query);
+    Weight weight = searcher.createWeight(rewritten, ScoreMode.COMPLETE_NO_SCORES, 1);
+    int count = 0;
+    for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+      Scorer scorer = weight.scorer(leaf);
+      if (scorer == null) continue;
+      Segment segment = new Segment(leaf.reader());
+      Bits live = leaf.reader().getLiveDocs();
+      DocIdSetIterator matches = scorer.iterator();
+      for (int doc = matches.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = matches.nextDoc()) {
+        if (live != null && !live.get(doc)) continue;
+        count++;
+        if (!handler.handle(segment.load(doc))) return count;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Loads the fields from a segment.
+   */
+  private final class Segment {
+
+    private final SortedDocValues[] sorted;
+
+    private final SortedSetDocValues[] sortedSet;
+
+    private final BinaryDocValues[] binary;
+
+    /**
+     * The fields loaded from the stored fields.
+     */
+    private final Set<String> stored = new HashSet<>();
+
+    private final StoredFields storedFields;
+
+    private Segment(LeafReader reader) throws IOException {
+      int size = DocumentExporter.this._fields.size();
+      this.sorted = new SortedDocValues[size];
+      this.sortedSet = new SortedSetDocValues[size];
+      this.binary = new BinaryDocValues[size];
+      for (int i = 0; i < size; i++) {
+        String field = DocumentExporter.this._fields.get(i);
+        FieldInfo info = reader.getFieldInfos().fieldInfo(field);
+        // not in this segment
+        if (info == null) continue;
+        DocValuesType type = info.getDocValuesType();
+        if (type == DocValuesType.SORTED) this.sorted[i] = reader.getSortedDocValues(field);
+        else if (type == DocValuesType.SORTED_SET) this.sortedSet[i] = reader.getSortedSetDocValues(field);
+        else if (type == DocValuesType.BINARY) this.binary[i] = reader.getBinaryDocValues(field);
+        else this.stored.add(field);
+      }
+      this.storedFields = this.stored.isEmpty() ? null : reader.storedFields();
+    }
+
+    /**
+     * Doc values can only move forward, the documents must be loaded in index order.
+     */
+    private Document load(int doc) throws IOException {
+      Document document = new Document();
+      for (int i = 0; i < this.sorted.length; i++) {
+        String field = DocumentExporter.this._fields.get(i);
+        if (this.sorted[i] != null && this.sorted[i].advanceExact(doc)) {
+          document.add(new StoredField(field, this.sorted[i].lookupOrd(this.sorted[i].ordValue()).utf8ToString()));
+        } else if (this.sortedSet[i] != null && this.sortedSet[i].advanceExact(doc)) {
+          for (int j = 0; j < this.sortedSet[i].docValueCount(); j++) {
+            document.add(new StoredField(field, this.sortedSet[i].lookupOrd(this.sortedSet[i].nextOrd()).utf8ToString()));
+          }
+        } else if (this.binary[i] != null && this.binary[i].advanceExact(doc)) {
+          document.add(new StoredField(field, this.binary[i].binaryValue().utf8ToString()));
+        }
+      }
+      if (this.storedFields != null) {
+        DocumentStoredFieldVisitor visitor = new DocumentStoredFieldVisitor(this.stored);
+        this.storedFields.document(doc, visitor);
+        for (IndexableField field : visitor.getDocument()) {
+          document.add(field);
+        }
+      }
+      return document;
+    }
+  }
+
+}
@@ -21,8 +21,10 @@ import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.pageseeder.flint.Index;
 import org.pageseeder.flint.IndexException;
+import org.pageseeder.flint.IndexIO;
 import org.pageseeder.flint.catalog.Catalog;
 import org.pageseeder.flint.catalog.Catalogs;
+import org.pageseeder.flint.lucene.LuceneIndexIO;
 import org.pageseeder.flint.lucene.LuceneIndexQueries;
 import org.pageseeder.flint.lucene.LuceneUtils;
 import org.pageseeder.flint.lucene.facet.*;
@@ -194,7 +196,7 @@ public final class Facets {
     try {
       // Retrieve all terms for the field
       IndexReader multiReader = new MultiReader(readers.values().toArray(new IndexReader[] {}));
-      IndexSearcher multiSearcher = new IndexSearcher(multiReader);
+      IndexSearcher multiSearcher = SearchExecutor.newSearcher(multiReader);
       for (String field : fields) {
         if (field.length() > 0) {
           FieldFacet facet = FieldFacet.newFacet(field, multiReader);
@@ -253,7 +255,7 @@ public final class Facets {
     try {
       // Retrieve all terms for the field
       IndexReader multiReader = new MultiReader(readers.values().toArray(new IndexReader[] {}));
-      IndexSearcher multiSearcher = new IndexSearcher(multiReader);
+      IndexSearcher multiSearcher = SearchExecutor.newSearcher(multiReader);
       // loop through fields
       List<String> loopfields = fields == null ? Terms.fields(multiReader) : fields;
       for (String field : loopfields) {
@@ -341,7 +343,7 @@ public final class Facets {
     try {
       // Retrieve all terms for the field
       IndexReader multiReader = new MultiReader(readers.values().toArray(new IndexReader[] {}));
-      IndexSearcher multiSearcher = new IndexSearcher(multiReader);
+      IndexSearcher multiSearcher = SearchExecutor.newSearcher(multiReader);
       // loop through fields
       List<String> loopfields = fields == null ? Terms.fields(multiReader) : fields;
       for (String field : loopfields) {
@@ -393,18 +395,17 @@ public final class Facets {
     try {
       // Retrieve all terms for the field
       IndexReader multiReader = new MultiReader(readers.values().toArray(new IndexReader[] {}));
-      IndexSearcher multiSearcher = new IndexSearcher(multiReader);
+      IndexSearcher multiSearcher = SearchExecutor.newSearcher(multiReader);
       for (String field : fields) {
         if (field.length() > 0) {
           FlexibleFieldFacet facet = createFacet(field, catalog);
-          if (facet != null) {
-            // search
-            facet.compute(multiSearcher, query, upTo);
-            // store it
-            facets.add(facet);
-          }
+          if (facet != null) facets.add(facet);
         }
       }
+      // search, counting all fields in a single pass
+      FacetRequest.Builder request = new FacetRequest.Builder().size(upTo).executor(SearchExecutor.getExecutor());
+      for (FlexibleFieldFacet facet : facets) request.addFacet(facet);
+      request.build().compute(multiSearcher, query);
     } finally {
       // now release everything we used
       for (Entry<Index, IndexReader> entry : readers.entrySet())  {
@@ -451,17 +452,28 @@ public final class Facets {
       for (String field : loopfields) {
         if (field.length() > 0 && field.charAt(0) != '_') {
           FlexibleFieldFacet facet = createFacet(field, catalog);
-          if (facet != null) {
-            if (query == null) facet.compute(searcher, maxValues);
-            else facet.compute(searcher, query, maxValues);
-            facets.add(facet);
-          }
+          if (facet != null) facets.add(facet);
         }
       }
+      // search, counting all fields in a single pass and reusing the counts of unchanged segments
+      FacetRequest.Builder request = new FacetRequest.Builder().size(maxValues).cache(getFacetCache(index))
+          .executor(SearchExecutor.getExecutor());
+      for (FlexibleFieldFacet facet : facets) request.addFacet(facet);
+      request.build().compute(searcher, query);
     } finally {
       LuceneIndexQueries.releaseQuietly(index, reader);
       LuceneIndexQueries.releaseQuietly(index, searcher);
     }
     return facets;
   }
+
+  /**
+   * @param index the index
+   *
+   * @return the cache of facet counts of the index, <code>null</code> if there isn't one
+   */
+  private static FacetCache getFacetCache(Index index) {
+    IndexIO io = index.getIndexIO();
+    return io instanceof LuceneIndexIO ? ((LuceneIndexIO) io).getFacetCache() : null;
+  }
 }
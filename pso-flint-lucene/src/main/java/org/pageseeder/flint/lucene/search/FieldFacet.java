@@ -224,7 +224,8 @@ public final class FieldFacet implements XMLWritable, Facet {
    * @throws IOException if thrown by the reader.
    */
   public static FieldFacet newFacet(String field, IndexReader reader, int maxValues) throws IOException {
-    List<Term> terms = Terms.terms(reader, field);
+    // no need to load more terms than that
+    List<Term> terms = Terms.terms(reader, field, null, maxValues + 1);
     if (terms.size() > maxValues) return null;
     List<TermQuery> subs = new ArrayList<>(terms.size());
     for (Term t : terms) {
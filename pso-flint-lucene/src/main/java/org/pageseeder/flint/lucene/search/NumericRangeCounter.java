@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.flint.lucene.search;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.search.*;
+import org.apache.lucene.util.BitSetIterator;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.FixedBitSet;
+import org.pageseeder.flint.lucene.util.Beta;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Counts the documents matching a query in each of a list of numeric ranges in a single pass.
+ *
+ * <p>The values are read from the numeric doc values of the field which numeric fields have
+ * since Lucene 9.8, a document is counted once for each range containing at least one of its
+ * values.
+ *
+ * <p>The ranges are specified by their inclusive bounds using the doc values encoding, see
+ * {@link org.pageseeder.flint.lucene.query.NumericRange#toDocValuesBounds()}.
+ */
+@Beta
+public final class NumericRangeCounter {
+
+  /**
+   * private logger
+   */
+  private final static Logger LOGGER = LoggerFactory.getLogger(NumericRangeCounter.class);
+
+  /** Utility class. */
+  private NumericRangeCounter() {
+  }
+
+  /**
+   * Counts the documents matching the query in each range.
+   *
+   * @param searcher the searcher to use
+   * @param query    the query to match documents, <code>null</code> to count all documents
+   * @param field    the numeric field
+   * @param bounds   the inclusive lower and upper bounds of each range
+   *
+   * @return the number of documents in each range or <code>null</code> if the field does not have
+   *         numeric doc values, in which case each range must be searched
+   *
+   * @throws IOException if thrown while reading the index
+   */
+  public static int[] count(IndexSearcher searcher, Query query, String field, long[][] bounds) throws IOException {
+    // check that all segments have doc values first
+    if (!hasDocValues(searcher.getIndexReader(), field)) return null;
+    int[] counts = new int[bounds.length];
+    Weight weight = query == null ? null : searcher.createWeight(searcher.rewrite(query), ScoreMode.COMPLETE_NO_SCORES, 1f);
+    for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+      if (leaf.reader().getFieldInfos().fieldInfo(field) == null) continue;
+      FixedBitSet matches = weight == null ? null : FieldValueCounter.matches(leaf, weight);
+      count(leaf.reader(), field, matches, bounds, counts);
+    }
+    return counts;
+  }
+
+  /**
+   * Indicates whether the field has numeric doc values in all the segments which have the field.
+   *
+   * @param reader the index reader
+   * @param field  the numeric field
+   *
+   * @return <code>true</code> if the ranges of the field can be counted in a single pass
+   */
+  public static boolean hasDocValues(IndexReader reader, String field) {
+    for (LeafReaderContext leaf : reader.leaves()) {
+      FieldInfo info = leaf.reader().getFieldInfos().fieldInfo(field);
+      if (info != null && info.getDocValuesType() != DocValuesType.SORTED_NUMERIC) {
+        LOGGER.debug("Field {} has no numeric doc values, unable to count ranges in one pass", field);
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Adds the counts for the segment.
+   *
+   * @param reader  the segment's reader
+   * @param field   the numeric field
+   * @param matches the matching documents, <code>null</code> for all live documents
+   * @param bounds  the inclusive lower and upper bounds of each range
+   * @param counts  where the counts are added
+   *
+   * @throws IOException if thrown while reading the index
+   */
+  public static void count(LeafReader reader, String field, FixedBitSet matches, long[][] bounds, int[] counts) throws IOException {
+    if (reader.getFieldInfos().fieldInfo(field) == null) return;
+    // the last document counted in each range, so that multiple values are only counted once
+    int[] last = new int[bounds.length];
+    Arrays.fill(last, -1);
+    SortedNumericDocValues values = DocValues.getSortedNumeric(reader, field);
+    Bits live = reader.getLiveDocs();
+    // go through the matching documents or through the documents with values if all documents match
+    DocIdSetIterator docs = matches != null ? new BitSetIterator(matches, matches.cardinality()) : values;
+    for (int doc = docs.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = docs.nextDoc()) {
+      if (matches != null ? !values.advanceExact(doc) : live != null && !live.get(doc)) continue;
+      for (int i = 0; i < values.docValueCount(); i++) {
+        long value = values.nextValue();
+        for (int r = 0; r < bounds.length; r++) {
+          if (value >= bounds[r][0] && value <= bounds[r][1] && last[r] != doc) {
+            last[r] = doc;
+            counts[r]++;
+          }
+        }
+      }
+    }
+  }
+
+}
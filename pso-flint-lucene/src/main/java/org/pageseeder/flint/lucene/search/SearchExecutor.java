@@ -0,0 +1,219 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.flint.lucene.search;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherFactory;
+import org.pageseeder.flint.lucene.util.Beta;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The executor shared by all searchers to search the segments of an index in parallel.
+ *
+ * <p>By default, there is no executor and each search runs in the calling thread. Once an executor
+ * is set, the searchers created by {@link #newSearcher(IndexReader)} split the segments into slices
+ * which are searched concurrently when using a collector manager. Searchers created before the
+ * executor was set keep searching in the calling thread until the index is refreshed.
+ *
+ * <p>The searchers do not hold the executor itself: their tasks go to the executor current when they
+ * run, or run in the calling thread if there is none any more. So the executor can be replaced or
+ * stopped while searchers created with it are still in use.
+ *
+ * <p>A slice groups small segments together, up to a maximum number of documents or segments, so
+ * that searching a slice is worth a task. Large segments get a slice of their own.
+ *
+ * <p>Typical usage:
+ * <pre>
+ *  // search with 8 threads
+ *  SearchExecutor.start(8);
+ *  ...
+ *  SearchExecutor.stop();
+ * </pre>
+ */
+@Beta
+public final class SearchExecutor {
+
+  /**
+   * private logger
+   */
+  private final static Logger LOGGER = LoggerFactory.getLogger(SearchExecutor.class);
+
+  /**
+   * The default maximum number of documents in a slice.
+   */
+  public static final int DEFAULT_MAX_DOCS_PER_SLICE = 250000;
+
+  /**
+   * The default maximum number of segments in a slice.
+   */
+  public static final int DEFAULT_MAX_SEGMENTS_PER_SLICE = 5;
+
+  /**
+   * A searcher factory using the shared executor, to use with search managers.
+   */
+  public static final SearcherFactory FACTORY = new SearcherFactory() {
+    @Override
+    public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader) {
+      return SearchExecutor.newSearcher(reader);
+    }
+  };
+
+  /**
+   * The shared executor, <code>null</code> to search in the calling thread.
+   */
+  private static volatile ExecutorService executor = null;
+
+  /**
+   * Sends the tasks of the searchers to the current executor, or runs them in the calling thread if
+   * there is none or it was shut down.
+   */
+  private static final Executor DISPATCHER = task -> {
+    ExecutorService current = executor;
+    if (current != null) try {
+      current.execute(task);
+      return;
+    } catch (RejectedExecutionException ex) {
+      // replaced while dispatching
+    }
+    task.run();
+  };
+
+  /**
+   * Whether the executor was created by this class and should be shut down when replaced.
+   */
+  private static volatile boolean owned = false;
+
+  private static volatile int maxDocsPerSlice = DEFAULT_MAX_DOCS_PER_SLICE;
+
+  private static volatile int maxSegmentsPerSlice = DEFAULT_MAX_SEGMENTS_PER_SLICE;
+
+  /** Utility class. */
+  private SearchExecutor() {
+  }
+
+  /**
+   * Creates a new searcher using the shared executor if there is one.
+   *
+   * @param reader the reader to search
+   *
+   * @return the new searcher
+   */
+  public static IndexSearcher newSearcher(IndexReader reader) {
+    if (executor == null) return new IndexSearcher(reader);
+    // keep the slicing used when creating the searcher
+    final int maxDocs = maxDocsPerSlice;
+    final int maxSegments = maxSegmentsPerSlice;
+    return new IndexSearcher(reader, DISPATCHER) {
+      @Override
+      protected LeafSlice[] slices(List<LeafReaderContext> leaves) {
+        return slices(leaves, maxDocs, maxSegments);
+      }
+    };
+  }
+
+  /**
+   * Starts a pool of daemon threads used to search.
+   *
+   * <p>Any executor previously started by this class is shut down.
+   *
+   * @param threads the number of threads, 0 or less to search in the calling thread
+   */
+  public static synchronized void start(int threads) {
+    if (threads <= 0) {
+      setExecutor(null);
+      return;
+    }
+    AtomicInteger count = new AtomicInteger(1);
+    ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+      Thread t = new Thread(r, "flint-search-" + count.getAndIncrement());
+      t.setDaemon(true);
+      return t;
+    });
+    setExecutor(pool);
+    owned = true;
+    LOGGER.info("Searching with {} threads", threads);
+  }
+
+  /**
+   * Stops searching in parallel, shutting down the executor if it was started by this class.
+   */
+  public static synchronized void stop() {
+    setExecutor(null);
+  }
+
+  /**
+   * Sets the executor shared by all searchers.
+   *
+   * <p>An executor set this way is not shut down by this class. An executor started by this class
+   * is shut down once replaced, the tasks it already accepted still run.
+   *
+   * @param service the executor, <code>null</code> to search in the calling thread
+   */
+  public static synchronized void setExecutor(ExecutorService service) {
+    ExecutorService previous = executor;
+    boolean shutdown = owned;
+    executor = service;
+    owned = false;
+    if (previous != null && previous != service && shutdown) previous.shutdown();
+  }
+
+  /**
+   * @return the executor shared by all searchers, <code>null</code> if searching in the calling thread
+   */
+  public static ExecutorService getExecutor() {
+    return executor;
+  }
+
+  /**
+   * Sets how the segments are grouped into slices.
+   *
+   * @param maxDocs     the maximum number of documents in a slice
+   * @param maxSegments the maximum number of segments in a slice
+   *
+   * @throws IllegalArgumentException if one of the values is not positive
+   */
+  public static void setSlicing(int maxDocs, int maxSegments) {
+    if (maxDocs <= 0) throw new IllegalArgumentException("maxDocs <= 0");
+    if (maxSegments <= 0) throw new IllegalArgumentException("maxSegments <= 0");
+    maxDocsPerSlice = maxDocs;
+    maxSegmentsPerSlice = maxSegments;
+  }
+
+  /**
+   * @return the maximum number of documents in a slice
+   */
+  public static int getMaxDocsPerSlice() {
+    return maxDocsPerSlice;
+  }
+
+  /**
+   * @return the maximum number of segments in a slice
+   */
+  public static int getMaxSegmentsPerSlice() {
+    return maxSegmentsPerSlice;
+  }
+
+}
@@ -18,6 +18,7 @@ package org.pageseeder.flint.lucene.search;
 import org.apache.lucene.index.*;
 import org.apache.lucene.search.*;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.StringHelper;
 import org.apache.lucene.util.automaton.CompiledAutomaton;
 import org.pageseeder.flint.lucene.util.Beta;
 import org.pageseeder.flint.lucene.util.Bucket;
@@ -55,6 +56,25 @@ public final class Terms {
     }
   };
 
+  /**
+   * Receives the terms of a field in order, without copying them.
+   */
+  @Beta
+  @FunctionalInterface
+  public interface TermHandler {
+
+    /**
+     * Handles a term.
+     *
+     * @param text    the text of the term, reused for the next term so it must be copied to be kept
+     * @param docFreq the number of documents with this term, <code>-1</code> if not requested
+     *
+     * @throws IOException if thrown while handling the term
+     */
+    void term(BytesRef text, int docFreq) throws IOException;
+
+  }
+
   /** Utility class. */
   private Terms() {
   }
@@ -268,18 +288,112 @@ public final class Terms {
    * @throws IOException should any IO error be reported.
    */
   @Beta public static List<Term> terms(IndexReader reader, String field) throws IOException {
+    return terms(reader, field, null, -1);
+  }
+
+  /**
+   * Returns a page of the terms for the specified field in order.
+   *
+   * @param reader The index reader
+   * @param field  The field
+   * @param from   The text of the first term to return (or the next one), <code>null</code> to start from the first term
+   * @param max    The maximum number of terms to return, a negative value for all the terms
+   *
+   * @return the list of terms for this field
+   *
+   * @throws IOException should any IO error be reported.
+   */
+  @Beta public static List<Term> terms(IndexReader reader, String field, String from, int max) throws IOException {
     LOGGER.debug("Loading terms for field {}", field);
+    List<Term> terms = new ArrayList<>();
+    terms(reader, field, from, max, false, (text, docFreq) -> terms.add(new Term(field, BytesRef.deepCopyOf(text))));
+    return terms;
+  }
+
+  /**
+   * Streams the terms for the specified field in order.
+   *
+   * <p>The terms are read straight from the terms dictionary and are not copied, so that fields with
+   * a large number of terms can be listed or paged through without loading all their terms in memory.
+   *
+   * @param reader  The index reader
+   * @param field   The field
+   * @param from    The text of the first term to handle (or the next one), <code>null</code> to start from the first term
+   * @param max     The maximum number of terms to handle, a negative value for all the terms
+   * @param docFreq Whether to compute the document frequency of each term
+   * @param handler Receives each term
+   *
+   * @return the text of the term following the last term handled, to use as <code>from</code> for the next page,
+   *         <code>null</code> if there are no more terms
+   *
+   * @throws IOException should any IO error be reported.
+   */
+  @Beta public static String terms(IndexReader reader, String field, String from, int max, boolean docFreq, TermHandler handler) throws IOException {
+    return stream(reader, field, null, from, max, docFreq, handler);
+  }
+
+  /**
+   * Streams the terms starting with the specified prefix in order.
+   *
+   * @param reader  The index reader
+   * @param prefix  The field and the prefix of the terms
+   * @param from    The text of the first term to handle (or the next one), <code>null</code> to start from the prefix
+   * @param max     The maximum number of terms to handle, a negative value for all the terms
+   * @param docFreq Whether to compute the document frequency of each term
+   * @param handler Receives each term
+   *
+   * @return the text of the term following the last term handled, to use as <code>from</code> for the next page,
+   *         <code>null</code> if there are no more terms
+   *
+   * @throws IOException should any IO error be reported.
+   */
+  @Beta public static String prefix(IndexReader reader, Term prefix, String from, int max, boolean docFreq, TermHandler handler) throws IOException {
+    return stream(reader, prefix.field(), prefix.bytes(), from, max, docFreq, handler);
+  }
+
+  /**
+   * Streams the terms of a field in order.
+   *
+   * @param prefix The prefix of the terms, <code>null</code> for all the terms
+   */
+  private static String stream(IndexReader reader, String field, BytesRef prefix, String from, int max, boolean docFreq,
+      TermHandler handler) throws IOException {
     org.apache.lucene.index.Terms terms = MultiTerms.getTerms(reader, field);
-    if (terms == null) return Collections.emptyList();
+    if (terms == null) return null;
     TermsEnum termsEnum = terms.iterator();
-    if (termsEnum == TermsEnum.EMPTY) return Collections.emptyList();
-    Map<BytesRef, Term> termsList = new HashMap<>();
-    while (termsEnum.next() != null) {
-      BytesRef t = termsEnum.term();
-      if (t == null) break;
-      termsList.put(t, new Term(field, BytesRef.deepCopyOf(t)));
+    // go straight to the first term using the terms index
+    BytesRef start = from == null ? null : new BytesRef(from);
+    if (prefix != null && (start == null || start.compareTo(prefix) < 0)) start = prefix;
+    BytesRef text;
+    if (start == null) {
+      text = termsEnum.next();
+    } else {
+      text = termsEnum.seekCeil(start) == TermsEnum.SeekStatus.END ? null : termsEnum.term();
     }
-    return new ArrayList<>(termsList.values());
+    int count = 0;
+    while (text != null) {
+      if (prefix != null && !StringHelper.startsWith(text, prefix)) return null;
+      if (max >= 0 && count == max) return text.utf8ToString();
+      handler.term(text, docFreq ? termsEnum.docFreq() : -1);
+      count++;
+      text = termsEnum.next();
+    }
+    return null;
+  }
+
+  /**
+   * Indicates whether the specified field has any terms.
+   *
+   * @param reader The index reader
+   * @param field  The field
+   *
+   * @return <code>true</code> if there is at least one term for this field
+   *
+   * @throws IOException should any IO error be reported.
+   */
+  @Beta public static boolean hasTerms(IndexReader reader, String field) throws IOException {
+    org.apache.lucene.index.Terms terms = MultiTerms.getTerms(reader, field);
+    return terms != null && terms.iterator().next() != null;
   }
 
   /**
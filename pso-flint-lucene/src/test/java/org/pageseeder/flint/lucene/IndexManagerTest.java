@@ -0,0 +1,299 @@
+package org.pageseeder.flint.lucene;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.junit.Assert;
+import org.junit.Test;
+import org.pageseeder.flint.IndexManager;
+import org.pageseeder.flint.Requester;
+import org.pageseeder.flint.content.SourceForwarder;
+import org.pageseeder.flint.indexing.IndexJob;
+import org.pageseeder.flint.indexing.IndexJobQueue;
+import org.pageseeder.flint.indexing.StageMetrics;
+import org.pageseeder.flint.lucene.utils.TestListener;
+import org.pageseeder.flint.lucene.utils.TestUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class IndexManagerTest {
+
+  private static final File template = new File("src/test/resources/template.xsl");
+
+  private static final int NB_JOBS = 100000;
+
+  private static final int NB_SMALL_DOCUMENTS = 10000;
+
+  private static final int NB_WORKERS = 4;
+
+  @Test
+  public void testDispatchPerJobVsWorkers() throws Exception {
+    TestUtils.assumeBenchmarks();
+    LuceneIndex index = new LuceneIndex("dispatch-compare-test", new ByteBuffersDirectory(), new StandardAnalyzer());
+    Requester requester = new Requester("IndexManagerTest");
+    // warm up
+    dispatchPerJob(jobs(index, requester));
+    dispatchToWorkers(jobs(index, requester));
+    long perJob = dispatchPerJob(jobs(index, requester));
+    long workers = dispatchToWorkers(jobs(index, requester));
+    System.out.println(NB_JOBS + " jobs dispatched with one runnable per job (before) in " + TimeUnit.NANOSECONDS.toMillis(perJob) + "ms, " +
+        "with " + NB_WORKERS + " long-lived workers (after) in " + TimeUnit.NANOSECONDS.toMillis(workers) + "ms");
+  }
+
+  @Test
+  public void testEnqueueAndDispatch() throws Exception {
+    TestUtils.assumeBenchmarks();
+    // deleted content is the cheapest job to run, so this mostly measures the queue and dispatching
+    IndexManager manager = new IndexManager(job -> new TestUtils.TestContent(job.getContentID(), null), new TestListener(), 4, false);
+    try {
+      LuceneIndex index = new LuceneIndex("dispatch-test", new ByteBuffersDirectory(), new StandardAnalyzer());
+      Requester requester = new Requester("IndexManagerTest");
+      long start = System.nanoTime();
+      for (int i = 0; i < NB_JOBS; i++) {
+        manager.index("doc-" + i, TestUtils.TYPE, index, requester, IndexJob.Priority.LOW, null);
+      }
+      long enqueued = System.nanoTime();
+      while (!manager.getLiveJobCounts().isEmpty()) {
+        TestUtils.waitMs(10);
+      }
+      long dispatched = System.nanoTime();
+      System.out.println(NB_JOBS + " jobs enqueued in " + TimeUnit.NANOSECONDS.toMillis(enqueued - start) + "ms, " +
+          "dispatched in " + TimeUnit.NANOSECONDS.toMillis(dispatched - start) + "ms");
+    } finally {
+      manager.stop();
+    }
+  }
+
+  @Test
+  public void testBatching() throws Exception {
+    for (int size : new int[] {1, 20, 100}) {
+      indexWithBatching(size, 500);
+    }
+  }
+
+  @Test
+  public void testBatchingThroughput() throws Exception {
+    TestUtils.assumeBenchmarks();
+    for (int size : new int[] {1, 20, 100}) {
+      long elapsed = indexWithBatching(size, NB_SMALL_DOCUMENTS);
+      System.out.println("batch size " + size + ": " + (NB_SMALL_DOCUMENTS * TimeUnit.SECONDS.toNanos(1) / elapsed) + " docs/sec");
+    }
+  }
+
+  @Test
+  public void testWriterStage() throws Exception {
+    IndexManager manager = new IndexManager(job -> new TestUtils.TestContent(job.getContentID(),
+        "<documents version='5.0'><document><field tokenize='false' name='" + TestUtils.ID_FIELD + "'>" +
+        job.getContentID() + "</field><field name='fulltext'>Some small content to index</field></document></documents>"),
+        new TestListener(), 8, false);
+    manager.setDefaultTranslator(new SourceForwarder("xml", "UTF-8"));
+    manager.setWriterStage(2, 10);
+    try {
+      LuceneIndex index = new LuceneIndex("writer-stage-test", new ByteBuffersDirectory(), new StandardAnalyzer());
+      index.setTemplates(TestUtils.TYPE, TestUtils.MEDIA_TYPE, template.toURI());
+      Requester requester = new Requester("IndexManagerTest");
+      for (int i = 0; i < NB_SMALL_DOCUMENTS; i++) {
+        manager.index("doc-" + i, TestUtils.TYPE, index, requester, IndexJob.Priority.LOW, null);
+      }
+      while (!manager.getLiveJobCounts().isEmpty()) {
+        TestUtils.waitMs(10);
+      }
+      Assert.assertNotNull(manager.getWriterStage());
+      // the changes to the one index were not all written by the same writer
+      int writers = 0;
+      for (int written : manager.getWriterStage().getWrittenTasks()) {
+        if (written > 0) writers++;
+      }
+      Assert.assertEquals(2, writers);
+      IndexReader reader = ((LuceneIndexIO) index.getIndexIO()).bookReader();
+      try {
+        Assert.assertEquals(NB_SMALL_DOCUMENTS, reader.numDocs());
+      } finally {
+        ((LuceneIndexIO) index.getIndexIO()).releaseReader(reader);
+      }
+      for (StageMetrics stage : manager.getStageMetrics()) {
+        System.out.println(stage);
+      }
+      Assert.assertEquals(NB_SMALL_DOCUMENTS, manager.getTranslateMetrics().getCount());
+    } finally {
+      manager.stop();
+    }
+  }
+
+  @Test
+  public void testLiveJobCountsAfterFailures() throws Exception {
+    AtomicInteger fetched = new AtomicInteger();
+    // every other job fails when its content is loaded
+    IndexManager manager = new IndexManager(job -> {
+      if (fetched.incrementAndGet() % 2 == 0) throw new IllegalStateException("Failing job " + job.getContentID());
+      return new TestUtils.TestContent(job.getContentID(), null);
+    }, new TestListener(), 2, false);
+    try {
+      LuceneIndex index = new LuceneIndex("failure-test", new ByteBuffersDirectory(), new StandardAnalyzer());
+      Requester requester = new Requester("IndexManagerTest");
+      for (int i = 0; i < 100; i++) {
+        manager.index("doc-" + i, TestUtils.TYPE, index, requester, IndexJob.Priority.LOW, null);
+      }
+      long deadline = System.currentTimeMillis() + 10000;
+      while (!manager.getLiveJobCounts().isEmpty() && System.currentTimeMillis() < deadline) {
+        TestUtils.waitMs(10);
+      }
+      Assert.assertEquals(100, fetched.get());
+      Assert.assertTrue(manager.getLiveJobCounts().isEmpty());
+    } finally {
+      manager.stop();
+    }
+  }
+
+  @Test
+  public void testResizeThreads() throws Exception {
+    IndexManager manager = new IndexManager(job -> new TestUtils.TestContent(job.getContentID(), null), new TestListener(), 2, false);
+    try {
+      LuceneIndex index = new LuceneIndex("resize-test", new ByteBuffersDirectory(), new StandardAnalyzer());
+      Requester requester = new Requester("IndexManagerTest");
+      Assert.assertEquals(2, manager.getThreads());
+      manager.setThreads(8);
+      Assert.assertEquals(8, manager.getThreads());
+      // the workers are started with the first job
+      index(manager, index, requester, 0);
+      Assert.assertEquals(8, manager.getRunningThreads());
+      manager.setThreads(1);
+      Assert.assertEquals(1, manager.getThreads());
+      // the retired workers stop once they stop waiting for a job
+      long deadline = System.currentTimeMillis() + 5000;
+      while (manager.getRunningThreads() > 1 && System.currentTimeMillis() < deadline) {
+        TestUtils.waitMs(10);
+      }
+      Assert.assertEquals(1, manager.getRunningThreads());
+      // the remaining worker still processes the jobs
+      index(manager, index, requester, 1000);
+      Assert.assertEquals(1, manager.getRunningThreads());
+    } finally {
+      manager.stop();
+    }
+  }
+
+  /**
+   * Index small documents with the batch size specified and check they are all in the index.
+   *
+   * @return the time taken to index them
+   */
+  private static long indexWithBatching(int size, int documents) throws Exception {
+    IndexManager manager = new IndexManager(job -> new TestUtils.TestContent(job.getContentID(),
+        "<documents version='5.0'><document><field tokenize='false' name='" + TestUtils.ID_FIELD + "'>" +
+        job.getContentID() + "</field><field name='fulltext'>Some small content to index</field></document></documents>"),
+        new TestListener(), 4, false);
+    manager.setDefaultTranslator(new SourceForwarder("xml", "UTF-8"));
+    manager.setBatching(size, 0);
+    try {
+      LuceneIndex index = new LuceneIndex("batching-test-" + size, new ByteBuffersDirectory(), new StandardAnalyzer());
+      index.setTemplates(TestUtils.TYPE, TestUtils.MEDIA_TYPE, template.toURI());
+      Requester requester = new Requester("IndexManagerTest");
+      long start = System.nanoTime();
+      for (int i = 0; i < documents; i++) {
+        manager.index("doc-" + i, TestUtils.TYPE, index, requester, IndexJob.Priority.LOW, null);
+      }
+      while (!manager.getLiveJobCounts().isEmpty()) {
+        TestUtils.waitMs(10);
+      }
+      long elapsed = System.nanoTime() - start;
+      IndexReader reader = ((LuceneIndexIO) index.getIndexIO()).bookReader();
+      try {
+        Assert.assertEquals(documents, reader.numDocs());
+      } finally {
+        ((LuceneIndexIO) index.getIndexIO()).releaseReader(reader);
+      }
+      return elapsed;
+    } finally {
+      manager.stop();
+    }
+  }
+
+  /**
+   * Index 1000 jobs and wait until they are all processed.
+   */
+  private static void index(IndexManager manager, LuceneIndex index, Requester requester, int offset) {
+    for (int i = offset; i < offset + 1000; i++) {
+      manager.index("doc-" + i, TestUtils.TYPE, index, requester, IndexJob.Priority.LOW, null);
+    }
+    long deadline = System.currentTimeMillis() + 30000;
+    while (!manager.getLiveJobCounts().isEmpty() && System.currentTimeMillis() < deadline) {
+      TestUtils.waitMs(10);
+    }
+    Assert.assertTrue(manager.getLiveJobCounts().isEmpty());
+  }
+
+  private static List<IndexJob> jobs(LuceneIndex index, Requester requester) {
+    List<IndexJob> jobs = new ArrayList<>(NB_JOBS);
+    for (int i = 0; i < NB_JOBS; i++) {
+      jobs.add(IndexJob.newJob("doc-" + i, TestUtils.TYPE, index, IndexJob.Priority.LOW, requester, null));
+    }
+    return jobs;
+  }
+
+  /**
+   * Dispatches the jobs as before: one runnable submitted to the executor for each job, which
+   * takes one job from the queue.
+   *
+   * @return the time until all the jobs were taken and done
+   */
+  private static long dispatchPerJob(List<IndexJob> jobs) throws InterruptedException {
+    IndexJobQueue queue = new IndexJobQueue(false, 0);
+    ExecutorService executor = Executors.newFixedThreadPool(NB_WORKERS);
+    long start = System.nanoTime();
+    for (IndexJob job : jobs) {
+      queue.addMultiThreadJob(job);
+      executor.execute(() -> {
+        try {
+          IndexJob next = queue.pollMultiThreadJob(0);
+          if (next != null) queue.done(next);
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+      });
+    }
+    executor.shutdown();
+    Assert.assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+    return System.nanoTime() - start;
+  }
+
+  /**
+   * Dispatches the jobs as now: long-lived workers polling the queue.
+   *
+   * @return the time until all the jobs were taken and done
+   */
+  private static long dispatchToWorkers(List<IndexJob> jobs) throws InterruptedException {
+    IndexJobQueue queue = new IndexJobQueue(false, 0);
+    ExecutorService executor = Executors.newFixedThreadPool(NB_WORKERS);
+    AtomicInteger done = new AtomicInteger();
+    long start = System.nanoTime();
+    for (int i = 0; i < NB_WORKERS; i++) {
+      executor.execute(() -> {
+        try {
+          while (done.get() < jobs.size()) {
+            IndexJob next = queue.pollMultiThreadJob(10);
+            if (next != null) {
+              queue.done(next);
+              done.incrementAndGet();
+            }
+          }
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+      });
+    }
+    for (IndexJob job : jobs) {
+      queue.addMultiThreadJob(job);
+    }
+    executor.shutdown();
+    Assert.assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+    return System.nanoTime() - start;
+  }
+
+}
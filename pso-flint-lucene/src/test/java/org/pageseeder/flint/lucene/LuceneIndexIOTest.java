@@ -0,0 +1,242 @@
+package org.pageseeder.flint.lucene;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.SortedNumericSortField;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.junit.Assert;
+import org.junit.Test;
+import org.pageseeder.flint.indexing.FlintDocument;
+import org.pageseeder.flint.indexing.FlintField;
+import org.pageseeder.flint.lucene.utils.TestListener;
+import org.pageseeder.flint.lucene.utils.TestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class LuceneIndexIOTest {
+
+  private static final int NB_DOCUMENTS = 20000;
+
+  private static final int NB_SMALL_DOCUMENTS = 2000;
+
+  @Test
+  public void testConcurrentWrites() throws Exception {
+    for (int threads : new int[] {1, 4}) {
+      writeAndCount(threads, NB_SMALL_DOCUMENTS);
+    }
+  }
+
+  @Test
+  public void testConcurrentWritesThroughput() throws Exception {
+    TestUtils.assumeBenchmarks();
+    for (int threads : new int[] {1, 2, 4, 8}) {
+      long elapsed = writeAndCount(threads, NB_DOCUMENTS);
+      System.out.println(threads + " thread(s): " + (NB_DOCUMENTS * TimeUnit.SECONDS.toNanos(1) / elapsed) + " docs/sec");
+    }
+  }
+
+  @Test
+  public void testConcurrentWritesAndCommits() throws Exception {
+    writeWhileCommitting(NB_SMALL_DOCUMENTS);
+  }
+
+  @Test
+  public void testCommitLatencyDuringWrites() throws Exception {
+    TestUtils.assumeBenchmarks();
+    List<Long> latencies = writeWhileCommitting(NB_DOCUMENTS);
+    long average = latencies.stream().mapToLong(Long::longValue).sum() / Math.max(1, latencies.size());
+    System.out.println(latencies.size() + " commits, average latency: " + TimeUnit.NANOSECONDS.toMicros(average) + " microseconds");
+    // used to be at least 100ms when overlapping a write
+    Assert.assertTrue(average < TimeUnit.MILLISECONDS.toNanos(100));
+  }
+
+  @Test
+  public void testWaitForGeneration() throws Exception {
+    LuceneIndexIO io = new LuceneIndexIO(new ByteBuffersDirectory(), new StandardAnalyzer());
+    io.setMaxStaleness(TimeUnit.MINUTES.toMillis(1));
+    try {
+      io.updateDocuments(null, Collections.singletonList(document("doc-1")), new TestListener(), null);
+      long generation = io.getGeneration();
+      // refresh is only scheduled
+      io.maybeRefresh();
+      IndexReader reader = io.bookReader();
+      try {
+        Assert.assertEquals(0, reader.numDocs());
+      } finally {
+        io.releaseReader(reader);
+      }
+      // read your writes
+      Assert.assertTrue(io.waitForGeneration(generation, 1000));
+      reader = io.bookReader();
+      try {
+        Assert.assertEquals(1, reader.numDocs());
+      } finally {
+        io.releaseReader(reader);
+      }
+    } finally {
+      io.stop();
+    }
+  }
+
+  @Test
+  public void testCommitPolicy() throws Exception {
+    LuceneIndexIO io = new LuceneIndexIO(new ByteBuffersDirectory(), new StandardAnalyzer());
+    io.setCommitPolicy(new CommitPolicy.Builder().maxDocuments(1000).whenDrained(false).build());
+    try {
+      TestListener listener = new TestListener();
+      for (int i = 0; i < NB_DOCUMENTS; i++) {
+        String id = "doc-" + i;
+        io.updateDocuments(new LuceneDeleteRule("id", id), Collections.singletonList(document(id)), listener, null);
+        io.maybeCommit(false);
+      }
+      // drained is ignored
+      io.maybeCommit(true);
+      Assert.assertEquals(NB_DOCUMENTS / 1000, io.getCommitCount());
+      System.out.println(io.getCommitCount() + " commits in " + io.getCommitTime() + "ms");
+    } finally {
+      io.stop();
+    }
+  }
+
+  @Test
+  public void testIndexSort() throws Exception {
+    Directory directory = new ByteBuffersDirectory();
+    LuceneIndexIO io = new LuceneIndexIO(directory, new StandardAnalyzer());
+    TestListener listener = new TestListener();
+    for (int i = 0; i < 1000; i++) {
+      io.updateDocuments(null, Collections.singletonList(numbered("doc-" + i, (i * 7919) % 1000)), listener, null);
+    }
+    io.stop();
+    // reopen the existing index with an index sort
+    Sort sort = new Sort(new SortedNumericSortField("number", SortField.Type.LONG));
+    io = new LuceneIndexIO(directory, new StandardAnalyzer(), new WriterSettings.Builder().indexSort(sort).build());
+    try {
+      IndexReader reader = io.bookReader();
+      try {
+        Assert.assertEquals(1000, reader.numDocs());
+        Assert.assertTrue(LuceneIndexQueries.isIndexSorted(reader, sort));
+      } finally {
+        io.releaseReader(reader);
+      }
+      // new documents are sorted too
+      io.updateDocuments(null, Collections.singletonList(numbered("doc-1000", 1000)), listener, null);
+      io.maybeCommit();
+      reader = io.bookReader();
+      try {
+        Assert.assertEquals(1001, reader.numDocs());
+        Assert.assertTrue(LuceneIndexQueries.isIndexSorted(reader, sort));
+      } finally {
+        io.releaseReader(reader);
+      }
+    } finally {
+      io.stop();
+    }
+  }
+
+  /**
+   * Write the documents to a new index with the number of threads provided and check they are all in the index.
+   *
+   * @return the time taken in nanoseconds
+   */
+  private static long writeAndCount(int threads, int total) throws Exception {
+    LuceneIndexIO io = new LuceneIndexIO(new ByteBuffersDirectory(), new StandardAnalyzer());
+    try {
+      long elapsed = write(io, threads, total);
+      io.maybeCommit();
+      assertNumDocs(io, total);
+      return elapsed;
+    } finally {
+      io.stop();
+    }
+  }
+
+  /**
+   * Write the documents to a new index with 8 threads while another thread keeps committing and
+   * check they are all in the index.
+   *
+   * @return the latency of each commit in nanoseconds
+   */
+  private static List<Long> writeWhileCommitting(int total) throws Exception {
+    LuceneIndexIO io = new LuceneIndexIO(new ByteBuffersDirectory(), new StandardAnalyzer());
+    AtomicBoolean writing = new AtomicBoolean(true);
+    List<Long> latencies = new ArrayList<>();
+    Thread committer = new Thread(() -> {
+      while (writing.get()) {
+        long start = System.nanoTime();
+        io.maybeCommit();
+        latencies.add(System.nanoTime() - start);
+      }
+    });
+    try {
+      committer.start();
+      write(io, 8, total);
+      writing.set(false);
+      committer.join();
+      io.maybeCommit();
+      assertNumDocs(io, total);
+      return latencies;
+    } finally {
+      io.stop();
+    }
+  }
+
+  private static void assertNumDocs(LuceneIndexIO io, int expected) throws Exception {
+    IndexReader reader = io.bookReader();
+    try {
+      Assert.assertEquals(expected, reader.numDocs());
+    } finally {
+      io.releaseReader(reader);
+    }
+  }
+
+  /**
+   * Write the documents with the number of threads provided.
+   *
+   * @return the time taken in nanoseconds
+   */
+  private static long write(LuceneIndexIO io, int threads, int total) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    List<Future<?>> futures = new ArrayList<>();
+    TestListener listener = new TestListener();
+    long start = System.nanoTime();
+    for (int t = 0; t < threads; t++) {
+      final int thread = t;
+      futures.add(executor.submit(() -> {
+        for (int i = thread; i < total; i += threads) {
+          String id = "doc-" + i;
+          io.updateDocuments(new LuceneDeleteRule("id", id), Collections.singletonList(document(id)), listener, null);
+        }
+        return null;
+      }));
+    }
+    for (Future<?> f : futures) f.get();
+    long elapsed = System.nanoTime() - start;
+    executor.shutdown();
+    return elapsed;
+  }
+
+  static FlintDocument document(String id) {
+    FlintDocument doc = new FlintDocument();
+    doc.add(new FlintField(null).name("id").value(id).store(true).tokenize(false));
+    doc.add(new FlintField(null).name("fulltext").value("The content of document " + id + " to index").store(false).tokenize(true));
+    return doc;
+  }
+
+  static FlintDocument numbered(String id, long number) {
+    FlintDocument doc = document(id);
+    doc.add(new FlintField(null).name("number").value(String.valueOf(number)).numeric(FlintField.NumericType.LONG)
+        .docValues(FlintField.DocValuesType.SORTED_NUMERIC).store(false));
+    return doc;
+  }
+
+}
@@ -0,0 +1,92 @@
+package org.pageseeder.flint.lucene;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pageseeder.flint.indexing.FlintDocument;
+import org.pageseeder.flint.lucene.utils.TestListener;
+import org.pageseeder.flint.lucene.utils.TestUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class WriterSettingsTest {
+
+  private static final int NB_DOCUMENTS = 50000;
+
+  private static final int NB_SMALL_DOCUMENTS = 1000;
+
+  private static final WriterSettings CUSTOM = new WriterSettings.Builder().ramBufferMB(64).mergeThreads(2).maxBufferedDocs(10000).build();
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testPresets() throws Exception {
+    for (WriterSettings settings : new WriterSettings[] {WriterSettings.DEFAULT, WriterSettings.BULK, WriterSettings.COMPACT, CUSTOM}) {
+      load(new ByteBuffersDirectory(), settings, NB_SMALL_DOCUMENTS);
+    }
+  }
+
+  @Test
+  public void testBulkLoadPresets() throws Exception {
+    TestUtils.assumeBenchmarks();
+    bulkLoad("default", WriterSettings.DEFAULT);
+    bulkLoad("bulk", WriterSettings.BULK);
+    bulkLoad("compact", WriterSettings.COMPACT);
+    bulkLoad("custom", CUSTOM);
+  }
+
+  private void bulkLoad(String name, WriterSettings settings) throws Exception {
+    File root = this.folder.newFolder("writer-" + name);
+    long start = System.nanoTime();
+    int segments = load(FSDirectory.open(root.toPath()), settings, NB_DOCUMENTS);
+    long elapsed = System.nanoTime() - start;
+    System.out.println(name + ": " + (NB_DOCUMENTS * TimeUnit.SECONDS.toNanos(1) / elapsed) + " docs/sec, " +
+        segments + " segment(s), " + (size(root) / 1024) + "KB");
+  }
+
+  /**
+   * Load the documents in batches of 100 and check they are all in the index.
+   *
+   * @return the number of segments
+   */
+  private static int load(Directory directory, WriterSettings settings, int documents) throws Exception {
+    LuceneIndexIO io = new LuceneIndexIO(directory, new StandardAnalyzer(), settings);
+    try {
+      Assert.assertSame(settings, io.getWriterSettings());
+      TestListener listener = new TestListener();
+      for (int i = 0; i < documents; i += 100) {
+        List<FlintDocument> docs = new ArrayList<>();
+        for (int j = i; j < i + 100; j++) docs.add(LuceneIndexIOTest.document("doc-" + j));
+        io.updateDocuments(null, docs, listener, null);
+      }
+      io.maybeCommit();
+      IndexReader reader = io.bookReader();
+      try {
+        Assert.assertEquals(documents, reader.numDocs());
+        return reader.leaves().size();
+      } finally {
+        io.releaseReader(reader);
+      }
+    } finally {
+      io.stop();
+    }
+  }
+
+  private static long size(File folder) {
+    long size = 0;
+    File[] files = folder.listFiles();
+    if (files != null) for (File f : files) size += f.length();
+    return size;
+  }
+
+}
@@ -0,0 +1,184 @@
+package org.pageseeder.flint.lucene.facet;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongField;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.pageseeder.flint.indexing.FlintField.NumericType;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+public class FacetCacheTest {
+
+  private static final String[] COLOURS = {"red", "green", "blue", "yellow", "black"};
+
+  private Directory directory;
+
+  private IndexWriter writer;
+
+  private SearcherManager manager;
+
+  private int next = 0;
+
+  @Before
+  public void init() throws IOException {
+    this.directory = new ByteBuffersDirectory();
+    this.writer = new IndexWriter(this.directory, new IndexWriterConfig(new StandardAnalyzer()).setMergePolicy(NoMergePolicy.INSTANCE));
+    this.manager = new SearcherManager(this.writer, null);
+  }
+
+  @After
+  public void after() throws IOException {
+    this.manager.close();
+    this.writer.close();
+    this.directory.close();
+  }
+
+  @Test
+  public void testHitsAndMisses() throws IOException {
+    FacetCache cache = new FacetCache();
+    addSegment(10000);
+    addSegment(10000);
+    refresh(cache);
+    Query base = new TermQuery(new Term("parity", "even"));
+    compute(cache, base);
+    // one entry per segment and facet
+    Assert.assertEquals(0, cache.getHits());
+    Assert.assertEquals(4, cache.getMisses());
+    Assert.assertEquals(4, cache.size());
+    compute(cache, base);
+    Assert.assertEquals(4, cache.getHits());
+    Assert.assertEquals(4, cache.getMisses());
+    // a different query is cached separately
+    compute(cache, null);
+    Assert.assertEquals(4, cache.getHits());
+    Assert.assertEquals(8, cache.getMisses());
+    Assert.assertEquals(8, cache.size());
+  }
+
+  @Test
+  public void testRefresh() throws IOException {
+    FacetCache cache = new FacetCache();
+    addSegment(10000);
+    addSegment(10000);
+    refresh(cache);
+    Query base = new TermQuery(new Term("parity", "even"));
+    compute(cache, base);
+    // only the new segment is counted
+    addSegment(10000);
+    refresh(cache);
+    compute(cache, base);
+    Assert.assertEquals(4, cache.getHits());
+    Assert.assertEquals(6, cache.getMisses());
+    // deleting from a segment changes its counts
+    this.writer.deleteDocuments(new Term("id", "3"));
+    refresh(cache);
+    compute(cache, base);
+    Assert.assertEquals(8, cache.getHits());
+    Assert.assertEquals(8, cache.getMisses());
+    Assert.assertEquals(6, cache.size());
+    // so does updating its doc values
+    this.writer.updateNumericDocValue(new Term("id", "10003"), "version", 2);
+    refresh(cache);
+    compute(cache, base);
+    Assert.assertEquals(12, cache.getHits());
+    Assert.assertEquals(10, cache.getMisses());
+    Assert.assertEquals(6, cache.size());
+  }
+
+  @Test
+  public void testEviction() throws IOException {
+    FacetCache cache = new FacetCache(3);
+    addSegment(1000);
+    addSegment(1000);
+    refresh(cache);
+    compute(cache, new TermQuery(new Term("parity", "even")));
+    Assert.assertEquals(3, cache.size());
+    Assert.assertEquals(1, cache.getEvictions());
+  }
+
+  @Test
+  public void testSpeed() throws IOException {
+    FacetCache cache = new FacetCache();
+    for (int i = 0; i < 10; i++) addSegment(100000);
+    refresh(cache);
+    long start = System.nanoTime();
+    compute(cache, null);
+    long first = System.nanoTime() - start;
+    addSegment(1000);
+    refresh(cache);
+    start = System.nanoTime();
+    compute(cache, null);
+    long second = System.nanoTime() - start;
+    System.out.println("facets without cache " + TimeUnit.NANOSECONDS.toMillis(first) + "ms, " +
+        "after a refresh " + TimeUnit.NANOSECONDS.toMillis(second) + "ms, " + cache);
+  }
+
+  /**
+   * Computes the facets with and without cache and checks that they are the same.
+   */
+  private void compute(FacetCache cache, Query base) throws IOException {
+    IndexSearcher searcher = this.manager.acquire();
+    try {
+      FlexibleFieldFacet cached = StringFieldFacet.newFacet("colour");
+      NumericRangeFacet cachedRange = newRangeFacet();
+      new FacetRequest.Builder().addFacet(cached).addFacet(cachedRange).cache(cache).build().compute(searcher, base);
+      FlexibleFieldFacet expected = StringFieldFacet.newFacet("colour");
+      expected.compute(searcher, base);
+      NumericRangeFacet expectedRange = newRangeFacet();
+      expectedRange.compute(searcher, base);
+      Assert.assertEquals(expected.getTotalTerms(), cached.getTotalTerms());
+      Assert.assertEquals(expected.getValues().toString(), cached.getValues().toString());
+      Assert.assertEquals(expectedRange.getTotalRanges(), cachedRange.getTotalRanges());
+      Assert.assertEquals(expectedRange.getValues().toString(), cachedRange.getValues().toString());
+    } finally {
+      this.manager.release(searcher);
+    }
+  }
+
+  private static NumericRangeFacet newRangeFacet() {
+    return new NumericRangeFacet.Builder().name("number").numeric(NumericType.LONG)
+        .addRange(0, 10).addRange(10, false, 50, true).addRange(50, false, 100, true).build();
+  }
+
+  private void addSegment(int documents) throws IOException {
+    for (int i = 0; i < documents; i++, this.next++) {
+      Document doc = new Document();
+      doc.add(new StringField("id", String.valueOf(this.next), Field.Store.NO));
+      doc.add(new StringField("colour", COLOURS[this.next % COLOURS.length], Field.Store.NO));
+      doc.add(new StringField("parity", this.next % 2 == 0 ? "even" : "odd", Field.Store.NO));
+      doc.add(new LongField("number", this.next % 100, Field.Store.NO));
+      doc.add(new NumericDocValuesField("version", 1));
+      this.writer.addDocument(doc);
+    }
+    this.writer.flush();
+  }
+
+  private void refresh(FacetCache cache) throws IOException {
+    this.manager.maybeRefreshBlocking();
+    IndexSearcher searcher = this.manager.acquire();
+    try {
+      cache.retain(searcher.getIndexReader());
+    } finally {
+      this.manager.release(searcher);
+    }
+  }
+
+}
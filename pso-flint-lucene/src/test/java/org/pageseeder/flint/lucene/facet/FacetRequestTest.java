@@ -0,0 +1,186 @@
+package org.pageseeder.flint.lucene.facet;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.DateTools;
+import org.apache.lucene.document.DateTools.Resolution;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pageseeder.flint.indexing.FlintField.NumericType;
+import org.pageseeder.flint.lucene.search.Filter;
+import org.pageseeder.flint.lucene.search.StringTermFilter;
+import org.pageseeder.flint.lucene.utils.TestUtils;
+
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.time.Period;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks that computing facets with a request gives the same results as computing them one by one.
+ */
+public class FacetRequestTest {
+
+  private static final int NB_DOCUMENTS = 100000;
+
+  private static final OffsetDateTime START = OffsetDateTime.of(2020, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+  private static Directory directory;
+
+  private static DirectoryReader reader;
+
+  private static IndexSearcher searcher;
+
+  private static ExecutorService executor;
+
+  @BeforeClass
+  public static void init() throws IOException {
+    // keep several segments to count them in parallel
+    IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer()).setMaxBufferedDocs(10000).setMergePolicy(NoMergePolicy.INSTANCE);
+    directory = TestUtils.newIndex(config, writer -> {
+      for (int i = 0; i < NB_DOCUMENTS; i++) {
+        int day = i % 365;
+        Document doc = new Document();
+        doc.add(new StringField("id", String.valueOf(i), Field.Store.NO));
+        doc.add(new StringField("colour", TestUtils.COLOURS[i % TestUtils.COLOURS.length], Field.Store.NO));
+        doc.add(new StringField("type", "type" + (i % 7), Field.Store.NO));
+        doc.add(new StringField("date", DateTools.timeToString(START.plusDays(day).toInstant().toEpochMilli(), Resolution.DAY), Field.Store.NO));
+        doc.add(new LongField("day", day, Field.Store.NO));
+        doc.add(new StringField("parity", i % 2 == 0 ? "even" : "odd", Field.Store.NO));
+        writer.addDocument(doc);
+      }
+      // deleted documents must not be counted
+      for (int i = 0; i < NB_DOCUMENTS; i += 11) {
+        writer.deleteDocuments(new Term("id", String.valueOf(i)));
+      }
+    });
+    reader = DirectoryReader.open(directory);
+    searcher = new IndexSearcher(reader);
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @AfterClass
+  public static void after() throws IOException {
+    executor.shutdown();
+    reader.close();
+    directory.close();
+  }
+
+  @Test
+  public void testSameAsIndividualFacets() throws IOException {
+    Query base = new TermQuery(new Term("parity", "even"));
+    assertSameAsIndividualFacets(base, null, null);
+    assertSameAsIndividualFacets(base, null, executor);
+  }
+
+  @Test
+  public void testSameAsIndividualFacetsWithFilters() throws IOException {
+    Query base = new TermQuery(new Term("parity", "even"));
+    List<Filter> filters = Arrays.asList(StringTermFilter.newFilter("colour", "red"), StringTermFilter.newFilter("type", "type3"));
+    assertSameAsIndividualFacets(base, filters, null);
+    assertSameAsIndividualFacets(base, filters, executor);
+  }
+
+  @Test
+  public void testSameAsIndividualFacetsNoQuery() throws IOException {
+    assertSameAsIndividualFacets(null, null, executor);
+  }
+
+  @Test
+  public void testSpeed() throws IOException {
+    Query base = new TermQuery(new Term("parity", "even"));
+    List<Filter> filters = Collections.singletonList(StringTermFilter.newFilter("colour", "red"));
+    // one by one
+    long start = System.nanoTime();
+    List<FlexibleFieldFacet> fieldFacets = fieldFacets();
+    for (FlexibleFieldFacet facet : fieldFacets) facet.compute(searcher, base, filters, 10);
+    for (FlexibleIntervalFacet facet : intervalFacets()) facet.compute(searcher, base, filters, 10);
+    for (FlexibleRangeFacet facet : rangeFacets()) facet.compute(searcher, base, filters, 10);
+    long individual = System.nanoTime() - start;
+    // sequential request
+    start = System.nanoTime();
+    request(filters, null).compute(searcher, base);
+    long sequential = System.nanoTime() - start;
+    // parallel request
+    start = System.nanoTime();
+    request(filters, executor).compute(searcher, base);
+    long parallel = System.nanoTime() - start;
+    System.out.println("facets one by one " + TimeUnit.NANOSECONDS.toMillis(individual) + "ms, " +
+        "request " + TimeUnit.NANOSECONDS.toMillis(sequential) + "ms, " +
+        "parallel request " + TimeUnit.NANOSECONDS.toMillis(parallel) + "ms");
+  }
+
+  private static void assertSameAsIndividualFacets(Query base, List<Filter> filters, ExecutorService executor) throws IOException {
+    FacetRequest request = request(filters, executor);
+    request.compute(searcher, base);
+    List<FlexibleFieldFacet> fieldFacets = fieldFacets();
+    for (int i = 0; i < fieldFacets.size(); i++) {
+      FlexibleFieldFacet expected = fieldFacets.get(i);
+      FlexibleFieldFacet actual = request.getFieldFacets().get(i);
+      expected.compute(searcher, base, filters, 10);
+      Assert.assertEquals(expected.getTotalTerms(), actual.getTotalTerms());
+      Assert.assertEquals(expected.getValues().toString(), actual.getValues().toString());
+      Assert.assertEquals(expected.isFlexible(), actual.isFlexible());
+    }
+    List<FlexibleIntervalFacet> intervalFacets = intervalFacets();
+    for (int i = 0; i < intervalFacets.size(); i++) {
+      FlexibleIntervalFacet expected = intervalFacets.get(i);
+      FlexibleIntervalFacet actual = request.getIntervalFacets().get(i);
+      expected.compute(searcher, base, filters, 10);
+      Assert.assertEquals(expected.getTotalIntervals(), actual.getTotalIntervals());
+      Assert.assertEquals(expected.getValues().toString(), actual.getValues().toString());
+    }
+    List<FlexibleRangeFacet> rangeFacets = rangeFacets();
+    for (int i = 0; i < rangeFacets.size(); i++) {
+      FlexibleRangeFacet expected = rangeFacets.get(i);
+      FlexibleRangeFacet actual = request.getRangeFacets().get(i);
+      expected.compute(searcher, base, filters, 10);
+      Assert.assertEquals(expected.getTotalRanges(), actual.getTotalRanges());
+      Assert.assertEquals(expected.getValues().toString(), actual.getValues().toString());
+    }
+  }
+
+  private static FacetRequest request(List<Filter> filters, ExecutorService executor) {
+    FacetRequest.Builder request = new FacetRequest.Builder().filters(filters).size(10).executor(executor);
+    for (FlexibleFieldFacet facet : fieldFacets()) request.addFacet(facet);
+    for (FlexibleIntervalFacet facet : intervalFacets()) request.addFacet(facet);
+    for (FlexibleRangeFacet facet : rangeFacets()) request.addFacet(facet);
+    return request.build();
+  }
+
+  private static List<FlexibleFieldFacet> fieldFacets() {
+    return Arrays.asList(StringFieldFacet.newFacet("colour"), StringFieldFacet.newFacet("type"), StringFieldFacet.newFacet("date"));
+  }
+
+  private static List<FlexibleIntervalFacet> intervalFacets() {
+    return Arrays.asList(
+        new DateIntervalFacet.Builder().name("date").resolution(Resolution.DAY).intervalDate(Period.ofMonths(1)).start(START).build(),
+        new NumericIntervalFacet.Builder().name("day").numeric(NumericType.LONG).start(0).end(365).intervalLength(30).build());
+  }
+
+  private static List<FlexibleRangeFacet> rangeFacets() {
+    return Arrays.asList(
+        new StringRangeFacet.Builder().name("type").addRange("type0", true, "type2", true).addRange("type3", true, "type6", false).build(),
+        new NumericRangeFacet.Builder().name("day").numeric(NumericType.LONG).addRange(0, 100).addRange(50, true, 200, false).addRange(300, 364).build());
+  }
+
+}
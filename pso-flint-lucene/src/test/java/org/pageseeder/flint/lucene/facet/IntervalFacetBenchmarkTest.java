@@ -0,0 +1,155 @@
+package org.pageseeder.flint.lucene.facet;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.DateTools;
+import org.apache.lucene.document.DateTools.Resolution;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pageseeder.flint.indexing.FlintField.NumericType;
+import org.pageseeder.flint.lucene.facet.FlexibleIntervalFacet.Interval;
+import org.pageseeder.flint.lucene.search.DocumentCounter;
+import org.pageseeder.flint.lucene.search.Terms;
+import org.pageseeder.flint.lucene.util.Bucket;
+import org.pageseeder.flint.lucene.utils.TestUtils;
+
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.time.Period;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the single pass interval counts with one search per term or per interval, over 1M
+ * documents with 10 years of daily dates.
+ */
+public class IntervalFacetBenchmarkTest {
+
+  private static final int NB_DOCUMENTS = 1000000;
+
+  private static final int NB_DAYS = 3650;
+
+  private static final OffsetDateTime START = OffsetDateTime.of(2010, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+  private static Directory directory;
+
+  private static DirectoryReader reader;
+
+  private static IndexSearcher searcher;
+
+  @BeforeClass
+  public static void init() throws IOException {
+    TestUtils.assumeBenchmarks();
+    directory = new ByteBuffersDirectory();
+    long start = System.nanoTime();
+    try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new StandardAnalyzer()))) {
+      for (int i = 0; i < NB_DOCUMENTS; i++) {
+        int day = i % NB_DAYS;
+        Document doc = new Document();
+        doc.add(new StringField("date", DateTools.timeToString(START.plusDays(day).toInstant().toEpochMilli(), Resolution.DAY), Field.Store.NO));
+        doc.add(new LongField("day", day, Field.Store.NO));
+        doc.add(new StringField("parity", i % 2 == 0 ? "even" : "odd", Field.Store.NO));
+        writer.addDocument(doc);
+      }
+    }
+    reader = DirectoryReader.open(directory);
+    searcher = new IndexSearcher(reader);
+    System.out.println(NB_DOCUMENTS + " documents indexed in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+  }
+
+  @AfterClass
+  public static void after() throws IOException {
+    if (reader != null) reader.close();
+    if (directory != null) directory.close();
+  }
+
+  @Test
+  public void testDateIntervals() throws IOException {
+    Query base = new TermQuery(new Term("parity", "even"));
+    DateIntervalFacet facet = new DateIntervalFacet.Builder().name("date").resolution(Resolution.DAY)
+        .intervalDate(Period.ofMonths(1)).start(START).build();
+    long start = System.nanoTime();
+    facet.compute(searcher, base, 200);
+    long single = System.nanoTime() - start;
+    start = System.nanoTime();
+    Map<Interval, Integer> expected = perTerm(facet, base);
+    long perTerm = System.nanoTime() - start;
+    System.out.println("date intervals: single pass " + TimeUnit.NANOSECONDS.toMillis(single) + "ms, " +
+        "one search per term " + TimeUnit.NANOSECONDS.toMillis(perTerm) + "ms");
+    assertSame(expected, facet.getValues());
+    Assert.assertEquals(expected.size(), facet.getTotalIntervals());
+  }
+
+  @Test
+  public void testNumericIntervals() throws IOException {
+    Query base = new TermQuery(new Term("parity", "even"));
+    NumericIntervalFacet facet = new NumericIntervalFacet.Builder().name("day").numeric(NumericType.LONG)
+        .start(0).end(NB_DAYS).intervalLength(30).build();
+    long start = System.nanoTime();
+    facet.compute(searcher, base, 200);
+    long single = System.nanoTime() - start;
+    start = System.nanoTime();
+    Map<Interval, Integer> expected = perInterval(facet, base);
+    long perInterval = System.nanoTime() - start;
+    System.out.println("numeric intervals: single pass " + TimeUnit.NANOSECONDS.toMillis(single) + "ms, " +
+        "one search per interval " + TimeUnit.NANOSECONDS.toMillis(perInterval) + "ms");
+    assertSame(expected, facet.getValues());
+  }
+
+  private static Map<Interval, Integer> perTerm(FlexibleIntervalFacet facet, Query base) throws IOException {
+    Map<Interval, Integer> intervals = new HashMap<>();
+    DocumentCounter counter = new DocumentCounter();
+    for (Term t : Terms.terms(searcher.getIndexReader(), facet.name())) {
+      Interval interval = facet.findInterval(t);
+      if (interval == null) continue;
+      searcher.search(and(base, facet.termToQuery(t)), counter);
+      if (counter.getCount() > 0) intervals.merge(interval, counter.getCount(), Integer::sum);
+      counter.reset();
+    }
+    return intervals;
+  }
+
+  private static Map<Interval, Integer> perInterval(NumericIntervalFacet facet, Query base) throws IOException {
+    Map<Interval, Integer> intervals = new HashMap<>();
+    DocumentCounter counter = new DocumentCounter();
+    for (Interval interval : facet._intervals) {
+      searcher.search(and(base, facet.intervalToQuery(interval)), counter);
+      if (counter.getCount() > 0) intervals.put(interval, counter.getCount());
+      counter.reset();
+    }
+    return intervals;
+  }
+
+  private static Query and(Query a, Query b) {
+    BooleanQuery.Builder query = new BooleanQuery.Builder();
+    query.add(a, Occur.MUST);
+    query.add(b, Occur.MUST);
+    return query.build();
+  }
+
+  private static void assertSame(Map<Interval, Integer> expected, Bucket<Interval> actual) {
+    Assert.assertEquals(expected.size(), actual.items().size());
+    for (Map.Entry<Interval, Integer> e : expected.entrySet()) {
+      Assert.assertEquals(e.getValue().intValue(), actual.count(e.getKey()));
+    }
+  }
+
+}
@@ -0,0 +1,67 @@
+package org.pageseeder.flint.lucene.facet;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.junit.Assert;
+import org.pageseeder.flint.lucene.search.DocumentCounter;
+import org.pageseeder.flint.lucene.search.Filter;
+import org.pageseeder.flint.lucene.search.Terms;
+import org.pageseeder.flint.lucene.util.Bucket;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Computes field facets the original way, with one search per term, to check that the counts
+ * computed in a single pass are identical.
+ */
+final class PerTermFacetCounts {
+
+  private final Bucket<String> bucket;
+
+  private final int totalTerms;
+
+  private PerTermFacetCounts(Bucket<String> bucket, int totalTerms) {
+    this.bucket = bucket;
+    this.totalTerms = totalTerms;
+  }
+
+  static PerTermFacetCounts compute(FlexibleFieldFacet facet, IndexSearcher searcher, Query base, List<Filter> filters, int size) throws IOException {
+    Query filtered = base;
+    if (base != null && filters != null) {
+      for (Filter filter : filters) {
+        if (!facet.name().equals(filter.name()))
+          filtered = filter.filterQuery(filtered);
+      }
+    }
+    List<Term> terms = Terms.terms(searcher.getIndexReader(), facet.name());
+    DocumentCounter counter = new DocumentCounter();
+    Bucket<String> bucket = new Bucket<>(size);
+    int total = 0;
+    for (Term t : terms) {
+      Query query = facet.termToQuery(t);
+      if (filtered != null) {
+        BooleanQuery.Builder bq = new BooleanQuery.Builder();
+        bq.add(filtered, Occur.MUST);
+        bq.add(query, Occur.MUST);
+        query = bq.build();
+      }
+      searcher.search(query, counter);
+      int count = counter.getCount();
+      bucket.add(t.text(), count);
+      counter.reset();
+      if (count > 0 || base == null) total++;
+    }
+    return new PerTermFacetCounts(bucket, total);
+  }
+
+  void assertSame(FlexibleFieldFacet facet) {
+    Assert.assertEquals(this.totalTerms, facet.getTotalTerms());
+    Assert.assertEquals(this.bucket.toString(), facet.getValues().toString());
+    Assert.assertEquals(this.bucket.entrySet(), facet.getValues().entrySet());
+  }
+
+}
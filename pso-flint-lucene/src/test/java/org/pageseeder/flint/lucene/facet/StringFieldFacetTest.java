@@ -24,6 +24,7 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -221,4 +222,33 @@ public class StringFieldFacetTest {
     Assert.assertNull(facet.getValues());
   }
 
+  @Test
+  public void testSinglePassParity() throws IOException {
+    Query base = new TermQuery(new Term("field", "value"));
+    List<Filter> filters = Collections.singletonList(StringTermFilter.newFilter("facet3", "value30"));
+    for (String field : Arrays.asList("facet1", "facet2", "facet3")) {
+      for (int size : new int[] {1, 3, 10}) {
+        StringFieldFacet facet = StringFieldFacet.newFacet(field);
+        facet.compute(searcher, size);
+        PerTermFacetCounts.compute(facet, searcher, null, null, size).assertSame(facet);
+        facet.compute(searcher, base, size);
+        PerTermFacetCounts.compute(facet, searcher, base, null, size).assertSame(facet);
+        facet.compute(searcher, base, filters, size);
+        PerTermFacetCounts.compute(facet, searcher, base, filters, size).assertSame(facet);
+      }
+    }
+  }
+
+  @Test
+  public void testSinglePassParityMultipleFacets() throws IOException {
+    Query base = new TermQuery(new Term("field", "value"));
+    List<Filter> filters = Collections.singletonList(StringTermFilter.newFilter("facet3", "value30"));
+    List<StringFieldFacet> facets = Arrays.asList(StringFieldFacet.newFacet("facet1"),
+        StringFieldFacet.newFacet("facet2"), StringFieldFacet.newFacet("facet3"));
+    FlexibleFieldFacet.compute(facets, searcher, base, filters, 10);
+    for (StringFieldFacet facet : facets) {
+      PerTermFacetCounts.compute(facet, searcher, base, filters, 10).assertSame(facet);
+    }
+  }
+
 }
\ No newline at end of file
@@ -0,0 +1,121 @@
+package org.pageseeder.flint.lucene.query;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.store.Directory;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pageseeder.flint.lucene.utils.TestUtils;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+public class FieldProjectionTest {
+
+  private static final int NB_DOCUMENTS = 10000;
+
+  private static Directory directory;
+
+  private static DirectoryReader reader;
+
+  @BeforeClass
+  public static void init() throws IOException {
+    StringBuilder fulltext = new StringBuilder();
+    while (fulltext.length() < 20000) fulltext.append("The quick brown fox jumps over the lazy dog ").append(fulltext.length()).append(' ');
+    directory = TestUtils.newIndex(new IndexWriterConfig(new StandardAnalyzer()), writer -> {
+      for (int i = 0; i < NB_DOCUMENTS; i++) {
+        Document doc = new Document();
+        doc.add(new StringField("id", "doc-" + i, Field.Store.YES));
+        doc.add(new StringField("title", "Title " + i, Field.Store.YES));
+        doc.add(new LongField("number", i, Field.Store.YES));
+        doc.add(new TextField("fulltext", fulltext.toString() + i, Field.Store.YES));
+        writer.addDocument(doc);
+      }
+    });
+    reader = DirectoryReader.open(directory);
+  }
+
+  @AfterClass
+  public static void after() throws IOException {
+    reader.close();
+    directory.close();
+  }
+
+  @Test
+  public void testAll() throws IOException {
+    Document doc = FieldProjection.ALL.load(reader.storedFields(), 3);
+    Assert.assertEquals(4, doc.getFields().size());
+    Assert.assertTrue(FieldProjection.ALL.isAll());
+  }
+
+  @Test
+  public void testInclude() throws IOException {
+    FieldProjection projection = new FieldProjection.Builder().include("id", "number").build();
+    Document doc = projection.load(reader.storedFields(), 3);
+    Assert.assertEquals(2, doc.getFields().size());
+    Assert.assertEquals("doc-3", doc.get("id"));
+    Assert.assertEquals(3, doc.getField("number").numericValue().longValue());
+  }
+
+  @Test
+  public void testExclude() throws IOException {
+    FieldProjection projection = new FieldProjection.Builder().exclude("fulltext").build();
+    Document doc = projection.load(reader.storedFields(), 3);
+    Assert.assertEquals(3, doc.getFields().size());
+    Assert.assertNull(doc.get("fulltext"));
+    Assert.assertEquals("Title 3", doc.get("title"));
+  }
+
+  @Test
+  public void testMaxLength() throws IOException {
+    FieldProjection projection = new FieldProjection.Builder().maxLength(1000).build();
+    Document doc = projection.load(reader.storedFields(), 3);
+    Assert.assertEquals(3, doc.getFields().size());
+    Assert.assertNull(doc.get("fulltext"));
+    // unless the field is needed
+    doc = projection.load(reader.storedFields(), 3, "fulltext"::equals);
+    Assert.assertEquals(4, doc.getFields().size());
+    Assert.assertNotNull(doc.get("fulltext"));
+  }
+
+  @Test
+  public void testExtractFields() throws IOException {
+    FieldProjection projection = new FieldProjection.Builder().include("id").maxLength(100).build();
+    // fields used for extracts are loaded even if not included and whatever their length
+    Document doc = projection.load(reader.storedFields(), 3, "fulltext"::equals);
+    Assert.assertEquals(2, doc.getFields().size());
+    Assert.assertEquals("doc-3", doc.get("id"));
+    Assert.assertTrue(doc.get("fulltext").length() > 100);
+  }
+
+  @Test
+  public void testSpeed() throws IOException {
+    FieldProjection projection = new FieldProjection.Builder().exclude("fulltext").build();
+    // warm up
+    load(FieldProjection.ALL);
+    load(projection);
+    long all = load(FieldProjection.ALL);
+    long excluded = load(projection);
+    System.out.println("loading all fields " + TimeUnit.NANOSECONDS.toMillis(all) + "ms, " +
+        "excluding fulltext " + TimeUnit.NANOSECONDS.toMillis(excluded) + "ms");
+  }
+
+  private static long load(FieldProjection projection) throws IOException {
+    long start = System.nanoTime();
+    StoredFields stored = reader.storedFields();
+    for (int i = 0; i < reader.maxDoc(); i++) {
+      projection.load(stored, i);
+    }
+    return System.nanoTime() - start;
+  }
+
+}
@@ -0,0 +1,164 @@
+package org.pageseeder.flint.lucene.search;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pageseeder.flint.IndexException;
+import org.pageseeder.flint.lucene.LuceneIndex;
+import org.pageseeder.flint.lucene.utils.TestUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the latency of 64 parallel lookups on a suggester with 200K entries, with the lookups
+ * serialized on a lock as before or running concurrently, and while the suggester is rebuilt.
+ */
+public class AutoSuggestBenchmarkTest {
+
+  private static final int NB_DOCUMENTS = 200000;
+
+  private static final int NB_THREADS = 64;
+
+  private static final int NB_LOOKUPS = 200;
+
+  private static Directory directory;
+
+  private static DirectoryReader reader;
+
+  private static AutoSuggest suggest;
+
+  @BeforeClass
+  public static void init() throws IOException, IndexException {
+    TestUtils.assumeBenchmarks();
+    Random random = new Random(42);
+    directory = TestUtils.newIndex(new IndexWriterConfig(new StandardAnalyzer()), writer -> {
+      for (int i = 0; i < NB_DOCUMENTS; i++) {
+        Document doc = new Document();
+        doc.add(new TextField("name", TestUtils.randomWords(random, 2) + ' ' + i, Field.Store.YES));
+        writer.addDocument(doc);
+      }
+    });
+    reader = DirectoryReader.open(directory);
+    LuceneIndex index = new LuceneIndex("benchmark", new ByteBuffersDirectory(), new StandardAnalyzer());
+    suggest = new AutoSuggest.Builder().name("benchmark").index(index).useTerms(false)
+        .searchFields(Collections.singletonList("name")).build();
+    long start = System.nanoTime();
+    suggest.build(reader);
+    System.out.println("Suggester with " + NB_DOCUMENTS + " entries built in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+  }
+
+  @AfterClass
+  public static void after() throws IOException {
+    if (suggest != null) suggest.close();
+    if (reader != null) reader.close();
+    if (directory != null) directory.close();
+  }
+
+  @Test
+  public void testParallelLookups() throws Exception {
+    // warm up
+    run(null, null);
+    long[] locked = run(new Object(), null);
+    long[] concurrent = run(null, null);
+    System.out.println(NB_THREADS + " threads with lock: p50 " + TestUtils.percentile(locked, 50, TimeUnit.MICROSECONDS) + "us, " +
+        "p99 " + TestUtils.percentile(locked, 99, TimeUnit.MICROSECONDS) + "us");
+    System.out.println(NB_THREADS + " threads without lock: p50 " + TestUtils.percentile(concurrent, 50, TimeUnit.MICROSECONDS) + "us, " +
+        "p99 " + TestUtils.percentile(concurrent, 99, TimeUnit.MICROSECONDS) + "us");
+  }
+
+  @Test
+  public void testLookupsDuringBuild() throws Exception {
+    AtomicInteger empty = new AtomicInteger();
+    ExecutorService builder = Executors.newSingleThreadExecutor();
+    try {
+      long start = System.nanoTime();
+      Future<?> build = builder.submit(() -> suggest.build(reader));
+      long[] during = run(null, empty);
+      build.get();
+      System.out.println(NB_THREADS + " threads during rebuild: p50 " + TestUtils.percentile(during, 50, TimeUnit.MICROSECONDS) + "us, " +
+          "p99 " + TestUtils.percentile(during, 99, TimeUnit.MICROSECONDS) + "us, " +
+          "rebuilt in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+    } finally {
+      builder.shutdown();
+    }
+    // the previous entries were returned during the build
+    Assert.assertEquals(0, empty.get());
+    // the new entries are visible
+    Assert.assertEquals(1, suggest.suggest("199999", 5).size());
+  }
+
+  /**
+   * Runs the lookups from all the threads at the same time.
+   *
+   * @param lock  the lock to serialize lookups on, <code>null</code> for none
+   * @param empty counts the lookups without results, may be <code>null</code>
+   *
+   * @return the time of each lookup in nanoseconds
+   */
+  private static long[] run(Object lock, AtomicInteger empty) throws InterruptedException, ExecutionException {
+    String[] prefixes = prefixes();
+    long[] times = new long[NB_THREADS * NB_LOOKUPS];
+    ExecutorService pool = Executors.newFixedThreadPool(NB_THREADS);
+    CountDownLatch ready = new CountDownLatch(1);
+    try {
+      List<Future<?>> tasks = new ArrayList<>();
+      for (int t = 0; t < NB_THREADS; t++) {
+        final int offset = t * NB_LOOKUPS;
+        tasks.add(pool.submit(() -> {
+          ready.await();
+          for (int i = 0; i < NB_LOOKUPS; i++) {
+            String prefix = prefixes[(offset + i) % prefixes.length];
+            long start = System.nanoTime();
+            List<AutoSuggest.Suggestion> suggestions;
+            if (lock != null) {
+              synchronized (lock) {
+                suggestions = suggest.suggest(prefix, 10);
+              }
+            } else {
+              suggestions = suggest.suggest(prefix, 10);
+            }
+            times[offset + i] = System.nanoTime() - start;
+            if (empty != null && suggestions.isEmpty()) empty.incrementAndGet();
+          }
+          return null;
+        }));
+      }
+      ready.countDown();
+      for (Future<?> task : tasks) task.get();
+    } finally {
+      pool.shutdown();
+    }
+    return times;
+  }
+
+  private static String[] prefixes() {
+    Random random = new Random(7);
+    String[] prefixes = new String[1000];
+    for (int i = 0; i < prefixes.length; i++) {
+      String word = TestUtils.WORDS[random.nextInt(TestUtils.WORDS.length)];
+      prefixes[i] = word.substring(0, 2 + random.nextInt(word.length() - 2));
+    }
+    return prefixes;
+  }
+
+}
@@ -0,0 +1,130 @@
+package org.pageseeder.flint.lucene.search;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoubleField;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pageseeder.flint.IndexException;
+import org.pageseeder.flint.catalog.Catalog;
+import org.pageseeder.flint.catalog.Catalogs;
+import org.pageseeder.flint.indexing.FlintField;
+import org.pageseeder.flint.lucene.LuceneIndex;
+import org.pageseeder.flint.lucene.utils.TestUtils;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time to build a suggester from 300K documents with large stored fields, loading the
+ * stored fields as before or reading the doc values listed in the catalog, with one or more threads.
+ */
+public class AutoSuggestBuildBenchmarkTest {
+
+  private static final int NB_DOCUMENTS = 300000;
+
+  private static final String CATALOG = "autosuggest-build";
+
+  private static Directory directory;
+
+  private static DirectoryReader reader;
+
+  @BeforeClass
+  public static void init() throws IOException {
+    TestUtils.assumeBenchmarks();
+    Random random = new Random(42);
+    StringBuilder content = new StringBuilder();
+    while (content.length() < 2000) content.append(TestUtils.randomWords(random, 1)).append(' ');
+    // several segments to read in parallel
+    IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer()).setMaxBufferedDocs(NB_DOCUMENTS / 8);
+    directory = TestUtils.newIndex(config, writer -> {
+      for (int i = 0; i < NB_DOCUMENTS; i++) {
+        Document doc = new Document();
+        String name = TestUtils.randomWords(random, 2) + ' ' + i;
+        String category = "category-" + (i % 20);
+        doc.add(new TextField("name", name, Field.Store.YES));
+        doc.add(new SortedDocValuesField("name", new BytesRef(name)));
+        doc.add(new StringField("category", category, Field.Store.YES));
+        doc.add(new SortedSetDocValuesField("category", new BytesRef(category)));
+        doc.add(new DoubleField("rank", (i % 10) / 2.0, Field.Store.YES));
+        doc.add(new StoredField("content", content.toString() + i));
+        writer.addDocument(doc);
+      }
+    });
+    reader = DirectoryReader.open(directory);
+    Catalog catalog = new Catalog(CATALOG);
+    catalog.addFieldType(true, "name", true, FlintField.DocValuesType.SORTED, null, null, null);
+    catalog.addFieldType(true, "category", false, FlintField.DocValuesType.SORTED_SET, null, null, null);
+    catalog.addFieldType(true, "rank", false, FlintField.DocValuesType.SORTED_NUMERIC, FlintField.NumericType.DOUBLE, null, null);
+    Catalogs.putCatalog(catalog);
+  }
+
+  @AfterClass
+  public static void after() throws IOException {
+    if (reader != null) reader.close();
+    if (directory != null) directory.close();
+  }
+
+  @Test
+  public void testBuild() throws IOException, IndexException {
+    AutoSuggest stored = create(null, 1);
+    AutoSuggest docValues = create(CATALOG, 1);
+    AutoSuggest parallel = create(CATALOG, 4);
+    try {
+      // warm up
+      build(stored);
+      build(docValues);
+      long storedTime = build(stored);
+      long docValuesTime = build(docValues);
+      long parallelTime = build(parallel);
+      System.out.println("Suggester with " + NB_DOCUMENTS + " entries built from stored fields in " + TimeUnit.NANOSECONDS.toMillis(storedTime) + "ms");
+      System.out.println("Suggester with " + NB_DOCUMENTS + " entries built from doc values in " + TimeUnit.NANOSECONDS.toMillis(docValuesTime) + "ms");
+      System.out.println("Suggester with " + NB_DOCUMENTS + " entries built from doc values with 4 threads in " + TimeUnit.NANOSECONDS.toMillis(parallelTime) + "ms");
+      // same entries whichever way they were read
+      List<AutoSuggest.Suggestion> expected = stored.suggest("299999", Collections.singleton("category-19"), 5);
+      Assert.assertEquals(1, expected.size());
+      Assert.assertEquals(expected.get(0).weight, docValues.suggest("299999", Collections.singleton("category-19"), 5).get(0).weight);
+      Assert.assertEquals(expected.get(0).weight, parallel.suggest("299999", Collections.singleton("category-19"), 5).get(0).weight);
+      Assert.assertTrue(docValues.suggest("299999", Collections.singleton("category-1"), 5).isEmpty());
+    } finally {
+      stored.close();
+      docValues.close();
+      parallel.close();
+    }
+  }
+
+  private static AutoSuggest create(String catalog, int threads) throws IndexException {
+    LuceneIndex index = new LuceneIndex("build-" + catalog + '-' + threads, new ByteBuffersDirectory(), new StandardAnalyzer()) {
+      @Override
+      public String getCatalog() {
+        return catalog;
+      }
+    };
+    return new AutoSuggest.Builder().name(index.getIndexID()).index(index).useTerms(false)
+        .searchFields(Collections.singletonList("name")).criteria("category")
+        .weights(Collections.singletonMap("rank", 2f)).buildThreads(threads).build();
+  }
+
+  private static long build(AutoSuggest suggest) {
+    long start = System.nanoTime();
+    suggest.build(reader);
+    return System.nanoTime() - start;
+  }
+
+}
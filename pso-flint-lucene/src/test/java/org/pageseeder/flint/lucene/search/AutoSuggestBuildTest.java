@@ -0,0 +1,156 @@
+package org.pageseeder.flint.lucene.search;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoubleField;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FloatField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pageseeder.flint.IndexException;
+import org.pageseeder.flint.catalog.Catalog;
+import org.pageseeder.flint.catalog.Catalogs;
+import org.pageseeder.flint.indexing.FlintField;
+import org.pageseeder.flint.lucene.LuceneIndex;
+import org.pageseeder.flint.lucene.utils.TestUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Checks that a suggester has the same entries whether it is built from the stored fields or from
+ * the doc values listed in the catalog, with one or several threads.
+ */
+public class AutoSuggestBuildTest {
+
+  private static final int NB_DOCUMENTS = 2000;
+
+  private static final String CATALOG = "autosuggest-build-test";
+
+  private static Directory directory;
+
+  private static DirectoryReader reader;
+
+  @BeforeClass
+  public static void init() throws IOException {
+    Random random = new Random(42);
+    // several segments to read in parallel
+    IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer()).setMaxBufferedDocs(NB_DOCUMENTS / 8);
+    directory = TestUtils.newIndex(config, writer -> {
+      for (int i = 0; i < NB_DOCUMENTS; i++) {
+        Document doc = new Document();
+        String name = TestUtils.randomWords(random, 2) + ' ' + i;
+        doc.add(new TextField("name", name, Field.Store.YES));
+        doc.add(new SortedDocValuesField("name", new BytesRef(name)));
+        // several categories, stored in a different order than in the doc values
+        for (String category : new String[] {"category-" + (i % 7), "category-" + (i % 3)}) {
+          doc.add(new StringField("category", category, Field.Store.YES));
+          doc.add(new SortedSetDocValuesField("category", new BytesRef(category)));
+        }
+        doc.add(new DoubleField("rank", (i % 10) / 4.0, Field.Store.YES));
+        doc.add(new FloatField("score", (i % 5) * 0.3f, Field.Store.YES));
+        doc.add(new StoredField("label", TestUtils.COLOURS[i % TestUtils.COLOURS.length]));
+        doc.add(new StoredField("label", "label-" + i));
+        writer.addDocument(doc);
+      }
+    });
+    reader = DirectoryReader.open(directory);
+    Catalog catalog = new Catalog(CATALOG);
+    catalog.addFieldType(true, "name", true, FlintField.DocValuesType.SORTED, null, null, null);
+    catalog.addFieldType(true, "category", false, FlintField.DocValuesType.SORTED_SET, null, null, null);
+    catalog.addFieldType(true, "rank", false, FlintField.DocValuesType.SORTED_NUMERIC, FlintField.NumericType.DOUBLE, null, null);
+    catalog.addFieldType(true, "score", false, FlintField.DocValuesType.SORTED_NUMERIC, FlintField.NumericType.FLOAT, null, null);
+    Catalogs.putCatalog(catalog);
+  }
+
+  @AfterClass
+  public static void after() throws IOException {
+    if (reader != null) reader.close();
+    if (directory != null) directory.close();
+  }
+
+  @Test
+  public void testSameEntries() throws IndexException {
+    AutoSuggest stored = create(null, 1);
+    List<AutoSuggest> others = Arrays.asList(create(null, 4), create(CATALOG, 1), create(CATALOG, 4));
+    try {
+      Assert.assertTrue(reader.leaves().size() > 1);
+      stored.build(reader);
+      for (AutoSuggest other : others) other.build(reader);
+      for (String word : TestUtils.WORDS) {
+        String text = word.substring(0, 3);
+        List<String> expected = entries(stored.suggest(text, NB_DOCUMENTS));
+        Assert.assertFalse(expected.isEmpty());
+        List<String> expectedWith = entries(stored.suggest(text, "category-2", NB_DOCUMENTS));
+        Assert.assertFalse(expectedWith.isEmpty());
+        for (AutoSuggest other : others) {
+          Assert.assertEquals(expected, entries(other.suggest(text, NB_DOCUMENTS)));
+          Assert.assertEquals(expectedWith, entries(other.suggest(text, "category-2", NB_DOCUMENTS)));
+        }
+      }
+      // check one entry in full
+      List<AutoSuggest.Suggestion> suggestions = stored.suggest("1999", 5);
+      Assert.assertEquals(1, suggestions.size());
+      float weight = 1f * 2.25f + 2f * (4 * 0.3f);
+      Assert.assertEquals((long) (weight * 100), suggestions.get(0).weight);
+      Assert.assertArrayEquals(new String[] {TestUtils.COLOURS[1999 % TestUtils.COLOURS.length], "label-1999"},
+          suggestions.get(0).document.get("label"));
+      Assert.assertArrayEquals(new String[] {"2.25"}, suggestions.get(0).document.get("rank"));
+    } finally {
+      stored.close();
+      for (AutoSuggest other : others) other.close();
+    }
+  }
+
+  private static AutoSuggest create(String catalog, int threads) throws IndexException {
+    LuceneIndex index = new LuceneIndex("build-test-" + catalog + '-' + threads, new ByteBuffersDirectory(), new StandardAnalyzer()) {
+      @Override
+      public String getCatalog() {
+        return catalog;
+      }
+    };
+    Map<String, Float> weights = new TreeMap<>();
+    weights.put("rank", 1f);
+    weights.put("score", 2f);
+    return new AutoSuggest.Builder().name(index.getIndexID()).index(index).useTerms(false)
+        .searchFields(Collections.singletonList("name")).criteria("category")
+        .resultFields(Arrays.asList("label", "rank")).weights(weights).buildThreads(threads).build();
+  }
+
+  /**
+   * @return the text, weight and payload of each suggestion, sorted as entries with the same
+   *         weight may be returned in any order
+   */
+  private static List<String> entries(Collection<AutoSuggest.Suggestion> suggestions) {
+    List<String> entries = new ArrayList<>();
+    for (AutoSuggest.Suggestion suggestion : suggestions) {
+      StringBuilder entry = new StringBuilder(suggestion.text).append('|').append(suggestion.weight);
+      for (Map.Entry<String, String[]> field : new TreeMap<>(suggestion.document).entrySet()) {
+        entry.append('|').append(field.getKey()).append('=').append(Arrays.toString(field.getValue()));
+      }
+      entries.add(entry.toString());
+    }
+    Collections.sort(entries);
+    return entries;
+  }
+
+}
@@ -0,0 +1,121 @@
+package org.pageseeder.flint.lucene.search;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.util.BytesRef;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class AutoSuggestPayloadTest {
+
+  private static final List<String> FIELDS = Arrays.asList("name", "color", "price");
+
+  private static final int NB_PAYLOADS = 100000;
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    Document doc = new Document();
+    doc.add(new StringField("name", "\u00e9lectrique guitare", Field.Store.YES));
+    doc.add(new StringField("color", "red", Field.Store.YES));
+    doc.add(new StringField("color", "blue", Field.Store.YES));
+    doc.add(new StringField("other", "ignored", Field.Store.YES));
+    BytesRef payload = AutoSuggestPayload.encode(FIELDS, doc);
+    Assert.assertEquals(AutoSuggestPayload.VERSION, payload.bytes[payload.offset]);
+    Map<String, String[]> decoded = AutoSuggestPayload.decode(FIELDS, payload);
+    Assert.assertArrayEquals(new String[] {"\u00e9lectrique guitare"}, decoded.get("name"));
+    Assert.assertArrayEquals(new String[] {"red", "blue"}, decoded.get("color"));
+    // same as before for missing values
+    Assert.assertArrayEquals(new String[0], decoded.get("price"));
+    Assert.assertFalse(decoded.containsKey("other"));
+    // no result fields
+    Assert.assertNull(AutoSuggestPayload.encode(Arrays.asList(), doc));
+  }
+
+  @Test
+  public void testOffset() throws IOException {
+    BytesRef payload = AutoSuggestPayload.encode(FIELDS, document(7));
+    byte[] shifted = new byte[payload.length + 10];
+    System.arraycopy(payload.bytes, payload.offset, shifted, 5, payload.length);
+    Map<String, String[]> decoded = AutoSuggestPayload.decode(FIELDS, new BytesRef(shifted, 5, payload.length));
+    Assert.assertArrayEquals(new String[] {"toy 7"}, decoded.get("name"));
+  }
+
+  @Test
+  public void testLegacy() throws IOException {
+    Map<String, String[]> decoded = AutoSuggestPayload.decode(FIELDS, new BytesRef(serialize(FIELDS, document(3))));
+    Assert.assertArrayEquals(new String[] {"toy 3"}, decoded.get("name"));
+    Assert.assertArrayEquals(new String[] {"colour 3", "colour 4"}, decoded.get("color"));
+  }
+
+  @Test(expected = IOException.class)
+  public void testTruncated() throws IOException {
+    BytesRef payload = AutoSuggestPayload.encode(FIELDS, document(5));
+    AutoSuggestPayload.decode(FIELDS, new BytesRef(payload.bytes, payload.offset, payload.length - 2));
+  }
+
+  @Test
+  public void testSizeAndSpeed() throws IOException {
+    BytesRef[] legacy = new BytesRef[NB_PAYLOADS];
+    BytesRef[] compact = new BytesRef[NB_PAYLOADS];
+    long legacySize = 0;
+    long compactSize = 0;
+    for (int i = 0; i < NB_PAYLOADS; i++) {
+      Document doc = document(i);
+      legacy[i] = new BytesRef(serialize(FIELDS, doc));
+      compact[i] = AutoSuggestPayload.encode(FIELDS, doc);
+      legacySize += legacy[i].length;
+      compactSize += compact[i].length;
+    }
+    // warm up
+    decode(legacy);
+    decode(compact);
+    long legacyTime = decode(legacy);
+    long compactTime = decode(compact);
+    System.out.println("Java serialization: " + legacySize / NB_PAYLOADS + " bytes per payload, decoded in " + TimeUnit.NANOSECONDS.toMillis(legacyTime) + "ms");
+    System.out.println("Compact encoding: " + compactSize / NB_PAYLOADS + " bytes per payload, decoded in " + TimeUnit.NANOSECONDS.toMillis(compactTime) + "ms");
+    Assert.assertTrue(compactSize * 5 < legacySize);
+  }
+
+  private static long decode(BytesRef[] payloads) throws IOException {
+    long start = System.nanoTime();
+    for (BytesRef payload : payloads) {
+      AutoSuggestPayload.decode(FIELDS, payload);
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static Document document(int i) {
+    Document doc = new Document();
+    doc.add(new StringField("name", "toy " + i, Field.Store.YES));
+    doc.add(new StringField("color", "colour " + i, Field.Store.YES));
+    doc.add(new StringField("color", "colour " + (i + 1), Field.Store.YES));
+    doc.add(new StringField("price", String.valueOf(i % 100), Field.Store.YES));
+    return doc;
+  }
+
+  /**
+   * The payload as serialized by earlier versions.
+   */
+  private static byte[] serialize(List<String> fields, Document doc) throws IOException {
+    Map<String, String[]> result = new HashMap<>();
+    for (String field : fields) {
+      result.put(field, doc.getValues(field));
+    }
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bos)) {
+      out.writeObject(result);
+    }
+    return bos.toByteArray();
+  }
+
+}
@@ -183,6 +183,111 @@ public class AutoSuggestTest {
     }
   }
 
+  @Test
+  public void testAutoSuggestIncremental() throws IndexException, IOException {
+    AutoSuggest as = new AutoSuggest.Builder().name("testAutoSuggestIncremental").index(index).useTerms(false).idField("_src").build();
+    as.addSearchField("name");
+    IndexReader reader = LuceneIndexQueries.grabReader(index);
+    try {
+      as.build(reader);
+    } finally {
+      LuceneIndexQueries.release(index, reader);
+    }
+    File doc6 = new File(documents, "doc6.xml");
+    try {
+      Assert.assertTrue(as.isIncremental());
+      Assert.assertEquals(2, as.suggest("elec", 5).size());
+      // index new doc
+      TestUtils.createFile(documents, "doc6.xml", "<documents version=\"5.0\"><document><field name=\"name\">electronic organ</field></document></documents>");
+      manager.index(doc6.getAbsolutePath(), LocalFileContentType.SINGLETON, index, new Requester("doc6 indexing"), Priority.HIGH, null);
+      TestUtils.wait(1);
+      // added without building it again
+      Assert.assertTrue(as.isCurrent());
+      List<Suggestion> suggestions = as.suggest("elec", 5);
+      Assert.assertEquals(3, suggestions.size());
+      Assert.assertTrue(suggestions.stream().anyMatch(sug -> sug.text.equals("electronic organ")));
+      // update it
+      TestUtils.createFile(documents, "doc6.xml", "<documents version=\"5.0\"><document><field name=\"name\">electronic piano</field></document></documents>");
+      manager.index(doc6.getAbsolutePath(), LocalFileContentType.SINGLETON, index, new Requester("doc6 updating"), Priority.HIGH, null);
+      TestUtils.wait(1);
+      suggestions = as.suggest("elec", 5);
+      Assert.assertEquals(3, suggestions.size());
+      Assert.assertTrue(suggestions.stream().anyMatch(sug -> sug.text.equals("electronic piano")));
+      Assert.assertTrue(suggestions.stream().noneMatch(sug -> sug.text.equals("electronic organ")));
+      // delete it
+      Assert.assertTrue(doc6.delete());
+      manager.index(doc6.getAbsolutePath(), LocalFileContentType.SINGLETON, index, new Requester("doc6 deleting"), Priority.HIGH, null);
+      TestUtils.wait(1);
+      Assert.assertTrue(as.isCurrent());
+      Assert.assertEquals(2, as.suggest("elec", 5).size());
+    } finally {
+      as.close();
+      if (doc6.exists() && doc6.delete()) {
+        manager.index(doc6.getAbsolutePath(), LocalFileContentType.SINGLETON, index, new Requester("doc6 deleting"), Priority.HIGH, null);
+        TestUtils.wait(1);
+      }
+    }
+  }
+
+  @Test
+  public void testAutoSuggestIncrementalNumbers() throws IndexException, IOException {
+    AutoSuggest incremental = numbersSuggester("testAutoSuggestIncrementalNumbers1", "_src");
+    AutoSuggest full = null;
+    File doc7 = new File(documents, "doc7.xml");
+    try {
+      Assert.assertTrue(incremental.isIncremental());
+      // index new doc with floating point numbers
+      TestUtils.createFile(documents, "doc7.xml", "<documents version=\"5.0\"><document>" +
+          "<field name=\"name\">decimal piano</field>" +
+          "<field name=\"price\" store=\"true\" index=\"docs\" numeric-type=\"double\">12.5</field>" +
+          "<field name=\"rating\" store=\"true\" index=\"docs\" numeric-type=\"float\">0.75</field>" +
+          "<field name=\"boost\" store=\"true\" index=\"docs\" numeric-type=\"float\">4</field>" +
+          "</document></documents>");
+      manager.index(doc7.getAbsolutePath(), LocalFileContentType.SINGLETON, index, new Requester("doc7 indexing"), Priority.HIGH, null);
+      TestUtils.wait(1);
+      Assert.assertTrue(incremental.isCurrent());
+      // same entries as when built from the index
+      full = numbersSuggester("testAutoSuggestIncrementalNumbers2", null);
+      List<Suggestion> expected = full.suggest("decim", 5);
+      List<Suggestion> actual = incremental.suggest("decim", 5);
+      Assert.assertEquals(1, expected.size());
+      Assert.assertEquals(1800, expected.get(0).weight);
+      Assert.assertArrayEquals(new String[] {"12.5"}, expected.get(0).document.get("price"));
+      Assert.assertArrayEquals(new String[] {"0.75"}, expected.get(0).document.get("rating"));
+      Assert.assertEquals(1, actual.size());
+      Assert.assertEquals(expected.get(0).text, actual.get(0).text);
+      Assert.assertEquals(expected.get(0).weight, actual.get(0).weight);
+      Assert.assertEquals(expected.get(0).document.keySet(), actual.get(0).document.keySet());
+      for (String field : expected.get(0).document.keySet()) {
+        Assert.assertArrayEquals(expected.get(0).document.get(field), actual.get(0).document.get(field));
+      }
+    } finally {
+      incremental.close();
+      if (full != null) full.close();
+      if (doc7.exists() && doc7.delete()) {
+        manager.index(doc7.getAbsolutePath(), LocalFileContentType.SINGLETON, index, new Requester("doc7 deleting"), Priority.HIGH, null);
+        TestUtils.wait(1);
+      }
+    }
+  }
+
+  private static AutoSuggest numbersSuggester(String name, String idField) throws IndexException {
+    AutoSuggest as = new AutoSuggest.Builder().name(name).index(index).useTerms(false).idField(idField).build();
+    as.addSearchField("name");
+    as.addResultField("price");
+    as.addResultField("rating");
+    as.setWeight("price", 1);
+    as.setWeight("rating", 2);
+    as.setWeight("boost", 1);
+    IndexReader reader = LuceneIndexQueries.grabReader(index);
+    try {
+      as.build(reader);
+    } finally {
+      LuceneIndexQueries.release(index, reader);
+    }
+    return as;
+  }
+
   @Test
   public void testAutoSuggestFields() throws IndexException {
     IndexReader reader;
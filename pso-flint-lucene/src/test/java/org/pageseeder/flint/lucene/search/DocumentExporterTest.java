@@ -0,0 +1,126 @@
+package org.pageseeder.flint.lucene.search;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pageseeder.flint.lucene.utils.TestUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class DocumentExporterTest {
+
+  private static final int NB_DOCUMENTS = 100000;
+
+  private static Directory directory;
+
+  private static DirectoryReader reader;
+
+  @BeforeClass
+  public static void init() throws IOException {
+    IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer()).setMergePolicy(NoMergePolicy.INSTANCE);
+    directory = TestUtils.newIndex(config, writer -> {
+      for (int i = 0; i < NB_DOCUMENTS; i++) {
+        Document doc = new Document();
+        String colour = TestUtils.COLOURS[i % TestUtils.COLOURS.length];
+        doc.add(new StringField("id", String.valueOf(i), Field.Store.YES));
+        doc.add(new StringField("colour", colour, Field.Store.YES));
+        doc.add(new SortedDocValuesField("colour", new BytesRef(colour)));
+        doc.add(new StringField("parity", i % 2 == 0 ? "even" : "odd", Field.Store.YES));
+        doc.add(new SortedSetDocValuesField("tag", new BytesRef("tag" + (i % 3))));
+        doc.add(new SortedSetDocValuesField("tag", new BytesRef("tag" + (i % 3 + 1))));
+        doc.add(new LongField("number", i, Field.Store.YES));
+        writer.addDocument(doc);
+        if ((i + 1) % 20000 == 0) writer.flush();
+      }
+      // delete some documents
+      for (int i = 0; i < NB_DOCUMENTS; i += 1000) {
+        writer.deleteDocuments(new Term("id", String.valueOf(i)));
+      }
+    });
+    reader = DirectoryReader.open(directory);
+  }
+
+  @AfterClass
+  public static void after() throws IOException {
+    reader.close();
+    directory.close();
+  }
+
+  @Test
+  public void testExport() throws IOException {
+    IndexSearcher searcher = new IndexSearcher(reader);
+    List<Document> docs = new ArrayList<>();
+    DocumentExporter exporter = new DocumentExporter(Arrays.asList("id", "colour", "tag", "number"));
+    int count = exporter.export(searcher, new TermQuery(new Term("parity", "even")), doc -> docs.add(doc));
+    Assert.assertEquals(searcher.count(new TermQuery(new Term("parity", "even"))), count);
+    Assert.assertEquals(count, docs.size());
+    for (Document doc : docs) {
+      int i = Integer.parseInt(doc.get("id"));
+      Assert.assertEquals(0, i % 2);
+      Assert.assertNotEquals(0, i % 1000);
+      Assert.assertEquals(TestUtils.COLOURS[i % TestUtils.COLOURS.length], doc.get("colour"));
+      Assert.assertArrayEquals(new String[] {"tag" + (i % 3), "tag" + (i % 3 + 1)}, doc.getValues("tag"));
+      Assert.assertEquals(i, doc.getField("number").numericValue().longValue());
+      // fields not requested are not loaded
+      Assert.assertNull(doc.get("parity"));
+    }
+  }
+
+  @Test
+  public void testAllDocuments() throws IOException {
+    IndexSearcher searcher = new IndexSearcher(reader);
+    int count = new DocumentExporter(Arrays.asList("colour")).export(searcher, null, doc -> doc.get("colour") != null);
+    Assert.assertEquals(reader.numDocs(), count);
+  }
+
+  @Test
+  public void testStop() throws IOException {
+    IndexSearcher searcher = new IndexSearcher(reader);
+    int[] handled = new int[1];
+    int count = new DocumentExporter(Arrays.asList("id")).export(searcher, null, doc -> ++handled[0] < 10);
+    Assert.assertEquals(10, count);
+    Assert.assertEquals(10, handled[0]);
+  }
+
+  @Test
+  public void testSpeed() throws IOException {
+    IndexSearcher searcher = new IndexSearcher(reader);
+    // warm up
+    new DocumentExporter(Arrays.asList("colour")).export(searcher, null, doc -> true);
+    long start = System.nanoTime();
+    new DocumentExporter(Arrays.asList("colour")).export(searcher, null, doc -> true);
+    long docValues = System.nanoTime() - start;
+    start = System.nanoTime();
+    new DocumentExporter(Arrays.asList("parity")).export(searcher, null, doc -> true);
+    long stored = System.nanoTime() - start;
+    start = System.nanoTime();
+    for (int i = 0; i < reader.maxDoc(); i++) {
+      reader.storedFields().document(i);
+    }
+    long all = System.nanoTime() - start;
+    System.out.println("export from doc values " + TimeUnit.NANOSECONDS.toMillis(docValues) + "ms, " +
+        "from stored fields " + TimeUnit.NANOSECONDS.toMillis(stored) + "ms, " +
+        "loading all stored fields " + TimeUnit.NANOSECONDS.toMillis(all) + "ms");
+  }
+
+}
@@ -0,0 +1,132 @@
+package org.pageseeder.flint.lucene.search;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.SortedNumericSortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.store.Directory;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pageseeder.flint.lucene.LuceneIndexQueries;
+import org.pageseeder.flint.lucene.WriterSettings;
+import org.pageseeder.flint.lucene.query.SearchPaging;
+import org.pageseeder.flint.lucene.utils.TestUtils;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the latency of queries sorted by date on a 2M documents index, with and without an
+ * index sort on the date.
+ */
+public class IndexSortBenchmarkTest {
+
+  private static final int NB_DOCUMENTS = 2000000;
+
+  private static final int NB_QUERIES = 100;
+
+  private static final Sort SORT = new Sort(new SortedNumericSortField("modified", SortField.Type.LONG, true));
+
+  private static Directory unsorted;
+
+  private static Directory sorted;
+
+  @BeforeClass
+  public static void init() throws IOException {
+    TestUtils.assumeBenchmarks();
+    long start = System.nanoTime();
+    WriterSettings.Builder settings = new WriterSettings.Builder().ramBufferMB(64);
+    unsorted = write(settings.build());
+    sorted = write(settings.indexSort(SORT).build());
+    System.out.println("2 x " + NB_DOCUMENTS + " documents indexed in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+  }
+
+  @AfterClass
+  public static void after() throws IOException {
+    if (unsorted != null) unsorted.close();
+    if (sorted != null) sorted.close();
+  }
+
+  @Test
+  public void testLatency() throws IOException {
+    Query[] queries = queries();
+    try (DirectoryReader unsortedReader = DirectoryReader.open(unsorted);
+         DirectoryReader sortedReader = DirectoryReader.open(sorted)) {
+      Assert.assertFalse(LuceneIndexQueries.isIndexSorted(unsortedReader, SORT));
+      Assert.assertTrue(LuceneIndexQueries.isIndexSorted(sortedReader, SORT));
+      for (int page : new int[] {1, 10}) {
+        SearchPaging paging = new SearchPaging(page, 20);
+        TopFieldDocs[] expected = new TopFieldDocs[queries.length];
+        long[] full = run(new IndexSearcher(unsortedReader), queries, paging, expected);
+        TopFieldDocs[] actual = new TopFieldDocs[queries.length];
+        long[] early = run(new IndexSearcher(sortedReader), queries, paging, actual);
+        // same totals and same sort values
+        for (int i = 0; i < queries.length; i++) {
+          Assert.assertEquals(expected[i].totalHits, actual[i].totalHits);
+          Assert.assertEquals(expected[i].scoreDocs.length, actual[i].scoreDocs.length);
+          for (int j = 0; j < expected[i].scoreDocs.length; j++) {
+            Assert.assertArrayEquals(((FieldDoc) expected[i].scoreDocs[j]).fields, ((FieldDoc) actual[i].scoreDocs[j]).fields);
+          }
+        }
+        System.out.println("page " + page + " without index sort: p50 " + TestUtils.percentile(full, 50, TimeUnit.MILLISECONDS) + "ms, " +
+            "p99 " + TestUtils.percentile(full, 99, TimeUnit.MILLISECONDS) + "ms");
+        System.out.println("page " + page + " with index sort: p50 " + TestUtils.percentile(early, 50, TimeUnit.MILLISECONDS) + "ms, " +
+            "p99 " + TestUtils.percentile(early, 99, TimeUnit.MILLISECONDS) + "ms");
+      }
+    }
+  }
+
+  private static Directory write(WriterSettings settings) throws IOException {
+    Random random = new Random(42);
+    return TestUtils.newIndex(settings.newConfig(new StandardAnalyzer()), writer -> {
+      for (int i = 0; i < NB_DOCUMENTS; i++) {
+        Document doc = new Document();
+        doc.add(new StringField("type", "type" + (i % 10), Field.Store.NO));
+        doc.add(new TextField("fulltext", TestUtils.randomWords(random, 2), Field.Store.NO));
+        doc.add(new LongField("modified", 1500000000000L + random.nextInt(Integer.MAX_VALUE), Field.Store.NO));
+        writer.addDocument(doc);
+      }
+      writer.forceMerge(10);
+    });
+  }
+
+  private static long[] run(IndexSearcher searcher, Query[] queries, SearchPaging paging, TopFieldDocs[] results) throws IOException {
+    // warm up
+    for (Query query : queries) LuceneIndexQueries.search(searcher, query, SORT, paging);
+    long[] times = new long[queries.length];
+    for (int i = 0; i < queries.length; i++) {
+      long start = System.nanoTime();
+      results[i] = LuceneIndexQueries.search(searcher, queries[i], SORT, paging);
+      times[i] = System.nanoTime() - start;
+    }
+    return times;
+  }
+
+  private static Query[] queries() {
+    Random random = new Random(7);
+    Query[] queries = new Query[NB_QUERIES];
+    for (int i = 0; i < NB_QUERIES; i++) {
+      if (i % 10 == 0) queries[i] = new MatchAllDocsQuery();
+      else if (i % 2 == 0) queries[i] = new TermQuery(new Term("type", "type" + random.nextInt(10)));
+      else queries[i] = new TermQuery(new Term("fulltext", TestUtils.WORDS[random.nextInt(TestUtils.WORDS.length)]));
+    }
+    return queries;
+  }
+
+}
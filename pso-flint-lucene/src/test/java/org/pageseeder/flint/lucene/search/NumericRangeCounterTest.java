@@ -0,0 +1,169 @@
+package org.pageseeder.flint.lucene.search;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoubleField;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FloatField;
+import org.apache.lucene.document.LongField;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pageseeder.flint.indexing.FlintField.NumericType;
+import org.pageseeder.flint.lucene.facet.FlexibleRangeFacet.Range;
+import org.pageseeder.flint.lucene.facet.NumericRangeFacet;
+import org.pageseeder.flint.lucene.query.NumericRange;
+import org.pageseeder.flint.lucene.utils.TestUtils;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+public class NumericRangeCounterTest {
+
+  private static Directory directory;
+
+  private static DirectoryReader reader;
+
+  @BeforeClass
+  public static void init() throws IOException {
+    // no merges so that the deleted document stays in its segment
+    IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer()).setMergePolicy(NoMergePolicy.INSTANCE);
+    directory = TestUtils.newIndex(config, writer -> {
+      writer.addDocument(document("1", new long[] {1, 2}, -1.0));
+      writer.addDocument(document("2", new long[] {1, 7}, 0.0));
+      writer.addDocument(document("3", new long[] {7}, 0.5));
+      writer.addDocument(document("4", new long[] {8}, 2.5));
+      writer.flush();
+      writer.addDocument(document("5", new long[] {3}, 1.0));
+      // a segment without the numeric fields
+      writer.flush();
+      Document doc = new Document();
+      doc.add(new StringField("id", "6", Field.Store.NO));
+      writer.addDocument(doc);
+      writer.deleteDocuments(new Term("id", "4"));
+    });
+    reader = DirectoryReader.open(directory);
+  }
+
+  @AfterClass
+  public static void after() throws IOException {
+    if (reader != null) reader.close();
+    if (directory != null) directory.close();
+  }
+
+  @Test
+  public void testMultiValued() throws IOException {
+    IndexSearcher searcher = new IndexSearcher(reader);
+    List<NumericRange<Long>> ranges = Arrays.asList(
+        NumericRange.newLongRange("number", 0L, 5L, true, true),
+        NumericRange.newLongRange("number", 6L, 10L, true, true));
+    // documents with several values in a range are only counted once, the deleted one is ignored
+    Assert.assertArrayEquals(new int[] {3, 2}, count(searcher, null, ranges));
+    BooleanQuery.Builder query = new BooleanQuery.Builder();
+    query.add(new TermQuery(new Term("id", "2")), Occur.SHOULD);
+    query.add(new TermQuery(new Term("id", "3")), Occur.SHOULD);
+    query.add(new TermQuery(new Term("id", "4")), Occur.SHOULD);
+    Assert.assertArrayEquals(new int[] {1, 2}, count(searcher, query.build(), ranges));
+  }
+
+  @Test
+  public void testDeletedDocuments() throws IOException {
+    IndexSearcher searcher = new IndexSearcher(reader);
+    Assert.assertTrue(reader.hasDeletions());
+    List<NumericRange<Long>> ranges = Arrays.asList(NumericRange.newLongRange("number", 8L, 8L, true, true));
+    Assert.assertArrayEquals(new int[] {0}, count(searcher, null, ranges));
+    Assert.assertArrayEquals(new int[] {0}, count(searcher, new TermQuery(new Term("id", "4")), ranges));
+  }
+
+  @Test
+  public void testDoubles() throws IOException {
+    IndexSearcher searcher = new IndexSearcher(reader);
+    List<NumericRange<Double>> ranges = Arrays.asList(
+        NumericRange.newDoubleRange("decimal", null, 1.0, true, false),
+        NumericRange.newDoubleRange("decimal", 0.5, 1.0, false, true),
+        NumericRange.newDoubleRange("decimal", 1.0, null, true, true));
+    // an open lower bound is Double.MIN_VALUE, so negative numbers and zero are not included
+    Assert.assertArrayEquals(new int[] {1, 1, 1}, count(searcher, null, ranges));
+    assertSameAsQueries(searcher, ranges);
+  }
+
+  @Test
+  public void testFloats() throws IOException {
+    IndexSearcher searcher = new IndexSearcher(reader);
+    List<NumericRange<Float>> ranges = Arrays.asList(
+        NumericRange.newFloatRange("real", null, 1.0f, true, false),
+        NumericRange.newFloatRange("real", 0.5f, 1.0f, false, true),
+        NumericRange.newFloatRange("real", 1.0f, null, true, true));
+    // an open lower bound is Float.MIN_VALUE, so negative numbers and zero are not included
+    Assert.assertArrayEquals(new int[] {1, 1, 1}, count(searcher, null, ranges));
+    assertSameAsQueries(searcher, ranges);
+  }
+
+  @Test
+  public void testWithoutDocValues() throws IOException {
+    Directory points = TestUtils.newIndex(new IndexWriterConfig(new StandardAnalyzer()), writer -> {
+      for (long value : new long[] {1, 4, 7}) {
+        Document doc = new Document();
+        doc.add(new LongPoint("number", value));
+        writer.addDocument(doc);
+      }
+    });
+    try (DirectoryReader pointsReader = DirectoryReader.open(points)) {
+      IndexSearcher searcher = new IndexSearcher(pointsReader);
+      Assert.assertFalse(NumericRangeCounter.hasDocValues(pointsReader, "number"));
+      List<NumericRange<Long>> ranges = Arrays.asList(NumericRange.newLongRange("number", 0L, 5L, true, true));
+      Assert.assertNull(count(searcher, null, ranges));
+      // the facet searches each range instead
+      Range low = Range.numericRange(0L, true, 5L, true);
+      Range high = Range.numericRange(6L, true, 10L, true);
+      NumericRangeFacet facet = new NumericRangeFacet.Builder().name("number").numeric(NumericType.LONG)
+          .addRange(low).addRange(high).build();
+      facet.compute(searcher);
+      Assert.assertEquals(2, facet.getValues().count(low));
+      Assert.assertEquals(1, facet.getValues().count(high));
+    } finally {
+      points.close();
+    }
+  }
+
+  private static Document document(String id, long[] numbers, double decimal) {
+    Document doc = new Document();
+    doc.add(new StringField("id", id, Field.Store.NO));
+    for (long number : numbers) {
+      doc.add(new LongField("number", number, Field.Store.NO));
+    }
+    doc.add(new DoubleField("decimal", decimal, Field.Store.NO));
+    doc.add(new FloatField("real", (float) decimal, Field.Store.NO));
+    return doc;
+  }
+
+  private static int[] count(IndexSearcher searcher, Query query, List<? extends NumericRange<?>> ranges) throws IOException {
+    long[][] bounds = new long[ranges.size()][];
+    for (int i = 0; i < bounds.length; i++) {
+      bounds[i] = ranges.get(i).toDocValuesBounds();
+    }
+    return NumericRangeCounter.count(searcher, query, ranges.get(0).field(), bounds);
+  }
+
+  private static void assertSameAsQueries(IndexSearcher searcher, List<? extends NumericRange<?>> ranges) throws IOException {
+    int[] counts = count(searcher, null, ranges);
+    for (int i = 0; i < counts.length; i++) {
+      Assert.assertEquals(searcher.count(ranges.get(i).toQuery()), counts[i]);
+    }
+  }
+
+}
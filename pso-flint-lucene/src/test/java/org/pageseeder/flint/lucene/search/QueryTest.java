@@ -18,6 +18,8 @@ import org.pageseeder.flint.lucene.LuceneLocalIndex;
 import org.pageseeder.flint.lucene.query.*;
 import org.pageseeder.flint.lucene.utils.TestListener;
 import org.pageseeder.flint.lucene.utils.TestUtils;
+import org.pageseeder.xmlwriter.XML.NamespaceAware;
+import org.pageseeder.xmlwriter.XMLStringWriter;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
@@ -247,6 +249,78 @@ public class QueryTest {
     results.terminate();
   }
 
+  @Test
+  public void testCursor() throws IndexException {
+    BasicQuery<TermParameter> query = BasicQuery.newBasicQuery(new TermParameter("field2", "value2"));
+    // sort by sorting1, order is 4, 2, 1, 3
+    query.setSort(new Sort(new SortField("sorting1", SortField.Type.STRING)));
+    String[] expected = {"doc4", "doc2", "doc1", "doc3"};
+    SearchPaging paging = new SearchPaging(1, 1);
+    for (int i = 0; i < expected.length; i++) {
+      SearchResults results = LuceneIndexQueries.query(index, query, paging);
+      Assert.assertEquals(4, results.getTotalNbOfResults());
+      Assert.assertEquals(i + 1, results.getFirstHit());
+      Assert.assertFalse(results.isCursorStale());
+      Iterator<Document> docs = results.documents().iterator();
+      Assert.assertEquals(expected[i], docs.next().get("id"));
+      Assert.assertFalse(docs.hasNext());
+      SearchCursor next = results.getNextCursor();
+      results.terminate();
+      if (i == expected.length - 1) {
+        Assert.assertNull(next);
+      } else {
+        // the token is used for the next page
+        paging = new SearchPaging(1, 1);
+        paging.setAfter(SearchCursor.parse(next.toString()));
+        Assert.assertEquals(i + 2, paging.getPage());
+      }
+    }
+  }
+
+  @Test
+  public void testCursorXML() throws IndexException, IOException {
+    BasicQuery<TermParameter> query = BasicQuery.newBasicQuery(new TermParameter("field2", "value2"));
+    query.setSort(new Sort(new SortField("sorting1", SortField.Type.STRING)));
+    // no cursor unless requested
+    SearchPaging paging = new SearchPaging(1, 1);
+    SearchResults results = LuceneIndexQueries.query(index, query, paging);
+    XMLStringWriter xml = new XMLStringWriter(NamespaceAware.No);
+    results.toXML(xml);
+    results.terminate();
+    Assert.assertFalse(xml.toString().contains("<cursor"));
+    paging.setCursors(true);
+    results = LuceneIndexQueries.query(index, query, paging);
+    xml = new XMLStringWriter(NamespaceAware.No);
+    results.toXML(xml);
+    results.terminate();
+    Assert.assertTrue(xml.toString().contains("<cursor next=\"" + results.getNextCursor() + "\""));
+  }
+
+  @Test
+  public void testTotalHitsThreshold() throws IndexException {
+    BasicQuery<TermParameter> query = BasicQuery.newBasicQuery(new TermParameter("field2", "value2"));
+    // exact by default
+    SearchResults results = LuceneIndexQueries.query(index, query, new SearchPaging(1, 1));
+    Assert.assertEquals(4, results.getTotalNbOfResults());
+    Assert.assertTrue(results.isTotalExact());
+    results.terminate();
+    // hits are counted at least up to the end of the page
+    SearchPaging paging = new SearchPaging(2, 1);
+    paging.setTotalHitsThreshold(1);
+    Assert.assertEquals(3, paging.getTotalHitsToCount());
+    results = LuceneIndexQueries.query(index, query, paging);
+    Assert.assertTrue(results.getTotalNbOfResults() >= 3);
+    Assert.assertEquals(2, results.getFirstHit());
+    Assert.assertEquals(2, results.getLastHit());
+    Assert.assertNotNull(results.getNextCursor());
+    results.terminate();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidCursor() {
+    SearchCursor.parse("not-a-cursor");
+  }
+
 //  private void outputResults(SearchResults results) throws IOException {
 //    XMLWriter xml = new XMLWriterImpl(new PrintWriter(System.out));
 //    results.toXML(xml);
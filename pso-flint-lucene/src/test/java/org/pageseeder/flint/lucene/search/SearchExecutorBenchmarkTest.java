@@ -0,0 +1,134 @@
+package org.pageseeder.flint.lucene.search;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.store.Directory;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pageseeder.flint.lucene.utils.TestUtils;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the latency of queries on a large index with 40 segments, searched in the calling
+ * thread or with the shared executor.
+ */
+public class SearchExecutorBenchmarkTest {
+
+  private static final int NB_DOCUMENTS = 2000000;
+
+  private static final int NB_SEGMENTS = 40;
+
+  private static final int NB_QUERIES = 200;
+
+  private static Directory directory;
+
+  private static DirectoryReader reader;
+
+  @BeforeClass
+  public static void init() throws IOException {
+    TestUtils.assumeBenchmarks();
+    long start = System.nanoTime();
+    Random random = new Random(42);
+    IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer()).setMergePolicy(NoMergePolicy.INSTANCE);
+    directory = TestUtils.newIndex(config, writer -> {
+      for (int i = 0; i < NB_DOCUMENTS; i++) {
+        Document doc = new Document();
+        doc.add(new StringField("type", "type" + (i % 10), Field.Store.NO));
+        doc.add(new TextField("fulltext", TestUtils.randomWords(random, 2), Field.Store.NO));
+        doc.add(new LongField("number", random.nextInt(1000000), Field.Store.NO));
+        writer.addDocument(doc);
+        if ((i + 1) % (NB_DOCUMENTS / NB_SEGMENTS) == 0) writer.flush();
+      }
+    });
+    reader = DirectoryReader.open(directory);
+    System.out.println(NB_DOCUMENTS + " documents indexed in " + reader.leaves().size() + " segments in " +
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+  }
+
+  @AfterClass
+  public static void after() throws IOException {
+    SearchExecutor.stop();
+    if (reader != null) reader.close();
+    if (directory != null) directory.close();
+  }
+
+  @Test
+  public void testLatency() throws IOException {
+    Query[] queries = queries();
+    Sort sort = new Sort(new SortField("number", SortField.Type.LONG));
+    // single thread
+    SearchExecutor.stop();
+    IndexSearcher searcher = SearchExecutor.newSearcher(reader);
+    TopFieldDocs[] expected = new TopFieldDocs[queries.length];
+    long[] sequential = run(searcher, queries, sort, expected);
+    // with executor
+    SearchExecutor.start(Runtime.getRuntime().availableProcessors());
+    searcher = SearchExecutor.newSearcher(reader);
+    Assert.assertTrue(searcher.getSlices().length > 1);
+    TopFieldDocs[] actual = new TopFieldDocs[queries.length];
+    long[] concurrent = run(searcher, queries, sort, actual);
+    // same results
+    for (int i = 0; i < queries.length; i++) {
+      Assert.assertEquals(expected[i].totalHits, actual[i].totalHits);
+      Assert.assertEquals(expected[i].scoreDocs.length, actual[i].scoreDocs.length);
+      for (int j = 0; j < expected[i].scoreDocs.length; j++) {
+        Assert.assertEquals(expected[i].scoreDocs[j].doc, actual[i].scoreDocs[j].doc);
+      }
+    }
+    System.out.println("single thread: p50 " + TestUtils.percentile(sequential, 50, TimeUnit.MILLISECONDS) + "ms, " +
+        "p99 " + TestUtils.percentile(sequential, 99, TimeUnit.MILLISECONDS) + "ms");
+    System.out.println(searcher.getSlices().length + " slices: p50 " + TestUtils.percentile(concurrent, 50, TimeUnit.MILLISECONDS) + "ms, " +
+        "p99 " + TestUtils.percentile(concurrent, 99, TimeUnit.MILLISECONDS) + "ms");
+  }
+
+  private static long[] run(IndexSearcher searcher, Query[] queries, Sort sort, TopFieldDocs[] results) throws IOException {
+    // warm up
+    for (Query query : queries) search(searcher, query, sort);
+    long[] times = new long[queries.length];
+    for (int i = 0; i < queries.length; i++) {
+      long start = System.nanoTime();
+      results[i] = search(searcher, queries[i], sort);
+      times[i] = System.nanoTime() - start;
+    }
+    return times;
+  }
+
+  private static TopFieldDocs search(IndexSearcher searcher, Query query, Sort sort) throws IOException {
+    return searcher.search(query, TopFieldCollector.createSharedManager(sort, 20, null, Integer.MAX_VALUE));
+  }
+
+  private static Query[] queries() {
+    Random random = new Random(7);
+    Query[] queries = new Query[NB_QUERIES];
+    for (int i = 0; i < NB_QUERIES; i++) {
+      BooleanQuery.Builder query = new BooleanQuery.Builder();
+      query.add(new TermQuery(new Term("fulltext", TestUtils.WORDS[random.nextInt(TestUtils.WORDS.length)])), Occur.MUST);
+      query.add(new TermQuery(new Term("type", "type" + random.nextInt(10))), i % 2 == 0 ? Occur.MUST : Occur.SHOULD);
+      queries[i] = query.build();
+    }
+    return queries;
+  }
+
+}
@@ -0,0 +1,72 @@
+package org.pageseeder.flint.lucene.search;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.pageseeder.flint.lucene.utils.TestUtils;
+
+import java.io.IOException;
+
+public class SearchExecutorTest {
+
+  private Directory directory;
+
+  private DirectoryReader reader;
+
+  @Before
+  public void init() throws IOException {
+    IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer()).setMergePolicy(NoMergePolicy.INSTANCE);
+    this.directory = TestUtils.newIndex(config, writer -> {
+      for (int i = 0; i < 1000; i++) {
+        Document doc = new Document();
+        doc.add(new StringField("type", "type" + (i % 10), Field.Store.NO));
+        writer.addDocument(doc);
+        if ((i + 1) % 100 == 0) writer.flush();
+      }
+    });
+    this.reader = DirectoryReader.open(this.directory);
+    // one slice per segment
+    SearchExecutor.setSlicing(100, 1);
+  }
+
+  @After
+  public void after() throws IOException {
+    SearchExecutor.stop();
+    SearchExecutor.setSlicing(SearchExecutor.DEFAULT_MAX_DOCS_PER_SLICE, SearchExecutor.DEFAULT_MAX_SEGMENTS_PER_SLICE);
+    this.reader.close();
+    this.directory.close();
+  }
+
+  @Test
+  public void testSearchAfterStop() throws IOException {
+    SearchExecutor.start(2);
+    IndexSearcher searcher = SearchExecutor.newSearcher(this.reader);
+    Assert.assertEquals(10, searcher.getSlices().length);
+    Assert.assertEquals(100, searcher.count(new TermQuery(new Term("type", "type1"))));
+    // the searcher is still usable once its executor is shut down
+    SearchExecutor.stop();
+    Assert.assertEquals(100, searcher.count(new TermQuery(new Term("type", "type2"))));
+  }
+
+  @Test
+  public void testSearchAfterRestart() throws IOException {
+    SearchExecutor.start(2);
+    IndexSearcher searcher = SearchExecutor.newSearcher(this.reader);
+    // the previous pool is shut down, the searcher uses the new one
+    SearchExecutor.start(4);
+    Assert.assertEquals(100, searcher.count(new TermQuery(new Term("type", "type3"))));
+  }
+
+}
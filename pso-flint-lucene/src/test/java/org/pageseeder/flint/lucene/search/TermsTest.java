@@ -22,6 +22,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -279,6 +280,80 @@ public class TermsTest {
     }
   }
 
+  @Test
+  public void testTermsPaged() throws IndexException {
+    IndexReader reader = null;
+    try {
+      reader = LuceneIndexQueries.grabReader(index);
+      // in order
+      List<Term> terms = Terms.terms(reader, "field2");
+      Assert.assertEquals(5, terms.size());
+      Assert.assertEquals("value1", terms.get(0).text());
+      Assert.assertEquals("value5", terms.get(4).text());
+      // pages
+      List<String> values = new ArrayList<>();
+      List<Integer> frequencies = new ArrayList<>();
+      String next = Terms.terms(reader, "field2", null, 2, true, (text, docFreq) -> {
+        values.add(text.utf8ToString());
+        frequencies.add(docFreq);
+      });
+      Assert.assertEquals(Arrays.asList("value1", "value2"), values);
+      Assert.assertEquals(Arrays.asList(1, 2), frequencies);
+      Assert.assertEquals("value3", next);
+      values.clear();
+      next = Terms.terms(reader, "field2", next, 2, false, (text, docFreq) -> {
+        values.add(text.utf8ToString());
+        Assert.assertEquals(-1, docFreq);
+      });
+      Assert.assertEquals(Arrays.asList("value3", "value4"), values);
+      Assert.assertEquals("value5", next);
+      // last page
+      terms = Terms.terms(reader, "field2", next, 2);
+      Assert.assertEquals(1, terms.size());
+      Assert.assertNull(Terms.terms(reader, "field2", next, 2, false, (text, docFreq) -> {}));
+      // starting between terms
+      Assert.assertEquals("value3", Terms.terms(reader, "field2", "value25", 1).get(0).text());
+      Assert.assertTrue(Terms.terms(reader, "field2", "zzz", 10).isEmpty());
+      Assert.assertTrue(Terms.terms(reader, "unknown", null, 10).isEmpty());
+      Assert.assertTrue(Terms.hasTerms(reader, "field2"));
+      Assert.assertFalse(Terms.hasTerms(reader, "unknown"));
+    } catch (IOException ex) {
+      LoggerFactory.getLogger(TestUtils.class).error("Something went wrong", ex);
+      Assert.fail();
+    } finally {
+      LuceneIndexQueries.releaseQuietly(index, reader);
+    }
+  }
+
+  @Test
+  public void testPrefixPaged() throws IndexException {
+    IndexReader reader = null;
+    try {
+      reader = LuceneIndexQueries.grabReader(index);
+      List<String> values = new ArrayList<>();
+      String next = Terms.prefix(reader, new Term("prefix1", "pre"), null, 3, false, (text, docFreq) -> values.add(text.utf8ToString()));
+      Assert.assertEquals(Arrays.asList("preference", "prepare", "president"), values);
+      Assert.assertEquals("pressing", next);
+      values.clear();
+      next = Terms.prefix(reader, new Term("prefix1", "pre"), next, 3, false, (text, docFreq) -> values.add(text.utf8ToString()));
+      Assert.assertEquals(Arrays.asList("pressing", "pretense", "pretentious"), values);
+      Assert.assertEquals("pretext", next);
+      values.clear();
+      next = Terms.prefix(reader, new Term("prefix1", "pret"), null, -1, true, (text, docFreq) -> values.add(text.utf8ToString() + docFreq));
+      Assert.assertEquals(Arrays.asList("pretense1", "pretentious2", "pretext1"), values);
+      Assert.assertNull(next);
+      // from before the prefix
+      values.clear();
+      Terms.prefix(reader, new Term("prefix1", "pret"), "a", 1, false, (text, docFreq) -> values.add(text.utf8ToString()));
+      Assert.assertEquals(Arrays.asList("pretense"), values);
+    } catch (IOException ex) {
+      LoggerFactory.getLogger(TestUtils.class).error("Something went wrong", ex);
+      Assert.fail();
+    } finally {
+      LuceneIndexQueries.releaseQuietly(index, reader);
+    }
+  }
+
   @Test
   public void testPrefixValues1() throws IndexException {
     IndexReader reader = null;
@@ -1,6 +1,11 @@
 package org.pageseeder.flint.lucene.utils;
 
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.runners.BlockJUnit4ClassRunner;
 import org.junit.runners.model.InitializationError;
 import org.junit.runners.model.RunnerScheduler;
@@ -13,6 +18,8 @@ import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -33,6 +40,68 @@ public class TestUtils {
     }
   }
 
+  /**
+   * Skips the benchmark calling this unless run with -Dflint.benchmarks=true.
+   */
+  public static void assumeBenchmarks() {
+    Assume.assumeTrue("Benchmarks only run with -Dflint.benchmarks=true", Boolean.getBoolean("flint.benchmarks"));
+  }
+
+  /**
+   * The words used for the text of generated documents.
+   */
+  public static final String[] WORDS = {"alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf", "hotel", "india", "juliet"};
+
+  /**
+   * The values used for the colour of generated documents.
+   */
+  public static final String[] COLOURS = {"red", "green", "blue", "yellow", "black"};
+
+  /**
+   * Writes the documents of a generated index.
+   */
+  public interface IndexContent {
+    void write(IndexWriter writer) throws IOException;
+  }
+
+  /**
+   * Creates an in-memory index.
+   *
+   * @param config  the config of the writer
+   * @param content writes the documents
+   *
+   * @return the directory of the index
+   */
+  public static Directory newIndex(IndexWriterConfig config, IndexContent content) throws IOException {
+    Directory directory = new ByteBuffersDirectory();
+    try (IndexWriter writer = new IndexWriter(directory, config)) {
+      content.write(writer);
+    }
+    return directory;
+  }
+
+  /**
+   * @return random words from {@link #WORDS} separated by spaces
+   */
+  public static String randomWords(Random random, int count) {
+    StringBuilder words = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      if (i > 0) words.append(' ');
+      words.append(WORDS[random.nextInt(WORDS.length)]);
+    }
+    return words.toString();
+  }
+
+  /**
+   * @return the percentile of the times in nanoseconds, in the unit specified
+   */
+  public static long percentile(long[] times, int percentile, TimeUnit unit) {
+    long[] sorted = times.clone();
+    Arrays.sort(sorted);
+    int index = Math.min(sorted.length - 1, (int) Math.ceil(percentile / 100.0 * sorted.length) - 1);
+    return unit.convert(sorted[index], TimeUnit.NANOSECONDS);
+  }
+
   public static File createFile(File root, String name, String content) throws IOException {
     File doc = new File(root, name);
     doc.createNewFile();
@@ -17,6 +17,7 @@ package org.pageseeder.flint;
 
 import org.pageseeder.flint.content.DeleteRule;
 import org.pageseeder.flint.indexing.FlintDocument;
+import org.pageseeder.flint.indexing.IndexChange;
 import org.pageseeder.flint.indexing.IndexJob;
 import org.pageseeder.flint.indexing.IndexListener;
 
@@ -51,6 +52,17 @@ public interface IndexIO {
    */
   void maybeCommit();
 
+  /**
+   * Commit any changes if the state of the index and its commit policy require it.
+   *
+   * <p>By default, changes are committed only when there are no more jobs for the index.
+   *
+   * @param drained <code>true</code> if there are no more jobs waiting for this index
+   */
+  default void maybeCommit(boolean drained) {
+    if (drained) maybeCommit();
+  }
+
   /**
    * Commit any changes if the state of the index requires it.
    */
@@ -92,4 +104,25 @@ public interface IndexIO {
    */
   boolean updateDocuments(DeleteRule rule, List<FlintDocument> documents, IndexListener listener, IndexJob job) throws IndexException;
 
+  /**
+   * Apply a group of changes from different jobs as soon as possible (asynchronously).
+   *
+   * <p>Implementations should apply them in a single round-trip to the index, by default each
+   * change is applied separately.
+   *
+   * @param changes  the changes to apply in order
+   * @param listener the listener to report warnings to
+   * @return <code>true</code> if the changes could be scheduled;
+   *         <code>false</code>
+   * @throws IndexException should any error be thrown by the index
+   */
+  default boolean applyChanges(List<IndexChange> changes, IndexListener listener) throws IndexException {
+    boolean applied = true;
+    for (IndexChange change : changes) {
+      if (change.isDelete()) applied &= deleteDocuments(change.getDeleteRule());
+      else applied &= updateDocuments(change.getDeleteRule(), change.getDocuments(), listener, change.getJob());
+    }
+    return applied;
+  }
+
 }
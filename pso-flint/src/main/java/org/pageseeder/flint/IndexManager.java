@@ -26,6 +26,8 @@ import org.slf4j.LoggerFactory;
 
 import javax.xml.transform.stream.StreamResult;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -51,6 +53,16 @@ public final class IndexManager {
    */
   private static final int NB_INDEXING_THREADS = 10;
 
+  /**
+   * Default max number of jobs taken at once by an indexing thread
+   */
+  private static final int DEFAULT_BATCH_SIZE = 20;
+
+  /**
+   * Default max number of groups of changes waiting to be written
+   */
+  private static final int DEFAULT_WRITER_CAPACITY = 100;
+
   /**
    * Listens to any problem reported by the indexer.
    */
@@ -84,7 +96,62 @@ public final class IndexManager {
   /**
    * The thread manager.
    */
-  private final ExecutorService multiThreadExecutor;
+  private final ThreadPoolExecutor multiThreadExecutor;
+
+  /**
+   * The long-lived workers draining the multi-thread queue.
+   */
+  private final List<IndexingThread> workers = new ArrayList<>();
+
+  /**
+   * The number of workers for the multi-thread queue (guarded by the list of workers).
+   */
+  private int threads;
+
+  /**
+   * Whether the workers have been started.
+   */
+  private volatile boolean started = false;
+
+  /**
+   * The number of threads writing to the indexes (0 to write on the indexing threads).
+   */
+  private int writerThreads = 0;
+
+  /**
+   * The max number of groups of changes waiting to be written.
+   */
+  private int writerCapacity = DEFAULT_WRITER_CAPACITY;
+
+  /**
+   * The stage writing changes to the indexes (<code>null</code> if writing on the indexing threads).
+   */
+  private volatile WriterStage writerStage = null;
+
+  /**
+   * Time spent fetching, translating and parsing content.
+   */
+  private final StageMetrics translateMetrics = new StageMetrics("translate");
+
+  /**
+   * Time changes spend waiting for the writer stage.
+   */
+  private final StageMetrics writeQueueMetrics = new StageMetrics("write-queue");
+
+  /**
+   * Time spent converting and writing documents to the indexes.
+   */
+  private final StageMetrics writeMetrics = new StageMetrics("write");
+
+  /**
+   * The max number of ready jobs a worker takes at once, jobs for the same index are applied together.
+   */
+  private volatile int batchSize = DEFAULT_BATCH_SIZE;
+
+  /**
+   * How long a worker waits for more jobs to group in ms (0 to only group the jobs ready).
+   */
+  private volatile long batchWait = 0;
 
   /**
    * The thread manager.
@@ -144,7 +211,7 @@ public final class IndexManager {
     this.translatorFactories = new ConcurrentHashMap<>(16, 0.8f, 2);
     registerTranslatorFactory(new FlintTranslatorFactory());
     // create the worker thread pool
-    this.multiThreadExecutor = Executors.newFixedThreadPool(nbThreads, new ThreadFactory() {
+    this.multiThreadExecutor = new ThreadPoolExecutor(nbThreads, nbThreads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), new ThreadFactory() {
       private int threadCount = 1;
 
       @Override
@@ -162,6 +229,8 @@ public final class IndexManager {
         return t;
       });
     }
+    // workers are started with the first job
+    this.threads = nbThreads;
   }
 
   // Public external methods
@@ -193,6 +262,158 @@ public final class IndexManager {
     this.threadPriority = priority;
   }
 
+  /**
+   * Change the number of indexing threads processing the multi-thread queue.
+   *
+   * <p>When reducing the number of threads, the extra ones stop once their current job is done.
+   *
+   * @param nbThreads the number of indexing threads
+   *
+   * @throws IllegalArgumentException if the number of threads is less than 1
+   */
+  public void setThreads(int nbThreads) {
+    if (nbThreads < 1)
+      throw new IllegalArgumentException("Number of indexing threads should be at least 1 but was " + nbThreads);
+    synchronized (this.workers) {
+      this.threads = nbThreads;
+      if (this.started) resizeWorkers(nbThreads);
+    }
+  }
+
+  /**
+   * Start or stop workers to match the number of threads provided.
+   */
+  private void resizeWorkers(int nbThreads) {
+    synchronized (this.workers) {
+      if (nbThreads > this.workers.size()) {
+        // the max must always be greater than the core size
+        this.multiThreadExecutor.setMaximumPoolSize(nbThreads);
+        this.multiThreadExecutor.setCorePoolSize(nbThreads);
+        while (this.workers.size() < nbThreads) {
+          IndexingThread worker = new IndexingThread(this, this._listener, this._indexQueue, false);
+          this.workers.add(worker);
+          this.multiThreadExecutor.execute(worker);
+        }
+      } else if (nbThreads < this.workers.size()) {
+        while (this.workers.size() > nbThreads) {
+          this.workers.remove(this.workers.size() - 1).retire();
+        }
+        this.multiThreadExecutor.setCorePoolSize(nbThreads);
+        this.multiThreadExecutor.setMaximumPoolSize(nbThreads);
+      }
+    }
+  }
+
+  /**
+   * Set how jobs are grouped by the indexing threads.
+   *
+   * <p>Each thread takes up to <code>size</code> jobs ready in the queue, waiting up to <code>wait</code> ms
+   * for more jobs after the first one, and applies the changes for the same index in one go.
+   *
+   * @param size the max number of jobs taken at once (1 to process jobs one at a time)
+   * @param wait how long to wait for more jobs in ms (0 to only group the jobs ready)
+   *
+   * @throws IllegalArgumentException if the size is less than 1 or the wait is negative
+   */
+  public void setBatching(int size, long wait) {
+    if (size < 1)
+      throw new IllegalArgumentException("Batch size should be at least 1 but was " + size);
+    if (wait < 0)
+      throw new IllegalArgumentException("Batch wait should not be negative but was " + wait);
+    this.batchSize = size;
+    this.batchWait = wait;
+  }
+
+  /**
+   * Set up a separate stage for writing to the indexes.
+   *
+   * <p>The indexing threads then only fetch, translate and parse content and hand the changes to
+   * the writer threads through a bounded queue; they wait when the queue is full.
+   *
+   * <p>This has no effect if called after the first job was added.
+   *
+   * @param threads  the number of writer threads (0 to write on the indexing threads)
+   * @param capacity the max number of groups of changes waiting to be written
+   *
+   * @throws IllegalArgumentException if the number of threads is negative or the capacity less than 1
+   */
+  public void setWriterStage(int threads, int capacity) {
+    if (threads < 0)
+      throw new IllegalArgumentException("Number of writer threads should not be negative but was " + threads);
+    if (capacity < 1)
+      throw new IllegalArgumentException("Writer capacity should be at least 1 but was " + capacity);
+    synchronized (this.workers) {
+      this.writerThreads = threads;
+      this.writerCapacity = capacity;
+    }
+  }
+
+  /**
+   * @return the stage writing changes to the indexes (<code>null</code> if writing on the indexing threads)
+   */
+  public WriterStage getWriterStage() {
+    return this.writerStage;
+  }
+
+  /**
+   * @return the time spent fetching, translating and parsing content
+   */
+  public StageMetrics getTranslateMetrics() {
+    return this.translateMetrics;
+  }
+
+  /**
+   * @return the time changes spend waiting for the writer stage
+   */
+  public StageMetrics getWriteQueueMetrics() {
+    return this.writeQueueMetrics;
+  }
+
+  /**
+   * @return the time spent converting and writing documents to the indexes
+   */
+  public StageMetrics getWriteMetrics() {
+    return this.writeMetrics;
+  }
+
+  /**
+   * @return the metrics for each stage of the indexing pipeline, in order
+   */
+  public List<StageMetrics> getStageMetrics() {
+    return Arrays.asList(this.translateMetrics, this.writeQueueMetrics, this.writeMetrics);
+  }
+
+  /**
+   * @return the max number of jobs taken at once by an indexing thread
+   */
+  public int getBatchSize() {
+    return this.batchSize;
+  }
+
+  /**
+   * @return how long an indexing thread waits for more jobs to group in ms
+   */
+  public long getBatchWait() {
+    return this.batchWait;
+  }
+
+  /**
+   * @return the number of indexing threads processing the multi-thread queue
+   */
+  public int getThreads() {
+    synchronized (this.workers) {
+      return this.threads;
+    }
+  }
+
+  /**
+   * @return the number of workers currently running for the multi-thread queue, including retired
+   *         workers which have not stopped yet
+   */
+  public int getRunningThreads() {
+    return this.multiThreadExecutor.getActiveCount();
+  }
+
   /**
    * Register a new factory with the all the MIME types supported by the factory.
    *
@@ -391,6 +612,17 @@ public final class IndexManager {
     return this._indexQueue.getAllJobs();
   }
 
+  /**
+   * Returns the number of live jobs (waiting or being processed) for each index with at least one.
+   *
+   * <p>This is much cheaper than {@link #getStatus()} when only the counts are needed.
+   *
+   * @return the number of live jobs indexed by index ID (never <code>null</code>)
+   */
+  public Map<String, Integer> getLiveJobCounts() {
+    return this._indexQueue.getLiveJobCounts();
+  }
+
   /**
    * Translate content into iXML data.
    *
@@ -461,6 +693,10 @@ public final class IndexManager {
         Thread.currentThread().interrupt();
       }
     }
+    // write what the indexing threads have translated
+    if (this.writerStage != null) {
+      this.writerStage.stop(timeout);
+    }
     // clear indexing queue
     this._indexQueue.clear();
     // Close all indexes
@@ -531,16 +767,27 @@ public final class IndexManager {
    * Start an index job.
    */
   private void indexJob(IndexJob job, boolean singleThread) {
+    // add job to queue, the workers will pick it up
     if (singleThread && this.singleThreadExecutor != null) {
-      // add job to queue
       this._indexQueue.addSingleThreadJob(job);
-      // start thread to index it
-      this.singleThreadExecutor.execute(new IndexingThread(this, this._listener, this._indexQueue, true));
     } else {
-      // add job to queue
       this._indexQueue.addMultiThreadJob(job);
-      // start thread to index it
-      this.multiThreadExecutor.execute(new IndexingThread(this, this._listener, this._indexQueue, false));
+    }
+    if (!this.started) startWorkers();
+  }
+
+  /**
+   * Start the workers, done with the first job so that the thread priority can be set before.
+   */
+  private void startWorkers() {
+    synchronized (this.workers) {
+      if (this.started) return;
+      this.started = true;
+      if (this.writerThreads > 0)
+        this.writerStage = new WriterStage(this.writerThreads, this.writerCapacity, this.threadPriority);
+      resizeWorkers(this.threads);
+      if (this.singleThreadExecutor != null)
+        this.singleThreadExecutor.execute(new IndexingThread(this, this._listener, this._indexQueue, true));
     }
   }
 
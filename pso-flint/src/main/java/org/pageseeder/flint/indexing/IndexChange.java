@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.flint.indexing;
+
+import org.pageseeder.flint.content.DeleteRule;
+
+import java.util.List;
+
+/**
+ * A change to apply to an index as the result of an index job: the documents matching the delete
+ * rule are replaced by the documents provided or simply deleted if there are none.
+ *
+ * <p>A clear change removes all the documents from the index, it is never passed to
+ * {@link org.pageseeder.flint.IndexIO#applyChanges(List, IndexListener)} but separates the changes applied before it
+ * from the ones applied after it.
+ *
+ * <p>Changes are grouped so that the changes from several jobs for the same index can be applied
+ * in a single round-trip to the index.
+ */
+public final class IndexChange {
+
+  private final IndexJob _job;
+
+  private final DeleteRule _rule;
+
+  private final List<FlintDocument> _documents;
+
+  private final boolean _clear;
+
+  private IndexChange(IndexJob job, DeleteRule rule, List<FlintDocument> documents, boolean clear) {
+    this._job = job;
+    this._rule = rule;
+    this._documents = documents;
+    this._clear = clear;
+  }
+
+  /**
+   * @param job       the job this change comes from
+   * @param rule      the rule to identify the documents to replace (may be <code>null</code>)
+   * @param documents the new documents
+   *
+   * @return a new update change
+   */
+  public static IndexChange update(IndexJob job, DeleteRule rule, List<FlintDocument> documents) {
+    return new IndexChange(job, rule, documents, false);
+  }
+
+  /**
+   * @param job   the job this change comes from
+   * @param rule  the rule to identify the documents to delete
+   *
+   * @return a new delete change
+   */
+  public static IndexChange delete(IndexJob job, DeleteRule rule) {
+    return new IndexChange(job, rule, null, false);
+  }
+
+  /**
+   * @param job   the clear job this change comes from
+   *
+   * @return a new clear change
+   */
+  public static IndexChange clear(IndexJob job) {
+    return new IndexChange(job, null, null, true);
+  }
+
+  /**
+   * @return the job this change comes from
+   */
+  public IndexJob getJob() {
+    return this._job;
+  }
+
+  /**
+   * @return the rule to identify the documents to delete or replace
+   */
+  public DeleteRule getDeleteRule() {
+    return this._rule;
+  }
+
+  /**
+   * @return the new documents (<code>null</code> for a delete)
+   */
+  public List<FlintDocument> getDocuments() {
+    return this._documents;
+  }
+
+  /**
+   * @return <code>true</code> if this change only deletes documents
+   */
+  public boolean isDelete() {
+    return !this._clear && this._documents == null;
+  }
+
+  /**
+   * @return <code>true</code> if this change removes all the documents from the index
+   */
+  public boolean isClear() {
+    return this._clear;
+  }
+
+}
@@ -124,6 +124,11 @@ public class IndexJob implements Comparable<IndexJob> {
    */
   private final boolean forSingleThread;
 
+  /**
+   * Set when the job was superseded by a similar job while still in a queue, it is skipped when taken.
+   */
+  private volatile boolean cancelled = false;
+
   /**
    * Private constructor, to build a job, use one of the static methods newAddJob(), newUpdateJob() or newDeleteJob().
    *
@@ -234,6 +239,20 @@ public class IndexJob implements Comparable<IndexJob> {
     return this.forSingleThread;
   }
 
+  /**
+   * Marks this job as superseded so that it is skipped rather than removed from its queue.
+   */
+  void cancel() {
+    this.cancelled = true;
+  }
+
+  /**
+   * @return <code>true</code> if this job was superseded by a similar job
+   */
+  boolean isCancelled() {
+    return this.cancelled;
+  }
+
   /**
    * Compare this job to another job.
    *
@@ -20,9 +20,14 @@ import org.pageseeder.flint.Requester;
 import org.pageseeder.flint.content.ContentType;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
@@ -64,6 +69,21 @@ public final class IndexJobQueue {
    */
   private final ScheduledExecutorService _debounceScheduler;
 
+  /**
+   * The jobs currently in one of the queues, indexed by their similarity key (index, content ID, type and parameters).
+   */
+  private final ConcurrentHashMap<JobKey, IndexJob> _queued = new ConcurrentHashMap<>();
+
+  /**
+   * The jobs waiting (queued or debounced) for each index, indexed by index ID.
+   */
+  private final ConcurrentHashMap<String, Set<IndexJob>> _jobsByIndex = new ConcurrentHashMap<>();
+
+  /**
+   * The number of jobs taken from the queues but not done yet for each index, indexed by index ID.
+   */
+  private final ConcurrentHashMap<String, AtomicInteger> _inFlight = new ConcurrentHashMap<>();
+
   /**
    * Internal state flag
    */
@@ -126,7 +146,7 @@ public final class IndexJobQueue {
    */
   public List<IndexJob> getJobsForRequester(Requester requester) {
     if (requester == null) return getAllJobs();
-    List<IndexJob> jobs = this._queue.stream().filter(job -> job.isForRequester(requester)).collect(Collectors.toList());
+    List<IndexJob> jobs = this._queue.stream().filter(job -> !job.isCancelled() && job.isForRequester(requester)).collect(Collectors.toList());
     if (this._debounceScheduler != null) {
       jobs.addAll(this._debounced.values().stream()
         .filter(pendingDebounce -> pendingDebounce.job.isForRequester(requester))
@@ -134,7 +154,7 @@ public final class IndexJobQueue {
         .collect(Collectors.toList()));
     }
     if (this._singleThreadQueue != null) {
-      jobs.addAll(this._singleThreadQueue.stream().filter(job -> job.isForRequester(requester)).collect(Collectors.toList()));
+      jobs.addAll(this._singleThreadQueue.stream().filter(job -> !job.isCancelled() && job.isForRequester(requester)).collect(Collectors.toList()));
     }
     return jobs;
   }
@@ -149,14 +169,14 @@ public final class IndexJobQueue {
    * @return the number of jobs for the specified requester.
    */
   public int countJobsForRequester(Requester requester) {
-    if (requester == null) return this._queue.size();
-    int count = (int) this._queue.stream().filter(job -> job.isForRequester(requester)).count();
+    if (requester == null) return countLive(this._queue);
+    int count = (int) this._queue.stream().filter(job -> !job.isCancelled() && job.isForRequester(requester)).count();
     if (this._debounceScheduler != null) {
       count += (int) this._debounced.values().stream()
         .filter(pendingDebounce -> pendingDebounce.job.isForRequester(requester)).count();
     }
     if (this._singleThreadQueue != null) {
-      count += (int) this._singleThreadQueue.stream().filter(job -> job.isForRequester(requester)).count();
+      count += (int) this._singleThreadQueue.stream().filter(job -> !job.isCancelled() && job.isForRequester(requester)).count();
     }
     return count;
   }
@@ -168,24 +188,24 @@ public final class IndexJobQueue {
    */
   public void clearJobsForIndex(Index index) {
     if (index == null) return;
-
-    // Cancel/remove debounced jobs for the index
-    if (this._debounceScheduler != null) {
-      this._debounced.entrySet().removeIf(e -> {
-        PendingDebounce p = e.getValue();
-        IndexJob j = p.job;
-        if (j != null && j.isForIndex(index)) {
+    Set<IndexJob> waiting = this._jobsByIndex.get(index.getIndexID());
+    if (waiting == null) return;
+    Set<IndexJob> jobs = new HashSet<>(waiting);
+    waiting.removeAll(jobs);
+    for (IndexJob job : jobs) {
+      this._queued.remove(JobKey.similar(job), job);
+      // Cancel/remove debounced jobs for the index
+      if (this._debounceScheduler != null) {
+        JobKey key = JobKey.from(job);
+        PendingDebounce p = this._debounced.get(key);
+        if (p != null && p.job == job && this._debounced.remove(key, p)) {
           ScheduledFuture<?> f = p.future;
           if (f != null) f.cancel(false);
-          return true;
         }
-        return false;
-      });
+      }
     }
-    List<IndexJob> jobs = this._queue.stream().filter(job -> job.isForIndex(index)).collect(Collectors.toList());
     this._queue.removeAll(jobs);
     if (this._singleThreadQueue != null) {
-      jobs = this._singleThreadQueue.stream().filter(job -> job.isForIndex(index)).collect(Collectors.toList());
       this._singleThreadQueue.removeAll(jobs);
     }
   }
@@ -203,17 +223,8 @@ public final class IndexJobQueue {
    */
   public List<IndexJob> getJobsForIndex(Index index) {
     if (index == null) return getAllJobs();
-    List<IndexJob> jobs = this._queue.stream().filter(job -> job.isForIndex(index)).collect(Collectors.toList());
-    if (this._debounceScheduler != null) {
-      jobs.addAll(this._debounced.values().stream()
-          .filter(pendingDebounce -> pendingDebounce.job.isForIndex(index))
-          .map(pendingDebounce -> pendingDebounce.job)
-          .collect(Collectors.toList()));
-    }
-    if (this._singleThreadQueue != null) {
-      jobs.addAll(this._singleThreadQueue.stream().filter(job -> job.isForIndex(index)).collect(Collectors.toList()));
-    }
-    return jobs;
+    Set<IndexJob> jobs = this._jobsByIndex.get(index.getIndexID());
+    return jobs == null ? new ArrayList<>() : new ArrayList<>(jobs);
   }
 
   /**
@@ -223,19 +234,9 @@ public final class IndexJobQueue {
    * @return <code>true</code> if there is at least one job for the index provided.
    */
   public boolean hasJobsForIndex(Index index) {
-    if (index != null) {
-      if (this._queue.stream().anyMatch(job -> job.isForIndex(index)))
-        return true;
-      if (this._debounceScheduler != null) {
-        if (this._debounced.values().stream()
-            .anyMatch(pendingDebounce -> pendingDebounce.job.isForIndex(index)))
-          return true;
-      }
-      if (this._singleThreadQueue != null) {
-        return this._singleThreadQueue.stream().anyMatch(job -> job.isForIndex(index));
-      }
-    }
-    return false;
+    if (index == null) return false;
+    Set<IndexJob> jobs = this._jobsByIndex.get(index.getIndexID());
+    return jobs != null && !jobs.isEmpty();
   }
 
   /**
@@ -247,17 +248,74 @@ public final class IndexJobQueue {
    * @return the number of jobs for the specified provided.
    */
   public int countJobsForIndex(Index index) {
-    if (index == null) return this._queue.size();
+    if (index == null) return countLive(this._queue);
+    Set<IndexJob> jobs = this._jobsByIndex.get(index.getIndexID());
+    return jobs == null ? 0 : jobs.size();
+  }
 
-    int count = (int) this._queue.stream().filter(job -> job.isForIndex(index)).count();
-    if (this._debounceScheduler != null) {
-      count += (int) this._debounced.values().stream()
-        .filter(pendingDebounce -> pendingDebounce.job.isForIndex(index)).count();
-    }
-    if (this._singleThreadQueue != null) {
-      count += (int) this._singleThreadQueue.stream().filter(job -> job.isForIndex(index)).count();
-    }
-    return count;
+  /**
+   * Returns the number of jobs taken from the queues for the index provided which are not done yet.
+   *
+   * @param index the index
+   * @return the number of jobs being processed for the index provided.
+   */
+  public int countJobsInFlightForIndex(Index index) {
+    if (index == null) return 0;
+    AtomicInteger count = this._inFlight.get(index.getIndexID());
+    return count == null ? 0 : count.get();
+  }
+
+  /**
+   * Returns the number of live jobs for the index provided: queued, debounced and in-flight.
+   *
+   * <p>Unlike {@link #countJobsForIndex(Index)}, this includes the jobs being processed.
+   *
+   * @param index the index
+   * @return the number of live jobs for the index provided.
+   */
+  public int countLiveJobsForIndex(Index index) {
+    if (index == null) return 0;
+    return countJobsForIndex(index) + countJobsInFlightForIndex(index);
+  }
+
+  /**
+   * Indicates whether there are live jobs for the index provided: queued, debounced or in-flight.
+   *
+   * @param index the index
+   * @return <code>true</code> if there is at least one live job for the index provided.
+   */
+  public boolean hasLiveJobsForIndex(Index index) {
+    return countJobsInFlightForIndex(index) > 0 || hasJobsForIndex(index);
+  }
+
+  /**
+   * Returns the number of live jobs (queued, debounced and in-flight) for each index with at least one.
+   *
+   * @return the number of live jobs indexed by index ID (never <code>null</code>)
+   */
+  public Map<String, Integer> getLiveJobCounts() {
+    Map<String, Integer> counts = new TreeMap<>();
+    this._jobsByIndex.forEach((id, jobs) -> {
+      if (!jobs.isEmpty()) counts.merge(id, jobs.size(), Integer::sum);
+    });
+    this._inFlight.forEach((id, count) -> {
+      if (count.get() > 0) counts.merge(id, count.get(), Integer::sum);
+    });
+    return counts;
+  }
+
+  /**
+   * Notify this queue that a job taken from one of the queues is done.
+   *
+   * <p>This must be called exactly once for each job returned by {@link #nextMultiThreadJob()}
+   * or {@link #nextSingleThreadJob()}.
+   *
+   * @param job the job
+   */
+  public void done(IndexJob job) {
+    if (job == null) return;
+    AtomicInteger count = this._inFlight.get(job.getIndex().getIndexID());
+    if (count != null) count.decrementAndGet();
   }
 
   /**
@@ -271,7 +329,8 @@ public final class IndexJobQueue {
    * @return the list of jobs waiting (never <code>null</code>)
    */
   public List<IndexJob> getAllJobs() {
-    ArrayList<IndexJob> list = new ArrayList<>(this._queue);
+    ArrayList<IndexJob> list = new ArrayList<>();
+    this._queue.stream().filter(job -> !job.isCancelled()).forEach(list::add);
     if (this._debounceScheduler != null) {
       list.addAll(this._debounced.values().stream()
           .map(p -> p.job)
@@ -279,7 +338,7 @@ public final class IndexJobQueue {
           .collect(Collectors.toList()));
     }
     if (this._singleThreadQueue != null)
-      list.addAll(this._singleThreadQueue);
+      this._singleThreadQueue.stream().filter(job -> !job.isCancelled()).forEach(list::add);
     return list;
   }
 
@@ -292,8 +351,8 @@ public final class IndexJobQueue {
    */
   public IndexJob nextMultiThreadJob() throws InterruptedException {
     while (!this.isShutdown) {
-      IndexJob job = this._queue.poll(500, TimeUnit.MILLISECONDS);
-      if (job != null) return job;
+      IndexJob job = poll(this._queue, 500);
+      if (job != null) return taken(job);
     }
     return null;
   }
@@ -309,12 +368,87 @@ public final class IndexJobQueue {
   public IndexJob nextSingleThreadJob() throws InterruptedException {
     if (this._singleThreadQueue == null) return null;
     while (!this.isShutdown) {
-      IndexJob job = this._singleThreadQueue.poll(500, TimeUnit.MILLISECONDS);
-      if (job != null) return job;
+      IndexJob job = poll(this._singleThreadQueue, 500);
+      if (job != null) return taken(job);
     }
     return null;
   }
 
+  /**
+   * Wait for the next job in the multi-thread queue for up to the time provided.
+   *
+   * <p>Once the queue is shut down, this method no longer waits and returns the remaining jobs
+   * until the queue is drained.
+   *
+   * @param timeoutInMs how long to wait for a job in ms
+   *
+   * @return the next job in the queue or <code>null</code> if none is available in time
+   *
+   * @throws InterruptedException if the thread was interrupted when waiting for the next job
+   */
+  public IndexJob pollMultiThreadJob(long timeoutInMs) throws InterruptedException {
+    IndexJob job = poll(this._queue, this.isShutdown ? 0 : timeoutInMs);
+    return job == null ? null : taken(job);
+  }
+
+  /**
+   * Wait for the next job in the multi-thread queue for up to the time provided, then take the
+   * jobs ready after it up to the max number provided.
+   *
+   * <p>If fewer jobs than the max are ready, this method can wait a bit longer for more jobs to
+   * arrive so that they can be processed together.
+   *
+   * @param max            the max number of jobs to return
+   * @param timeoutInMs    how long to wait for the first job in ms
+   * @param batchWaitInMs  how long to wait for more jobs in ms after the first one (0 to take only the jobs ready)
+   *
+   * @return the jobs taken from the queue, in order (never <code>null</code>)
+   *
+   * @throws InterruptedException if the thread was interrupted when waiting for a job
+   */
+  public List<IndexJob> pollMultiThreadJobs(int max, long timeoutInMs, long batchWaitInMs) throws InterruptedException {
+    List<IndexJob> jobs = new ArrayList<>();
+    IndexJob first = pollMultiThreadJob(timeoutInMs);
+    if (first == null) return jobs;
+    jobs.add(first);
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchWaitInMs);
+    while (jobs.size() < max) {
+      IndexJob job = poll(this._queue, 0);
+      if (job == null && batchWaitInMs > 0 && !this.isShutdown) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining > 0) job = poll(this._queue, TimeUnit.NANOSECONDS.toMillis(remaining));
+      }
+      if (job == null) break;
+      jobs.add(taken(job));
+    }
+    return jobs;
+  }
+
+  /**
+   * Wait for the next job in the single thread queue for up to the time provided.
+   *
+   * <p>Once the queue is shut down, this method no longer waits and returns the remaining jobs
+   * until the queue is drained.
+   *
+   * @param timeoutInMs how long to wait for a job in ms
+   *
+   * @return the next job in the queue or <code>null</code> if none is available in time
+   *
+   * @throws InterruptedException if the thread was interrupted when waiting for the next job
+   */
+  public IndexJob pollSingleThreadJob(long timeoutInMs) throws InterruptedException {
+    if (this._singleThreadQueue == null) return null;
+    IndexJob job = poll(this._singleThreadQueue, this.isShutdown ? 0 : timeoutInMs);
+    return job == null ? null : taken(job);
+  }
+
+  /**
+   * @return <code>true</code> if this queue has been shut down and no longer accepts new jobs.
+   */
+  public boolean isShutdown() {
+    return this.isShutdown;
+  }
+
   /**
    * Indicates whether the queue is currently empty.
    *
@@ -322,7 +456,7 @@ public final class IndexJobQueue {
    *         <code>false</code> otherwise.
    */
   public boolean isMultiThreadsEmpty() {
-    if (!this._queue.isEmpty()) return false;
+    if (!isEmpty(this._queue)) return false;
     // check for debouncing jobs
     if (this._debounceScheduler != null) {
       // allmatch is true for empty lists
@@ -339,7 +473,7 @@ public final class IndexJobQueue {
    */
   public boolean isSingleThreadEmpty() {
     if (this._singleThreadQueue == null) return true;
-    if (!this._singleThreadQueue.isEmpty()) return false;
+    if (!isEmpty(this._singleThreadQueue)) return false;
     // check for debouncing jobs
     if (this._debounceScheduler != null) {
       return this._debounced.values().stream().noneMatch(pending -> pending.singleThreadTarget);
@@ -352,6 +486,8 @@ public final class IndexJobQueue {
    */
   public void clear() {
     this._queue.clear();
+    this._queued.clear();
+    this._jobsByIndex.clear();
 
     if (this._singleThreadQueue != null) this._singleThreadQueue.clear();
 
@@ -415,14 +551,14 @@ public final class IndexJobQueue {
         if (existing != null && existing.future != null) {
           existing.future.cancel(false);
           this.removedJob(existing.job);
+          jobsForIndex(existing.job).remove(existing.job);
         }
         // add a new fresh one
         PendingDebounce fresh = new PendingDebounce(job, singleThread);
+        jobsForIndex(job).add(job);
         fresh.future = this._debounceScheduler.schedule(() -> {
           // Ensure we only enqueue the latest pending for this key
-          PendingDebounce current = this._debounced.get(k);
-          if (current != null && current == fresh) {
-            this._debounced.remove(k, fresh);
+          if (this._debounced.remove(k, fresh)) {
             enqueueWithoutDebounce(fresh.job, fresh.singleThreadTarget);
           }
         }, this._debounceThresholdInMs, TimeUnit.MILLISECONDS);
@@ -438,41 +574,89 @@ public final class IndexJobQueue {
   }
 
   private void enqueueWithoutDebounce(IndexJob job, boolean singleThread) {
-    // check if similar job already there
-    IndexJob existing;
-    synchronized (this._queue) {
-      existing = this._queue.stream().filter(ajob -> ajob.isSimilar(job)).findFirst().orElse(null);
-    }
-    // in the other queue?
-    boolean foundInSingleQueue = false;
-    if (existing == null && this._singleThreadQueue != null) {
-      synchronized (this._singleThreadQueue) {
-        existing = this._singleThreadQueue.stream().filter(ajob -> ajob.isSimilar(job)).findFirst().orElse(null);
-        foundInSingleQueue = existing != null;
+    // check if similar job already there, the key is locked while the queues are updated
+    this._queued.compute(JobKey.similar(job), (key, existing) -> {
+      // if there is one similar, and this one has higher priority, add this one and remove the old one
+      boolean higherPriority = existing != null && existing.getPriority() == IndexJob.Priority.LOW && job.getPriority() == IndexJob.Priority.HIGH;
+      // force job if in a batch with a clear job
+      boolean force = job.isBatch() && job.getBatch().hasClearJob();
+      // don't remove existing if in batch with a clear job
+      boolean existingHasPriority = existing != null && existing.isBatch() && existing.getBatch().hasClearJob();
+
+      if (!existingHasPriority && (existing == null || force || higherPriority)) {
+        if (existing != null && !force) {
+          this.removedJob(existing);
+          jobsForIndex(existing).remove(existing);
+          // removing it from the queue would mean scanning the whole queue, it is skipped when taken instead
+          existing.cancel();
+        }
+        jobsForIndex(job).add(job);
+        if (singleThread && this._singleThreadQueue != null) {
+          this._singleThreadQueue.put(job);
+        } else {
+          this._queue.put(job);
+        }
+        return job;
       }
+      // the existing job may have just been taken, but it has not started yet so it will pick up the same content
+      this.removedJob(job);
+      jobsForIndex(job).remove(job);
+      return existing;
+    });
+  }
+
+  /**
+   * Poll the next job which was not superseded by a similar job.
+   *
+   * @param queue       the queue to poll
+   * @param timeoutInMs how long to wait for a job in ms (0 not to wait)
+   *
+   * @return the next job or <code>null</code> if none is available in time
+   */
+  private static IndexJob poll(PriorityBlockingQueue<IndexJob> queue, long timeoutInMs) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutInMs);
+    while (true) {
+      long remaining = deadline - System.nanoTime();
+      IndexJob job = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+      if (job == null || !job.isCancelled()) return job;
     }
+  }
 
-    // if there is one similar, and this one has higher priority, add this one and remove the old one
-    boolean higherPriority = existing != null && existing.getPriority() == IndexJob.Priority.LOW && job.getPriority() == IndexJob.Priority.HIGH;
-    // force job if in a batch with a clear job
-    boolean force = job.isBatch() && job.getBatch().hasClearJob();
-    // don't remove existing if in batch with a clear job
-    boolean existingHasPriority = existing != null && existing.isBatch() && existing.getBatch().hasClearJob();
-
-    if (!existingHasPriority && (existing == null || force || higherPriority)) {
-      if (existing != null && !force) {
-        this.removedJob(existing);
-        if (foundInSingleQueue) synchronized (this._singleThreadQueue) { this._singleThreadQueue.remove(existing); }
-        else synchronized (this._queue) { this._queue.remove(existing); }
-      }
-      if (singleThread && this._singleThreadQueue != null) synchronized (this._singleThreadQueue) {
-        this._singleThreadQueue.put(job);
-      } else synchronized (this._queue) {
-        this._queue.put(job);
-      }
-    } else {
-      this.removedJob(job);
+  /**
+   * Indicates whether there are no jobs in the queue other than superseded ones.
+   */
+  private static boolean isEmpty(PriorityBlockingQueue<IndexJob> queue) {
+    // superseded jobs at the head are removed, the head is then either null or a live job
+    IndexJob head;
+    while ((head = queue.peek()) != null && head.isCancelled()) {
+      queue.remove(head);
     }
+    return head == null;
+  }
+
+  /**
+   * @return the number of jobs in the queue which were not superseded
+   */
+  private static int countLive(PriorityBlockingQueue<IndexJob> queue) {
+    return (int) queue.stream().filter(job -> !job.isCancelled()).count();
+  }
+
+  /**
+   * Remove the job from the lookups once taken from one of the queues and count it as in-flight.
+   */
+  private IndexJob taken(IndexJob job) {
+    // count it as in-flight before it stops being queued so that the index never looks idle
+    this._inFlight.computeIfAbsent(job.getIndex().getIndexID(), id -> new AtomicInteger()).incrementAndGet();
+    this._queued.remove(JobKey.similar(job), job);
+    jobsForIndex(job).remove(job);
+    return job;
+  }
+
+  /**
+   * @return the set of jobs waiting for the index of the job provided.
+   */
+  private Set<IndexJob> jobsForIndex(IndexJob job) {
+    return this._jobsByIndex.computeIfAbsent(job.getIndex().getIndexID(), id -> ConcurrentHashMap.newKeySet());
   }
 
   /**
@@ -517,6 +701,9 @@ public final class IndexJobQueue {
       this.priority = priority;
     }
 
+    /**
+     * @return the key used for debouncing, it includes the priority
+     */
     static JobKey from(IndexJob job) {
       return new JobKey(
           job.getContentID(),
@@ -527,6 +714,19 @@ public final class IndexJobQueue {
       );
     }
 
+    /**
+     * @return the key used to find similar jobs, it ignores the priority
+     */
+    static JobKey similar(IndexJob job) {
+      return new JobKey(
+          job.getContentID(),
+          job.getContentType(),
+          job.getIndex().getIndexID(),
+          job.getParamsKey(),
+          null
+      );
+    }
+
     @Override
     public boolean equals(Object o) {
       if (this == o) return true;
@@ -30,11 +30,16 @@ import javax.xml.transform.Transformer;
 import javax.xml.transform.stream.StreamSource;
 import java.io.IOException;
 import java.io.Reader;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 /**
  * Class used to index the content using iXML XSLT template.
@@ -73,6 +78,16 @@ public final class IndexingThread implements Runnable {
 
   public static boolean CLOSING_DOWN = false;
 
+  /**
+   * How long a worker waits for a job before checking whether it should stop.
+   */
+  private static final long POLL_TIMEOUT_MS = 500;
+
+  /**
+   * Set when this worker should stop once its current job is done.
+   */
+  private volatile boolean retired = false;
+
   /**
    * Simple Constructor.
    *
@@ -87,14 +102,30 @@ public final class IndexingThread implements Runnable {
   }
 
   /**
-   * The thread's main method.
+   * Ask this worker to stop once its current job is done.
+   */
+  public void retire() {
+    this.retired = true;
+  }
+
+  /**
+   * The thread's main method: process jobs from the queue until this worker is retired or the
+   * queue is shut down and drained.
+   *
+   * <p>The jobs ready in the queue are taken in groups, the jobs of each group for the same index
+   * are applied to that index together.
    */
   @Override
   public void run() {
-    IndexJob job = null;
-    try {
+    while (!this.retired) {
+      List<IndexJob> jobs;
       try {
-        job = this._singleThread ? this._indexQueue.nextSingleThreadJob() : this._indexQueue.nextMultiThreadJob();
+        if (this._singleThread) {
+          IndexJob job = this._indexQueue.pollSingleThreadJob(POLL_TIMEOUT_MS);
+          jobs = job == null ? Collections.emptyList() : Collections.singletonList(job);
+        } else {
+          jobs = this._indexQueue.pollMultiThreadJobs(this._manager.getBatchSize(), POLL_TIMEOUT_MS, this._manager.getBatchWait());
+        }
       } catch (InterruptedException ex) {
         if (!CLOSING_DOWN)
           this._listener.error(null, "Interrupted indexing: " + ex.getMessage(), ex);
@@ -102,80 +133,260 @@ public final class IndexingThread implements Runnable {
         Thread.currentThread().interrupt();
         return;
       }
-      // We've got a job to handle?
-      if (job == null) {
-        if (!CLOSING_DOWN)
-          this._listener.error(null, "Found a null job in indexing queue.", null);
-        // the thread was shutdown, let's die then
-        return;
+      // nothing left after shutdown, let's die then
+      if (jobs.isEmpty()) {
+        if (this._indexQueue.isShutdown()) return;
+        continue;
       }
-      // should be single?
-      if (!this._singleThread && job.isForSingleThread()) {
-        this._manager.indexSingleThread(job);
-        return;
+      // group by index, keeping the order of the queue
+      Map<String, List<IndexJob>> groups = new LinkedHashMap<>();
+      for (IndexJob job : jobs) {
+        groups.computeIfAbsent(job.getIndex().getIndexID(), id -> new ArrayList<>()).add(job);
       }
-      // start of batch?
-      if (job.isBatch() && !job.getBatch().isStarted()) {
-        job.getBatch().startIndexing();
-        this._listener.startBatch(job.getBatch());
+      for (List<IndexJob> group : groups.values()) {
+        process(group);
       }
-      this._listener.startJob(job);
-      // OK launch the job then
-      boolean success = false;
-      IndexIO io = job.getIndex().getIndexIO();
-      try {
-        // clear job?
-        if (job.isClearJob()) {
-          if (!Thread.currentThread().isInterrupted()) try {
-            success = io.clearIndex();
-          } catch (Exception ex) {
-            this._listener.error(job, "Failed to clear index", ex);
+      // check the number of opened readers then
+      OpenIndexManager.closeOldReaders();
+    }
+  }
+
+  /**
+   * Process a group of jobs for the same index taken from the queue.
+   *
+   * @param jobs the jobs, all for the same index
+   */
+  private void process(List<IndexJob> jobs) {
+    Index index = jobs.get(0).getIndex();
+    IndexIO io = index.getIndexIO();
+    // the jobs not marked as done in the queue yet
+    List<IndexJob> inFlight = new ArrayList<>(jobs);
+    // the jobs started in this group
+    List<IndexJob> started = new ArrayList<>(jobs.size());
+    List<IndexChange> changes = new ArrayList<>(jobs.size());
+    try {
+      for (IndexJob job : jobs) {
+        try {
+          // should be single?
+          if (!this._singleThread && job.isForSingleThread()) {
+            this._manager.indexSingleThread(job);
+            this._indexQueue.done(job);
+            inFlight.remove(job);
+            continue;
           }
-        // normal content
-        } else {
-          // retrieve content
-          success = indexContent(job, io);
-        }
-        // set job status
-        job.setSuccess(success);
-      } catch (Exception ex) {
-        this._listener.error(job, "Unknown error: " + ex.getMessage(), ex);
-      } finally {
-        // mark job
-        job.finish();
-        // end batch?
-        IndexBatch batch = job.getBatch();
-        boolean batchFinished = batch != null && batch.increaseCurrent();
-        // when to update index reader and searcher
-        if (io != null) {
-          if (batchFinished) {
-            io.maybeRefresh();
-            // for single jobs, do it if the job worked
-          } else if (batch == null && success) {
-            io.maybeRefresh();
+          started.add(job);
+          // start of batch?
+          if (job.isBatch() && !job.getBatch().isStarted()) {
+            job.getBatch().startIndexing();
+            this._listener.startBatch(job.getBatch());
           }
-          // if queue has no more jobs for this index
-          if (!this._indexQueue.hasJobsForIndex(job.getIndex())) {
-            io.maybeCommit();
+          this._listener.startJob(job);
+          // clear job?
+          if (job.isClearJob()) {
+            // applied in order with the other changes, after the changes from previous jobs
+            changes.add(IndexChange.clear(job));
+          // normal content
+          } else {
+            // retrieve content, the job may fail when the changes are applied
+            long start = System.nanoTime();
+            job.setSuccess(indexContent(job, changes));
+            this._manager.getTranslateMetrics().record(System.nanoTime() - start);
           }
+        } catch (Exception ex) {
+          this._listener.error(job, "Unknown error: " + ex.getMessage(), ex);
         }
-        // tell listener that the job ended
-        this._listener.endJob(job);
-        if (batchFinished) {
-          this._listener.endBatch(job.getBatch());
+      }
+    } catch (Exception ex) {
+      this._listener.error(null, "Unexpected general error: " + ex.getMessage(), ex);
+    }
+    // hand the changes over to the writer stage if there is one
+    WriterStage writer = this._manager.getWriterStage();
+    if (writer != null && !changes.isEmpty()) {
+      long queued = System.nanoTime();
+      try {
+        // changes to the same contents or clearing the index are written in order
+        boolean submitted = writer.submit(index.getIndexID(), contents(changes), () -> {
+          this._manager.getWriteQueueMetrics().record(System.nanoTime() - queued);
+          write(io, changes, started, inFlight);
+        });
+        if (submitted) return;
+      } catch (InterruptedException ex) {
+        // write them here then
+        Thread.currentThread().interrupt();
+      }
+    }
+    write(io, changes, started, inFlight);
+  }
+
+  /**
+   * @param changes the changes to apply
+   *
+   * @return the IDs of the contents changed or <code>null</code> if the index is cleared
+   */
+  private static Set<String> contents(List<IndexChange> changes) {
+    Set<String> contents = new HashSet<>();
+    for (IndexChange change : changes) {
+      if (change.isClear()) return null;
+      contents.add(change.getJob().getContentID());
+    }
+    return contents;
+  }
+
+  /**
+   * Apply the changes then finish the jobs.
+   *
+   * @param io       the index IO
+   * @param changes  the changes to apply
+   * @param started  the jobs started
+   * @param inFlight the jobs not marked as done in the queue yet
+   */
+  private void write(IndexIO io, List<IndexChange> changes, List<IndexJob> started, List<IndexJob> inFlight) {
+    try {
+      apply(io, changes);
+    } catch (Exception ex) {
+      this._listener.error(null, "Unexpected general error: " + ex.getMessage(), ex);
+    } finally {
+      try {
+        end(io, started, inFlight);
+      } catch (Exception ex) {
+        this._listener.error(null, "Unexpected general error: " + ex.getMessage(), ex);
+      } finally {
+        // failed before the end
+        for (IndexJob job : inFlight) this._indexQueue.done(job);
+      }
+    }
+  }
+
+  /**
+   * Apply the changes to the index, clearing the index where there is a clear change.
+   *
+   * @param io      the index IO
+   * @param changes the changes to apply
+   */
+  private void apply(IndexIO io, List<IndexChange> changes) {
+    int from = 0;
+    for (int i = 0; i < changes.size(); i++) {
+      IndexChange change = changes.get(i);
+      if (change.isClear()) {
+        // changes from previous jobs must be applied before
+        applyChanges(io, changes.subList(from, i));
+        clear(io, change.getJob());
+        from = i + 1;
+      }
+    }
+    applyChanges(io, changes.subList(from, changes.size()));
+  }
+
+  /**
+   * Clear the index.
+   *
+   * @param io  the index IO
+   * @param job the clear job
+   */
+  private void clear(IndexIO io, IndexJob job) {
+    boolean success = false;
+    if (!Thread.currentThread().isInterrupted()) try {
+      success = io.clearIndex();
+    } catch (Exception ex) {
+      this._listener.error(job, "Failed to clear index", ex);
+    }
+    job.setSuccess(success);
+  }
+
+  /**
+   * Apply the changes to the index in one go.
+   *
+   * <p>If that fails, the changes are applied one at a time so that errors are reported for the
+   * right jobs.
+   *
+   * @param io      the index IO
+   * @param changes the changes to apply
+   */
+  private void applyChanges(IndexIO io, List<IndexChange> changes) {
+    if (changes.isEmpty()) return;
+    if (Thread.currentThread().isInterrupted()) {
+      for (IndexChange change : changes) change.getJob().setSuccess(false);
+      return;
+    }
+    try {
+      long start = System.nanoTime();
+      boolean applied = io.applyChanges(changes, this._listener);
+      this._manager.getWriteMetrics().record(System.nanoTime() - start);
+      if (!applied) {
+        for (IndexChange change : changes) {
+          if (!change.isDelete()) this._listener.warn(change.getJob(), "Failed to add Lucene Documents to Index");
         }
       }
-      // check the number of opened readers then
-      OpenIndexManager.closeOldReaders();
     } catch (Exception ex) {
-      this._listener.error(job, "Unexpected general error: " + ex.getMessage(), ex);
+      if (changes.size() > 1) {
+        for (IndexChange change : changes) applyChanges(io, Collections.singletonList(change));
+      } else {
+        IndexChange change = changes.get(0);
+        change.getJob().setSuccess(false);
+        this._listener.error(change.getJob(), change.isDelete() ? "Failed to delete Lucene Documents from Index"
+                                                                : "Failed to add Lucene Documents to Index", ex);
+      }
+    }
+  }
+
+  /**
+   * Finish the jobs, refresh the index and let the index decide whether to commit.
+   *
+   * @param io       the index IO
+   * @param jobs     the jobs started
+   * @param inFlight the jobs not marked as done in the queue yet
+   */
+  private void end(IndexIO io, List<IndexJob> jobs, List<IndexJob> inFlight) {
+    if (jobs.isEmpty()) return;
+    // the jobs which finished their batch
+    List<IndexJob> batchEnders = new ArrayList<>();
+    boolean refresh = false;
+    for (IndexJob job : jobs) {
+      // mark job
+      job.finish();
+      // end batch?
+      IndexBatch batch = job.getBatch();
+      if (batch != null && batch.increaseCurrent()) {
+        batchEnders.add(job);
+        refresh = true;
+      // for single jobs, do it if the job worked
+      } else if (batch == null && job.wasSuccessful()) {
+        refresh = true;
+      }
+    }
+    // when to update index reader and searcher
+    if (io != null && refresh) {
+      io.maybeRefresh();
+    }
+    // let the index decide whether to commit, usually when there are no more jobs for it
+    for (IndexJob job : jobs) {
+      this._indexQueue.done(job);
+      inFlight.remove(job);
+    }
+    if (io != null) {
+      io.maybeCommit(!this._indexQueue.hasLiveJobsForIndex(jobs.get(0).getIndex()));
+    }
+    // tell listener that the jobs ended
+    for (IndexJob job : jobs) {
+      this._listener.endJob(job);
+      if (batchEnders.contains(job)) {
+        this._listener.endBatch(job.getBatch());
+      }
     }
   }
 
   // private methods
   // ----------------------------------------------------------------------------------------------
 
-  private boolean indexContent(IndexJob job, IndexIO io) {
+  /**
+   * Retrieve and translate the content for the job provided.
+   *
+   * @param job     the job
+   * @param changes where to add the resulting change to apply to the index
+   *
+   * @return <code>false</code> if the job failed
+   */
+  private boolean indexContent(IndexJob job, List<IndexChange> changes) {
 
     // retrieve content
     Content content = this._manager.getContent(job);
@@ -195,13 +406,8 @@ public final class IndexingThread implements Runnable {
     if (deleted) {
       if (Thread.currentThread().isInterrupted())
         return false;
-      else try {
-        // delete docs from index
-        io.deleteDocuments(content.getDeleteRule());
-      } catch (Exception ex) {
-        this._listener.error(job, "Failed to delete Lucene Documents from Index", ex);
-        return false;
-      }
+      // delete docs from index
+      changes.add(IndexChange.delete(job, content.getDeleteRule()));
       return true;
     }
 
@@ -239,15 +445,8 @@ public final class IndexingThread implements Runnable {
 
     if (Thread.currentThread().isInterrupted())
       return false;
-    else try {
-      // add docs to index
-      if (!io.updateDocuments(content.getDeleteRule(), documents, this._listener, job))
-        this._listener.warn(job, "Failed to add Lucene Documents to Index");
-    } catch (Exception ex) {
-      this._listener.error(job, "Failed to add Lucene Documents to Index", ex);
-      return false;
-    }
-
+    // add docs to index
+    changes.add(IndexChange.update(job, content.getDeleteRule(), documents));
     return true;
 
   }
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.flint.indexing;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timing metrics for a stage of the indexing pipeline.
+ */
+public final class StageMetrics {
+
+  private final String _name;
+
+  private final LongAdder count = new LongAdder();
+
+  private final LongAdder time = new LongAdder();
+
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * @param name the name of the stage
+   */
+  public StageMetrics(String name) {
+    this._name = name;
+  }
+
+  /**
+   * Record the time taken by one execution of the stage.
+   *
+   * @param nanos the time taken in ns
+   */
+  public void record(long nanos) {
+    this.count.increment();
+    this.time.add(nanos);
+    this.max.accumulateAndGet(nanos, Math::max);
+  }
+
+  /**
+   * @return the name of the stage
+   */
+  public String getName() {
+    return this._name;
+  }
+
+  /**
+   * @return the number of executions recorded
+   */
+  public long getCount() {
+    return this.count.sum();
+  }
+
+  /**
+   * @return the total time spent in this stage in ms
+   */
+  public long getTotalTime() {
+    return TimeUnit.NANOSECONDS.toMillis(this.time.sum());
+  }
+
+  /**
+   * @return the average time of an execution in microseconds
+   */
+  public long getAverageTime() {
+    long count = this.count.sum();
+    return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(this.time.sum() / count);
+  }
+
+  /**
+   * @return the longest execution in ms
+   */
+  public long getMaxTime() {
+    return TimeUnit.NANOSECONDS.toMillis(this.max.get());
+  }
+
+  @Override
+  public String toString() {
+    return this._name + "[count=" + getCount() + ",total=" + getTotalTime() + "ms,average=" +
+        getAverageTime() + "us,max=" + getMaxTime() + "ms]";
+  }
+
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.flint.indexing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The last stage of the indexing pipeline: converting documents and writing them to the index.
+ *
+ * <p>The indexing threads translate content and hand the resulting changes to this stage through
+ * a bounded queue. When the queue is full, the indexing threads wait so that translation cannot
+ * get too far ahead of the writers.
+ *
+ * <p>Any free writer takes the next task it can run, so the changes for one index are written
+ * concurrently. A task is only held back while an earlier task for the same index writes the same
+ * content or must not overlap with any other (when clearing the index for example), so that
+ * these are still written in the order they were submitted.
+ */
+public final class WriterStage {
+
+  /**
+   * Logger for this class.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(WriterStage.class);
+
+  /**
+   * How long a writer waits for a task before checking whether the stage was stopped.
+   */
+  private static final long POLL_WAIT_MS = 500;
+
+  /**
+   * The max number of tasks waiting to be written.
+   */
+  private final int _capacity;
+
+  /**
+   * The tasks waiting to be written, in the order they were submitted.
+   */
+  private final List<Task> _pending = new ArrayList<>();
+
+  /**
+   * The tasks being written.
+   */
+  private final List<Task> _running = new ArrayList<>();
+
+  /**
+   * The writer threads.
+   */
+  private final List<Thread> _threads = new ArrayList<>();
+
+  /**
+   * The number of tasks written by each writer thread.
+   */
+  private final int[] _written;
+
+  /**
+   * Set when the stage should stop once its queue is drained.
+   */
+  private boolean stopped = false;
+
+  /**
+   * Create and start a new writer stage.
+   *
+   * @param threads   the number of writer threads
+   * @param capacity  the max number of tasks waiting to be written
+   * @param priority  the priority of the writer threads
+   */
+  public WriterStage(int threads, int capacity, int priority) {
+    this._capacity = Math.max(1, capacity);
+    this._written = new int[threads];
+    for (int i = 1; i <= threads; i++) {
+      int index = i - 1;
+      Thread t = new Thread(() -> run(index), "flint-writing-p" + priority + "-t" + i);
+      t.setPriority(priority);
+      this._threads.add(t);
+    }
+    for (Thread t : this._threads) t.start();
+  }
+
+  /**
+   * Add a task to write, waiting if the queue is full.
+   *
+   * <p>The task is not started before the earlier tasks with the same key that write any of the
+   * same contents are finished.
+   *
+   * @param key      the key of the index the task writes to
+   * @param contents the IDs of the contents the task writes, <code>null</code> if the task must not
+   *                 overlap with any other task with the same key
+   * @param task     the task
+   *
+   * @return <code>false</code> if the stage is stopped and the task should be run by the caller
+   *
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public boolean submit(String key, Set<String> contents, Runnable task) throws InterruptedException {
+    Task t = new Task(key, contents, task);
+    synchronized (this._pending) {
+      while (!this.stopped && this._pending.size() >= this._capacity) {
+        this._pending.wait();
+      }
+      if (this.stopped) return false;
+      this._pending.add(t);
+      this._pending.notifyAll();
+      return true;
+    }
+  }
+
+  /**
+   * @return the number of tasks waiting to be written
+   */
+  public int getQueueSize() {
+    synchronized (this._pending) {
+      return this._pending.size();
+    }
+  }
+
+  /**
+   * @return the number of writer threads
+   */
+  public int getThreads() {
+    return this._threads.size();
+  }
+
+  /**
+   * @return the number of tasks written by each writer thread so far
+   */
+  public int[] getWrittenTasks() {
+    synchronized (this._pending) {
+      return this._written.clone();
+    }
+  }
+
+  /**
+   * Stop the writer threads once the queue is drained.
+   *
+   * <p>New tasks are rejected. The tasks still waiting when the writer threads stop are run by
+   * the calling thread so that every task submitted is written.
+   *
+   * @param timeout how long to wait for each thread in seconds
+   */
+  public void stop(long timeout) {
+    synchronized (this._pending) {
+      this.stopped = true;
+      this._pending.notifyAll();
+    }
+    try {
+      for (Thread t : this._threads) {
+        t.join(TimeUnit.SECONDS.toMillis(timeout));
+        if (t.isAlive()) t.interrupt();
+      }
+      for (Thread t : this._threads) {
+        t.join(TimeUnit.SECONDS.toMillis(timeout));
+      }
+    } catch (InterruptedException ex) {
+      LOGGER.error("Interrupted while shutting down writer thread", ex);
+      Thread.currentThread().interrupt();
+    }
+    // the writers stopped before writing these, finish them here in order so that their jobs are done
+    List<Task> left;
+    synchronized (this._pending) {
+      left = new ArrayList<>(this._pending);
+      this._pending.clear();
+    }
+    for (Task task : left) {
+      runTask(task._task);
+    }
+  }
+
+  private void run(int index) {
+    while (true) {
+      Task task;
+      synchronized (this._pending) {
+        while ((task = next()) == null) {
+          if (this.stopped && this._pending.isEmpty()) return;
+          try {
+            this._pending.wait(POLL_WAIT_MS);
+          } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return;
+          }
+        }
+        this._pending.remove(task);
+        this._running.add(task);
+        this._written[index]++;
+        // there is space in the queue
+        this._pending.notifyAll();
+      }
+      try {
+        runTask(task._task);
+      } finally {
+        synchronized (this._pending) {
+          this._running.remove(task);
+          // tasks held back by this one may run now
+          this._pending.notifyAll();
+        }
+      }
+    }
+  }
+
+  /**
+   * Must be called while holding the lock on the pending tasks.
+   *
+   * @return the first pending task which does not conflict with a running or earlier pending task
+   */
+  private Task next() {
+    for (int i = 0; i < this._pending.size(); i++) {
+      Task task = this._pending.get(i);
+      if (!conflicts(task, this._running) && !conflicts(task, this._pending.subList(0, i))) return task;
+    }
+    return null;
+  }
+
+  private static boolean conflicts(Task task, List<Task> others) {
+    for (Task other : others) {
+      if (task.conflictsWith(other)) return true;
+    }
+    return false;
+  }
+
+  private static void runTask(Runnable task) {
+    try {
+      task.run();
+    } catch (RuntimeException ex) {
+      LOGGER.error("Unexpected error while writing to index", ex);
+    }
+  }
+
+  /**
+   * A task with what it writes to.
+   */
+  private static final class Task {
+
+    private final String _key;
+
+    private final Set<String> _contents;
+
+    private final Runnable _task;
+
+    private Task(String key, Set<String> contents, Runnable task) {
+      this._key = key;
+      this._contents = contents;
+      this._task = task;
+    }
+
+    /**
+     * @return <code>true</code> if the two tasks must not be written at the same time
+     */
+    private boolean conflictsWith(Task other) {
+      if (!this._key.equals(other._key)) return false;
+      if (this._contents == null || other._contents == null) return true;
+      return !Collections.disjoint(this._contents, other._contents);
+    }
+
+  }
+
+}
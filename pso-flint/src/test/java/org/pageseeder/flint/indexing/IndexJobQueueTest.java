@@ -0,0 +1,118 @@
+package org.pageseeder.flint.indexing;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.pageseeder.flint.Index;
+import org.pageseeder.flint.IndexIO;
+import org.pageseeder.flint.Requester;
+import org.pageseeder.flint.content.ContentType;
+
+public class IndexJobQueueTest {
+
+  private static final ContentType TYPE = new ContentType() {};
+
+  private static final Requester REQUESTER = new Requester("IndexJobQueueTest");
+
+  @Test
+  public void testDuplicateDropped() throws InterruptedException {
+    IndexJobQueue queue = new IndexJobQueue(false, 0);
+    Index index = index("duplicate-test");
+    IndexJob first = job("doc-1", index, IndexJob.Priority.LOW);
+    queue.addMultiThreadJob(first);
+    queue.addMultiThreadJob(job("doc-1", index, IndexJob.Priority.LOW));
+    Assert.assertEquals(1, queue.countJobsForIndex(index));
+    Assert.assertSame(first, queue.getAllJobs().get(0));
+    Assert.assertSame(first, queue.pollMultiThreadJob(0));
+    Assert.assertNull(queue.pollMultiThreadJob(0));
+  }
+
+  @Test
+  public void testPriorityUpgrade() throws InterruptedException {
+    IndexJobQueue queue = new IndexJobQueue(false, 0);
+    Index index = index("upgrade-test");
+    queue.addMultiThreadJob(job("doc-0", index, IndexJob.Priority.LOW));
+    IndexJob low = job("doc-1", index, IndexJob.Priority.LOW);
+    queue.addMultiThreadJob(low);
+    IndexJob high = job("doc-1", index, IndexJob.Priority.HIGH);
+    queue.addMultiThreadJob(high);
+    Assert.assertEquals(2, queue.countJobsForIndex(index));
+    Assert.assertFalse(queue.getAllJobs().contains(low));
+    // the upgraded job goes first
+    Assert.assertSame(high, queue.pollMultiThreadJob(0));
+  }
+
+  @Test
+  public void testSupersededJobSkipped() throws InterruptedException {
+    IndexJobQueue queue = new IndexJobQueue(false, 0);
+    Index index = index("superseded-test");
+    IndexJob low = job("doc-1", index, IndexJob.Priority.LOW);
+    queue.addMultiThreadJob(low);
+    IndexJob other = job("doc-2", index, IndexJob.Priority.LOW);
+    queue.addMultiThreadJob(other);
+    IndexJob high = job("doc-1", index, IndexJob.Priority.HIGH);
+    queue.addMultiThreadJob(high);
+    // the superseded job stays in the queue but is never returned
+    Assert.assertTrue(low.isCancelled());
+    Assert.assertSame(high, queue.pollMultiThreadJob(0));
+    Assert.assertSame(other, queue.pollMultiThreadJob(0));
+    Assert.assertNull(queue.pollMultiThreadJob(0));
+    Assert.assertTrue(queue.isMultiThreadsEmpty());
+    // nor counted as in-flight
+    Assert.assertEquals(2, queue.countJobsInFlightForIndex(index));
+  }
+
+  @Test
+  public void testDoneClearsIndex() throws InterruptedException {
+    IndexJobQueue queue = new IndexJobQueue(false, 0);
+    Index index = index("done-test");
+    queue.addMultiThreadJob(job("doc-1", index, IndexJob.Priority.LOW));
+    IndexJob job = queue.pollMultiThreadJob(0);
+    Assert.assertTrue(queue.hasLiveJobsForIndex(index));
+    Assert.assertTrue(queue.getLiveJobCounts().containsKey(index.getIndexID()));
+    queue.done(job);
+    Assert.assertFalse(queue.hasLiveJobsForIndex(index));
+    Assert.assertFalse(queue.getLiveJobCounts().containsKey(index.getIndexID()));
+    // a similar job can be queued again
+    queue.addMultiThreadJob(job("doc-1", index, IndexJob.Priority.LOW));
+    Assert.assertEquals(1, queue.countJobsForIndex(index));
+  }
+
+  @Test
+  public void testLiveJobCounts() throws InterruptedException {
+    IndexJobQueue queue = new IndexJobQueue(false, 0);
+    Index index = index("live-test");
+    Assert.assertEquals(0, queue.countLiveJobsForIndex(index));
+    Assert.assertFalse(queue.hasLiveJobsForIndex(index));
+    for (int i = 0; i < 3; i++) queue.addMultiThreadJob(job("doc-" + i, index, IndexJob.Priority.LOW));
+    Assert.assertEquals(3, queue.countLiveJobsForIndex(index));
+    Assert.assertEquals(Integer.valueOf(3), queue.getLiveJobCounts().get(index.getIndexID()));
+    // taken jobs are still live until done
+    IndexJob job = queue.pollMultiThreadJob(0);
+    Assert.assertEquals(3, queue.countLiveJobsForIndex(index));
+    Assert.assertEquals(1, queue.countJobsInFlightForIndex(index));
+    Assert.assertEquals(2, queue.countJobsForIndex(index));
+    // clearing removes the queued jobs only
+    queue.clearJobsForIndex(index);
+    Assert.assertEquals(1, queue.countLiveJobsForIndex(index));
+    Assert.assertTrue(queue.hasLiveJobsForIndex(index));
+    Assert.assertEquals(Integer.valueOf(1), queue.getLiveJobCounts().get(index.getIndexID()));
+    queue.done(job);
+    Assert.assertEquals(0, queue.countLiveJobsForIndex(index));
+    Assert.assertFalse(queue.hasLiveJobsForIndex(index));
+    Assert.assertTrue(queue.getLiveJobCounts().isEmpty());
+  }
+
+  static Index index(String id) {
+    return new Index(id) {
+      @Override
+      public IndexIO getIndexIO() {
+        return null;
+      }
+    };
+  }
+
+  static IndexJob job(String id, Index index, IndexJob.Priority priority) {
+    return IndexJob.newJob(id, TYPE, index, priority, REQUESTER, null);
+  }
+
+}
@@ -0,0 +1,126 @@
+package org.pageseeder.flint.indexing;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class WriterStageTest {
+
+  @Test
+  public void testSameIndexConcurrent() throws InterruptedException {
+    WriterStage stage = new WriterStage(2, 10, Thread.NORM_PRIORITY);
+    CountDownLatch started = new CountDownLatch(2);
+    List<Boolean> together = Collections.synchronizedList(new ArrayList<>());
+    try {
+      // each task waits for the other one, only possible if they run at the same time
+      for (int i = 0; i < 2; i++) {
+        Assert.assertTrue(stage.submit("index", contents("doc-" + i), () -> {
+          started.countDown();
+          together.add(await(started));
+        }));
+      }
+    } finally {
+      stage.stop(5);
+    }
+    Assert.assertEquals(Arrays.asList(true, true), together);
+    for (int written : stage.getWrittenTasks()) {
+      Assert.assertEquals(1, written);
+    }
+  }
+
+  @Test
+  public void testSameContentInOrder() throws InterruptedException {
+    WriterStage stage = new WriterStage(4, 100, Thread.NORM_PRIORITY);
+    List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+    try {
+      for (int i = 0; i < 50; i++) {
+        int task = i;
+        Assert.assertTrue(stage.submit("index", contents("doc-1"), () -> {
+          sleep();
+          order.add(task);
+        }));
+      }
+    } finally {
+      stage.stop(5);
+    }
+    Assert.assertEquals(50, order.size());
+    for (int i = 0; i < 50; i++) {
+      Assert.assertEquals(Integer.valueOf(i), order.get(i));
+    }
+  }
+
+  @Test
+  public void testClearInOrder() throws InterruptedException {
+    WriterStage stage = new WriterStage(4, 100, Thread.NORM_PRIORITY);
+    List<String> order = Collections.synchronizedList(new ArrayList<>());
+    try {
+      for (int i = 0; i < 10; i++) {
+        String doc = "doc-" + i;
+        stage.submit("index", contents(doc), () -> { sleep(); order.add(doc); });
+      }
+      // no task for the same index overlaps with a clear
+      stage.submit("index", null, () -> order.add("clear"));
+      for (int i = 10; i < 20; i++) {
+        String doc = "doc-" + i;
+        stage.submit("index", contents(doc), () -> order.add(doc));
+      }
+    } finally {
+      stage.stop(5);
+    }
+    Assert.assertEquals(21, order.size());
+    Assert.assertEquals("clear", order.get(10));
+  }
+
+  @Test
+  public void testOtherIndexNotBlocked() throws InterruptedException {
+    WriterStage stage = new WriterStage(2, 10, Thread.NORM_PRIORITY);
+    CountDownLatch other = new CountDownLatch(1);
+    List<Boolean> done = Collections.synchronizedList(new ArrayList<>());
+    try {
+      // clearing one index does not stop another index from being written
+      stage.submit("index-1", null, () -> done.add(await(other)));
+      stage.submit("index-2", null, other::countDown);
+    } finally {
+      stage.stop(5);
+    }
+    Assert.assertEquals(Collections.singletonList(true), done);
+  }
+
+  @Test
+  public void testSubmitAfterStop() throws InterruptedException {
+    WriterStage stage = new WriterStage(1, 10, Thread.NORM_PRIORITY);
+    stage.stop(5);
+    Assert.assertFalse(stage.submit("index", contents("doc-1"), () -> Assert.fail("Should not run")));
+    Assert.assertEquals(0, stage.getQueueSize());
+  }
+
+  private static Set<String> contents(String... ids) {
+    return new HashSet<>(Arrays.asList(ids));
+  }
+
+  private static boolean await(CountDownLatch latch) {
+    try {
+      return latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private static void sleep() {
+    try {
+      Thread.sleep(2);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+}